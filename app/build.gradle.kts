@@ -1,8 +1,103 @@
+import groovy.json.JsonSlurper
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+
 plugins {
     alias(libs.plugins.android.application)
     alias(libs.plugins.kotlin.android)
 }
 
+/**
+ * Compiles the Live TV broken channel list (broken-channels.json) into a compact binary database read natively by
+ * the core ChannelDatabase. URLs are normalized exactly like livetv.js normalizeUrl(), de-duplicated, sorted by
+ * unsigned UTF-8 bytes and front-coded in blocks with a block offset table; ChannelDatabase.compile() produces the
+ * same bytes for tests and benchmarks.
+ *
+ * Layout: magic "IVCD", version, entry count, block size, block count, int[block count] block offsets,
+ * then per block: varint length + bytes of the first key, followed by (varint shared prefix, varint suffix
+ * length, suffix bytes) for the remaining keys.
+ */
+abstract class CompileChannelDatabasesTask : DefaultTask() {
+    @get:InputFiles
+    abstract val sources: ConfigurableFileCollection
+
+    @get:OutputDirectory
+    abstract val outputDir: DirectoryProperty
+
+    @TaskAction
+    fun compile() {
+        val targetDir = outputDir.get().asFile.resolve("main/logic/livetv")
+        targetDir.mkdirs()
+        sources.files.forEach { source ->
+            @Suppress("UNCHECKED_CAST")
+            val urls = JsonSlurper().parse(source) as List<String>
+            val keys = urls.asSequence()
+                .map { normalize(it) }
+                .filter { it.isNotEmpty() }
+                .map { it.toByteArray(Charsets.UTF_8) }
+                .distinctBy { String(it, Charsets.UTF_8) }
+                .sortedWith { a, b -> compareUnsigned(a, b) }
+                .toList()
+            val target = targetDir.resolve(source.nameWithoutExtension + ".bin")
+            target.writeBytes(encode(keys))
+            logger.lifecycle("Compiled ${keys.size} channel URLs from ${source.name} into ${target.name} (${target.length()} bytes)")
+        }
+    }
+
+    private fun normalize(url: String): String =
+        url.trim().lowercase().replace(Regex("^https?://"), "").replace(Regex("/+$"), "")
+
+    private fun compareUnsigned(a: ByteArray, b: ByteArray): Int {
+        val n = minOf(a.size, b.size)
+        for (i in 0 until n) {
+            val diff = (a[i].toInt() and 0xFF) - (b[i].toInt() and 0xFF)
+            if (diff != 0) return diff
+        }
+        return a.size - b.size
+    }
+
+    private fun encode(keys: List<ByteArray>): ByteArray {
+        val blockSize = 32
+        val data = ByteArrayOutputStream()
+        val blockOffsets = mutableListOf<Int>()
+        var previous = ByteArray(0)
+        keys.forEachIndexed { index, key ->
+            if (index % blockSize == 0) {
+                blockOffsets.add(data.size())
+                writeVarInt(data, key.size)
+                data.write(key)
+            } else {
+                var shared = 0
+                while (shared < previous.size && shared < key.size && previous[shared] == key[shared]) shared++
+                writeVarInt(data, shared)
+                writeVarInt(data, key.size - shared)
+                data.write(key, shared, key.size - shared)
+            }
+            previous = key
+        }
+        val out = ByteArrayOutputStream()
+        DataOutputStream(out).use { header ->
+            header.writeBytes("IVCD")
+            header.writeInt(1)
+            header.writeInt(keys.size)
+            header.writeInt(blockSize)
+            header.writeInt(blockOffsets.size)
+            blockOffsets.forEach { header.writeInt(it) }
+            header.write(data.toByteArray())
+        }
+        return out.toByteArray()
+    }
+
+    private fun writeVarInt(out: ByteArrayOutputStream, value: Int) {
+        var v = value
+        while (v and 0x7F.inv() != 0) {
+            out.write((v and 0x7F) or 0x80)
+            v = v ushr 7
+        }
+        out.write(v)
+    }
+}
+
 android {
     namespace = "com.kenjigames.ivids"
     compileSdk = 35
@@ -47,12 +142,40 @@ android {
     kotlinOptions {
         jvmTarget = "11"
     }
+    androidResources {
+        // Channel databases are memory-mapped straight from the APK by ChannelDbBridge
+        noCompress += "bin"
+        // The JSON channel lists are only read by run_pc.py and scan_broken_channels.py; the APK ships the
+        // compiled database instead (AGP defaults first)
+        ignoreAssetsPattern = "!.svn:!.git:!.ds_store:!*.scc:.*:<dir>_*:!CVS:!thumbs.db:!picasa.ini:!*~" +
+            ":!working-channels.json:!broken-channels.json"
+    }
+    testOptions {
+        // Local unit tests run against the android.jar stubs; let Log and friends return defaults instead of throwing
+        unitTests.isReturnDefaultValues = true
+    }
+}
+
+val compileChannelDatabases = tasks.register<CompileChannelDatabasesTask>("compileChannelDatabases") {
+    sources.from(file("src/main/assets/main/logic/livetv/broken-channels.json"))
+    outputDir.set(layout.buildDirectory.dir("generated/channelDb"))
+}
+
+androidComponents {
+    onVariants { variant ->
+        variant.sources.assets?.addGeneratedSourceDirectory(
+            compileChannelDatabases,
+            CompileChannelDatabasesTask::outputDir
+        )
+    }
 }
 
 dependencies {
+    implementation(project(":core"))
     implementation(libs.androidx.core.ktx)
     implementation(libs.androidx.appcompat)
     implementation(libs.material)
+    implementation(libs.androidx.webkit)
     testImplementation(libs.junit)
     androidTestImplementation(libs.androidx.junit)
     androidTestImplementation(libs.androidx.espresso.core)
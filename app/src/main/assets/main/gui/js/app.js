@@ -2,6 +2,7 @@ import { Router } from './router.js';
 import { SpatialNav } from './spatial-nav.js';
 import { Sidebar } from '../components/sidebar/sidebar.js';
 import { Splash } from './splash.js';
+import { HomeSnapshot } from './home-snapshot.js';
 import { ErrorHandler } from './error-handler.js';
 import { Toast, NetworkStatusOverlay } from './toast.js';
 import { Api } from '../../logic/api.js';
@@ -158,6 +159,77 @@ function initServices() {
 
     // Check for updates on boot
     initUpdateCheck();
+
+    // Release web caches when the native layer reports memory pressure
+    initMemoryTrimListener();
+
+    // Keep the native data saver in sync with the Data Saver setting
+    initNativeNetworkMonitor();
+
+    // Persist the home screen for the next cold start when the app goes to the background
+    window.onAppBackground = () => HomeSnapshot.save();
+}
+
+/**
+ * Mirrors the Data Saver setting to the native network quality monitor (window.AndroidNetwork),
+ * which downsizes TMDB images at the request interception layer while data saving is active.
+ */
+function initNativeNetworkMonitor() {
+    if (!window.AndroidNetwork || typeof window.AndroidNetwork.setDataSaver !== 'function') return;
+
+    let enabled = false;
+    try {
+        const saved = PersistentStorage.getItem(getNamespacedKey('settings'));
+        const settings = saved ? JSON.parse(saved) : {};
+        enabled = settings.dataSaver === true || settings.dataSaver === 'true';
+    } catch (e) {
+        console.error('App: Failed to read dataSaver setting for native monitor:', e);
+    }
+    window.AndroidNetwork.setDataSaver(enabled);
+
+    window.addEventListener('datasaverchanged', (e) => {
+        window.AndroidNetwork.setDataSaver(e.detail === true);
+    });
+
+    /**
+     * @param {string} linkClass - offline, slow, moderate or fast.
+     */
+    window.onNetworkQualityChanged = (linkClass) => {
+        console.log('App: Native link class changed to ' + linkClass);
+    };
+}
+
+/**
+ * Registers the window.onMemoryTrim callback invoked by MainActivity.onTrimMemory / onLowMemory.
+ * Maps the Android trim level to the fraction of cached entries to keep and trims the
+ * blob URL image cache and the in-memory API cache accordingly.
+ */
+function initMemoryTrimListener() {
+    /**
+     * @param {number} level - Android ComponentCallbacks2 trim level.
+     */
+    window.onMemoryTrim = (level) => {
+        // RUNNING_CRITICAL (15) and MODERATE/COMPLETE (60+) clear everything,
+        // RUNNING_LOW (10) and UI_HIDDEN/BACKGROUND (20-40) keep a quarter, RUNNING_MODERATE (5) keeps half.
+        let keepRatio = 1;
+        if (level >= 60 || level === 15) {
+            keepRatio = 0;
+        } else if (level >= 20 || level === 10) {
+            keepRatio = 0.25;
+        } else if (level === 5) {
+            keepRatio = 0.5;
+        }
+        if (keepRatio >= 1) return;
+
+        console.log('App: Memory trim level ' + level + ', keeping ' + (keepRatio * 100) + '% of web caches');
+        Promise.all([
+            import('../../logic/image-cache.js'),
+            import('../../logic/cache-manager.js')
+        ]).then(([{ imageCache }, { cacheManager }]) => {
+            imageCache.trim(keepRatio);
+            cacheManager.trimMemory(keepRatio);
+        }).catch(err => console.error('App: Failed to trim web caches', err));
+    };
 }
 
 /**
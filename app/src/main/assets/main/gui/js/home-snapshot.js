@@ -0,0 +1,166 @@
+import { Api } from '../../logic/api.js';
+import { getActiveAccountId } from '../../logic/account-helper.js';
+
+const SNAPSHOT_VERSION = 1;
+/** Rows older than this are not shown from the snapshot; their live data is fetched as usual. */
+const MAX_AGE_MS = 24 * 60 * 60 * 1000;
+const MAX_ROWS = 12;
+const MAX_ITEMS = 20;
+/** One page of trending titles, the whole hero slider. */
+const MAX_HERO_ITEMS = 20;
+
+/** The fields a poster needs; image paths are kept as paths and resolved with the current size settings. */
+const ROW_FIELDS = ['id', 'media_type', 'title', 'name', 'poster_path'];
+const HERO_FIELDS = ['id', 'media_type', 'title', 'name', 'overview', 'backdrop_path', 'poster_path'];
+
+/** @type {{owner: string, hero: ?{at: number, items: Array}, rows: Object<string, {at: number, items: Array}>}} */
+let model = { owner: '', hero: null, rows: {} };
+let loaded = false;
+let contentReported = false;
+
+/**
+ * @returns {string} The account and language the home screen is built for.
+ */
+function owner() {
+    return getActiveAccountId() + '|' + Api.getLanguageCode();
+}
+
+/**
+ * Returns the recorded model, starting over when the account or language changed since it was recorded.
+ * @returns {Object} The model.
+ */
+function currentModel() {
+    const current = owner();
+    if (model.owner !== current) model = { owner: current, hero: null, rows: {} };
+    return model;
+}
+
+/**
+ * Keeps only the listed fields of each item.
+ * @param {Array} items - TMDB result items.
+ * @param {Array<string>} fields - The fields to keep.
+ * @param {number} limit - The maximum number of items kept.
+ * @returns {Array} The compact items.
+ */
+function compact(items, fields, limit) {
+    return items.slice(0, limit).map(item => {
+        const out = {};
+        fields.forEach(field => {
+            if (item[field] !== undefined && item[field] !== null && item[field] !== '') out[field] = item[field];
+        });
+        return out;
+    });
+}
+
+/**
+ * HomeSnapshot keeps a compact copy of the home screen (hero slides and row lists) and persists it through the
+ * native snapshot store (window.AndroidSnapshot) when the app goes to the background. On the next cold start the
+ * home page paints the snapshot first and replaces it with live data as the requests complete.
+ * Does nothing outside the Android app.
+ */
+export const HomeSnapshot = {
+    /**
+     * @returns {boolean} Whether the native snapshot store is available.
+     */
+    isAvailable() {
+        return !!(window.AndroidSnapshot && typeof window.AndroidSnapshot.load === 'function');
+    },
+
+    /**
+     * Loads the snapshot of the previous session. Snapshots of another account or language are ignored,
+     * as are rows older than a day. The loaded rows become the base of the snapshot saved next.
+     * Only the first call of a session returns the snapshot; later visits of the home page use live data.
+     * @returns {?{hero: ?Array, rows: Object<string, Array>}} The hero items and row lists, or null if there is nothing to show.
+     */
+    load() {
+        if (loaded || !this.isAvailable()) return null;
+        loaded = true;
+        try {
+            const json = window.AndroidSnapshot.load();
+            if (!json) return null;
+            const snapshot = JSON.parse(json);
+            if (snapshot.version !== SNAPSHOT_VERSION || snapshot.owner !== owner()) return null;
+            const now = Date.now();
+            const fresh = entry => entry && Array.isArray(entry.items) && entry.items.length > 0 && now - entry.at < MAX_AGE_MS;
+            model = { owner: snapshot.owner, hero: fresh(snapshot.hero) ? snapshot.hero : null, rows: {} };
+            Object.keys(snapshot.rows || {}).forEach(id => {
+                if (fresh(snapshot.rows[id])) model.rows[id] = snapshot.rows[id];
+            });
+
+            const rows = {};
+            Object.keys(model.rows).forEach(id => { rows[id] = model.rows[id].items; });
+            if (!model.hero && Object.keys(rows).length === 0) return null;
+            return { hero: model.hero ? model.hero.items : null, rows };
+        } catch (error) {
+            console.error('HomeSnapshot: Failed to load snapshot:', error);
+            return null;
+        }
+    },
+
+    /**
+     * @param {?Array} snapshotItems - The hero items of the snapshot.
+     * @param {Array} liveItems - The live trending items.
+     * @returns {boolean} Whether the snapshot hero shows the same titles as the live one would.
+     */
+    isSameHero(snapshotItems, liveItems) {
+        const live = (liveItems || []).slice(0, MAX_HERO_ITEMS);
+        return !!snapshotItems && snapshotItems.length === live.length
+            && snapshotItems.every((item, i) => item.id === live[i].id);
+    },
+
+    /**
+     * Records the live hero items.
+     * @param {Array} items - The trending items shown in the hero slider.
+     */
+    recordHero(items) {
+        if (!Array.isArray(items) || items.length === 0) return;
+        currentModel().hero = { at: Date.now(), items: compact(items, HERO_FIELDS, MAX_HERO_ITEMS) };
+    },
+
+    /**
+     * Records the live items of a home row. Only the first rows loaded are kept, as only those are on
+     * screen at startup.
+     * @param {string} id - The row element id.
+     * @param {Array} items - The row items.
+     */
+    recordRow(id, items) {
+        if (!Array.isArray(items) || items.length === 0) return;
+        const current = currentModel();
+        if (!current.rows[id] && Object.keys(current.rows).length >= MAX_ROWS) return;
+        current.rows[id] = { at: Date.now(), items: compact(items.filter(item => item.poster_path), ROW_FIELDS, MAX_ITEMS) };
+    },
+
+    /**
+     * Persists the recorded home screen. Called when the app goes to the background.
+     */
+    save() {
+        const current = currentModel();
+        if (!this.isAvailable() || (!current.hero && Object.keys(current.rows).length === 0)) return;
+        try {
+            window.AndroidSnapshot.save(JSON.stringify({
+                version: SNAPSHOT_VERSION,
+                owner: current.owner,
+                hero: current.hero,
+                rows: current.rows
+            }));
+        } catch (error) {
+            console.error('HomeSnapshot: Failed to save snapshot:', error);
+        }
+    },
+
+    /**
+     * Reports the first real content on screen after a cold start to the native startup trace, once.
+     * @param {string} source - 'snapshot' or 'network'.
+     */
+    markRealContent(source) {
+        if (contentReported) return;
+        contentReported = true;
+        if (window.AndroidSnapshot && typeof window.AndroidSnapshot.reportFirstContent === 'function') {
+            try {
+                window.AndroidSnapshot.reportFirstContent(source);
+            } catch (error) {
+                console.warn('HomeSnapshot: Native snapshot store unavailable:', error);
+            }
+        }
+    }
+};
@@ -14,6 +14,9 @@ const KEY_MAP = {
     AndroidBack: 4
 };
 
+/** Key names dispatched for coalesced auto-repeat moves delivered by the Android input pipeline. */
+const REPEAT_KEYS = { up: 'ArrowUp', down: 'ArrowDown', left: 'ArrowLeft', right: 'ArrowRight' };
+
 export const SpatialNav = {
     focusableSelector: '.focusable',
     focusTrapContainer: null,
@@ -22,6 +25,7 @@ export const SpatialNav = {
     _initialized: false,
     isMouseInteraction: false,
     backHandlers: [],
+    _repeatSteps: 1,
 
     /**
      * Checks if the viewport is in portrait mode based on viewport width (less than or equal to 600px).
@@ -523,7 +527,14 @@ export const SpatialNav = {
             if (this.loadingNav) return;
 
             const directions = { 37: 'left', 38: 'up', 39: 'right', 40: 'down' };
-            const next = this.findNext(current, directions[keyCode]);
+            let next = this.findNext(current, directions[keyCode]);
+
+            // Accelerated auto-repeat: hop over intermediate elements and only focus/center the last one
+            for (let i = 1; next && i < this._repeatSteps; i++) {
+                const further = this.findNext(next, directions[keyCode]);
+                if (!further) break;
+                next = further;
+            }
 
             if (next) {
                 this.setFocus(next);
@@ -584,6 +595,27 @@ export const SpatialNav = {
         }
     },
 
+    /**
+     * Entry point for coalesced D-pad auto-repeats delivered by the Android DpadInputPipeline.
+     * Dispatches a single synthetic keydown so page-level key handlers (zapping, list reordering) still run once
+     * per tick, while SpatialNav itself moves `steps` elements ahead and only focuses the final one.
+     * @param {string} direction - The navigation direction ('up', 'down', 'left', 'right').
+     * @param {number} steps - The number of elements to advance.
+     * @returns {boolean} True once the move has been applied.
+     */
+    handleRepeat(direction, steps) {
+        const key = REPEAT_KEYS[direction];
+        if (!key) return false;
+        this._repeatSteps = Math.max(1, steps | 0);
+        try {
+            const target = document.activeElement || document.body;
+            target.dispatchEvent(new KeyboardEvent('keydown', { key, bubbles: true, cancelable: true }));
+        } finally {
+            this._repeatSteps = 1;
+        }
+        return true;
+    },
+
     /**
      * Calculates the next focus candidate element in a given direction from the current element.
      * Respects page-specific spatial overrides, manual data navigation paths, and visibility constraints.
@@ -696,3 +728,6 @@ export const SpatialNav = {
         return best;
     }
 };
+
+// Exposed globally for native callers (MainActivity back handling and the D-pad input pipeline)
+window.SpatialNav = SpatialNav;
@@ -72,6 +72,9 @@ export class Splash {
         if (this.contentLoaded) return;
         console.log('Splash: Content ready signal received.');
         this.contentLoaded = true;
+        if (window.AndroidStartup && typeof window.AndroidStartup.mark === 'function') {
+            window.AndroidStartup.mark('contentLoaded');
+        }
         this.checkReady();
     }
 
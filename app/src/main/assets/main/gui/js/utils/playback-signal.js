@@ -0,0 +1,19 @@
+/**
+ * Tells the native background scheduler (`window.AndroidScheduler`) whether a player is active, so
+ * maintenance work such as the EPG index refresh pauses instead of competing with the video stream.
+ * Does nothing outside the Android app.
+ *
+ * @param {boolean} active - True when a player opens, false when it closes.
+ */
+export function setPlaybackActive(active) {
+    if (window.AndroidScheduler && typeof window.AndroidScheduler.setPlaybackActive === 'function') {
+        try {
+            window.AndroidScheduler.setPlaybackActive(active);
+        } catch (e) {
+            console.warn('Native scheduler unavailable:', e);
+        }
+    }
+}
+
+// A page reload or unload ends any playback without the player closing, so clear the flag then.
+window.addEventListener('pagehide', () => setPlaybackActive(false));
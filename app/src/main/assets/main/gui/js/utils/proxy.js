@@ -22,3 +22,84 @@ export function proxyUrl(url) {
     }
     return url;
 }
+
+let endpointKey = null;
+
+/**
+ * Asks the native side (Android) for the key its endpoint bridges require before they issue a token.
+ * The `ividsEndpoints` channel is only injected into the app page, so embed frames cannot obtain the key.
+ * Resolves with null where the channel is unavailable; streams and logos are then loaded directly.
+ */
+const endpointKeyReady = new Promise(resolve => {
+    const channel = window.ividsEndpoints;
+    if (!channel || typeof channel.postMessage !== 'function') {
+        resolve(null);
+        return;
+    }
+    const timer = setTimeout(() => resolve(null), 2000);
+    channel.onmessage = (event) => {
+        clearTimeout(timer);
+        endpointKey = event.data || null;
+        resolve(endpointKey);
+    };
+    channel.postMessage('key');
+});
+
+/**
+ * Waits until the native endpoint key has arrived (or is known to be unavailable), so that the first
+ * proxyStreamUrl() and thumbnailUrl() calls already use the native endpoints.
+ *
+ * @returns {Promise<string|null>} The key, or null without native endpoints.
+ */
+export function whenNativeEndpointsReady() {
+    return endpointKeyReady;
+}
+
+/**
+ * Wraps a live stream (HLS playlist) URL for playback.
+ * On Android the native HLS proxy (`window.AndroidHls`) fetches and rewrites playlists so that CORS-restricted
+ * and mixed-content streams play, and tracks the channel start; elsewhere this behaves like proxyUrl().
+ *
+ * @param {string} url - The original stream URL.
+ * @returns {string} The URL to hand to hls.js or the video element.
+ */
+export function proxyStreamUrl(url) {
+    if (!url) return url;
+    if (endpointKey && window.AndroidHls && typeof window.AndroidHls.getProxyUrl === 'function') {
+        try {
+            return window.AndroidHls.getProxyUrl(url, endpointKey);
+        } catch (e) {
+            console.warn('Native HLS proxy unavailable, using direct URL:', e);
+        }
+    }
+    return proxyUrl(url);
+}
+
+let logoEndpoint;
+
+/**
+ * Wraps a channel logo URL so the native logo service (`window.AndroidLogos`) serves a downscaled,
+ * disk-cached WebP thumbnail instead of the original image. Returns the URL unchanged elsewhere.
+ *
+ * @param {string} url - The original logo URL.
+ * @param {number} cssSize - The largest displayed dimension of the logo in CSS pixels.
+ * @returns {string} The thumbnail URL.
+ */
+export function thumbnailUrl(url, cssSize) {
+    if (!url || !(url.startsWith('http://') || url.startsWith('https://'))) return url;
+    if (logoEndpoint === undefined) {
+        // Without the endpoint key (not yet received, or no native channel) logos load directly
+        if (!endpointKey) return url;
+        logoEndpoint = null;
+        if (window.AndroidLogos && typeof window.AndroidLogos.getEndpoint === 'function') {
+            try {
+                logoEndpoint = window.AndroidLogos.getEndpoint(endpointKey);
+            } catch (e) {
+                console.warn('Native logo service unavailable:', e);
+            }
+        }
+    }
+    if (!logoEndpoint) return url;
+    const size = Math.round(cssSize * (window.devicePixelRatio || 1));
+    return `${logoEndpoint}?s=${size}&url=${encodeURIComponent(url)}`;
+}
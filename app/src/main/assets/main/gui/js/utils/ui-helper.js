@@ -106,8 +106,12 @@ export function setupRow(elementId, items, defaultType = null) {
 export function setupLazyLoadedRows(categories, defaultType = null) {
     categories.forEach(cat => {
         lazyLoader.register(cat.id, async () => {
-            // Render the skeletons only when the row is about to load/fetch
-            renderSkeletonRow(cat.id, 20, 'poster');
+            // Render the skeletons only when the row is about to load/fetch and shows nothing yet
+            // (rows painted from the home snapshot keep their posters until the live data replaces them)
+            const row = document.getElementById(cat.id);
+            if (!row || !row.querySelector('.poster-wrapper:not(.is-skeleton)')) {
+                renderSkeletonRow(cat.id, 20, 'poster');
+            }
             return await cat.fetcher();
         }, (id, data, error) => {
             if (error) {
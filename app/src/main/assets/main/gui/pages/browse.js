@@ -6,6 +6,7 @@ import { ErrorHandler } from '../js/error-handler.js';
 import { setupRow, setupLazyLoadedRows } from '../js/utils/ui-helper.js';
 import { Splash } from '../js/splash.js';
 import { CategoryRenderer } from '../js/category-renderer.js';
+import { HomeSnapshot } from '../js/home-snapshot.js';
 
 /**
  * Initializes the unified browse page based on the current active route (home, movies, or series).
@@ -43,6 +44,21 @@ export async function init(params) {
  * @returns {Promise<void>} Resolves when the home components are loaded.
  */
 async function initHome() {
+    const heroConfig = {
+        containerId: 'hero',
+        titleId: 'hero-title',
+        descId: 'hero-desc',
+        playBtnId: 'play-btn'
+    };
+
+    // 0. On a cold start, paint the home screen of the previous session before any network request completes
+    const snapshot = HomeSnapshot.load();
+    if (snapshot) {
+        if (snapshot.hero) new HeroSlider(snapshot.hero, heroConfig);
+        Object.keys(snapshot.rows).forEach(id => setupRow(id, snapshot.rows[id]));
+        HomeSnapshot.markRealContent('snapshot');
+    }
+
     // 1. Load Hero and Recently Watched concurrently for faster initial render
     const trendingPromise = Api.fetchTrending()
         .then(val => ({ status: 'fulfilled', value: val }))
@@ -56,14 +72,14 @@ async function initHome() {
     const trending = trendingResult.status === 'fulfilled' ? trendingResult.value : [];
     const recentlyWatched = recentResult.status === 'fulfilled' ? recentResult.value : [];
 
-    // Setup Hero
+    // Setup Hero; the slider painted from the snapshot is kept while it shows the same titles
+    const sameHero = snapshot !== null && HomeSnapshot.isSameHero(snapshot.hero, trending);
     if (trending && trending.length > 0) {
-        new HeroSlider(trending, {
-            containerId: 'hero',
-            titleId: 'hero-title',
-            descId: 'hero-desc',
-            playBtnId: 'play-btn'
-        });
+        HomeSnapshot.recordHero(trending);
+        if (!sameHero) new HeroSlider(trending, heroConfig);
+        HomeSnapshot.markRealContent('network');
+    } else if (snapshot && snapshot.hero) {
+        console.warn('Home: No trending data available, keeping the snapshot hero.');
     } else {
         console.warn('Home: No trending data available for Hero.');
         // Signal splash to dismiss even if we have no hero content
@@ -84,6 +100,9 @@ async function initHome() {
         if (el && el.parentElement) el.parentElement.style.display = 'none';
     }
 
+    // Setup Recommended for You without waiting; on Android a rebuilt list arrives later through a callback
+    setupRecommendedRow(recentlyWatched);
+
     // Define Lazy Load Configuration for Home
     const categories = [
         { id: 'trending-today-row', fetcher: () => Api.fetchTrendingToday() },
@@ -122,8 +141,46 @@ async function initHome() {
         { id: 'fantasy-row', fetcher: () => Api.fetchFantasyMovies() }
     ];
 
-    // Register lazy loaders
-    setupLazyLoadedRows(categories);
+    // Register lazy loaders; rows painted from the snapshot keep their posters until the live list arrives
+    setupLazyLoadedRows(categories.map(cat => ({
+        id: cat.id,
+        fetcher: async () => {
+            const items = await cat.fetcher();
+            HomeSnapshot.recordRow(cat.id, items);
+            return items;
+        }
+    })));
+}
+
+/**
+ * Fills the "Recommended for You" row from the merged recommendations of the recently watched titles.
+ * The row stays hidden until there is something to show. The time from the request until the posters are
+ * in the DOM is reported to the native metrics as the home row build time.
+ * @param {Array} history - The recently watched items, most recent first.
+ */
+function setupRecommendedRow(history) {
+    const el = document.getElementById('recommended-row');
+    const row = el ? el.closest('.row') : null;
+    if (!row) return;
+    row.style.display = 'none';
+    const requestedAt = performance.now();
+    let reported = false;
+
+    const show = (items) => {
+        // The home page may have been left while the list was being built
+        if (!document.body.contains(el) || !items || items.length === 0) return;
+        row.style.display = '';
+        setupRow('recommended-row', items);
+        if (!reported && window.AndroidRecommendations && typeof window.AndroidRecommendations.reportRowBuild === 'function') {
+            reported = true;
+            window.AndroidRecommendations.reportRowBuild(performance.now() - requestedAt);
+        }
+    };
+
+    window.onRecommendationsUpdated = show;
+    Api.fetchHomeRecommendations(history)
+        .then(items => { if (items) show(items); })
+        .catch(error => console.error('Home: Failed to load recommendations:', error));
 }
 
 /**
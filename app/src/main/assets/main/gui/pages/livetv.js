@@ -3,7 +3,7 @@ import { PRESET_SOURCES } from '../../logic/livetv/sources.js';
 import { Router } from '../js/router.js';
 import { SpatialNav } from '../js/spatial-nav.js';
 import { EpgManager } from '../../logic/livetv/epg-manager.js';
-import { proxyUrl } from '../js/utils/proxy.js';
+import { proxyUrl, proxyStreamUrl, thumbnailUrl, whenNativeEndpointsReady } from '../js/utils/proxy.js';
 import { getNamespacedKey } from '../../logic/account-helper.js';
 import { XtreamApi } from '../../logic/livetv/xtream-api.js';
 
@@ -39,8 +39,15 @@ let loadSourcesPromise = null;
 const LIVE_TV_STATUS_KEY = 'ivids-live-tv-status-cache';
 const LIVE_TV_FAVORITES_KEY = 'ivids-live-tv-favorites';
 const STATUS_TTL_MS = 24 * 60 * 60 * 1000;
+const CHANNEL_LOGO_SIZE = 48; // Width of .channel-list-logo-container in CSS pixels
 const BROKEN_CHANNELS_API_URL = '/api/broken-channels';
 const brokenChannelsSet = new Set(); // Persistent broken channel URLs loaded from project file
+const XTREAM_PAGE_SIZE = 500; // Streams per page read from the native Xtream catalog
+const XTREAM_EPG_TTL_MS = 10 * 60 * 1000; // Matches the native short EPG cache
+const xtreamSources = new Map(); // Source name -> XtreamApi of playlists served by the native Xtream catalog
+const xtreamCatalogs = new Map(); // Source name -> paging state of a native Xtream catalog, see loadXtreamChannels
+const seenChannelUrls = new Set(); // Normalized URLs of the channels in allChannels
+const xtreamEpgRequests = new Map(); // Short EPG key -> {promise, requestedAt}
 
 /**
  * Loads saved channel favorites from localStorage into favoritesSet.
@@ -174,13 +181,14 @@ export async function init(params) {
     if (window.i18n) window.i18n.applyTranslations();
 
     EpgManager.init();
+    XtreamApi.addCatalogUpdateListener(onXtreamCatalogUpdated);
 
     if (allChannels.length > 0) {
         const statsInfo = document.getElementById('hero-stats-info');
         const countEl = document.getElementById('hero-total-channels');
         const totalSrcEl = document.getElementById('hero-total-sources');
         if (statsInfo && countEl && totalSrcEl) {
-            countEl.textContent = `${allChannels.length} channels`;
+            countEl.textContent = `${channelTotal()} channels`;
             const sourceEntries = Object.entries(PRESET_SOURCES);
             const settings = loadMergedSettings();
             const totalSources = sourceEntries.length + (settings.m3uUrl ? 1 : 0);
@@ -199,21 +207,40 @@ export async function init(params) {
     setupEventListeners();
 
     // Start background source loading without blocking the router transition
-    if (!loadSourcesPromise) {
-        loadSourcesPromise = loadAllSources().then(() => {
-            loadSourcesPromise = null;
-            if (Router.currentPage === 'livetv') {
-                SpatialNav.focusFirst();
-            }
-        }).catch(err => {
-            loadSourcesPromise = null;
-            console.error('Error in background source loading:', err);
-        });
-    }
+    startLoadingSources();
 
     SpatialNav.focusFirst();
 }
 
+/**
+ * Starts loading all playlist sources in the background unless a load is already running.
+ */
+function startLoadingSources() {
+    if (loadSourcesPromise) return;
+    loadSourcesPromise = loadAllSources().then(() => {
+        loadSourcesPromise = null;
+        if (Router.currentPage === 'livetv') {
+            SpatialNav.focusFirst();
+        }
+    }).catch(err => {
+        loadSourcesPromise = null;
+        console.error('Error in background source loading:', err);
+    });
+}
+
+/**
+ * Handles a background refresh of the native Xtream catalog: the channel list is reloaded now when Live TV is
+ * open, and on the next visit otherwise.
+ */
+function onXtreamCatalogUpdated() {
+    xtreamEpgRequests.clear();
+    if (loadSourcesPromise) return;
+    allChannels = [];
+    if (Router.currentPage === 'livetv') {
+        startLoadingSources();
+    }
+}
+
 /**
  * Renders channel skeleton placeholders in the UI to indicate loading progress.
  * Affects the `#channels-list` DOM element.
@@ -242,7 +269,7 @@ function renderLoadingSkeletons() {
 
 /**
  * Asynchronously loads M3U channel lists from preset and custom playlist URLs, skipping known broken channels.
- * Affects the global allChannels array, seenUrls set, and triggers filtered channel rendering.
+ * Affects the global allChannels array, seenChannelUrls set, and triggers filtered channel rendering.
  */
 async function loadAllSources() {
     const empty = document.getElementById('no-channels-message');
@@ -252,8 +279,8 @@ async function loadAllSources() {
     try {
         if (empty) empty.style.display = 'none';
 
-        // Load the broken channels database first
-        await loadBrokenChannelsDb();
+        // Load the broken channels database first; the native endpoint key is needed for the first logos
+        await Promise.all([loadBrokenChannelsDb(), whenNativeEndpointsReady()]);
 
         const sourceEntries = Object.entries(PRESET_SOURCES);
         const settings = loadMergedSettings();
@@ -274,12 +301,28 @@ async function loadAllSources() {
         }
 
         allChannels = [];
-        const seenUrls = new Set();
+        seenChannelUrls.clear();
+
+        // On Android the first Xtream playlist URL is served by the native catalog (it holds one account at a time)
+        xtreamSources.clear();
+        xtreamCatalogs.clear();
+        let nativeXtream = null;
+        if (window.AndroidXtream) {
+            for (const [, source] of sourceEntries) {
+                const api = XtreamApi.fromPlaylistUrl(source.url);
+                if (api) {
+                    nativeXtream = { source, api };
+                    break;
+                }
+            }
+        }
 
         // Fetch all playlist sources in parallel to prevent sequential network blocking
         const fetchPromises = sourceEntries.map(async ([id, source]) => {
             try {
-                const playlistChannels = await M3UParser.fetchPlaylist(proxyUrl(source.url));
+                const playlistChannels = nativeXtream && nativeXtream.source === source
+                    ? await loadXtreamChannels(source, nativeXtream.api)
+                    : await M3UParser.fetchPlaylist(proxyUrl(source.url));
                 return { source, playlistChannels };
             } catch (err) {
                 console.warn(`Failed to load source ${source.name}:`, err);
@@ -289,60 +332,23 @@ async function loadAllSources() {
 
         const results = await Promise.all(fetchPromises);
 
-        // Process and merge all parsed channels
-        results.forEach(({ source, playlistChannels }) => {
-            if (playlistChannels && playlistChannels.length > 0) {
-                playlistChannels.forEach(c => {
-                    if (!c.group) c.group = source.name;
-                    c.sourceName = source.name;
-                    c.sourcePriority = source.priority || 50;
-
-                    const normalized = normalizeUrl(c.url);
-                    if (!seenUrls.has(normalized) && !brokenChannelsSet.has(normalized)) {
-                        seenUrls.add(normalized);
-                        c.normalizedUrl = normalized;
-                        c.searchNameLower = (c.name || '').toLowerCase();
-                        c.groupTags = c.group ? c.group.split(';').map(t => t.trim().toLowerCase()).filter(Boolean) : [];
-                        allChannels.push(c);
-                    }
-                });
-            }
-        });
-
-        allChannels.sort((a, b) => {
-            const streamScoreDiff = getStreamScore(b.url) - getStreamScore(a.url);
-            if (streamScoreDiff !== 0) return streamScoreDiff;
-            const priorityDiff = (a.sourcePriority || 50) - (b.sourcePriority || 50);
-            if (priorityDiff !== 0) return priorityDiff;
-            return (a.name || "").localeCompare(b.name || "", undefined, { sensitivity: 'base' });
-        });
+        // On Android, resolve broken channels against the native compiled database in one bridge call
+        if (window.AndroidChannelDb) {
+            markNativeBrokenChannels(results);
+        }
 
-        // Extract unique genres and countries
-        const genresSet = new Set();
-        const countriesSet = new Set();
-        allChannels.forEach(c => {
-            if (c.group) {
-                const tags = c.group.split(';').map(t => t.trim()).filter(Boolean);
-                tags.forEach(tag => {
-                    if (countriesList.has(tag.toLowerCase())) {
-                        countriesSet.add(tag);
-                    } else {
-                        genresSet.add(tag);
-                    }
-                });
-            }
-        });
-        genres = Array.from(genresSet).sort();
-        countries = Array.from(countriesSet).sort();
+        // Process and merge all parsed channels
+        results.forEach(({ source, playlistChannels }) => addSourceChannels(source, playlistChannels));
+        sortChannels();
 
         // Populate select filters in UI
-        populateFilters();
+        updateFilterOptions();
 
         // Show stats banner
         const statsInfo = document.getElementById('hero-stats-info');
         const totalSrcEl = document.getElementById('hero-total-sources');
         if (statsInfo && countEl && totalSrcEl) {
-            countEl.textContent = `${allChannels.length} channels`;
+            countEl.textContent = `${channelTotal()} channels`;
             totalSrcEl.textContent = `${sourceEntries.length} sources`;
             statsInfo.style.display = 'flex';
         }
@@ -359,6 +365,281 @@ async function loadAllSources() {
     }
 }
 
+/**
+ * Adds the parsed channels of a source to allChannels, skipping URLs already listed or known to be broken.
+ *
+ * @param {object} source - The playlist source.
+ * @param {Array} playlistChannels - The parsed channels.
+ * @returns {number} The number of channels added.
+ */
+function addSourceChannels(source, playlistChannels) {
+    let added = 0;
+    (playlistChannels || []).forEach(c => {
+        if (!c.group) c.group = source.name;
+        c.sourceName = source.name;
+        c.sourcePriority = source.priority || 50;
+
+        const normalized = normalizeUrl(c.url);
+        if (!seenChannelUrls.has(normalized) && !brokenChannelsSet.has(normalized)) {
+            seenChannelUrls.add(normalized);
+            c.normalizedUrl = normalized;
+            c.searchNameLower = (c.name || '').toLowerCase();
+            c.groupTags = splitGroupTags(c.group).map(t => t.toLowerCase());
+            allChannels.push(c);
+            added++;
+        }
+    });
+    return added;
+}
+
+/**
+ * Sorts allChannels by stream type, source priority and name.
+ */
+function sortChannels() {
+    allChannels.sort((a, b) => {
+        const streamScoreDiff = getStreamScore(b.url) - getStreamScore(a.url);
+        if (streamScoreDiff !== 0) return streamScoreDiff;
+        const priorityDiff = (a.sourcePriority || 50) - (b.sourcePriority || 50);
+        if (priorityDiff !== 0) return priorityDiff;
+        return (a.name || "").localeCompare(b.name || "", undefined, { sensitivity: 'base' });
+    });
+}
+
+/**
+ * Splits a channel group into its ';'-separated tags.
+ *
+ * @param {string} group - The channel group.
+ * @returns {Array<string>} The trimmed, non-empty tags.
+ */
+function splitGroupTags(group) {
+    return group ? group.split(';').map(t => t.trim()).filter(Boolean) : [];
+}
+
+/**
+ * Rebuilds the genre and country filters from the loaded channels and from the categories of the native Xtream
+ * catalogs, whose channels are only read once shown.
+ */
+function updateFilterOptions() {
+    const genresSet = new Set();
+    const countriesSet = new Set();
+    const addTags = group => splitGroupTags(group).forEach(tag => {
+        if (countriesList.has(tag.toLowerCase())) {
+            countriesSet.add(tag);
+        } else {
+            genresSet.add(tag);
+        }
+    });
+    allChannels.forEach(c => addTags(c.group));
+    xtreamCatalogs.forEach(catalog => catalog.categories.forEach(category => addTags(category.name)));
+    genres = Array.from(genresSet).sort();
+    countries = Array.from(countriesSet).sort();
+    populateFilters();
+}
+
+/**
+ * Returns the number of channels to show in the stats banner: the loaded channels plus the streams of native Xtream
+ * catalogs that were not read yet.
+ *
+ * @returns {number}
+ */
+function channelTotal() {
+    let total = allChannels.length;
+    xtreamCatalogs.forEach(catalog => {
+        total += Math.max(0, catalog.total - catalog.readIds.size);
+    });
+    return total;
+}
+
+/**
+ * Reads the first page of an Xtream playlist from the native catalog, so the WebView never parses the provider's
+ * full stream list. Further pages are read when the list is scrolled to its end, a category is selected as a filter
+ * or a search matches them. Falls back to the playlist URL when the catalog cannot be loaded.
+ *
+ * @param {object} source - The playlist source.
+ * @param {XtreamApi} api - Client for the playlist's account.
+ * @returns {Promise<Array>} The channels of the first page.
+ */
+async function loadXtreamChannels(source, api) {
+    if (!(await api.loadNativeCatalog())) {
+        return M3UParser.fetchPlaylist(proxyUrl(source.url));
+    }
+    xtreamSources.set(source.name, api);
+    const categories = (await api.getLiveCategories()).filter(category => category.count > 0);
+    const catalog = {
+        source,
+        api,
+        categories: categories.map(category => ({
+            id: String(category.category_id),
+            name: category.category_name || String(category.category_id),
+            loaded: false
+        })),
+        total: categories.reduce((sum, category) => sum + category.count, 0),
+        nextOffset: 0,
+        readIds: new Set(), // Stream ids read from the catalog so far
+        loading: null
+    };
+    xtreamCatalogs.set(source.name, catalog);
+    const page = await api.getLiveStreamPage('', 0, XTREAM_PAGE_SIZE);
+    catalog.nextOffset = page.length < XTREAM_PAGE_SIZE ? catalog.total : page.length;
+    page.forEach(channel => catalog.readIds.add(String(channel.streamId)));
+    return page;
+}
+
+/**
+ * Merges channels read from a native Xtream catalog after the initial load and re-renders the list, keeping the
+ * rendered length, scroll position and focus.
+ *
+ * @param {object} catalog - The catalog state from loadXtreamChannels.
+ * @param {Array} channels - The channels read.
+ */
+function mergeXtreamChannels(catalog, channels) {
+    // A catalog update reloads all sources; drop pages of the replaced state
+    if (xtreamCatalogs.get(catalog.source.name) !== catalog) return;
+    channels.forEach(channel => catalog.readIds.add(String(channel.streamId)));
+    if (window.AndroidChannelDb && channels.length > 0) {
+        markNativeBrokenChannels([{ playlistChannels: channels }]);
+    }
+    if (addSourceChannels(catalog.source, channels) === 0) return;
+    sortChannels();
+    updateFilterOptions();
+    const countEl = document.getElementById('hero-total-channels');
+    if (countEl) countEl.textContent = `${channelTotal()} channels`;
+    if (Router.currentPage !== 'livetv') return;
+
+    const scrollContainer = document.querySelector('.livetv-list-column');
+    const scrollTop = scrollContainer ? scrollContainer.scrollTop : 0;
+    const focused = document.querySelector('#channels-list .focused');
+    const focusedUrl = focused && focused.dataset.url;
+    const shown = renderedCount;
+    filterAndRenderChannels(false);
+    while (renderedCount < shown && renderedCount < filteredChannels.length) {
+        renderNextChunk();
+    }
+    if (scrollContainer) scrollContainer.scrollTop = scrollTop;
+    if (focusedUrl) {
+        const item = Array.from(document.querySelectorAll('#channels-list .channel-list-item'))
+            .find(el => el.dataset.url === focusedUrl);
+        if (item) SpatialNav.setFocus(item);
+    }
+}
+
+/**
+ * Reads the next page of every native Xtream catalog once the unfiltered list has been rendered to its end.
+ */
+function loadMoreXtreamChannels() {
+    if (searchQuery || activeGenre || activeCountry) return;
+    xtreamCatalogs.forEach(catalog => {
+        if (catalog.loading || catalog.nextOffset >= catalog.total) return;
+        catalog.loading = catalog.api.getLiveStreamPage('', catalog.nextOffset, XTREAM_PAGE_SIZE)
+            .then(page => {
+                catalog.nextOffset = page.length < XTREAM_PAGE_SIZE ? catalog.total : catalog.nextOffset + page.length;
+                mergeXtreamChannels(catalog, page);
+            })
+            .catch(error => console.warn('LiveTV: Failed to read Xtream page:', error))
+            .finally(() => { catalog.loading = null; });
+    });
+}
+
+/**
+ * Reads all pages of the native Xtream categories matching a selected genre or country filter.
+ *
+ * @param {string} tag - The selected genre or country.
+ */
+async function loadXtreamCategory(tag) {
+    if (!tag) return;
+    const tagLower = tag.toLowerCase();
+    for (const catalog of xtreamCatalogs.values()) {
+        const categories = catalog.categories.filter(category => !category.loaded
+            && splitGroupTags(category.name).some(t => t.toLowerCase() === tagLower));
+        for (const category of categories) {
+            category.loaded = true;
+            for (let offset = 0; ; offset += XTREAM_PAGE_SIZE) {
+                const page = await catalog.api.getLiveStreamPage(category.id, offset, XTREAM_PAGE_SIZE);
+                mergeXtreamChannels(catalog, page);
+                if (page.length < XTREAM_PAGE_SIZE) break;
+                // Let input and rendering run between pages
+                await new Promise(resolve => setTimeout(resolve, 0));
+            }
+        }
+    }
+}
+
+/**
+ * Searches the native Xtream catalogs for channels that were not read yet and merges the matches.
+ *
+ * @param {string} query - The search query.
+ */
+function searchXtreamChannels(query) {
+    if (!query) return;
+    xtreamCatalogs.forEach(catalog => {
+        catalog.api.searchLiveStreams(query).then(channels => {
+            if (query !== searchQuery) return;
+            mergeXtreamChannels(catalog, channels.filter(channel => !catalog.readIds.has(String(channel.streamId))));
+        });
+    });
+}
+
+/**
+ * Returns the key a channel's Xtream short EPG is stored under in EpgManager.
+ *
+ * @param {object} channel - An Xtream channel.
+ * @returns {string}
+ */
+function xtreamEpgKey(channel) {
+    return `xtream:${channel.sourceName}:${channel.streamId}`;
+}
+
+/**
+ * Requests the short EPG of the given Xtream channels in one native batch per source, skipping channels
+ * requested within the cache lifetime. Other channels are ignored.
+ *
+ * @param {Array<object>} channels - Channels about to be shown.
+ * @returns {Promise<void>} Resolves when the listings of all given channels are stored.
+ */
+function loadXtreamEpg(channels) {
+    const now = Date.now();
+    const waits = [];
+    const bySource = new Map();
+    channels.forEach(channel => {
+        if (!channel || !channel.isXtream || !xtreamSources.has(channel.sourceName)) return;
+        const key = xtreamEpgKey(channel);
+        const request = xtreamEpgRequests.get(key);
+        if (request && now - request.requestedAt < XTREAM_EPG_TTL_MS) {
+            waits.push(request.promise);
+            return;
+        }
+        if (!bySource.has(channel.sourceName)) bySource.set(channel.sourceName, []);
+        bySource.get(channel.sourceName).push(channel);
+    });
+    bySource.forEach((sourceChannels, sourceName) => {
+        const promise = xtreamSources.get(sourceName).getShortEpgBatch(sourceChannels.map(c => c.streamId))
+            .then(result => {
+                sourceChannels.forEach(c => {
+                    EpgManager.setProviderPrograms(xtreamEpgKey(c), XtreamApi.toPrograms(result[String(c.streamId)]));
+                });
+            })
+            .catch(error => console.warn('LiveTV: Xtream short EPG failed:', error));
+        sourceChannels.forEach(c => xtreamEpgRequests.set(xtreamEpgKey(c), { promise, requestedAt: now }));
+        waits.push(promise);
+    });
+    return Promise.all(waits).then(() => undefined);
+}
+
+/**
+ * Returns the key EpgManager should look up a channel's programmes with: the Xtream short EPG key once the
+ * provider delivered listings for the channel, its tvg-id otherwise.
+ *
+ * @param {object} channel - The channel.
+ * @returns {Promise<string>}
+ */
+async function getGuideKey(channel) {
+    if (!channel.isXtream || !xtreamSources.has(channel.sourceName)) return channel.tvgId;
+    await loadXtreamEpg([channel]);
+    const key = xtreamEpgKey(channel);
+    const programs = EpgManager.providerPrograms.get(key);
+    return programs && programs.length > 0 ? key : channel.tvgId;
+}
+
 /**
  * populateFilters function
  * ========================
@@ -497,9 +778,10 @@ async function showChannelDetail(channel) {
         }
     }, 450);
 
+    const guideKey = await getGuideKey(channel);
     const [epg, upcomingShows] = await Promise.all([
-        EpgManager.getCurrentProgram(channel.name, channel.group, channel.tvgId),
-        EpgManager.getUpcomingPrograms(channel.name, channel.group, 3, channel.tvgId)
+        EpgManager.getCurrentProgram(channel.name, channel.group, guideKey),
+        EpgManager.getUpcomingPrograms(channel.name, channel.group, 3, guideKey)
     ]);
 
     if (!selectedChannel || selectedChannel.url !== channel.url) return;
@@ -562,7 +844,7 @@ function loadPreviewStream(url) {
         console.warn('Preview video playback failed for URL:', url);
         updateChannelStatus(url, 'offline');
     };
-    const streamUrl = proxyUrl(url);
+    const streamUrl = proxyStreamUrl(url);
 
     if (window.Hls && window.Hls.isSupported()) {
         previewHls = new window.Hls({
@@ -678,6 +960,7 @@ function setupEventListeners() {
             if (searchDebounceTimer) clearTimeout(searchDebounceTimer);
             searchDebounceTimer = setTimeout(() => {
                 filterAndRenderChannels(false);
+                searchXtreamChannels(searchQuery);
             }, 300);
         };
 
@@ -711,6 +994,7 @@ function setupEventListeners() {
         genreSelect.onchange = (e) => {
             activeGenre = e.target.value;
             filterAndRenderChannels(true);
+            loadXtreamCategory(activeGenre);
         };
     }
 
@@ -718,6 +1002,7 @@ function setupEventListeners() {
         countrySelect.onchange = (e) => {
             activeCountry = e.target.value;
             filterAndRenderChannels(true);
+            loadXtreamCategory(activeCountry);
         };
     }
 
@@ -813,7 +1098,10 @@ function getStreamScore(url) {
  * Affects the channels list container DOM and spatial navigation.
  */
 function renderNextChunk() {
-    if (renderedCount >= filteredChannels.length) return;
+    if (renderedCount >= filteredChannels.length) {
+        loadMoreXtreamChannels();
+        return;
+    }
 
     const container = document.getElementById('channels-list');
     if (!container) return;
@@ -840,7 +1128,7 @@ function renderNextChunk() {
         item.tabIndex = 0;
         item.dataset.url = channel.url;
 
-        const iconUrl = channel.logo || 'images/livetv.svg';
+        const iconUrl = thumbnailUrl(channel.logo, CHANNEL_LOGO_SIZE) || 'images/livetv.svg';
         const status = statusCache.get(channel.url)?.status || 'unknown';
         const statusClass = status === 'online' || status === 'offline' ? status : 'checking';
 
@@ -880,6 +1168,9 @@ function renderNextChunk() {
     }
 
     renderedCount = end;
+    const rendered = filteredChannels.slice(start, end);
+    EpgManager.prefetchGuides(rendered.map(channel => channel.tvgId));
+    loadXtreamEpg(rendered);
 }
 
 
@@ -899,15 +1190,37 @@ function normalizeUrl(url) {
         .replace(/\/+$/, '');
 }
 
+/**
+ * Queries the native compiled broken channel database (Android only) for all fetched playlist URLs at once.
+ * Only the matching URLs are added to brokenChannelsSet, so the full list never enters the JS heap.
+ * 
+ * @param {Array<{playlistChannels: Array}>} results - Parsed playlist results from loadAllSources.
+ */
+function markNativeBrokenChannels(results) {
+    try {
+        const candidates = [];
+        results.forEach(({ playlistChannels }) => {
+            (playlistChannels || []).forEach(c => candidates.push(normalizeUrl(c.url)));
+        });
+        const broken = JSON.parse(window.AndroidChannelDb.findBroken(JSON.stringify(candidates)));
+        broken.forEach(url => brokenChannelsSet.add(url));
+        console.log(`[LiveTV] Native channel DB flagged ${broken.length} of ${candidates.length} channels as broken.`);
+    } catch (error) {
+        console.warn('Failed to query native broken channels database:', error);
+    }
+}
+
 /**
  * Fetches the persistent broken channels database from the project file.
  * Populates brokenChannelsSet so known-broken URLs are instantly filtered out.
+ * Skipped on Android, where markNativeBrokenChannels queries the compiled database instead.
  */
 async function loadBrokenChannelsDb() {
+    if (window.AndroidChannelDb) return;
     try {
         const response = await fetch(`${BROKEN_CHANNELS_API_URL}?_=${Date.now()}`);
         if (!response.ok) {
-            // Fallback: try loading the static JSON file directly (for Android / non-PC builds)
+            // Fallback: try loading the static JSON file directly (served without the run_pc.py API)
             const fallback = await fetch(`../../logic/livetv/broken-channels.json?_=${Date.now()}`);
             if (fallback.ok) {
                 const urls = await fallback.json();
@@ -3,6 +3,7 @@ import { Router } from '../js/router.js';
 import { addToRecentlyWatched } from '../../logic/recentlyWatched.js';
 import { ErrorHandler } from '../js/error-handler.js';
 import { SpatialNav } from '../js/spatial-nav.js';
+import { setPlaybackActive } from '../js/utils/playback-signal.js';
 
 let hudTimeout = null;
 let providerTimeout = null;
@@ -30,6 +31,26 @@ function bindNativeVideoLogs(videoEl) {
     videoEl.addEventListener('error', (e) => console.error('[IVIDS Player] Native Video Error:', videoEl.error || e));
 }
 
+/**
+ * Reports embed player lifecycle events to the native autoplay controller, which clicks the player
+ * as soon as its video is ready instead of after a fixed delay.
+ * @param {string} event - 'onEmbedLoading', 'onEmbedLoaded' or 'onEmbedClosed'.
+ * @param {string} [url] - The embed URL.
+ */
+function notifyAutoplay(event, url) {
+    try {
+        if (window.AndroidAutoplay && typeof window.AndroidAutoplay[event] === 'function') {
+            if (url === undefined) {
+                window.AndroidAutoplay[event]();
+            } else {
+                window.AndroidAutoplay[event](url);
+            }
+        }
+    } catch (e) {
+        console.warn('[IVIDS Player] Autoplay notification failed:', e);
+    }
+}
+
 /**
  * Cleans up player resources, restores global UI layout elements, and returns to the details view.
  * This removes the iframe, restores the header/sidebar layout, and navigates using the router.
@@ -102,6 +123,8 @@ window.playerCleanups = function() {
         SpatialNav.popBackHandler(playerBackHandler);
         playerBackHandler = null;
     }
+    notifyAutoplay('onEmbedClosed');
+    setPlaybackActive(false);
     
     // Stop native video player if active
     try {
@@ -137,6 +160,7 @@ export async function init(params) {
         } catch (e) {
             console.error('Error in initial cleanup:', e);
         }
+        setPlaybackActive(true);
 
         // Hide header and apply fullscreen layout
         try {
@@ -310,6 +334,7 @@ export async function init(params) {
 
             iframe.onload = () => {
                 console.log(`[IVIDS Player] Provider iframe loaded successfully (src: ${iframe.src})`);
+                notifyAutoplay('onEmbedLoaded', iframe.src);
                 if (statusPanel) {
                     statusPanel.style.display = 'none';
                     statusPanel.querySelectorAll('.focused').forEach(el => el.classList.remove('focused'));
@@ -328,6 +353,7 @@ export async function init(params) {
                 }, 1500);
             };
 
+            notifyAutoplay('onEmbedLoading', url);
             container.appendChild(iframe);
 
             // Render Server Selection
@@ -488,7 +514,9 @@ function renderServerSelection(params, iframe) {
             }
             if (iframe) {
                 iframe.style.display = 'block';
-                iframe.src = Api.getVideoUrl(params.id, params.type, params.season, params.episode, server.id);
+                const serverUrl = Api.getVideoUrl(params.id, params.type, params.season, params.episode, server.id);
+                notifyAutoplay('onEmbedLoading', serverUrl);
+                iframe.src = serverUrl;
             }
         };
 
@@ -333,6 +333,27 @@ class SettingsManager {
             appInfoBtn.onclick = () => this.openModal('app-info-modal');
         }
 
+        const exportMainThreadBtn = document.getElementById('export-main-thread-btn');
+        if (exportMainThreadBtn) {
+            exportMainThreadBtn.onclick = () => this.exportMainThreadReport();
+        }
+
+        const toggleMetricsBtn = document.getElementById('toggle-metrics-endpoint-btn');
+        if (toggleMetricsBtn) {
+            toggleMetricsBtn.onclick = (e) => {
+                e.preventDefault();
+                this.toggleMetricsEndpoint();
+            };
+        }
+
+        const toggleCosmeticBtn = document.getElementById('toggle-cosmetic-filter-btn');
+        if (toggleCosmeticBtn) {
+            toggleCosmeticBtn.onclick = (e) => {
+                e.preventDefault();
+                this.toggleCosmeticFilter();
+            };
+        }
+
         const checkBtn = document.getElementById('check-updates-btn');
         if (checkBtn) {
             checkBtn.onclick = () => this.handleMainUpdateAction();
@@ -474,6 +495,9 @@ class SettingsManager {
     handleCancelUpdate() {
         console.log('Cancelling update check');
         this.isCheckingUpdates = false;
+        if (window.AndroidUpdate && typeof window.AndroidUpdate.cancelUpdateCheck === 'function') {
+            window.AndroidUpdate.cancelUpdateCheck();
+        }
 
         const checkBtn = document.getElementById('check-updates-btn');
         if (checkBtn) checkBtn.style.display = 'inline-block';
@@ -886,6 +910,7 @@ class SettingsManager {
         } else if (modalId === 'm3u-modal') {
             focusTarget = modal.querySelector('.provider-url-input') || document.getElementById('add-m3u-btn');
         } else if (modalId === 'app-info-modal') {
+            this.updateDiagnostics();
             focusTarget = modal.querySelector('.modal-footer .btn-secondary');
         } else if (modalId === 'changes-modal') {
             focusTarget = modal.querySelector('.modal-footer .btn-secondary') || modal.querySelector('.modal-close-x');
@@ -979,6 +1004,146 @@ class SettingsManager {
         }
     }
 
+    /**
+     * Fills the native diagnostics rows of the App Info modal (Android only).
+     * Rows stay hidden when the corresponding native bridge is unavailable.
+     */
+    updateDiagnostics() {
+        const latencyItem = document.getElementById('input-latency-item');
+        const latencyDisplay = document.getElementById('input-latency-display');
+        if (latencyItem && latencyDisplay && window.AndroidInput && typeof window.AndroidInput.getInputLatencyStats === 'function') {
+            try {
+                const stats = JSON.parse(window.AndroidInput.getInputLatencyStats()).dpadRepeat || {};
+                latencyDisplay.textContent = stats.count ? `${stats.p50Ms} / ${stats.p95Ms} ms` : '-';
+                latencyItem.classList.remove('hidden');
+            } catch (e) {
+                console.warn('Settings: Failed to read input latency stats', e);
+            }
+        }
+
+        const startItem = document.getElementById('playback-start-item');
+        const startDisplay = document.getElementById('playback-start-display');
+        if (startItem && startDisplay && window.AndroidAutoplay && typeof window.AndroidAutoplay.getAutoplayStats === 'function') {
+            try {
+                const stats = JSON.parse(window.AndroidAutoplay.getAutoplayStats());
+                const parts = Object.keys(stats)
+                    .filter(provider => stats[provider].firstFrame && stats[provider].firstFrame.count)
+                    .map(provider => `${provider} ${stats[provider].firstFrame.p50Ms} ms`);
+                startDisplay.textContent = parts.length ? parts.join(' · ') : '-';
+                startItem.classList.remove('hidden');
+            } catch (e) {
+                console.warn('Settings: Failed to read autoplay stats', e);
+            }
+        }
+
+        const payloadItem = document.getElementById('details-payload-item');
+        const payloadDisplay = document.getElementById('details-payload-display');
+        if (payloadItem && payloadDisplay && window.AndroidTmdb && typeof window.AndroidTmdb.getStats === 'function') {
+            try {
+                const js = Api.getDetailsPayloadStats();
+                const native = (JSON.parse(window.AndroidTmdb.getStats()).endpoints || {}).details;
+                let text = js.count ? `${(js.avgBytes / 1024).toFixed(1)} KB · ${js.avgParseMs.toFixed(1)} ms` : '-';
+                if (js.count && native && native.upstreamBytes) {
+                    text += ` (−${Math.round(100 - native.deliveredBytes * 100 / native.upstreamBytes)}%)`;
+                }
+                payloadDisplay.textContent = text;
+                payloadItem.classList.remove('hidden');
+            } catch (e) {
+                console.warn('Settings: Failed to read details payload stats', e);
+            }
+        }
+
+        const stallItem = document.getElementById('main-thread-item');
+        const stallDisplay = document.getElementById('main-thread-display');
+        if (stallItem && stallDisplay && window.AndroidWatchdog && typeof window.AndroidWatchdog.getStalls === 'function') {
+            try {
+                const stats = JSON.parse(window.AndroidWatchdog.getStalls());
+                const longest = (stats.events || []).reduce((max, event) => Math.max(max, event.durationMs), 0);
+                stallDisplay.textContent = stats.stalls ? `${stats.stalls} / ${longest} ms` : '0';
+                stallItem.classList.remove('hidden');
+            } catch (e) {
+                console.warn('Settings: Failed to read main thread stalls', e);
+            }
+        }
+
+        const navigationItem = document.getElementById('navigation-guard-item');
+        const navigationDisplay = document.getElementById('navigation-guard-display');
+        if (navigationItem && navigationDisplay && window.AndroidNavigation && typeof window.AndroidNavigation.getStats === 'function') {
+            try {
+                const stats = JSON.parse(window.AndroidNavigation.getStats());
+                navigationDisplay.textContent = stats.prevented
+                    ? `${stats.prevented} / ~${(stats.estimatedBytesSaved / 1048576).toFixed(1)} MB`
+                    : '0';
+                navigationItem.classList.remove('hidden');
+            } catch (e) {
+                console.warn('Settings: Failed to read navigation guard stats', e);
+            }
+        }
+
+        const metricsItem = document.getElementById('metrics-endpoint-item');
+        const metricsInput = document.getElementById('metrics-endpoint-toggle-input');
+        if (metricsItem && metricsInput && window.AndroidMetrics && typeof window.AndroidMetrics.isEndpointEnabled === 'function') {
+            metricsInput.checked = window.AndroidMetrics.isEndpointEnabled();
+            metricsItem.classList.remove('hidden');
+        }
+
+        const cosmeticItem = document.getElementById('cosmetic-filter-item');
+        const cosmeticInput = document.getElementById('cosmetic-filter-toggle-input');
+        if (cosmeticItem && cosmeticInput && window.AndroidCosmetic && typeof window.AndroidCosmetic.isEnabled === 'function') {
+            cosmeticInput.checked = window.AndroidCosmetic.isEnabled();
+            cosmeticItem.classList.remove('hidden');
+        }
+    }
+
+    /**
+     * Turns the native loopback metrics endpoint on or off; the choice is persisted natively.
+     */
+    toggleMetricsEndpoint() {
+        if (!window.AndroidMetrics || typeof window.AndroidMetrics.setEndpointEnabled !== 'function') return;
+        const enable = !window.AndroidMetrics.isEndpointEnabled();
+        const running = window.AndroidMetrics.setEndpointEnabled(enable);
+        const input = document.getElementById('metrics-endpoint-toggle-input');
+        if (input) input.checked = enable;
+        const label = window.i18n?.t('settings.metricsEndpoint') || 'Metrics Endpoint';
+        if (enable && !running) {
+            Toast.show(`${label}: ${window.i18n?.t('settings.metricsEndpointFailed') || 'could not start'}`, { type: 'error' });
+            return;
+        }
+        const status = enable
+            ? (window.i18n?.t('settings.adultContentOn') || 'On')
+            : (window.i18n?.t('settings.adultContentOff') || 'Off');
+        Toast.show(`${label}: ${status}`);
+    }
+
+    /**
+     * Turns the native cosmetic filter for embed player pages on or off; the choice is persisted natively.
+     */
+    toggleCosmeticFilter() {
+        if (!window.AndroidCosmetic || typeof window.AndroidCosmetic.setEnabled !== 'function') return;
+        const enable = !window.AndroidCosmetic.isEnabled();
+        window.AndroidCosmetic.setEnabled(enable);
+        const input = document.getElementById('cosmetic-filter-toggle-input');
+        if (input) input.checked = enable;
+        const label = window.i18n?.t('settings.cosmeticFilter') || 'Cosmetic Filtering';
+        const status = enable
+            ? (window.i18n?.t('settings.adultContentOn') || 'On')
+            : (window.i18n?.t('settings.adultContentOff') || 'Off');
+        Toast.show(`${label}: ${status}`);
+    }
+
+    /**
+     * Saves the native main thread stall report to the app's external files directory and shows where it went.
+     */
+    exportMainThreadReport() {
+        if (!window.AndroidWatchdog || typeof window.AndroidWatchdog.exportDiagnostics !== 'function') return;
+        const path = window.AndroidWatchdog.exportDiagnostics();
+        if (path) {
+            Toast.show(`${window.i18n?.t('settings.reportExported') || 'Report saved to'} ${path}`);
+        } else {
+            Toast.show(window.i18n?.t('settings.reportExportFailed') || 'Could not save the report', { type: 'error' });
+        }
+    }
+
     /**
      * Closes the active settings modal and restores spatial outlines.
      * Restores original options if revert is true.
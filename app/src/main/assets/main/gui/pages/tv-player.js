@@ -2,7 +2,8 @@ import { Router } from '../js/router.js';
 import { SpatialNav } from '../js/spatial-nav.js';
 import { EpgManager } from '../../logic/livetv/epg-manager.js';
 import { Toast } from '../js/toast.js';
-import { proxyUrl } from '../js/utils/proxy.js';
+import { proxyStreamUrl } from '../js/utils/proxy.js';
+import { setPlaybackActive } from '../js/utils/playback-signal.js';
 
 let overlayTimeout;
 let zappingHudTimeout;
@@ -11,6 +12,41 @@ let epgRequestId = 0;
 const LIVE_TV_STATUS_KEY = 'ivids-live-tv-status-cache';
 const STATUS_TTL_MS = 24 * 60 * 60 * 1000;
 
+/**
+ * callNativeHls function
+ * ======================
+ * Explains: Calls a method of the native HLS proxy (`window.AndroidHls`) if this build provides it.
+ *
+ * @param {string} method - The bridge method name.
+ * @param {...*} args - The method arguments.
+ */
+function callNativeHls(method, ...args) {
+    if (window.AndroidHls && typeof window.AndroidHls[method] === 'function') {
+        try {
+            window.AndroidHls[method](...args);
+        } catch (e) {
+            console.warn(`AndroidHls.${method} failed:`, e);
+        }
+    }
+}
+
+/**
+ * updateZapNeighbors function
+ * ===========================
+ * Explains: Tells the native HLS proxy which channels are one zap away so it can keep their start warm.
+ */
+function updateZapNeighbors() {
+    const state = window.liveTvState;
+    if (!state?.channels || state.channels.length < 2) {
+        callNativeHls('setZapNeighbors', '', '');
+        return;
+    }
+    const count = state.channels.length;
+    const previous = state.channels[(state.currentIndex - 1 + count) % count];
+    const next = state.channels[(state.currentIndex + 1) % count];
+    callNativeHls('setZapNeighbors', previous?.url || '', next?.url || '');
+}
+
 /**
  * init function
  * =============
@@ -75,7 +111,7 @@ export async function init(params) {
             hlsInstance = null;
         }
 
-        const streamUrl = proxyUrl(url);
+        const streamUrl = proxyStreamUrl(url);
         streamStartupTimer = setTimeout(() => {
             const isReady = video && video.readyState >= 2 && !video.paused;
             if (!isReady && currentStreamUrl === url) {
@@ -189,6 +225,8 @@ export async function init(params) {
         updatePlaybackIconState(false); // Make sure pause button shows
         autoZapAttempts = 0;
         updateStoredChannelStatus(currentStreamUrl, 'online');
+        callNativeHls('onFirstFrame');
+        updateZapNeighbors();
     };
     video.onerror = () => {
         console.error('Video error:', video.error);
@@ -390,9 +428,11 @@ export async function init(params) {
 
         if (e.key === 'ArrowUp') {
             e.preventDefault();
+            callNativeHls('onZapStarted');
             zapChannel(-1);
         } else if (e.key === 'ArrowDown') {
             e.preventDefault();
+            callNativeHls('onZapStarted');
             zapChannel(1);
         }
     };
@@ -413,6 +453,7 @@ export async function init(params) {
     window.addEventListener('keydown', keydownHandler);
     window.addEventListener('keydown', zappingHandler);
     window.addEventListener('mousemove', mousemoveHandler);
+    setPlaybackActive(true);
 
     window.tvPlayerCleanups = () => {
         window.removeEventListener('keydown', keydownHandler);
@@ -426,6 +467,8 @@ export async function init(params) {
         clearTimeout(zappingHudTimeout);
         clearTimeout(autoZapTimer);
         clearTimeout(streamStartupTimer);
+        callNativeHls('setZapNeighbors', '', '');
+        setPlaybackActive(false);
         if (hlsInstance) {
             hlsInstance.destroy();
             hlsInstance = null;
@@ -11,6 +11,9 @@ const DEFAULT_PLAYER_BASE_URL = API_CONFIG.DEFAULT_PLAYER_BASE_URL;
 /** Map of in-flight fetch promises keyed by URL, used to deduplicate concurrent identical requests. */
 const _inflightRequests = new Map();
 
+/** Bytes and JSON parse time of getDetails responses, for the details payload diagnostic. */
+const _detailsPayloadStats = { count: 0, bytes: 0, parseMs: 0 };
+
 /** Cached today's date string (YYYY-MM-DD) to avoid re-creating Date objects in every fetch call. */
 let _cachedTodayDate = null;
 
@@ -112,6 +115,46 @@ function getTodayDate() {
     return _cachedTodayDate;
 }
 
+/** Recently watched titles whose recommendations are merged into the home row (RecommendationService.MAX_SOURCES). */
+const MAX_RECOMMENDATION_SOURCES = 8;
+const MAX_RECOMMENDATIONS = 40;
+
+/**
+ * Merges per-title recommendation lists with the same scoring as the native RecommendationMerger: each list is
+ * weighted by how recently its title was watched and each entry by its position, duplicates add up, and titles
+ * already in the history are dropped. Used where the native service is not available.
+ * @param {Array<Array>} lists - One recommendation list per source title.
+ * @param {Array} sources - The source titles, most recent first.
+ * @param {Array} history - The full watch history.
+ * @returns {Array} The merged items, best first.
+ */
+function mergeRecommendations(lists, sources, history) {
+    const watched = new Set(history.map(item => `${item.media_type}:${item.id}`));
+    const scored = new Map();
+    lists.forEach((list, s) => {
+        const sourceWeight = 1 / (1 + 0.25 * s);
+        list.forEach((item, p) => {
+            const key = `${item.media_type || sources[s].media_type}:${item.id}`;
+            if (watched.has(key)) return;
+            let entry = scored.get(key);
+            if (!entry) {
+                entry = { item: { ...item, media_type: item.media_type || sources[s].media_type }, score: 0, sources: 0, last: -1 };
+                scored.set(key, entry);
+            } else if (entry.last === s) {
+                return;
+            }
+            entry.score += sourceWeight * (list.length <= 1 ? 1 : 1 - 0.5 * p / (list.length - 1));
+            entry.sources++;
+            entry.last = s;
+        });
+    });
+    // Map iteration follows insertion order, so the stable sort keeps first-seen order on ties
+    return [...scored.values()]
+        .sort((a, b) => (b.score - a.score) || (b.sources - a.sources))
+        .slice(0, MAX_RECOMMENDATIONS)
+        .map(entry => entry.item);
+}
+
 /**
  * Shuffles an array in-place using the Fisher-Yates algorithm.
  * Used to randomize content row order for a fresh discovery experience on each visit.
@@ -180,6 +223,15 @@ export const Api = {
             if (typeof conn.downlink === 'number' && conn.downlink < 1.5) return true;
         }
 
+        // Native link classification (measured RTT/throughput, metered flag, system Data Saver)
+        if (window.AndroidNetwork && typeof window.AndroidNetwork.isSlow === 'function') {
+            try {
+                return window.AndroidNetwork.isSlow();
+            } catch (e) {
+                console.error('Api: Failed to query native network quality:', e);
+            }
+        }
+
         return false;
     },
 
@@ -818,6 +870,32 @@ export const Api = {
         }
     },
 
+    /**
+     * Fetches the "Recommended for You" list of the home screen, built from the recommendations of the most
+     * recently watched titles. On Android the list is built natively (AndroidRecommendations) from a disk cache
+     * and only rebuilt when the history changes; elsewhere the lists are fetched in parallel and merged here.
+     * @param {Array} history - The recently watched items, most recent first.
+     * @returns {Promise<Array|null>} The ranked list, or null while a native rebuild runs; the rebuilt list is
+     * then delivered to window.onRecommendationsUpdated.
+     */
+    async fetchHomeRecommendations(history) {
+        if (API_KEY.includes('TODO') || !history || history.length === 0) return [];
+        if (window.AndroidRecommendations && typeof window.AndroidRecommendations.getRecommendations === 'function') {
+            try {
+                const json = window.AndroidRecommendations.getRecommendations(
+                    getNamespacedKey('recentlyWatched'), API_KEY, this.getLanguageCode(), this.getIncludeAdult());
+                return json ? JSON.parse(json) : null;
+            } catch (error) {
+                console.error('Error reading native recommendations:', error);
+            }
+        }
+        const sources = history
+            .filter(item => item.media_type === 'movie' || item.media_type === 'tv')
+            .slice(0, MAX_RECOMMENDATION_SOURCES);
+        const lists = await Promise.all(sources.map(item => this.fetchRecommendations(item.id, item.media_type)));
+        return mergeRecommendations(lists, sources, history);
+    },
+
     /**
      * Fetches detailed information for a movie or TV show, appending videos and credits.
      * This affects the media details state by making additional TMDB metadata available.
@@ -836,7 +914,12 @@ export const Api = {
             const baseAppend = type === 'movie' ? 'release_dates' : 'content_ratings';
             const append = `${baseAppend},videos,credits`;
             const response = await deduplicatedFetch(`${BASE_URL}/${type}/${id}?api_key=${API_KEY}&append_to_response=${append}&language=${lang}`);
-            const data = await response.json();
+            const text = await response.text();
+            const parseStart = performance.now();
+            const data = JSON.parse(text);
+            _detailsPayloadStats.count++;
+            _detailsPayloadStats.bytes += text.length;
+            _detailsPayloadStats.parseMs += performance.now() - parseStart;
             if (data && !data.status_code) {
                 cacheManager.set(cacheKey, data, 10); // Cache for 10 mins
             }
@@ -847,6 +930,20 @@ export const Api = {
         }
     },
 
+    /**
+     * Returns the average size and JSON parse time of the details responses fetched this session.
+     * On Android these responses are projected natively (window.AndroidTmdb) to the fields the details page reads.
+     * @returns {{count: number, avgBytes: number, avgParseMs: number}} Averages, zero when nothing was fetched.
+     */
+    getDetailsPayloadStats() {
+        const count = _detailsPayloadStats.count;
+        return {
+            count,
+            avgBytes: count ? Math.round(_detailsPayloadStats.bytes / count) : 0,
+            avgParseMs: count ? _detailsPayloadStats.parseMs / count : 0
+        };
+    },
+
     /**
      * Fetches details for a specific season of a TV show, including episode lists.
      * This affects the episodes section in the series detail page.
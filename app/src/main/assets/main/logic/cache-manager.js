@@ -103,6 +103,19 @@ class CacheManager {
         this.memoryCache.set(key, item);
     }
 
+    /**
+     * Drops the least recently used in-memory entries until only a fraction remains.
+     * SessionStorage copies are kept so trimmed entries can still be backfilled on demand.
+     * @param {number} keepRatio - Fraction of memory entries to keep (0 empties the memory tier).
+     */
+    trimMemory(keepRatio) {
+        const keep = Math.max(0, Math.floor(this.memoryCache.size * keepRatio));
+        while (this.memoryCache.size > keep) {
+            const firstKey = this.memoryCache.keys().next().value;
+            this.memoryCache.delete(firstKey);
+        }
+    }
+
     /**
      * Clear all cached items.
      */
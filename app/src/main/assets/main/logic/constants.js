@@ -81,6 +81,7 @@ export const UI_CONFIG = Object.freeze({
 export const CATEGORY_CONFIG = Object.freeze({
     home: Object.freeze([
         { id: 'recently-watched-row', i18nKey: 'home.recentlyWatched', defaultTitle: 'Recently Watched' },
+        { id: 'recommended-row', i18nKey: 'home.recommended', defaultTitle: 'Recommended for You' },
         { id: 'trending-today-row', i18nKey: 'row.trendingToday', defaultTitle: 'Trending Today' },
         { id: 'highly-rated-row', i18nKey: 'row.highlyRated', defaultTitle: 'Highly Rated' },
         { id: 'new-this-year-row', i18nKey: 'row.newThisYear', defaultTitle: 'New This Year' },
@@ -124,6 +124,23 @@ class ImageCache {
         }
     }
 
+    /**
+     * Revokes the least recently used blob URLs until only a fraction of the entries remain.
+     * Called when the native layer reports memory pressure.
+     * @param {number} keepRatio - Fraction of entries to keep (0 clears the cache, 1 keeps everything).
+     */
+    trim(keepRatio) {
+        const keep = Math.max(0, Math.floor(this.cache.size * keepRatio));
+        while (this.cache.size > keep) {
+            const oldestKey = this.cache.keys().next().value;
+            const oldestEntry = this.cache.get(oldestKey);
+            if (oldestEntry) {
+                URL.revokeObjectURL(oldestEntry.blobUrl);
+            }
+            this.cache.delete(oldestKey);
+        }
+    }
+
     /**
      * Revokes all stored Object URLs and clears the cache.
      * Call during app teardown or account switches.
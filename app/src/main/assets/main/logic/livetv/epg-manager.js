@@ -15,10 +15,18 @@ export class EpgManager {
     static initialized = false;
     static FETCH_TIMEOUT_MS = 12000;
     static EPG_BASE_URL = 'https://iptv-org.github.io/epg/guides';
+    /** How long to wait for the native index on first use, when it is built from the network. */
+    static NATIVE_INDEX_WAIT_MS = 30000;
+    /** Whether guides are resolved by the native index (window.AndroidEpg) instead of guideLookup. */
+    static nativeIndex = false;
+    static initStartedAt = 0;
+    static firstEpgReported = false;
+    /** Programmes supplied by the playlist provider (Xtream short EPG), keyed by a channel key; used before XMLTV guides. */
+    static providerPrograms = new Map();
 
     /**
-     * Loads iptv-org guide metadata and builds channel-id to XMLTV source mappings.
-     * Integrates CORS proxy wrapper when running on localhost.
+     * Prepares channel-id to XMLTV source mappings: the native guide index in the Android app, or the
+     * iptv-org guide metadata loaded into guideLookup otherwise (and when the native index is unavailable).
      *
      * @returns {Promise<void>}
      */
@@ -26,7 +34,55 @@ export class EpgManager {
         if (this.initialized) return;
         if (this.initPromise) return this.initPromise;
 
-        this.initPromise = this.fetchWithTimeout(proxyUrl(this.GUIDES_URL))
+        this.initStartedAt = performance.now();
+        this.initPromise = this.initNativeIndex().then(ready => {
+            if (ready) {
+                this.nativeIndex = true;
+                this.initialized = true;
+                return;
+            }
+            return this.loadGuides();
+        });
+        return this.initPromise;
+    }
+
+    /**
+     * Asks the native guide index to load. A rebuilt index later clears the resolved guides.
+     *
+     * @returns {Promise<boolean>} Whether the native index is available.
+     */
+    static initNativeIndex() {
+        const epg = window.AndroidEpg;
+        if (!epg || typeof epg.prepare !== 'function') return Promise.resolve(false);
+
+        return new Promise(resolve => {
+            const timeout = setTimeout(() => resolve(false), this.NATIVE_INDEX_WAIT_MS);
+            window.onEpgIndexReady = ready => {
+                clearTimeout(timeout);
+                if (ready && this.nativeIndex) this.guideLookup.clear();
+                resolve(!!ready);
+            };
+            try {
+                if (epg.prepare()) {
+                    clearTimeout(timeout);
+                    resolve(true);
+                }
+            } catch (error) {
+                console.warn('EpgManager: Native guide index unavailable:', error);
+                clearTimeout(timeout);
+                resolve(false);
+            }
+        });
+    }
+
+    /**
+     * Loads iptv-org guide metadata and builds channel-id to XMLTV source mappings.
+     * Integrates CORS proxy wrapper when running on localhost.
+     *
+     * @returns {Promise<void>}
+     */
+    static loadGuides() {
+        return this.fetchWithTimeout(proxyUrl(this.GUIDES_URL))
             .then(response => {
                 if (!response.ok) throw new Error(`Failed to load guides: ${response.status}`);
                 return response.json();
@@ -42,8 +98,6 @@ export class EpgManager {
                 console.warn('EPG guide metadata unavailable:', error);
                 this.initialized = true;
             });
-
-        return this.initPromise;
     }
 
     /**
@@ -157,6 +211,7 @@ export class EpgManager {
         if (!current) {
             return this.createFallbackProgram();
         }
+        this.reportFirstEpg();
 
         const totalMs = current.endDate.getTime() - current.startDate.getTime();
         const elapsedMs = now.getTime() - current.startDate.getTime();
@@ -172,6 +227,22 @@ export class EpgManager {
         };
     }
 
+    /**
+     * Reports the time from opening Live TV until the first programme was found to the native metrics, once
+     * per session, labelled with the guide mapping that was used.
+     */
+    static reportFirstEpg() {
+        if (this.firstEpgReported) return;
+        this.firstEpgReported = true;
+        if (window.AndroidEpg && typeof window.AndroidEpg.reportFirstEpg === 'function') {
+            try {
+                window.AndroidEpg.reportFirstEpg(performance.now() - this.initStartedAt, this.nativeIndex);
+            } catch (error) {
+                console.warn('EpgManager: Native guide index unavailable:', error);
+            }
+        }
+    }
+
     /**
      * Returns upcoming programme rows after the current time.
      *
@@ -199,10 +270,11 @@ export class EpgManager {
     /**
      * Resolves guide metadata, fetches XMLTV when needed, and extracts programmes for a tvg-id.
      *
-     * @param {string} tvgId - XMLTV/iptv-org channel identifier.
+     * @param {string} tvgId - XMLTV/iptv-org channel identifier, or a key passed to setProviderPrograms.
      * @returns {Promise<Array>}
      */
     static async getProgramsForChannel(tvgId) {
+        if (this.providerPrograms.has(tvgId)) return this.providerPrograms.get(tvgId);
         await this.init();
 
         const normalizedTvgId = this.normalizeTvgId(tvgId);
@@ -220,6 +292,17 @@ export class EpgManager {
         return programs;
     }
 
+    /**
+     * Stores programmes the playlist provider delivered for a channel. Lookups with `channelKey` in place of
+     * a tvg-id then return them without resolving an XMLTV guide.
+     *
+     * @param {string} channelKey - Key of the channel, e.g. `xtream:<stream_id>`.
+     * @param {Array<{title: string, startDate: Date, endDate: Date}>} programs - Programmes sorted by start time.
+     */
+    static setProviderPrograms(channelKey, programs) {
+        this.providerPrograms.set(channelKey, programs);
+    }
+
     /**
      * Finds guide metadata using exact id, decoded id, or channel-only id.
      *
@@ -227,6 +310,10 @@ export class EpgManager {
      * @returns {object|null}
      */
     static resolveGuide(tvgId) {
+        if (this.nativeIndex) {
+            if (!this.guideLookup.has(tvgId)) this.resolveNative([tvgId]);
+            return this.guideLookup.get(tvgId) || null;
+        }
         if (this.guideLookup.has(tvgId)) return this.guideLookup.get(tvgId);
 
         const channelOnly = tvgId.split('@')[0];
@@ -235,6 +322,39 @@ export class EpgManager {
         return null;
     }
 
+    /**
+     * Resolves the guide sources of channels about to be shown (e.g. a rendered list chunk) in one native call,
+     * so focusing one of them needs no further lookup. Does nothing without the native index.
+     *
+     * @param {Array<string>} tvgIds - Raw tvg-ids; empty ones are ignored.
+     * @returns {Promise<void>}
+     */
+    static async prefetchGuides(tvgIds) {
+        await this.init();
+        if (!this.nativeIndex) return;
+        const missing = [...new Set(tvgIds.map(id => this.normalizeTvgId(id)))]
+            .filter(id => id && !this.guideLookup.has(id));
+        if (missing.length > 0) this.resolveNative(missing);
+    }
+
+    /**
+     * Looks up normalized tvg-ids in the native index and caches the results, including misses, in guideLookup.
+     *
+     * @param {Array<string>} tvgIds - Normalized tvg-ids.
+     */
+    static resolveNative(tvgIds) {
+        try {
+            const json = window.AndroidEpg.resolveBatch(JSON.stringify(tvgIds));
+            if (!json) return;
+            const guides = JSON.parse(json);
+            tvgIds.forEach(id => {
+                if (id in guides) this.guideLookup.set(id, guides[id]);
+            });
+        } catch (error) {
+            console.warn('EpgManager: Native guide lookup failed:', error);
+        }
+    }
+
     /**
      * Fetches and caches an XMLTV document.
      *
@@ -6,6 +6,62 @@
  */
 import { proxyUrl } from '../../gui/js/utils/proxy.js';
 
+/**
+ * Returns the native Android Xtream client bridge when running inside the Android WebView.
+ * @returns {object|null} The AndroidXtream bridge or null on PC / web builds.
+ */
+function getNativeClient() {
+    return (typeof window !== 'undefined' && window.AndroidXtream) ? window.AndroidXtream : null;
+}
+
+/** Pending resolvers waiting for window.onXtreamCatalogLoaded. */
+const catalogWaiters = [];
+/** Pending short EPG batch resolvers keyed by request id. */
+const shortEpgWaiters = new Map();
+let shortEpgRequestCounter = 0;
+/** Listeners for background catalog refreshes that changed categories. */
+const catalogUpdateListeners = [];
+
+if (typeof window !== 'undefined') {
+    /**
+     * Native callback: the catalog has been loaded from disk or from the server.
+     * @param {boolean} success - Whether a catalog is available.
+     */
+    window.onXtreamCatalogLoaded = (success) => {
+        catalogWaiters.splice(0).forEach(resolve => resolve(Boolean(success)));
+    };
+
+    /**
+     * Native callback: a background refresh replaced the stored catalog.
+     * @param {string} changedJson - JSON array of the ids of added, removed or changed categories.
+     */
+    window.onXtreamCatalogUpdated = (changedJson) => {
+        let changed = [];
+        try {
+            changed = JSON.parse(changedJson) || [];
+        } catch (e) {
+            console.warn('[XtreamApi] Invalid catalog update:', e);
+        }
+        catalogUpdateListeners.forEach(listener => listener(changed));
+    };
+
+    /**
+     * Native callback: delivers the combined result of a short EPG batch request.
+     * @param {string} requestId - Id passed to requestShortEpg.
+     * @param {string} resultJson - JSON object mapping stream ids to EPG listing arrays.
+     */
+    window.onXtreamShortEpg = (requestId, resultJson) => {
+        const resolve = shortEpgWaiters.get(requestId);
+        if (!resolve) return;
+        shortEpgWaiters.delete(requestId);
+        try {
+            resolve(JSON.parse(resultJson) || {});
+        } catch (e) {
+            resolve({});
+        }
+    };
+}
+
 export class XtreamApi {
     /**
      * Initializes an XtreamApi instance with server credentials.
@@ -15,11 +71,79 @@ export class XtreamApi {
      * @param {string} password - IPTV account password.
      */
     constructor(host = '', username = '', password = '') {
+        // Credentials are kept verbatim: passwords may start or end with spaces
         this.host = (host || '').trim().replace(/\/+$/, '');
-        this.username = (username || '').trim();
-        this.password = (password || '').trim();
+        this.username = username || '';
+        this.password = password || '';
         this.userInfo = null;
         this.serverInfo = null;
+        /** @type {Promise<boolean>|null} Result of the native catalog load for this client. */
+        this.nativeCatalog = null;
+    }
+
+    /**
+     * Creates a client for an Xtream Codes M3U playlist URL (`<host>/get.php?username=..&password=..`),
+     * so a playlist entered as such a URL can use the paginated catalog instead of the full M3U download.
+     *
+     * @param {string} url - Playlist URL.
+     * @returns {XtreamApi|null} The client, or null if the URL is not an Xtream playlist URL.
+     */
+    static fromPlaylistUrl(url) {
+        try {
+            const parsed = new URL(url);
+            if (!/\/get\.php$/i.test(parsed.pathname)) return null;
+            const api = new XtreamApi(
+                parsed.origin + parsed.pathname.replace(/\/get\.php$/i, ''),
+                parsed.searchParams.get('username'),
+                parsed.searchParams.get('password')
+            );
+            return api.isValid() ? api : null;
+        } catch (e) {
+            return null;
+        }
+    }
+
+    /**
+     * Registers a listener for background catalog refreshes of the native client.
+     *
+     * @param {function(Array<string>)} listener - Called with the ids of changed categories.
+     */
+    static addCatalogUpdateListener(listener) {
+        if (!catalogUpdateListeners.includes(listener)) catalogUpdateListeners.push(listener);
+    }
+
+    /**
+     * Converts short EPG listings to programme objects in the shape EpgManager uses.
+     * Xtream servers send titles base64-encoded and times as unix timestamps.
+     *
+     * @param {Array} listings - epg_listings entries.
+     * @returns {Array<{title: string, startDate: Date, endDate: Date}>} Programmes sorted by start time.
+     */
+    static toPrograms(listings) {
+        return (listings || [])
+            .map(listing => ({
+                title: XtreamApi.decodeBase64(listing.title),
+                startDate: new Date(Number(listing.start_timestamp) * 1000),
+                endDate: new Date(Number(listing.stop_timestamp) * 1000)
+            }))
+            .filter(program => !isNaN(program.startDate) && !isNaN(program.endDate))
+            .sort((a, b) => a.startDate - b.startDate);
+    }
+
+    /**
+     * Decodes a base64 UTF-8 string, returning the input unchanged if it is not base64.
+     *
+     * @param {string} value - Encoded value.
+     * @returns {string}
+     */
+    static decodeBase64(value) {
+        if (!value) return '';
+        try {
+            const bytes = Uint8Array.from(atob(value), c => c.charCodeAt(0));
+            return new TextDecoder('utf-8').decode(bytes);
+        } catch (e) {
+            return value;
+        }
     }
 
     /**
@@ -74,13 +198,46 @@ export class XtreamApi {
         }
     }
 
+    /**
+     * Asks the native client to load (or reuse) the indexed live stream catalog for these credentials.
+     * The catalog is streamed and indexed by category natively, so the WebView never parses the full list.
+     * The native load runs once per client; later calls reuse its result and pages are read directly, while a stale
+     * catalog is refreshed natively in the background.
+     * 
+     * @param {boolean} force - True to refresh from the server even if the stored catalog is fresh.
+     * @returns {Promise<boolean>} True if a native catalog is available.
+     */
+    loadNativeCatalog(force = false) {
+        const native = getNativeClient();
+        if (!native || !this.isValid()) return Promise.resolve(false);
+        if (this.nativeCatalog && !force) return this.nativeCatalog;
+        this.nativeCatalog = new Promise(resolve => {
+            catalogWaiters.push(resolve);
+            native.configure(this.host, this.username, this.password);
+            native.loadCatalog(Boolean(force));
+        }).then(loaded => {
+            // Let a later call retry a failed load
+            if (!loaded) this.nativeCatalog = null;
+            return loaded;
+        });
+        return this.nativeCatalog;
+    }
+
     /**
      * Fetches all live stream categories/genres from the Xtream server.
+     * On Android the categories come from the native catalog index and include a stream count.
      * 
      * @returns {Promise<Array>} List of category objects [{category_id, category_name}].
      */
     async getLiveCategories() {
         if (!this.isValid()) return [];
+        if (await this.loadNativeCatalog()) {
+            try {
+                return JSON.parse(getNativeClient().getCategories());
+            } catch (error) {
+                console.warn('[XtreamApi] Failed to read native categories:', error);
+            }
+        }
         try {
             const endpoint = proxyUrl(this.buildApiUrl('get_live_categories'));
             const response = await fetch(endpoint);
@@ -117,6 +274,72 @@ export class XtreamApi {
         }
     }
 
+    /**
+     * Returns one page of channels for a category.
+     * On Android the page is read from the native catalog store; elsewhere the category is fetched and sliced.
+     * 
+     * @param {string|number} categoryId - Category ID, or empty for all streams.
+     * @param {number} offset - Index of the first channel.
+     * @param {number} limit - Maximum number of channels.
+     * @returns {Promise<Array>} List of parsed channel objects.
+     */
+    async getLiveStreamPage(categoryId = '', offset = 0, limit = 100) {
+        if (!this.isValid()) return [];
+        if (await this.loadNativeCatalog()) {
+            try {
+                const raw = JSON.parse(getNativeClient().getCategoryPage(String(categoryId || ''), offset, limit));
+                return raw.map(s => this.formatChannel(s));
+            } catch (error) {
+                console.warn('[XtreamApi] Failed to read native category page:', error);
+            }
+        }
+        const streams = await this.getLiveStreams(categoryId || null);
+        return streams.slice(offset, offset + limit);
+    }
+
+    /**
+     * Searches the names of all streams in the native catalog, including pages not read yet.
+     * 
+     * @param {string} query - Text to look for, ignoring case.
+     * @returns {Promise<Array>} Matching channel objects; empty when no native catalog is available.
+     */
+    async searchLiveStreams(query) {
+        if (!query || !(await this.loadNativeCatalog())) return [];
+        try {
+            return JSON.parse(getNativeClient().searchStreams(query)).map(s => this.formatChannel(s));
+        } catch (error) {
+            console.warn('[XtreamApi] Failed to search the native catalog:', error);
+            return [];
+        }
+    }
+
+    /**
+     * Fetches short EPG data for several streams at once (e.g. all visible channels).
+     * On Android the lookups share a native cache and rate limit and resolve in one callback.
+     * 
+     * @param {Array<string|number>} streamIds - Xtream stream_ids.
+     * @param {number} limit - Max program entries per stream.
+     * @returns {Promise<Object<string, Array>>} Map of stream_id to EPG program listings.
+     */
+    async getShortEpgBatch(streamIds, limit = 4) {
+        const ids = (streamIds || []).filter(Boolean).map(String);
+        if (!this.isValid() || ids.length === 0) return {};
+        const native = getNativeClient();
+        if (native) {
+            native.configure(this.host, this.username, this.password);
+            const requestId = `epg_${++shortEpgRequestCounter}`;
+            return new Promise(resolve => {
+                shortEpgWaiters.set(requestId, resolve);
+                native.requestShortEpg(requestId, ids.join(','), limit);
+            });
+        }
+        const result = {};
+        await Promise.all(ids.map(async id => {
+            result[id] = await this.getShortEpg(id, limit);
+        }));
+        return result;
+    }
+
     /**
      * Fetches short EPG data for a specific stream ID.
      * 
@@ -0,0 +1,503 @@
+package com.kenjigames.ivids;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebView;
+
+import androidx.webkit.ScriptHandler;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * AutoplayController starts embed player playback as soon as the player is actually ready instead of
+ * clicking blindly after a fixed delay. A document-start probe script is injected into the frames of the embed
+ * providers; it watches {@code <video>} elements and reports {@code canplay} and the first rendered frame back
+ * through a web message listener limited to the same origins, so other frames can neither run the probe nor
+ * report readiness. The simulated click is sent on readiness, with a bounded backoff of fallback clicks when no
+ * readiness signal arrives (e.g. nested frames the probe cannot reach). Providers and their timings are read from
+ * {@code logic/autoplay-strategies.json}; the player servers configured in the settings use its
+ * {@code playerServers} entry and follow settings changes. Time-to-first-frame is recorded per provider.
+ */
+public class AutoplayController {
+    private static final String TAG = "AutoplayController";
+    private static final String STRATEGIES_ASSET = "main/logic/autoplay-strategies.json";
+    private static final String PROBE_OBJECT = "ividsAutoplay";
+
+    /**
+     * Per-provider autoplay behaviour.
+     */
+    static final class Strategy {
+        final String id;
+        final List<String> hosts;
+        final boolean clickOnReady;
+        final long clickDelayMs;
+        final long[] fallbackDelaysMs;
+
+        /**
+         * @param id The provider id used in metrics (matches PLAYER_CONFIG ids where possible).
+         * @param hosts The provider's embed hosts; subdomains of a listed host belong to the provider as well.
+         * @param clickOnReady Whether to click as soon as the video reports {@code canplay}.
+         * @param clickDelayMs Delay between readiness and the click, giving self-starting players time to fire {@code playing}.
+         * @param fallbackDelaysMs Delays of the fallback clicks after the page has loaded without a readiness signal;
+         *                         each entry is one attempt, measured from the previous attempt.
+         */
+        Strategy(String id, List<String> hosts, boolean clickOnReady, long clickDelayMs, long[] fallbackDelaysMs) {
+            this.id = id;
+            this.hosts = hosts;
+            this.clickOnReady = clickOnReady;
+            this.clickDelayMs = clickDelayMs;
+            this.fallbackDelaysMs = fallbackDelaysMs;
+        }
+
+        /**
+         * @param host A lower-case host.
+         * @return true if the host is one of the provider's hosts or a subdomain of one.
+         */
+        boolean matchesHost(String host) {
+            if (host == null) {
+                return false;
+            }
+            for (String providerHost : hosts) {
+                if (host.equals(providerHost) || host.endsWith("." + providerHost)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param json One entry of the strategies file.
+         * @param hosts The hosts the strategy applies to.
+         */
+        static Strategy fromJson(JSONObject json, List<String> hosts) throws JSONException {
+            JSONArray delays = json.getJSONArray("fallbackDelaysMs");
+            long[] fallbackDelaysMs = new long[delays.length()];
+            for (int i = 0; i < fallbackDelaysMs.length; i++) {
+                fallbackDelaysMs[i] = delays.getLong(i);
+            }
+            if (fallbackDelaysMs.length == 0) {
+                throw new JSONException("Strategy " + json.optString("id") + " has no fallback clicks");
+            }
+            return new Strategy(json.getString("id"), hosts, json.optBoolean("clickOnReady", true),
+                    json.optLong("clickDelayMs", 250), fallbackDelaysMs);
+        }
+    }
+
+    /**
+     * Receives the time-to-ready of each autoplay session.
+     */
+    public interface ReadyListener {
+        /**
+         * @param providerId The provider strategy id.
+         * @param readyMs Milliseconds from the start of the embed load until the video could play.
+         */
+        void onPlayerReady(String providerId, long readyMs);
+    }
+
+    /** Probe injected at document start in provider frames; it reports video readiness and the first frame once. */
+    private static final String PROBE_SCRIPT = "(function(){"
+            + "if(window.__ividsAutoplayProbe||!window." + PROBE_OBJECT + ")return;"
+            + "window.__ividsAutoplayProbe=true;"
+            + "var probe=window." + PROBE_OBJECT + ",readySent=false,frameSent=false;"
+            + "function ready(){if(!readySent){readySent=true;probe.postMessage('ready');}}"
+            + "function frame(){if(!frameSent){frameSent=true;probe.postMessage('frame');}}"
+            + "function watch(v){if(v.__ividsWatched)return;v.__ividsWatched=true;"
+            + "if(v.readyState>=3)ready();else v.addEventListener('canplay',ready,{once:true});"
+            + "if(!v.paused&&v.readyState>=2)frame();"
+            + "else v.addEventListener('playing',function(){if(v.requestVideoFrameCallback)v.requestVideoFrameCallback(frame);else frame();},{once:true});}"
+            + "function scan(){var vs=document.getElementsByTagName('video');for(var i=0;i<vs.length;i++)watch(vs[i]);}"
+            + "new MutationObserver(scan).observe(document.documentElement,{childList:true,subtree:true});"
+            + "document.addEventListener('DOMContentLoaded',scan);scan();"
+            + "})();";
+
+    private final Context mContext;
+    private final SharedPreferences mSettings;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mClickAction;
+    private final Runnable mAttempt = this::clickAndScheduleRetry;
+    private final Map<String, LatencyHistogram> mFirstFrameLatency = new LinkedHashMap<>();
+    private final Map<String, LatencyHistogram> mReadyLatency = new LinkedHashMap<>();
+    // Held as a field: SharedPreferences only keeps weak references to its listeners
+    private final SharedPreferences.OnSharedPreferenceChangeListener mSettingsListener = (prefs, key) -> {
+        if (key != null && key.endsWith("settings")) {
+            refreshPlayerServers();
+        }
+    };
+    private final List<Strategy> mProviders;
+    private final JSONObject mPlayerServerConfig;
+    /** Provider strategies followed by the player server strategy; replaced as a whole on settings changes. */
+    private volatile List<Strategy> mStrategies;
+    private WebView mWebView;
+    private ScriptHandler mProbeScript;
+    private boolean mProbeInstalled = false;
+    private ReadyListener mReadyListener;
+
+    private Strategy mStrategy;
+    private long mSessionStart;
+    private boolean mReady;
+    private boolean mPlaying;
+    private int mAttemptIndex;
+
+    /**
+     * Constructs a new AutoplayController instance.
+     *
+     * @param context The context used to read the strategies and the player servers from the mirrored settings.
+     * @param clickAction Performs the simulated click on the player (called on the main thread).
+     */
+    public AutoplayController(Context context, Runnable clickAction) {
+        this.mContext = context.getApplicationContext();
+        this.mSettings = mContext.getSharedPreferences(NavigationGuard.SETTINGS_PREFS, Context.MODE_PRIVATE);
+        this.mClickAction = clickAction;
+
+        List<Strategy> providers = new ArrayList<>();
+        JSONObject playerServers = null;
+        try {
+            JSONObject config = new JSONObject(readAsset(STRATEGIES_ASSET));
+            JSONArray entries = config.getJSONArray("providers");
+            for (int i = 0; i < entries.length(); i++) {
+                JSONObject entry = entries.getJSONObject(i);
+                JSONArray hostsJson = entry.getJSONArray("hosts");
+                List<String> hosts = new ArrayList<>();
+                for (int h = 0; h < hostsJson.length(); h++) {
+                    hosts.add(hostsJson.getString(h).toLowerCase(Locale.ROOT));
+                }
+                providers.add(Strategy.fromJson(entry, Collections.unmodifiableList(hosts)));
+            }
+            playerServers = config.optJSONObject("playerServers");
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Error loading autoplay strategies; autoplay is disabled", e);
+            providers.clear();
+            playerServers = null;
+        }
+        mProviders = Collections.unmodifiableList(providers);
+        mPlayerServerConfig = playerServers;
+        mStrategies = buildStrategies();
+        mSettings.registerOnSharedPreferenceChangeListener(mSettingsListener);
+    }
+
+    /**
+     * @param listener Receives the time-to-ready of each session on the main thread, or null.
+     */
+    public void setReadyListener(ReadyListener listener) {
+        mReadyListener = listener;
+    }
+
+    /**
+     * Installs the document-start probe script and its message listener on the WebView, limited to the origins of
+     * the providers and player servers, if the WebView implementation supports both.
+     * Without them, playback still starts through the fallback clicks.
+     *
+     * @param webView The WebView to install the probe on.
+     */
+    public void install(WebView webView) {
+        mWebView = webView;
+        if (!WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT)
+                || !WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_LISTENER)) {
+            Log.w(TAG, "Document start scripts or web message listeners unsupported; autoplay relies on fallback clicks");
+            return;
+        }
+        installProbe();
+    }
+
+    /**
+     * Stops following settings changes and removes the probe.
+     */
+    public void shutdown() {
+        mSettings.unregisterOnSharedPreferenceChangeListener(mSettingsListener);
+        removeProbe();
+    }
+
+    /**
+     * Starts an autoplay session when an embed player begins loading, either as the main frame
+     * or inside the player page iframe.
+     *
+     * @param url The embed URL.
+     */
+    @JavascriptInterface
+    public void onEmbedLoading(String url) {
+        mHandler.post(() -> startSession(url));
+    }
+
+    /**
+     * Arms the fallback clicks once the embed page has loaded. Loads of non-embed pages (e.g. the app shell
+     * hosting the player iframe) are ignored so they do not end an iframe session.
+     *
+     * @param url The embed URL.
+     */
+    @JavascriptInterface
+    public void onEmbedLoaded(String url) {
+        if (strategyFor(url) == null) {
+            return;
+        }
+        mHandler.post(() -> {
+            if (mStrategy == null || mStrategy != strategyFor(url)) {
+                startSession(url);
+            }
+            if (mStrategy != null && !mReady && !mPlaying) {
+                mHandler.removeCallbacks(mAttempt);
+                mHandler.postDelayed(mAttempt, mStrategy.fallbackDelaysMs[0]);
+            }
+        });
+    }
+
+    /**
+     * Ends the current session (player closed) and cancels any pending click.
+     */
+    @JavascriptInterface
+    public void onEmbedClosed() {
+        mHandler.post(this::endSession);
+    }
+
+    /**
+     * Handles a probe message on the main thread. Messages from frames outside the current provider are ignored.
+     *
+     * @param message {@code ready} when a video element can start playing, {@code frame} when the first video
+     *                frame has been rendered.
+     * @param sourceOrigin The origin of the reporting frame, as verified by the WebView.
+     */
+    private void onProbeMessage(String message, Uri sourceOrigin) {
+        String host = sourceOrigin != null && sourceOrigin.getHost() != null
+                ? sourceOrigin.getHost().toLowerCase(Locale.ROOT) : null;
+        if (mStrategy == null || !mStrategy.matchesHost(host)) {
+            Log.d(TAG, "Ignored autoplay probe message from " + sourceOrigin);
+            return;
+        }
+        if ("ready".equals(message)) {
+            onPlayerReady(host);
+        } else if ("frame".equals(message)) {
+            onFirstFrame(host);
+        }
+    }
+
+    private void onPlayerReady(String host) {
+        if (mReady || mPlaying) {
+            return;
+        }
+        mReady = true;
+        long readyMs = SystemClock.elapsedRealtime() - mSessionStart;
+        histogram(mReadyLatency, mStrategy.id).record(readyMs);
+        if (mReadyListener != null) {
+            mReadyListener.onPlayerReady(mStrategy.id, readyMs);
+        }
+        Log.d(TAG, "Player ready on " + host + " (" + mStrategy.id + ") after " + readyMs + " ms");
+        mHandler.removeCallbacks(mAttempt);
+        if (mStrategy.clickOnReady) {
+            mAttemptIndex = 0;
+            mHandler.postDelayed(mAttempt, mStrategy.clickDelayMs);
+        }
+    }
+
+    private void onFirstFrame(String host) {
+        if (mPlaying) {
+            return;
+        }
+        mPlaying = true;
+        mHandler.removeCallbacks(mAttempt);
+        long ttff = SystemClock.elapsedRealtime() - mSessionStart;
+        histogram(mFirstFrameLatency, mStrategy.id).record(ttff);
+        Log.d(TAG, "First frame on " + host + " (" + mStrategy.id + ") after " + ttff + " ms");
+    }
+
+    /**
+     * Returns time-to-ready and time-to-first-frame statistics per provider.
+     *
+     * @return A JSON string: {providerId: {ready: histogram, firstFrame: histogram}}.
+     */
+    @JavascriptInterface
+    public String getAutoplayStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            synchronized (mFirstFrameLatency) {
+                for (Strategy strategy : mStrategies) {
+                    LatencyHistogram ready = mReadyLatency.get(strategy.id);
+                    LatencyHistogram frame = mFirstFrameLatency.get(strategy.id);
+                    if (ready == null && frame == null) continue;
+                    JSONObject provider = new JSONObject();
+                    LatencyHistogram empty = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+                    provider.put("ready", (ready != null ? ready : empty).toJson());
+                    provider.put("firstFrame", (frame != null ? frame : empty).toJson());
+                    stats.put(strategy.id, provider);
+                }
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing autoplay stats", e);
+        }
+        return stats.toString();
+    }
+
+    /**
+     * @return true if the readiness probe could be installed on this device's WebView.
+     */
+    @JavascriptInterface
+    public boolean isProbeInstalled() {
+        return mProbeInstalled;
+    }
+
+    private void startSession(String url) {
+        endSession();
+        mStrategy = strategyFor(url);
+        if (mStrategy != null) {
+            mSessionStart = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private void endSession() {
+        mHandler.removeCallbacks(mAttempt);
+        mStrategy = null;
+        mReady = false;
+        mPlaying = false;
+        mAttemptIndex = 0;
+    }
+
+    /**
+     * Sends one simulated click unless playback already started, then schedules the next bounded retry.
+     */
+    private void clickAndScheduleRetry() {
+        if (mStrategy == null || mPlaying) {
+            return;
+        }
+        mClickAction.run();
+        mAttemptIndex++;
+        if (mAttemptIndex < mStrategy.fallbackDelaysMs.length) {
+            mHandler.postDelayed(mAttempt, mStrategy.fallbackDelaysMs[mAttemptIndex]);
+        }
+    }
+
+    private LatencyHistogram histogram(Map<String, LatencyHistogram> map, String providerId) {
+        synchronized (mFirstFrameLatency) {
+            LatencyHistogram histogram = map.get(providerId);
+            if (histogram == null) {
+                histogram = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+                map.put(providerId, histogram);
+            }
+            return histogram;
+        }
+    }
+
+    private void refreshPlayerServers() {
+        mStrategies = buildStrategies();
+        if (mProbeInstalled) {
+            removeProbe();
+            installProbe();
+        }
+    }
+
+    /**
+     * @return The provider strategies, followed by one strategy for the configured player servers that are not
+     * provider hosts.
+     */
+    private List<Strategy> buildStrategies() {
+        List<Strategy> strategies = new ArrayList<>(mProviders);
+        if (mPlayerServerConfig == null) {
+            return strategies;
+        }
+        List<String> serverHosts = new ArrayList<>();
+        for (String host : NavigationGuard.readPlayerHosts(mSettings)) {
+            String lowerHost = host.toLowerCase(Locale.ROOT);
+            if (strategyForHost(mProviders, lowerHost) == null && !serverHosts.contains(lowerHost)) {
+                serverHosts.add(lowerHost);
+            }
+        }
+        if (!serverHosts.isEmpty()) {
+            try {
+                strategies.add(Strategy.fromJson(mPlayerServerConfig, Collections.unmodifiableList(serverHosts)));
+            } catch (JSONException e) {
+                Log.e(TAG, "Invalid player server strategy", e);
+            }
+        }
+        return strategies;
+    }
+
+    private void installProbe() {
+        Set<String> origins = new LinkedHashSet<>();
+        for (Strategy strategy : mStrategies) {
+            for (String host : strategy.hosts) {
+                // The subdomain wildcard does not cover the domain itself
+                origins.add("https://" + host);
+                origins.add("https://*." + host);
+                origins.add("http://" + host);
+                origins.add("http://*." + host);
+            }
+        }
+        if (origins.isEmpty()) {
+            return;
+        }
+        try {
+            WebViewCompat.addWebMessageListener(mWebView, PROBE_OBJECT, origins,
+                    (view, message, sourceOrigin, isMainFrame, replyProxy) -> onProbeMessage(message.getData(), sourceOrigin));
+            mProbeInstalled = true;
+            mProbeScript = WebViewCompat.addDocumentStartJavaScript(mWebView, PROBE_SCRIPT, origins);
+        } catch (IllegalArgumentException e) {
+            // A configured player server host that is not a valid origin rule
+            Log.e(TAG, "Error installing the autoplay probe for " + origins, e);
+            removeProbe();
+        }
+    }
+
+    private void removeProbe() {
+        if (mProbeScript != null) {
+            mProbeScript.remove();
+            mProbeScript = null;
+        }
+        if (mProbeInstalled) {
+            WebViewCompat.removeWebMessageListener(mWebView, PROBE_OBJECT);
+            mProbeInstalled = false;
+        }
+    }
+
+    private String readAsset(String path) throws IOException {
+        try (InputStream in = mContext.getAssets().open(path)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @param url An embed URL.
+     * @return The strategy for the provider serving this URL, or null if the URL is not an embed player.
+     */
+    Strategy strategyFor(String url) {
+        if (url == null || url.startsWith("file:")) {
+            return null;
+        }
+        String host = Uri.parse(url).getHost();
+        return host != null ? strategyForHost(mStrategies, host.toLowerCase(Locale.ROOT)) : null;
+    }
+
+    private static Strategy strategyForHost(List<Strategy> strategies, String host) {
+        for (Strategy strategy : strategies) {
+            if (strategy.matchesHost(host)) {
+                return strategy;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+package com.kenjigames.ivids;
+
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+
+import com.kenjigames.ivids.core.PriorityScheduler;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * BackgroundScheduler is the app-wide native work scheduler (core {@code PriorityScheduler}), exposed to the
+ * WebView as {@code AndroidScheduler}. Background work is submitted as user-visible, prefetch or maintenance
+ * work with a concurrency limit per class, so e.g. an update check never waits behind an EPG index refresh.
+ * While the web layer reports active playback, maintenance work is paused so it does not compete with the
+ * video stream for bandwidth and CPU. The flag is cleared when the page unloads or the activity is destroyed,
+ * so a player that never reported its end cannot keep maintenance paused.
+ */
+public class BackgroundScheduler {
+    private static final String TAG = "BackgroundScheduler";
+
+    private static final int USER_VISIBLE_LIMIT = 2;
+    private static final int PREFETCH_LIMIT = 2;
+    private static final int MAINTENANCE_LIMIT = 1;
+
+    private static BackgroundScheduler sInstance;
+
+    private final PriorityScheduler mScheduler = new PriorityScheduler(USER_VISIBLE_LIMIT, PREFETCH_LIMIT, MAINTENANCE_LIMIT);
+    private volatile boolean mPlaybackActive = false;
+
+    /**
+     * @return The process-wide scheduler.
+     */
+    public static synchronized BackgroundScheduler getInstance() {
+        if (sInstance == null) {
+            sInstance = new BackgroundScheduler();
+        }
+        return sInstance;
+    }
+
+    private BackgroundScheduler() {
+        mScheduler.setErrorListener((name, error) -> Log.e(TAG, "Background job " + name + " failed", error));
+    }
+
+    /**
+     * Queues background work.
+     *
+     * @param name A short name for logs.
+     * @param priority The priority class.
+     * @param job The work; long jobs call {@code task.checkpoint()} between units of work.
+     * @return The task handle, used to cancel the work.
+     */
+    public PriorityScheduler.Task submit(String name, PriorityScheduler.Priority priority, PriorityScheduler.Job job) {
+        return mScheduler.submit(name, priority, job);
+    }
+
+    /**
+     * Called by the web layer when a player starts or stops; pauses or resumes maintenance work.
+     *
+     * @param active Whether video is playing.
+     */
+    @JavascriptInterface
+    public void setPlaybackActive(boolean active) {
+        if (mPlaybackActive == active) {
+            return;
+        }
+        mPlaybackActive = active;
+        mScheduler.setPaused(PriorityScheduler.Priority.MAINTENANCE, active);
+        Log.d(TAG, active ? "Playback active, maintenance work paused" : "Playback stopped, maintenance work resumed");
+    }
+
+    /**
+     * Returns the state of each priority class.
+     *
+     * @return A JSON string: {playbackActive, userVisible|prefetch|maintenance: {queued, running, completed, paused}}.
+     */
+    @JavascriptInterface
+    public String getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("playbackActive", mPlaybackActive);
+            stats.put("userVisible", classStats(PriorityScheduler.Priority.USER_VISIBLE));
+            stats.put("prefetch", classStats(PriorityScheduler.Priority.PREFETCH));
+            stats.put("maintenance", classStats(PriorityScheduler.Priority.MAINTENANCE));
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing scheduler stats", e);
+        }
+        return stats.toString();
+    }
+
+    private JSONObject classStats(PriorityScheduler.Priority priority) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("queued", mScheduler.getQueued(priority));
+        json.put("running", mScheduler.getRunning(priority));
+        json.put("completed", mScheduler.getCompleted(priority));
+        json.put("paused", mScheduler.isPaused(priority));
+        return json;
+    }
+}
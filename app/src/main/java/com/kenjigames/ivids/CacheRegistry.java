@@ -0,0 +1,193 @@
+package com.kenjigames.ivids;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * CacheRegistry is the central owner of all native in-memory caches.
+ * Every cache registers here with its size estimator, and the registry enforces a single global memory
+ * budget derived from {@link ActivityManager#getMemoryClass()}. When Android reports memory pressure through
+ * {@code onTrimMemory}, the registry applies graded eviction across all caches so low-RAM TV boxes keep the
+ * WebView process alive instead of having it killed.
+ */
+public class CacheRegistry {
+    private static final String TAG = "CacheRegistry";
+
+    /** Fraction of the per-app heap limit that native caches may use together. */
+    private static final int BUDGET_HEAP_DIVISOR = 8;
+    /** Lower bound for the global cache budget on very small heaps. */
+    private static final long MIN_BUDGET_BYTES = 4L * 1024 * 1024;
+
+    private static CacheRegistry sInstance;
+
+    private final Map<String, TrimmableCache> mCaches = new LinkedHashMap<>();
+    private final long mBudgetBytes;
+
+    /**
+     * Returns the process-wide registry, creating it on first use.
+     *
+     * @param context Any context; the application context is used to read the memory class.
+     * @return The shared CacheRegistry instance.
+     */
+    public static synchronized CacheRegistry getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new CacheRegistry(computeBudgetBytes(context.getApplicationContext()));
+            CacheRegistry registry = sInstance;
+            MetricsRegistry metrics = MetricsRegistry.getInstance();
+            metrics.gauge("ivids_cache_bytes", "Estimated size of all registered in-memory caches.", registry::getTotalSizeBytes);
+            metrics.gauge("ivids_cache_budget_bytes", "Global budget of the in-memory caches.", registry::getBudgetBytes);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructs a registry with an explicit global budget.
+     *
+     * @param budgetBytes The maximum number of bytes all registered caches may hold together.
+     */
+    CacheRegistry(long budgetBytes) {
+        this.mBudgetBytes = Math.max(MIN_BUDGET_BYTES, budgetBytes);
+    }
+
+    /**
+     * Derives the global cache budget from the device's per-app heap limit.
+     * Uses the large heap class only if the manifest requested it, mirroring what the VM actually grants.
+     *
+     * @param context The application context.
+     * @return The global budget in bytes.
+     */
+    private static long computeBudgetBytes(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (am == null) {
+            return 64L * 1024 * 1024 / BUDGET_HEAP_DIVISOR;
+        }
+        boolean largeHeap = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_LARGE_HEAP) != 0;
+        int memoryClassMb = largeHeap ? am.getLargeMemoryClass() : am.getMemoryClass();
+        return (long) memoryClassMb * 1024 * 1024 / BUDGET_HEAP_DIVISOR;
+    }
+
+    /**
+     * Registers a cache under a unique name. Registering the same name again replaces the previous cache.
+     * The cache reports its growth back to the registry, so it is held to the global budget after every insert.
+     *
+     * @param name A unique, human-readable cache name (used for logging and diagnostics).
+     * @param cache The cache to manage.
+     */
+    public synchronized void register(String name, TrimmableCache cache) {
+        TrimmableCache previous = mCaches.put(name, cache);
+        if (previous != null && previous != cache) {
+            previous.setGrowthListener(null);
+        }
+        cache.setGrowthListener(this::enforceBudget);
+        enforceBudget();
+    }
+
+    /**
+     * Removes a cache from the registry without clearing it.
+     *
+     * @param name The name the cache was registered under.
+     */
+    public synchronized void unregister(String name) {
+        TrimmableCache cache = mCaches.remove(name);
+        if (cache != null) {
+            cache.setGrowthListener(null);
+        }
+    }
+
+    /**
+     * @return The global memory budget shared by all registered caches, in bytes.
+     */
+    public long getBudgetBytes() {
+        return mBudgetBytes;
+    }
+
+    /**
+     * @return The sum of the estimated sizes of all registered caches, in bytes.
+     */
+    public synchronized long getTotalSizeBytes() {
+        long total = 0;
+        for (TrimmableCache cache : mCaches.values()) {
+            total += cache.estimateSizeBytes();
+        }
+        return total;
+    }
+
+    /**
+     * Trims the registered caches proportionally if their combined size exceeds the global budget.
+     * Runs on registration and whenever a registered cache reports growth.
+     */
+    public synchronized void enforceBudget() {
+        trimAllTo(mBudgetBytes);
+    }
+
+    /**
+     * Applies graded eviction for an {@code onTrimMemory} level.
+     * Moderate pressure halves the budget, low pressure or a backgrounded UI quarters it,
+     * and critical pressure or imminent process death clears every cache.
+     *
+     * @param level The trim level reported by {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public synchronized void onTrimMemory(int level) {
+        long target = targetBytesForLevel(level);
+        Log.d(TAG, "onTrimMemory level " + level + ", trimming caches from " + getTotalSizeBytes()
+                + " to " + target + " bytes");
+        trimAllTo(target);
+    }
+
+    /**
+     * Clears every registered cache. Called from {@code onLowMemory} when the whole system is running out of memory.
+     */
+    public synchronized void onLowMemory() {
+        trimAllTo(0);
+    }
+
+    /**
+     * Maps an {@code onTrimMemory} level to the fraction of the budget the caches may keep.
+     *
+     * @param level The trim level.
+     * @return The target combined size in bytes.
+     */
+    long targetBytesForLevel(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return mBudgetBytes / 4;
+        }
+        if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return mBudgetBytes / 2;
+        }
+        return mBudgetBytes;
+    }
+
+    /**
+     * Shrinks all caches so their combined size is at most {@code targetBytes}.
+     * Each cache keeps a share of the target proportional to its current size.
+     *
+     * @param targetBytes The combined size limit in bytes.
+     */
+    private void trimAllTo(long targetBytes) {
+        long total = getTotalSizeBytes();
+        if (total <= targetBytes) {
+            return;
+        }
+        for (Map.Entry<String, TrimmableCache> entry : mCaches.entrySet()) {
+            TrimmableCache cache = entry.getValue();
+            long size = cache.estimateSizeBytes();
+            long share = targetBytes == 0 ? 0 : (long) ((double) size / total * targetBytes);
+            try {
+                cache.trimToSize(share);
+            } catch (Exception e) {
+                Log.e(TAG, "Error trimming cache " + entry.getKey(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.kenjigames.ivids;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+
+import com.kenjigames.ivids.core.ChannelDatabase;
+
+import org.json.JSONArray;
+
+import java.io.FileInputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * ChannelDbBridge is a Native-to-JavaScript bridge exposing the compiled broken channel database
+ * to the WebView as {@code AndroidChannelDb}. Live TV asks which of its playlist URLs are known broken in a
+ * single call instead of downloading and parsing the full JSON list into a JavaScript Set on every visit.
+ */
+public class ChannelDbBridge {
+    private static final String TAG = "ChannelDbBridge";
+    private static final String BROKEN_DB_ASSET = "main/logic/livetv/broken-channels.bin";
+
+    private final Context mContext;
+    private ChannelDatabase mBrokenDb;
+
+    /**
+     * Constructs a ChannelDbBridge instance. The database is mapped lazily on first use.
+     *
+     * @param context The application context used to open the assets.
+     */
+    public ChannelDbBridge(Context context) {
+        this.mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Filters a batch of normalized channel URLs down to the ones recorded as broken.
+     *
+     * @param normalizedUrlsJson A JSON array of normalized URLs.
+     * @return A JSON array containing only the URLs present in the broken channel database.
+     */
+    @JavascriptInterface
+    public String findBroken(String normalizedUrlsJson) {
+        return filter(getBrokenDb(), normalizedUrlsJson);
+    }
+
+    private synchronized ChannelDatabase getBrokenDb() {
+        if (mBrokenDb == null) {
+            mBrokenDb = open(BROKEN_DB_ASSET);
+        }
+        return mBrokenDb;
+    }
+
+    /**
+     * Memory-maps a compiled database from the app assets.
+     * The asset must be stored uncompressed (see {@code androidResources.noCompress} in the app build file).
+     *
+     * @param assetPath The asset path.
+     * @return The opened database, or null if the asset is missing, compressed or malformed.
+     */
+    private ChannelDatabase open(String assetPath) {
+        long start = SystemClock.elapsedRealtime();
+        try (AssetFileDescriptor afd = mContext.getAssets().openFd(assetPath);
+             FileInputStream fis = new FileInputStream(afd.getFileDescriptor());
+             FileChannel channel = fis.getChannel()) {
+            ChannelDatabase db = new ChannelDatabase(
+                    channel.map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getLength()));
+            Log.d(TAG, "Mapped " + assetPath + " (" + db.size() + " URLs) in "
+                    + (SystemClock.elapsedRealtime() - start) + " ms");
+            return db;
+        } catch (Exception e) {
+            Log.e(TAG, "Error opening channel database " + assetPath, e);
+            return null;
+        }
+    }
+
+    private static String filter(ChannelDatabase db, String normalizedUrlsJson) {
+        JSONArray matches = new JSONArray();
+        if (db == null || normalizedUrlsJson == null) {
+            return matches.toString();
+        }
+        try {
+            JSONArray urls = new JSONArray(normalizedUrlsJson);
+            for (int i = 0; i < urls.length(); i++) {
+                String url = urls.optString(i, null);
+                if (url != null && db.contains(url)) {
+                    matches.put(url);
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error filtering channel URLs", e);
+        }
+        return matches.toString();
+    }
+}
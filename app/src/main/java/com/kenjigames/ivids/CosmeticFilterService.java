@@ -0,0 +1,252 @@
+package com.kenjigames.ivids;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebView;
+
+import androidx.webkit.ScriptHandler;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import com.kenjigames.ivids.core.CosmeticFilter;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * CosmeticFilterService hides ad overlays and click-jacking layers on embed player pages, exposed to the WebView
+ * as {@code AndroidCosmetic}. The rules (core {@code CosmeticFilter}) are compiled into one minimal stylesheet per
+ * provider domain, and each stylesheet is installed as a document-start script limited to that domain's origins,
+ * so it is applied once before the page's own scripts run and also inside the player iframe. Devices without
+ * document-start scripts get the stylesheet once a provider page opened in the main frame has committed; embed
+ * iframes inside the app page are not reachable that way and stay unfiltered on those devices.
+ * <p>
+ * To compare player readiness with and without the filter, the time until the player can play (reported by the
+ * {@link AutoplayController}) is recorded separately for both states; the filter can be switched off from the
+ * App Info modal.
+ */
+public class CosmeticFilterService {
+    private static final String TAG = "CosmeticFilterService";
+    private static final String PREFS_NAME = "ivids_cosmetic";
+    private static final String KEY_ENABLED = "enabled";
+    private static final String READY = "ivids_embed_ready_seconds";
+    private static final String READY_HELP = "Embed player load until the video can play, with and without cosmetic filtering.";
+
+    private final SharedPreferences mPrefs;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final CosmeticFilter mFilter;
+    private final long mCompileMs;
+    private final List<ScriptHandler> mScripts = new ArrayList<>();
+    private final MetricsRegistry.Counter mInjections;
+    private final MetricsRegistry.Counter mInjectMicros;
+    private final LatencyHistogram mReadyFiltered = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+    private final LatencyHistogram mReadyUnfiltered = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+    private WebView mWebView;
+    private volatile boolean mEnabled;
+
+    /**
+     * Constructs a new CosmeticFilterService instance and compiles the default rules.
+     *
+     * @param context The context used to read the persisted setting.
+     */
+    public CosmeticFilterService(Context context) {
+        this.mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.mEnabled = mPrefs.getBoolean(KEY_ENABLED, true);
+        long start = SystemClock.elapsedRealtime();
+        this.mFilter = CosmeticFilter.createDefault();
+        for (String domain : mFilter.getDomains()) {
+            mFilter.stylesheetFor(domain);
+        }
+        this.mCompileMs = SystemClock.elapsedRealtime() - start;
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        mInjections = metrics.counter("ivids_cosmetic_injections_total",
+                "Cosmetic stylesheets injected into embed pages and frames.");
+        mInjectMicros = metrics.counter("ivids_cosmetic_inject_microseconds_total",
+                "Time spent in the page inserting cosmetic stylesheets.");
+        metrics.histogram(READY, READY_HELP, mReadyFiltered, "cosmetic", "on");
+        metrics.histogram(READY, READY_HELP, mReadyUnfiltered, "cosmetic", "off");
+    }
+
+    /**
+     * Installs the per-domain document-start scripts if the filter is enabled. Must be called on the main thread.
+     *
+     * @param webView The WebView hosting the app and the player iframes.
+     */
+    public void install(WebView webView) {
+        mWebView = webView;
+        if (mEnabled) {
+            addScripts();
+        }
+    }
+
+    /**
+     * Injects the stylesheet into a provider page opened in the main frame, on devices where document-start
+     * scripts are unavailable. Called from {@code onPageCommitVisible} and {@code onPageFinished} on the main
+     * thread: a script evaluated from {@code onPageStarted} can still run in the previous document. The injected
+     * script runs once per document, so the second call is a no-op.
+     *
+     * @param view The WebView showing the page.
+     * @param url The page URL.
+     */
+    public void onPageVisible(WebView view, String url) {
+        if (!mEnabled || !mScripts.isEmpty() || url == null) {
+            return;
+        }
+        String host = Uri.parse(url).getHost();
+        if (matchingDomain(host) != null) {
+            String css = mFilter.stylesheetFor(host);
+            if (!css.isEmpty()) {
+                view.evaluateJavascript(injectionScript(css), null);
+            }
+        }
+    }
+
+    /**
+     * Records the time until the embed player could play, under the current filter state.
+     *
+     * @param readyMs Milliseconds from the start of the embed load until the video reported {@code canplay}.
+     */
+    public void recordPlayerReady(long readyMs) {
+        (mEnabled ? mReadyFiltered : mReadyUnfiltered).record(readyMs);
+    }
+
+    /**
+     * Called by the injected script after inserting the stylesheet.
+     *
+     * @param host The host of the page or frame.
+     * @param micros The time the insertion took in the page, in microseconds.
+     */
+    @JavascriptInterface
+    public void onInjected(String host, long micros) {
+        mInjections.inc();
+        mInjectMicros.add(micros);
+    }
+
+    @JavascriptInterface
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Turns the filter on or off and persists the choice. Pages loaded from now on are affected.
+     *
+     * @param enabled Whether stylesheets are injected.
+     */
+    @JavascriptInterface
+    public void setEnabled(boolean enabled) {
+        mPrefs.edit().putBoolean(KEY_ENABLED, enabled).apply();
+        mEnabled = enabled;
+        mHandler.post(() -> {
+            if (mWebView == null) {
+                return;
+            }
+            if (enabled && mScripts.isEmpty()) {
+                addScripts();
+            } else if (!enabled) {
+                removeScripts();
+            }
+        });
+        Log.d(TAG, "Cosmetic filtering " + (enabled ? "enabled" : "disabled"));
+    }
+
+    /**
+     * Returns the compiled rules, the injection cost and player readiness with and without the filter.
+     *
+     * @return A JSON string: {enabled, documentStart, rules, skipped, compileMs, stylesheetBytes: {domain: bytes},
+     * injections, avgInjectMicros, readyFiltered: histogram, readyUnfiltered: histogram}.
+     */
+    @JavascriptInterface
+    public String getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("enabled", mEnabled);
+            stats.put("documentStart", WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT));
+            stats.put("rules", mFilter.getRuleCount());
+            stats.put("skipped", mFilter.getSkippedCount());
+            stats.put("compileMs", mCompileMs);
+            JSONObject sizes = new JSONObject();
+            for (String domain : mFilter.getDomains()) {
+                sizes.put(domain, mFilter.stylesheetFor(domain).length());
+            }
+            stats.put("stylesheetBytes", sizes);
+            long injections = mInjections.get();
+            stats.put("injections", injections);
+            stats.put("avgInjectMicros", injections > 0 ? mInjectMicros.get() / injections : 0);
+            stats.put("readyFiltered", mReadyFiltered.toJson());
+            stats.put("readyUnfiltered", mReadyUnfiltered.toJson());
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing cosmetic filter stats", e);
+        }
+        return stats.toString();
+    }
+
+    private void addScripts() {
+        if (!WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT)) {
+            Log.w(TAG, "Document start scripts unsupported; stylesheets are injected into main frame pages after commit only");
+            return;
+        }
+        for (String domain : mFilter.getDomains()) {
+            String css = mFilter.stylesheetFor(domain);
+            if (css.isEmpty()) {
+                continue;
+            }
+            // The subdomain wildcard does not cover the domain itself
+            mScripts.add(WebViewCompat.addDocumentStartJavaScript(mWebView, injectionScript(css),
+                    new HashSet<>(Arrays.asList("https://" + domain, "https://*." + domain))));
+        }
+        Log.d(TAG, "Installed cosmetic stylesheets for " + mScripts.size() + " domains");
+    }
+
+    private void removeScripts() {
+        for (ScriptHandler script : mScripts) {
+            script.remove();
+        }
+        mScripts.clear();
+    }
+
+    /**
+     * @return The rule domain the host belongs to, or null if no rules apply to it.
+     */
+    private String matchingDomain(String host) {
+        if (host == null) {
+            return null;
+        }
+        String domain = host.toLowerCase(Locale.ROOT);
+        while (true) {
+            if (mFilter.getDomains().contains(domain)) {
+                return domain;
+            }
+            int dot = domain.indexOf('.');
+            if (dot < 0) {
+                return null;
+            }
+            domain = domain.substring(dot + 1);
+        }
+    }
+
+    /**
+     * @return A script that inserts the stylesheet once per document and reports the time it took.
+     */
+    private static String injectionScript(String css) {
+        return "(function(){"
+                + "if(window.__ividsCosmetic)return;window.__ividsCosmetic=true;"
+                + "var t=performance.now(),s=document.createElement('style');"
+                + "s.textContent=" + JSONObject.quote(css) + ";"
+                + "(document.head||document.documentElement).appendChild(s);"
+                + "if(window.AndroidCosmetic)AndroidCosmetic.onInjected(location.host,Math.round((performance.now()-t)*1000));"
+                + "})();";
+    }
+}
@@ -0,0 +1,51 @@
+package com.kenjigames.ivids;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * CountingInputStream counts the bytes read through it, e.g. the upstream bytes of a response body that is
+ * parsed as a stream. Not thread-safe: the count belongs to the thread reading the body.
+ */
+final class CountingInputStream extends FilterInputStream {
+    private long mCount = 0;
+
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * @return The number of bytes read so far.
+     */
+    long getCount() {
+        return mCount;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value != -1) {
+            mCount++;
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int count = super.read(b, off, len);
+        if (count > 0) {
+            mCount += count;
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) {
+            mCount += skipped;
+        }
+        return skipped;
+    }
+}
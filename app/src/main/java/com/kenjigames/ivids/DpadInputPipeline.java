@@ -0,0 +1,182 @@
+package com.kenjigames.ivids;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.KeyEvent;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebView;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * DpadInputPipeline sits in front of the WebView for hardware D-pad events.
+ * It caches whether the local app page is shown (updated from the WebViewClient page callbacks, so key handling
+ * never has to call {@code WebView.getUrl()}), and coalesces held-key auto-repeats into one rate-limited,
+ * accelerated move per tick that is delivered to {@code SpatialNav.handleRepeat} in a single bridge call.
+ * Key-to-focus-change latency is recorded per delivered move and exposed as {@code AndroidInput}.
+ */
+public class DpadInputPipeline {
+    private static final String LOCAL_PAGE_PREFIX = "file:///android_asset/";
+
+    /** Interval between two coalesced moves while a D-pad key is held. */
+    private static final long TICK_MS = 60;
+    /** Hold durations after which more elements may be skipped per tick. */
+    private static final long ACCELERATE_AFTER_MS = 600;
+    private static final long FAST_AFTER_MS = 1500;
+
+    private final WebView mWebView;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final LatencyHistogram mFocusLatency = new LatencyHistogram();
+    private final Runnable mTick = this::deliverPendingMove;
+
+    private volatile boolean mLocalPage = true;
+    private int mHeldKeyCode = 0;
+    private long mHoldStartTime = 0;
+    private int mPendingSteps = 0;
+    private long mOldestPendingEventTime = 0;
+    private boolean mTickScheduled = false;
+
+    /**
+     * Constructs a new DpadInputPipeline instance.
+     *
+     * @param webView The WebView receiving the coalesced moves.
+     */
+    public DpadInputPipeline(WebView webView) {
+        this.mWebView = webView;
+        MetricsRegistry.getInstance().histogram("ivids_input_focus_seconds",
+                "Held D-pad key event until the focus move is applied.", mFocusLatency);
+    }
+
+    /**
+     * Updates the cached page state. Called from the WebViewClient when a page starts or finishes loading.
+     *
+     * @param url The URL of the page being shown.
+     */
+    public void onPageChanged(String url) {
+        mLocalPage = url == null || url.startsWith(LOCAL_PAGE_PREFIX);
+        cancelHold();
+    }
+
+    /**
+     * @return true if the bundled app UI is shown, false for external player/embed pages.
+     */
+    public boolean isLocalPage() {
+        return mLocalPage;
+    }
+
+    /**
+     * Inspects a key event before the WebView sees it. Must be called on the main thread.
+     * The first press of a D-pad direction is passed through untouched; auto-repeats are consumed and
+     * coalesced until the next tick.
+     *
+     * @param event The key event dispatched to the activity.
+     * @return true if the event was consumed by the pipeline.
+     */
+    public boolean handleKeyEvent(KeyEvent event) {
+        int keyCode = event.getKeyCode();
+        if (!mLocalPage || directionOf(keyCode) == null) {
+            return false;
+        }
+        if (event.getAction() == KeyEvent.ACTION_UP) {
+            if (keyCode == mHeldKeyCode) {
+                // Drop anything still pending so the focus stops where the user let go
+                cancelHold();
+            }
+            return false;
+        }
+        if (event.getAction() != KeyEvent.ACTION_DOWN) {
+            return false;
+        }
+        if (event.getRepeatCount() == 0 || keyCode != mHeldKeyCode) {
+            cancelHold();
+            mHeldKeyCode = keyCode;
+            mHoldStartTime = event.getEventTime();
+            return false;
+        }
+        mPendingSteps++;
+        if (mOldestPendingEventTime == 0) {
+            mOldestPendingEventTime = event.getEventTime();
+        }
+        if (!mTickScheduled) {
+            mTickScheduled = true;
+            mHandler.post(mTick);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the recorded key-to-focus-change latencies for the settings diagnostics.
+     *
+     * @return A JSON string with the latency histogram of coalesced D-pad moves.
+     */
+    @JavascriptInterface
+    public String getInputLatencyStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("dpadRepeat", mFocusLatency.toJson());
+        } catch (JSONException e) {
+            return "{}";
+        }
+        return stats.toString();
+    }
+
+    /**
+     * Clears the recorded latency samples.
+     */
+    @JavascriptInterface
+    public void resetInputLatencyStats() {
+        mFocusLatency.reset();
+    }
+
+    /**
+     * Delivers all repeats accumulated since the last tick as one accelerated move and schedules the next tick.
+     */
+    private void deliverPendingMove() {
+        if (mHeldKeyCode == 0 || mPendingSteps == 0) {
+            mTickScheduled = false;
+            return;
+        }
+        long heldFor = SystemClock.uptimeMillis() - mHoldStartTime;
+        int maxSteps = heldFor >= FAST_AFTER_MS ? 4 : heldFor >= ACCELERATE_AFTER_MS ? 2 : 1;
+        int steps = Math.min(mPendingSteps, maxSteps);
+        final long keyEventTime = mOldestPendingEventTime;
+        String direction = directionOf(mHeldKeyCode);
+        mPendingSteps = 0;
+        mOldestPendingEventTime = 0;
+
+        mWebView.evaluateJavascript(
+                "(window.SpatialNav && typeof window.SpatialNav.handleRepeat === 'function') ? window.SpatialNav.handleRepeat('"
+                        + direction + "', " + steps + ") : false;",
+                result -> {
+                    if ("true".equals(result)) {
+                        mFocusLatency.record(SystemClock.uptimeMillis() - keyEventTime);
+                    }
+                });
+        mHandler.postDelayed(mTick, TICK_MS);
+    }
+
+    private void cancelHold() {
+        mHeldKeyCode = 0;
+        mPendingSteps = 0;
+        mOldestPendingEventTime = 0;
+        mTickScheduled = false;
+        mHandler.removeCallbacks(mTick);
+    }
+
+    private static String directionOf(int keyCode) {
+        switch (keyCode) {
+            case KeyEvent.KEYCODE_DPAD_UP:
+                return "up";
+            case KeyEvent.KEYCODE_DPAD_DOWN:
+                return "down";
+            case KeyEvent.KEYCODE_DPAD_LEFT:
+                return "left";
+            case KeyEvent.KEYCODE_DPAD_RIGHT:
+                return "right";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.kenjigames.ivids;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebView;
+
+import com.kenjigames.ivids.core.EpgGuideIndex;
+import com.kenjigames.ivids.core.PriorityScheduler;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EpgIndexService owns the channel-to-guide mapping of Live TV, exposed to the WebView as {@code AndroidEpg}.
+ * Instead of downloading the iptv-org guides list and building its lookup map in the WebView every session,
+ * {@code EpgManager} asks this service, which keeps the mapping as a compact {@link EpgGuideIndex} in the files
+ * directory. The persisted index is loaded when Live TV first asks for it; a background check against the
+ * guides list with the validators of the last download (ETag, Last-Modified) replaces it only when the list
+ * changed, at most once a day, and again every day while the app stays open. The guide sources of a batch of channels are resolved in one bridge call.
+ * <p>
+ * The time from opening Live TV to the first programme on screen is recorded with the native index and with the
+ * WebView fallback, so both paths can be compared on the device.
+ */
+public class EpgIndexService {
+    private static final String TAG = "EpgIndexService";
+    private static final String PREFS_NAME = "ivids_epg_index";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+    private static final String KEY_CHECKED_AT = "checkedAt";
+    private static final String FILE_NAME = "epg-guide-index.bin";
+    private static final long REFRESH_INTERVAL_MS = TimeUnit.HOURS.toMillis(24);
+    /** Wait after a failed check before the next one, so an offline device does not retry on every Live TV visit. */
+    private static final long RETRY_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 30000;
+    private static final int MAX_BATCH = 500;
+    private static final String REFRESHES = "ivids_epg_index_refreshes_total";
+    private static final String REFRESHES_HELP = "Checks of the guides list, by outcome.";
+    private static final String FIRST_EPG = "ivids_livetv_first_epg_seconds";
+    private static final String FIRST_EPG_HELP = "Live TV opened until the first programme is shown, by guide mapping.";
+
+    private final WebView mWebView;
+    private final SharedPreferences mPrefs;
+    private final File mFile;
+    private final LatencyHistogram mBuildMs = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+    private final LatencyHistogram mFirstEpgNative = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+    private final LatencyHistogram mFirstEpgWebView = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+    private final MetricsRegistry.Counter mUnchanged;
+    private final MetricsRegistry.Counter mRebuilt;
+    private final MetricsRegistry.Counter mFailed;
+    private final MetricsRegistry.Counter mResolved;
+    private final MetricsRegistry.Counter mUpstreamBytes;
+    private volatile EpgGuideIndex mIndex;
+    private PriorityScheduler.Task mLoadTask;
+    private PriorityScheduler.Task mRefreshTask;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mRefreshCheck = this::refreshIfDue;
+    /** {@link SystemClock#elapsedRealtime()} before which no check is started after a failed one. */
+    private long mRetryAt = 0;
+    private boolean mShutdown = false;
+    private long mLoadMs = -1;
+
+    /**
+     * Constructs a new EpgIndexService instance. Nothing is read until Live TV asks for the index.
+     *
+     * @param context The context whose files directory holds the index.
+     * @param webView The WebView notified when the index becomes available or is replaced.
+     */
+    public EpgIndexService(Context context, WebView webView) {
+        this.mWebView = webView;
+        this.mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.mFile = new File(context.getFilesDir(), FILE_NAME);
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        mUnchanged = metrics.counter(REFRESHES, REFRESHES_HELP, "result", "unchanged");
+        mRebuilt = metrics.counter(REFRESHES, REFRESHES_HELP, "result", "rebuilt");
+        mFailed = metrics.counter(REFRESHES, REFRESHES_HELP, "result", "error");
+        mResolved = metrics.counter("ivids_epg_guides_resolved_total", "Channels whose guide source was looked up natively.");
+        mUpstreamBytes = metrics.counter(MetricsRegistry.UPSTREAM_BYTES, MetricsRegistry.UPSTREAM_BYTES_HELP, "component", "epg");
+        metrics.histogram("ivids_epg_index_build_seconds", "Download of the guides list and build of the guide index.", mBuildMs);
+        metrics.histogram(FIRST_EPG, FIRST_EPG_HELP, mFirstEpgNative, "index", "native");
+        metrics.histogram(FIRST_EPG, FIRST_EPG_HELP, mFirstEpgWebView, "index", "webview");
+    }
+
+    /**
+     * Makes the index available: loads the persisted index, or builds it from the guides list if there is none.
+     * Returns immediately; {@code window.onEpgIndexReady(ready)} is called once the outcome is known.
+     *
+     * @return true if the index is already in memory and the callback will not be needed.
+     */
+    @JavascriptInterface
+    public boolean prepare() {
+        if (mIndex != null) {
+            // The timer does not run while the device sleeps; catch up when Live TV is opened
+            refreshIfDue();
+            return true;
+        }
+        synchronized (this) {
+            if (mLoadTask == null || mLoadTask.isCancelled()) {
+                // Live TV is open and waiting for its first programme
+                mLoadTask = BackgroundScheduler.getInstance().submit("epg-index-load",
+                        PriorityScheduler.Priority.USER_VISIBLE, this::load);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resolves the guide sources of several channels at once, e.g. the channels of a rendered list chunk.
+     *
+     * @param tvgIdsJson A JSON array of tvg-ids.
+     * @return A JSON object from each tvg-id to {channelId, feed, urls: [url]} or null if the channel has no
+     * guide; an empty string if the index is not available.
+     */
+    @JavascriptInterface
+    public String resolveBatch(String tvgIdsJson) {
+        EpgGuideIndex index = mIndex;
+        if (index == null) {
+            return "";
+        }
+        JSONObject result = new JSONObject();
+        try {
+            JSONArray ids = new JSONArray(tvgIdsJson);
+            int count = Math.min(ids.length(), MAX_BATCH);
+            for (int i = 0; i < count; i++) {
+                String tvgId = ids.optString(i, "");
+                if (tvgId.isEmpty()) {
+                    continue;
+                }
+                EpgGuideIndex.Guide guide = index.resolve(tvgId);
+                if (guide == null) {
+                    result.put(tvgId, JSONObject.NULL);
+                    continue;
+                }
+                JSONObject entry = new JSONObject();
+                entry.put("channelId", guide.channelId);
+                entry.put("feed", guide.feed != null ? guide.feed : "");
+                entry.put("urls", new JSONArray().put(guide.url));
+                result.put(tvgId, entry);
+            }
+            mResolved.add(count);
+        } catch (JSONException e) {
+            Log.e(TAG, "Invalid tvg-id batch", e);
+            return "";
+        }
+        return result.toString();
+    }
+
+    /**
+     * Records the time from opening Live TV until the first programme was shown.
+     *
+     * @param ms The time in milliseconds.
+     * @param nativeIndex Whether the guide came from the native index rather than the WebView's own lookup.
+     */
+    @JavascriptInterface
+    public void reportFirstEpg(double ms, boolean nativeIndex) {
+        (nativeIndex ? mFirstEpgNative : mFirstEpgWebView).record(Math.round(ms));
+    }
+
+    /**
+     * Returns the index state and the timings of this app session.
+     *
+     * @return A JSON string: {ready, entries, urls, fileBytes, loadMs, checkedAt, buildMs: histogram,
+     * refreshes: {unchanged, rebuilt, error}, resolved, firstEpgNative: histogram, firstEpgWebView: histogram}.
+     */
+    @JavascriptInterface
+    public String getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            EpgGuideIndex index = mIndex;
+            stats.put("ready", index != null);
+            stats.put("entries", index != null ? index.size() : 0);
+            stats.put("urls", index != null ? index.getUrlCount() : 0);
+            stats.put("fileBytes", mFile.length());
+            synchronized (this) {
+                stats.put("loadMs", mLoadMs);
+            }
+            stats.put("checkedAt", mPrefs.getLong(KEY_CHECKED_AT, 0));
+            stats.put("buildMs", mBuildMs.toJson());
+            JSONObject refreshes = new JSONObject();
+            refreshes.put("unchanged", mUnchanged.get());
+            refreshes.put("rebuilt", mRebuilt.get());
+            refreshes.put("error", mFailed.get());
+            stats.put("refreshes", refreshes);
+            stats.put("resolved", mResolved.get());
+            stats.put("firstEpgNative", mFirstEpgNative.toJson());
+            stats.put("firstEpgWebView", mFirstEpgWebView.toJson());
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing EPG index stats", e);
+        }
+        return stats.toString();
+    }
+
+    /**
+     * Cancels a running load or refresh.
+     */
+    public void shutdown() {
+        mHandler.removeCallbacks(mRefreshCheck);
+        synchronized (this) {
+            mShutdown = true;
+            if (mLoadTask != null) {
+                mLoadTask.cancel();
+            }
+            if (mRefreshTask != null) {
+                mRefreshTask.cancel();
+            }
+        }
+    }
+
+    private void load(PriorityScheduler.Task task) throws InterruptedException {
+        long start = SystemClock.elapsedRealtime();
+        if (mFile.exists()) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(mFile))) {
+                mIndex = EpgGuideIndex.readFrom(in);
+            } catch (IOException e) {
+                Log.w(TAG, "Discarding unreadable guide index", e);
+                if (!mFile.delete()) {
+                    Log.w(TAG, "Could not delete " + mFile.getName());
+                }
+            }
+        }
+        synchronized (this) {
+            mLoadMs = SystemClock.elapsedRealtime() - start;
+        }
+        task.checkpoint();
+
+        if (mIndex == null) {
+            // First use: Live TV waits for the build
+            if (!refresh(task)) {
+                // Offline: the WebView falls back to its own lookup; the next visit of Live TV retries
+                synchronized (this) {
+                    mLoadTask = null;
+                }
+            }
+            notifyReady(mIndex != null);
+            refreshIfDue();
+            return;
+        }
+        Log.d(TAG, "Loaded guide index (" + mIndex.size() + " ids) in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        notifyReady(true);
+        refreshIfDue();
+    }
+
+    /**
+     * Starts a background check of the guides list if the last one is older than {@link #REFRESH_INTERVAL_MS},
+     * otherwise arms a timer for when it will be. Called after loading, after each check and when Live TV opens.
+     */
+    private void refreshIfDue() {
+        synchronized (this) {
+            if (mShutdown || mIndex == null || mRefreshTask != null) {
+                return;
+            }
+            long dueInMs = Math.max(mPrefs.getLong(KEY_CHECKED_AT, 0) + REFRESH_INTERVAL_MS - System.currentTimeMillis(),
+                    mRetryAt - SystemClock.elapsedRealtime());
+            mHandler.removeCallbacks(mRefreshCheck);
+            if (dueInMs > 0) {
+                mHandler.postDelayed(mRefreshCheck, dueInMs);
+                return;
+            }
+            mRefreshTask = BackgroundScheduler.getInstance().submit("epg-index-refresh",
+                    PriorityScheduler.Priority.MAINTENANCE, this::refreshAndNotify);
+        }
+    }
+
+    private void refreshAndNotify(PriorityScheduler.Task task) throws InterruptedException {
+        boolean replaced = false;
+        try {
+            replaced = refresh(task);
+        } finally {
+            synchronized (this) {
+                mRefreshTask = null;
+                // A successful check moved checkedAt forward; a failed one must not be retried right away
+                if (System.currentTimeMillis() - mPrefs.getLong(KEY_CHECKED_AT, 0) > REFRESH_INTERVAL_MS) {
+                    mRetryAt = SystemClock.elapsedRealtime() + RETRY_INTERVAL_MS;
+                }
+            }
+        }
+        if (replaced) {
+            notifyReady(true);
+        }
+        refreshIfDue();
+    }
+
+    /**
+     * Downloads the guides list if it changed since the last download and replaces the index.
+     *
+     * @return true if the index was replaced.
+     */
+    private boolean refresh(PriorityScheduler.Task task) throws InterruptedException {
+        long start = SystemClock.elapsedRealtime();
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) new URL(EpgGuideIndex.GUIDES_URL).openConnection();
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setRequestProperty("Accept", "application/json");
+            if (mIndex != null) {
+                String etag = mPrefs.getString(KEY_ETAG, null);
+                String lastModified = mPrefs.getString(KEY_LAST_MODIFIED, null);
+                if (etag != null) {
+                    conn.setRequestProperty("If-None-Match", etag);
+                }
+                if (lastModified != null) {
+                    conn.setRequestProperty("If-Modified-Since", lastModified);
+                }
+            }
+            int status = conn.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && mIndex != null) {
+                mPrefs.edit().putLong(KEY_CHECKED_AT, System.currentTimeMillis()).apply();
+                mUnchanged.inc();
+                Log.d(TAG, "Guides list unchanged");
+                return false;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status + " for the guides list");
+            }
+
+            EpgGuideIndex index;
+            CountingInputStream body = new CountingInputStream(new BufferedInputStream(conn.getInputStream()));
+            try (InputStreamReader reader = new InputStreamReader(body, StandardCharsets.UTF_8)) {
+                index = EpgGuideIndex.build(reader);
+            } finally {
+                mUpstreamBytes.add(body.getCount());
+            }
+            task.checkpoint();
+            save(index);
+            mIndex = index;
+            mPrefs.edit()
+                    .putString(KEY_ETAG, conn.getHeaderField("ETag"))
+                    .putString(KEY_LAST_MODIFIED, conn.getHeaderField("Last-Modified"))
+                    .putLong(KEY_CHECKED_AT, System.currentTimeMillis())
+                    .apply();
+            long buildMs = SystemClock.elapsedRealtime() - start;
+            mBuildMs.record(buildMs);
+            mRebuilt.inc();
+            Log.d(TAG, "Built guide index (" + index.size() + " ids, " + index.getUrlCount() + " guides) in " + buildMs + " ms");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            mFailed.inc();
+            Log.w(TAG, "Could not refresh the guide index", e);
+            return false;
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    private void save(EpgGuideIndex index) throws IOException {
+        File temp = new File(mFile.getPath() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+            index.writeTo(out);
+        }
+        if (!temp.renameTo(mFile)) {
+            throw new IOException("Could not replace " + mFile.getName());
+        }
+    }
+
+    private void notifyReady(boolean ready) {
+        mWebView.post(() -> mWebView.evaluateJavascript(
+                "if(typeof window.onEpgIndexReady === 'function') window.onEpgIndexReady(" + ready + ");", null));
+    }
+}
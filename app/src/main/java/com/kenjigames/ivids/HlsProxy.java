@@ -0,0 +1,498 @@
+package com.kenjigames.ivids;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import com.kenjigames.ivids.core.HlsManifestRewriter;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HlsProxy is the Android counterpart of the {@code /proxy} endpoint in run_pc.py, exposed to the WebView as
+ * {@code AndroidHls}. Live TV stream URLs are wrapped in a virtual proxy URL that AdBlockingWebViewClient routes here.
+ * Playlists are fetched natively and rewritten line by line while the WebView reads them, so every variant,
+ * segment and key request is proxied as well; segments are handed to the WebView as the upstream stream itself.
+ * Native fetching is not subject to CORS or mixed-content rules.
+ * Each proxied channel start is tracked as a session to measure start success rate and time-to-first-segment.
+ * Proxy URLs carry their session's random token, sessions are only started for callers presenting the app key,
+ * and requests without a live token are refused, so embed pages cannot use the proxy to reach arbitrary URLs
+ * (see {@link LocalEndpoint}).
+ * While a channel plays, the start of the adjacent channels is kept warm by {@link ZapAccelerator}; zap time
+ * (channel switch to first frame) is measured separately for warm and cold starts.
+ */
+public class HlsProxy {
+    private static final String TAG = "HlsProxy";
+
+    /** Virtual proxy endpoint; the .invalid TLD guarantees it never reaches the network. */
+    static final String PROXY_HOST = "hls.ivids.invalid";
+    private static final String PROXY_ENDPOINT = "https://" + PROXY_HOST + "/proxy";
+    private static final String DEFAULT_USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
+    private static final int CONNECT_TIMEOUT_MS = 8000;
+    private static final int READ_TIMEOUT_MS = 15000;
+    /** Sessions kept for statistics and in-flight lookups. */
+    private static final int MAX_SESSIONS = 32;
+
+    /**
+     * One proxied channel start.
+     */
+    private static final class Session {
+        final int number;
+        final long startedAt = SystemClock.elapsedRealtime();
+        boolean firstSegmentServed = false;
+        /** Requests of this session answered from the warm cache. */
+        int warmHits = 0;
+
+        Session(int number) {
+            this.number = number;
+        }
+    }
+
+    /** Sessions by token, oldest first; evicted sessions stop being served. */
+    private final LinkedHashMap<String, Session> mSessions = new LinkedHashMap<String, Session>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+            return size() > MAX_SESSIONS;
+        }
+    };
+    private final LatencyHistogram mTimeToFirstSegment = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+    private final LatencyHistogram mZapTime = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+    private final LatencyHistogram mZapTimeWarm = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+    private final LatencyHistogram mZapTimeCold = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+    private final ZapAccelerator mZapAccelerator;
+    private final MetricsRegistry.Counter mUpstreamBytes;
+    private int mNextSessionNumber = 1;
+    private String mLastSessionToken;
+    private int mSessionsStarted = 0;
+    private int mSessionsSucceeded = 0;
+    private long mZapStartedAt = 0;
+    private volatile NetworkQualityMonitor mNetworkMonitor;
+
+    /**
+     * Constructs a new HlsProxy instance.
+     *
+     * @param context The context whose cache registry trims the warm zap cache under memory pressure.
+     */
+    public HlsProxy(Context context) {
+        this(CacheRegistry.getInstance(context));
+    }
+
+    /**
+     * Constructs a new HlsProxy instance.
+     *
+     * @param cacheRegistry The registry that trims the warm zap cache under memory pressure.
+     */
+    HlsProxy(CacheRegistry cacheRegistry) {
+        this.mZapAccelerator = new ZapAccelerator(this, cacheRegistry);
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        this.mUpstreamBytes = metrics.counter(MetricsRegistry.UPSTREAM_BYTES, MetricsRegistry.UPSTREAM_BYTES_HELP, "component", "hls");
+        metrics.histogram("ivids_hls_time_to_first_segment_seconds", "Proxied channel start until the first segment bytes arrive.", mTimeToFirstSegment);
+        metrics.histogram("ivids_hls_zap_seconds", "Channel switch until the first frame.", mZapTimeWarm, "start", "warm");
+        metrics.histogram("ivids_hls_zap_seconds", "Channel switch until the first frame.", mZapTimeCold, "start", "cold");
+        metrics.counterFunction("ivids_hls_zap_warm_hits_total", "Requests answered from the warm zap cache.", mZapAccelerator::getHits);
+    }
+
+    /**
+     * Reports segment transfers to the given monitor as throughput samples.
+     *
+     * @param monitor The network quality monitor, or null to stop reporting.
+     */
+    public void setNetworkMonitor(NetworkQualityMonitor monitor) {
+        mNetworkMonitor = monitor;
+        mZapAccelerator.setNetworkMonitor(monitor);
+    }
+
+    /**
+     * Wraps a stream URL in a proxy URL and starts a new measurement session for it.
+     *
+     * @param url The original stream (playlist) URL.
+     * @param appKey The app key from {@code window.ividsEndpoints}; embed frames cannot obtain it.
+     * @return The proxy URL to hand to hls.js or the video element, or the original URL if it is not http(s) or
+     *         the key is wrong.
+     */
+    @JavascriptInterface
+    public String getProxyUrl(String url, String appKey) {
+        if (url == null || !(url.startsWith("http://") || url.startsWith("https://"))) {
+            return url;
+        }
+        if (!LocalEndpoint.isAppKey(appKey)) {
+            Log.w(TAG, "Refusing a proxy session without the app key");
+            return url;
+        }
+        String token = LocalEndpoint.newToken();
+        synchronized (mSessions) {
+            mSessions.put(token, new Session(mNextSessionNumber++));
+            mLastSessionToken = token;
+            mSessionsStarted++;
+        }
+        return prefixFor(token) + encode(url);
+    }
+
+    /**
+     * Sets the channels adjacent to the playing one, whose start is then kept warm for a fast zap.
+     *
+     * @param previousUrl The stream URL of the previous channel, or an empty string.
+     * @param nextUrl The stream URL of the next channel, or an empty string. Both empty stops warming.
+     */
+    @JavascriptInterface
+    public void setZapNeighbors(String previousUrl, String nextUrl) {
+        List<String> neighbors = new ArrayList<>();
+        for (String url : new String[]{previousUrl, nextUrl}) {
+            if (url != null && (url.startsWith("http://") || url.startsWith("https://")) && !neighbors.contains(url)) {
+                neighbors.add(url);
+            }
+        }
+        mZapAccelerator.setNeighbors(neighbors);
+    }
+
+    /**
+     * Marks the moment the user switched channels; the zap time runs until {@link #onFirstFrame()}.
+     */
+    @JavascriptInterface
+    public void onZapStarted() {
+        synchronized (mSessions) {
+            mZapStartedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * Records the zap time when the player renders its first frame, split by whether the channel started warm.
+     */
+    @JavascriptInterface
+    public void onFirstFrame() {
+        synchronized (mSessions) {
+            if (mZapStartedAt == 0) {
+                return;
+            }
+            long elapsed = SystemClock.elapsedRealtime() - mZapStartedAt;
+            mZapStartedAt = 0;
+            Session session = mLastSessionToken != null ? mSessions.get(mLastSessionToken) : null;
+            boolean warm = session != null && session.warmHits > 0;
+            mZapTime.record(elapsed);
+            (warm ? mZapTimeWarm : mZapTimeCold).record(elapsed);
+            Log.d(TAG, "Zap to first frame took " + elapsed + " ms (" + (warm ? "warm" : "cold") + ")");
+        }
+    }
+
+    /**
+     * Stops warming adjacent channels.
+     */
+    public void shutdown() {
+        mZapAccelerator.shutdown();
+    }
+
+    /**
+     * Returns the channel start statistics of this app session.
+     *
+     * @return A JSON string: {sessions, succeeded, successRate, timeToFirstSegment, zapTime, zapTimeWarm, zapTimeCold:
+     *         histograms, warm: {hits, warmedBytes, cacheBytes}}.
+     */
+    @JavascriptInterface
+    public String getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            synchronized (mSessions) {
+                stats.put("sessions", mSessionsStarted);
+                stats.put("succeeded", mSessionsSucceeded);
+                stats.put("successRate", mSessionsStarted > 0 ? (double) mSessionsSucceeded / mSessionsStarted : 0);
+            }
+            stats.put("timeToFirstSegment", mTimeToFirstSegment.toJson());
+            stats.put("zapTime", mZapTime.toJson());
+            stats.put("zapTimeWarm", mZapTimeWarm.toJson());
+            stats.put("zapTimeCold", mZapTimeCold.toJson());
+            JSONObject warm = new JSONObject();
+            warm.put("hits", mZapAccelerator.getHits());
+            warm.put("warmedBytes", mZapAccelerator.getWarmedBytes());
+            warm.put("cacheBytes", mZapAccelerator.getCacheBytes());
+            stats.put("warm", warm);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing proxy stats", e);
+        }
+        return stats.toString();
+    }
+
+    /**
+     * @param url A request URL.
+     * @return true if the URL targets the virtual proxy endpoint.
+     */
+    public boolean canHandle(Uri url) {
+        return url != null && PROXY_HOST.equals(url.getHost());
+    }
+
+    /**
+     * Serves a proxied request. Called from WebViewClient.shouldInterceptRequest on a WebView background thread,
+     * so blocking network I/O is allowed here.
+     *
+     * @param request The intercepted request whose URL targets the proxy endpoint.
+     * @return The proxied response; upstream failures are mapped to error status codes, and requests without the
+     *         token of a live session get a 403.
+     */
+    public WebResourceResponse handle(WebResourceRequest request) {
+        Uri proxyUri = request.getUrl();
+        String target = proxyUri.getQueryParameter("url");
+        String token = proxyUri.getQueryParameter("sid");
+        int refusal = refusalStatus(target, token);
+        if (refusal == 403) {
+            Log.w(TAG, "Refusing proxy request without a live session token");
+            return errorResponse(request, 403, "Forbidden");
+        } else if (refusal != 0) {
+            return errorResponse(request, refusal, "Bad Request");
+        }
+
+        String range = LocalEndpoint.header(request.getRequestHeaders(), "Range");
+        if (range == null) {
+            ZapAccelerator.Entry warm = mZapAccelerator.take(target);
+            if (warm != null) {
+                return warmResponse(request, warm, token);
+            }
+        }
+
+        HttpURLConnection conn = null;
+        long requestStart = SystemClock.elapsedRealtime();
+        try {
+            conn = openUpstream(target, range);
+            int status = conn.getResponseCode();
+            if (status >= 400) {
+                Log.w(TAG, "Upstream returned " + status + " for " + target);
+                String reason = conn.getResponseMessage();
+                conn.disconnect();
+                return errorResponse(request, status, reason);
+            }
+
+            String contentType = conn.getContentType();
+            String finalUrl = conn.getURL().toString();
+            Map<String, String> headers = LocalEndpoint.corsHeaders(request);
+            if (HlsManifestRewriter.isManifest(conn.getURL().getPath(), contentType)) {
+                HlsManifestRewriter rewriter = new HlsManifestRewriter(finalUrl, prefixFor(token));
+                headers.put("Cache-Control", "no-store");
+                InputStream body = rewriter.rewritingStream(new DisconnectingInputStream(conn), StandardCharsets.UTF_8);
+                return new WebResourceResponse("application/vnd.apple.mpegurl", "utf-8", 200, "OK", headers, body);
+            }
+
+            String contentLength = conn.getHeaderField("Content-Length");
+            if (contentLength != null) {
+                headers.put("Content-Length", contentLength);
+            }
+            String contentRange = conn.getHeaderField("Content-Range");
+            if (contentRange != null) {
+                headers.put("Content-Range", contentRange);
+            }
+            String mimeType = contentType != null ? contentType.split(";")[0].trim() : "application/octet-stream";
+            InputStream body = new SegmentInputStream(conn, token);
+            NetworkQualityMonitor monitor = mNetworkMonitor;
+            if (monitor != null) {
+                body = monitor.measure(body, requestStart);
+            }
+            return new WebResourceResponse(mimeType, null, status == 206 ? 206 : 200,
+                    status == 206 ? "Partial Content" : "OK", headers, body);
+        } catch (IOException e) {
+            Log.e(TAG, "Proxy request failed for " + target, e);
+            if (conn != null) {
+                conn.disconnect();
+            }
+            return errorResponse(request, 502, "Bad Gateway");
+        }
+    }
+
+    /**
+     * Opens an upstream connection with the proxy's timeouts and User-Agent.
+     *
+     * @param url The upstream URL.
+     * @param range The Range header to forward, or null.
+     * @return The connection; the request is sent on the first response accessor call.
+     * @throws IOException If the URL is invalid or the connection cannot be created.
+     */
+    HttpURLConnection openUpstream(String url, String range) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+        conn.setInstanceFollowRedirects(true);
+        conn.setRequestProperty("User-Agent", DEFAULT_USER_AGENT);
+        conn.setRequestProperty("Accept", "*/*");
+        if (range != null) {
+            conn.setRequestProperty("Range", range);
+        }
+        return conn;
+    }
+
+    /**
+     * Serves a response warmed by the zap accelerator; playlists are rewritten for the requesting session.
+     */
+    private WebResourceResponse warmResponse(WebResourceRequest request, ZapAccelerator.Entry warm, String token) {
+        synchronized (mSessions) {
+            Session session = mSessions.get(token);
+            if (session != null) {
+                session.warmHits++;
+            }
+        }
+        Map<String, String> headers = LocalEndpoint.corsHeaders(request);
+        if (HlsManifestRewriter.isManifest(Uri.parse(warm.finalUrl).getPath(), warm.contentType)) {
+            HlsManifestRewriter rewriter = new HlsManifestRewriter(warm.finalUrl, prefixFor(token));
+            headers.put("Cache-Control", "no-store");
+            InputStream body = rewriter.rewritingStream(new ByteArrayInputStream(warm.body), StandardCharsets.UTF_8);
+            return new WebResourceResponse("application/vnd.apple.mpegurl", "utf-8", 200, "OK", headers, body);
+        }
+        headers.put("Content-Length", String.valueOf(warm.body.length));
+        String mimeType = warm.contentType != null ? warm.contentType.split(";")[0].trim() : "application/octet-stream";
+        onFirstSegmentBytes(token);
+        return new WebResourceResponse(mimeType, null, 200, "OK", headers, new ByteArrayInputStream(warm.body));
+    }
+
+    /**
+     * Records the first segment delivered for a session as its time-to-first-segment.
+     */
+    private void onFirstSegmentBytes(String token) {
+        synchronized (mSessions) {
+            Session session = mSessions.get(token);
+            if (session == null || session.firstSegmentServed) {
+                return;
+            }
+            session.firstSegmentServed = true;
+            mSessionsSucceeded++;
+            long elapsed = SystemClock.elapsedRealtime() - session.startedAt;
+            mTimeToFirstSegment.record(elapsed);
+            Log.d(TAG, "Session " + session.number + " served its first segment after " + elapsed + " ms");
+        }
+    }
+
+    private static String prefixFor(String token) {
+        return PROXY_ENDPOINT + "?sid=" + token + "&url=";
+    }
+
+    /**
+     * @param target The upstream URL of a proxy request.
+     * @param token The session token of the request.
+     * @return 0 if the request may be served, 403 without the token of a live session, 400 for a missing or
+     *         non-http(s) target.
+     */
+    int refusalStatus(String target, String token) {
+        if (!isLiveSession(token)) {
+            return 403;
+        }
+        if (target == null || !(target.startsWith("http://") || target.startsWith("https://"))) {
+            return 400;
+        }
+        return 0;
+    }
+
+    private boolean isLiveSession(String token) {
+        if (token == null) {
+            return false;
+        }
+        synchronized (mSessions) {
+            return mSessions.containsKey(token);
+        }
+    }
+
+    private static WebResourceResponse errorResponse(WebResourceRequest request, int status, String reason) {
+        // WebResourceResponse rejects 3xx codes and empty reason phrases.
+        int code = status >= 300 && status < 400 ? 502 : status;
+        String phrase = reason == null || reason.trim().isEmpty() ? "Error" : reason;
+        return new WebResourceResponse("text/plain", "utf-8", code, phrase, LocalEndpoint.corsHeaders(request),
+                new ByteArrayInputStream(new byte[0]));
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Upstream body that counts the transferred bytes and disconnects its connection when the WebView closes it.
+     */
+    private class DisconnectingInputStream extends FilterInputStream {
+        private final HttpURLConnection mConnection;
+
+        DisconnectingInputStream(HttpURLConnection connection) throws IOException {
+            super(connection.getInputStream());
+            this.mConnection = connection;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                mUpstreamBytes.inc();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                mUpstreamBytes.add(count);
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                mConnection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Segment body passed straight through from upstream; the first successful read marks the session as started.
+     */
+    private final class SegmentInputStream extends DisconnectingInputStream {
+        private final String mToken;
+        private boolean mReported = false;
+
+        SegmentInputStream(HttpURLConnection connection, String token) throws IOException {
+            super(connection);
+            this.mToken = token;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                report();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                report();
+            }
+            return count;
+        }
+
+        private void report() {
+            if (!mReported) {
+                mReported = true;
+                onFirstSegmentBytes(mToken);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.kenjigames.ivids;
+
+import android.content.Context;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HomeSnapshotStore persists the assembled home screen (hero slides and row lists) when the app goes to the
+ * background and serves it on the next launch, exposed to the WebView as {@code AndroidSnapshot}. The file is
+ * read on a background thread started at the beginning of MainActivity.onCreate, so it is in memory before the
+ * WebView asks for it and the first paint shows real content while the live requests are still running.
+ * The time until the first real content (from the snapshot or the network) is added to the startup trace.
+ */
+public class HomeSnapshotStore {
+    private static final String TAG = "HomeSnapshotStore";
+    private static final String FILE_NAME = "home-snapshot.json.gz";
+    /** How long the WebView waits for the preload; longer than reading a snapshot, shorter than a network request. */
+    private static final long LOAD_WAIT_MS = 300;
+    private static final int MAX_SNAPSHOT_BYTES = 1024 * 1024;
+
+    private final File mFile;
+    private final StartupWarmup mStartupWarmup;
+    private final CountDownLatch mPreloaded = new CountDownLatch(1);
+    private final LatencyHistogram mSnapshotContentMs = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+    private final LatencyHistogram mNetworkContentMs = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+    private volatile String mSnapshot;
+    private String mFirstContentSource;
+    private long mFirstContentMs = -1;
+    private long mLoadMs = -1;
+
+    /**
+     * Constructs a new HomeSnapshotStore instance.
+     *
+     * @param context The context whose files directory holds the snapshot.
+     * @param startupWarmup The startup trace the first content is recorded in.
+     */
+    public HomeSnapshotStore(Context context, StartupWarmup startupWarmup) {
+        this.mFile = new File(context.getFilesDir(), FILE_NAME);
+        this.mStartupWarmup = startupWarmup;
+        String name = "ivids_cold_start_content_seconds";
+        String help = "Activity start until the home screen shows real content, by where the content came from.";
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.histogram(name, help, mSnapshotContentMs, "source", "snapshot");
+        metrics.histogram(name, help, mNetworkContentMs, "source", "network");
+    }
+
+    /**
+     * Reads the snapshot on a background thread. Returns immediately.
+     */
+    public void preload() {
+        Thread thread = new Thread(() -> {
+            long start = mStartupWarmup.elapsedMs();
+            try {
+                if (mFile.exists()) {
+                    mSnapshot = read(mFile);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Discarding unreadable home snapshot", e);
+                if (!mFile.delete()) {
+                    Log.w(TAG, "Could not delete " + mFile.getName());
+                }
+            } finally {
+                synchronized (this) {
+                    mLoadMs = mStartupWarmup.elapsedMs() - start;
+                }
+                mPreloaded.countDown();
+            }
+        }, "HomeSnapshotLoad");
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Returns the snapshot saved by the previous session. The WebView checks account, language and age itself.
+     *
+     * @return The snapshot JSON, or an empty string if there is none.
+     */
+    @JavascriptInterface
+    public String load() {
+        try {
+            if (!mPreloaded.await(LOAD_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Home snapshot not read in time");
+                return "";
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        }
+        String snapshot = mSnapshot;
+        return snapshot != null ? snapshot : "";
+    }
+
+    /**
+     * Replaces the snapshot. Called by the WebView when the app goes to the background.
+     *
+     * @param json The snapshot JSON.
+     */
+    @JavascriptInterface
+    public void save(String json) {
+        if (json == null || json.isEmpty() || json.length() > MAX_SNAPSHOT_BYTES) {
+            return;
+        }
+        mSnapshot = json;
+        File temp = new File(mFile.getPath() + ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(new FileOutputStream(temp))) {
+                out.write(json.getBytes(StandardCharsets.UTF_8));
+            }
+            if (!temp.renameTo(mFile)) {
+                throw new IOException("Could not replace " + mFile.getName());
+            }
+            Log.d(TAG, "Saved home snapshot (" + mFile.length() + " bytes)");
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving home snapshot", e);
+        }
+    }
+
+    /**
+     * Records the first real content of this launch; later reports are ignored.
+     *
+     * @param source "snapshot" or "network".
+     */
+    @JavascriptInterface
+    public void reportFirstContent(String source) {
+        long elapsed = mStartupWarmup.elapsedMs();
+        synchronized (this) {
+            if (mFirstContentSource != null) {
+                return;
+            }
+            mFirstContentSource = "snapshot".equals(source) ? "snapshot" : "network";
+            mFirstContentMs = elapsed;
+        }
+        ("snapshot".equals(source) ? mSnapshotContentMs : mNetworkContentMs).record(elapsed);
+        mStartupWarmup.mark("realContent");
+        Log.d(TAG, "First real content from " + source + " at +" + elapsed + " ms");
+    }
+
+    /**
+     * Returns the cold start figures of this launch.
+     *
+     * @return A JSON string: {snapshotBytes, loadMs, firstContentMs, firstContentSource}.
+     */
+    @JavascriptInterface
+    public synchronized String getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("snapshotBytes", mFile.exists() ? mFile.length() : 0);
+            stats.put("loadMs", mLoadMs);
+            stats.put("firstContentMs", mFirstContentMs);
+            stats.put("firstContentSource", mFirstContentSource != null ? mFirstContentSource : "");
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing snapshot stats", e);
+        }
+        return stats.toString();
+    }
+
+    private static String read(File file) throws IOException {
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                if (out.size() > MAX_SNAPSHOT_BYTES) {
+                    throw new IOException("Snapshot too large");
+                }
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.kenjigames.ivids;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram records millisecond latencies into fixed buckets so percentiles can be reported
+ * without keeping every sample. Used for the diagnostics shown on the settings page and the metrics export.
+ * Each histogram has its own bucket bounds, so frame-scale latencies and multi-second network waits both
+ * keep their resolution. Recording is lock-free so it can be called from the main thread and request
+ * threads; readers see a snapshot that may lag concurrent recordings by a sample.
+ */
+public class LatencyHistogram {
+    /** Bounds for latencies measured in frames: input, main thread dispatches, injections. */
+    static final long[] FRAME_BOUNDS_MS = {4, 8, 16, 33, 50, 100, 200, 500, 1000};
+    /** Bounds for waits on the network or a page: roughly doubling from 50 ms up to one minute. */
+    static final long[] NETWORK_BOUNDS_MS = {50, 100, 250, 500, 1000, 2000, 4000, 8000, 15000, 30000, 60000};
+
+    /** Inclusive upper bounds of the buckets in milliseconds; the last bucket collects everything above. */
+    private final long[] mBoundsMs;
+    private final AtomicLongArray mCounts;
+    private final AtomicLong mTotalCount = new AtomicLong();
+    private final AtomicLong mSumMs = new AtomicLong();
+    private final AtomicLong mMaxMs = new AtomicLong();
+
+    /**
+     * Constructs a histogram with {@link #FRAME_BOUNDS_MS}.
+     */
+    public LatencyHistogram() {
+        this(FRAME_BOUNDS_MS);
+    }
+
+    /**
+     * Constructs a histogram with custom buckets.
+     *
+     * @param boundsMs Strictly increasing inclusive upper bounds in milliseconds; an overflow bucket is added.
+     */
+    public LatencyHistogram(long[] boundsMs) {
+        for (int i = 1; i < boundsMs.length; i++) {
+            if (boundsMs[i] <= boundsMs[i - 1]) {
+                throw new IllegalArgumentException("Bucket bounds must be strictly increasing");
+            }
+        }
+        this.mBoundsMs = boundsMs.clone();
+        this.mCounts = new AtomicLongArray(boundsMs.length + 1);
+    }
+
+    /**
+     * Records a single latency sample.
+     *
+     * @param latencyMs The measured latency in milliseconds. Negative values are ignored.
+     */
+    public void record(long latencyMs) {
+        if (latencyMs < 0) {
+            return;
+        }
+        int bucket = 0;
+        while (bucket < mBoundsMs.length && latencyMs > mBoundsMs[bucket]) {
+            bucket++;
+        }
+        mCounts.incrementAndGet(bucket);
+        mTotalCount.incrementAndGet();
+        mSumMs.addAndGet(latencyMs);
+        long max = mMaxMs.get();
+        while (latencyMs > max && !mMaxMs.compareAndSet(max, latencyMs)) {
+            max = mMaxMs.get();
+        }
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the given percentile.
+     *
+     * @param percentile The percentile between 0 and 100.
+     * @return The bucket upper bound in milliseconds (or the observed maximum for the overflow bucket), 0 if empty.
+     */
+    public long percentileMs(double percentile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long max = mMaxMs.get();
+        long threshold = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= threshold) {
+                return i < mBoundsMs.length ? Math.min(mBoundsMs[i], max) : max;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Clears all recorded samples. Samples recorded concurrently may be partially kept.
+     */
+    public void reset() {
+        for (int i = 0; i < mCounts.length(); i++) {
+            mCounts.set(i, 0);
+        }
+        mTotalCount.set(0);
+        mSumMs.set(0);
+        mMaxMs.set(0);
+    }
+
+    /**
+     * @return A copy of the per-bucket (non-cumulative) counts; the last entry is the overflow bucket.
+     */
+    long[] getBucketCounts() {
+        long[] counts = new long[mCounts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = mCounts.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * @return A copy of the inclusive bucket upper bounds in milliseconds, without the overflow bucket.
+     */
+    long[] getBoundsMs() {
+        return mBoundsMs.clone();
+    }
+
+    long getCount() {
+        return mTotalCount.get();
+    }
+
+    long getSumMs() {
+        return mSumMs.get();
+    }
+
+    /**
+     * Serializes the histogram for the WebView.
+     *
+     * @return A JSON object with count, meanMs, maxMs, p50Ms, p95Ms and the raw buckets.
+     */
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        try {
+            long count = mTotalCount.get();
+            json.put("count", count);
+            json.put("meanMs", count == 0 ? 0 : mSumMs.get() / count);
+            json.put("maxMs", mMaxMs.get());
+            json.put("p50Ms", percentileMs(50));
+            json.put("p95Ms", percentileMs(95));
+            long[] counts = getBucketCounts();
+            JSONArray buckets = new JSONArray();
+            for (int i = 0; i < counts.length; i++) {
+                JSONObject bucket = new JSONObject();
+                bucket.put("leMs", i < mBoundsMs.length ? mBoundsMs[i] : -1);
+                bucket.put("count", counts[i]);
+                buckets.put(bucket);
+            }
+            json.put("buckets", buckets);
+        } catch (JSONException e) {
+            // Keys are constant and values are numeric; this cannot happen in practice
+        }
+        return json;
+    }
+}
@@ -0,0 +1,131 @@
+package com.kenjigames.ivids;
+
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebView;
+
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * LocalEndpoint holds the access rules shared by the virtual endpoints that AdBlockingWebViewClient answers natively
+ * ({@link HlsProxy}, {@link LogoThumbnailService}). These endpoints fetch arbitrary upstream URLs, so they must not
+ * be usable by embed pages: every endpoint URL carries an unguessable token, and CORS headers are only sent to the
+ * app page, never to other origins.
+ * <p>
+ * The bridges that issue tokens are visible to every frame, so they only do so for callers presenting the app key.
+ * The key is handed out over a web message channel ({@code window.ividsEndpoints}) that the WebView only injects
+ * into frames of the app origin and whose messages carry the sender's origin as verified by the WebView; embed
+ * pages never see the channel and cannot obtain a token.
+ */
+final class LocalEndpoint {
+    private static final String TAG = "LocalEndpoint";
+
+    /**
+     * The app page is loaded from file:///android_asset/. Sandboxed and opaque frames send the origin "null", so
+     * it is never treated as the app.
+     */
+    static final String APP_ORIGIN = "file://";
+    private static final String CHANNEL_OBJECT = "ividsEndpoints";
+    private static final SecureRandom RANDOM = new SecureRandom();
+    /** Key of this process, presented by the app page when it asks a bridge for an endpoint token. */
+    private static final String APP_KEY = newToken();
+
+    private LocalEndpoint() {
+    }
+
+    /**
+     * @return A new random 128-bit token in hex.
+     */
+    static String newToken() {
+        byte[] bytes = new byte[16];
+        RANDOM.nextBytes(bytes);
+        StringBuilder token = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            token.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return token.toString();
+    }
+
+    /**
+     * Registers the channel that hands the app key to the app page. Without web message listener support the key
+     * is never issued and the native endpoints stay unused; the page then loads streams and logos directly.
+     *
+     * @param webView The WebView hosting the app page.
+     */
+    static void installAppChannel(WebView webView) {
+        if (!WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_LISTENER)) {
+            Log.w(TAG, "Web message listeners unsupported; native endpoints are disabled");
+            return;
+        }
+        WebViewCompat.addWebMessageListener(webView, CHANNEL_OBJECT, Collections.singleton(APP_ORIGIN),
+                (view, message, sourceOrigin, isMainFrame, replyProxy) -> {
+                    String key = keyFor(sourceOrigin != null ? sourceOrigin.toString() : null);
+                    if (key != null) {
+                        replyProxy.postMessage(key);
+                    } else {
+                        Log.w(TAG, "Refused the app key to " + sourceOrigin);
+                    }
+                });
+    }
+
+    /**
+     * @param sourceOrigin The origin of the frame asking for the key, as reported by the WebView.
+     * @return The app key if the frame belongs to the app page, otherwise null.
+     */
+    static String keyFor(String sourceOrigin) {
+        return APP_ORIGIN.equals(sourceOrigin) ? APP_KEY : null;
+    }
+
+    /**
+     * @param key A key presented to a bridge (may be null).
+     * @return true if it is the app key of this process.
+     */
+    static boolean isAppKey(String key) {
+        return key != null && MessageDigest.isEqual(APP_KEY.getBytes(StandardCharsets.UTF_8),
+                key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builds the CORS headers for a response. Requests without an Origin header (media and image elements) need
+     * none; cross-origin reads are only allowed for the app page.
+     *
+     * @param request The intercepted request.
+     * @return A mutable header map, with Access-Control-Allow-Origin set only for the app origin.
+     */
+    static Map<String, String> corsHeaders(WebResourceRequest request) {
+        Map<String, String> headers = new HashMap<>();
+        String origin = header(request.getRequestHeaders(), "Origin");
+        if (APP_ORIGIN.equals(origin)) {
+            headers.put("Access-Control-Allow-Origin", origin);
+            headers.put("Access-Control-Allow-Methods", "GET, OPTIONS");
+            headers.put("Access-Control-Allow-Headers", "Range");
+            headers.put("Vary", "Origin");
+        }
+        return headers;
+    }
+
+    /**
+     * @param headers Request headers (may be null).
+     * @param name The header name, matched case-insensitively.
+     * @return The header value, or null if absent.
+     */
+    static String header(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+}
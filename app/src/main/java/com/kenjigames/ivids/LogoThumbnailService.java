@@ -0,0 +1,485 @@
+package com.kenjigames.ivids;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LogoThumbnailService serves Live TV channel logos as small WebP thumbnails, exposed to the WebView as
+ * {@code AndroidLogos}. Logo URLs are wrapped in a virtual thumbnail URL that AdBlockingWebViewClient routes here.
+ * Each logo is fetched once (with a per-host concurrency limit), downsampled to the requested tile size while
+ * decoding, re-encoded as WebP and stored in a bounded LRU disk cache; later requests are served from disk.
+ * Logos that fail definitively (HTTP 4xx, too large, not an image) are negatively cached so scrolling does not
+ * retry dead URLs; timeouts and other transient errors are retried on the next request.
+ * The endpoint path carries a random token that {@link #getEndpoint(String)} only hands out for the app key, so
+ * embed pages cannot use the service to fetch arbitrary URLs (see {@link LocalEndpoint}).
+ */
+public class LogoThumbnailService {
+    private static final String TAG = "LogoThumbnailService";
+
+    /** Virtual thumbnail endpoint; the .invalid TLD guarantees it never reaches the network. */
+    static final String THUMBNAIL_HOST = "logo.ivids.invalid";
+    /** Requested sizes are rounded up to a multiple of this, so nearby sizes share cache entries. */
+    private static final int SIZE_STEP = 32;
+    private static final int MIN_SIZE = 32;
+    private static final int MAX_SIZE = 256;
+    private static final int WEBP_QUALITY = 80;
+    /** Logos larger than this are not downloaded. */
+    private static final int MAX_SOURCE_BYTES = 8 * 1024 * 1024;
+    private static final long DISK_CACHE_BYTES = 24L * 1024 * 1024;
+    /** Parallel downloads allowed per logo host. */
+    private static final int PER_HOST_CONCURRENCY = 2;
+    /**
+     * How long a request waits for a download slot of its host. Requests run on the WebView's shared request
+     * threads, so a slow host must not hold them; the page shows its fallback icon and retries on the next render.
+     */
+    private static final long PERMIT_TIMEOUT_MS = 2000;
+    /** Idle per-host permits kept; a playlist can reference logos on hundreds of hosts. */
+    private static final int MAX_TRACKED_HOSTS = 64;
+    /** How long a failed logo URL is not retried. */
+    private static final long NEGATIVE_TTL_MS = 6 * 60 * 60 * 1000L;
+    private static final int NEGATIVE_CACHE_BYTES = 256 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 6000;
+    private static final int READ_TIMEOUT_MS = 10000;
+
+    private final File mCacheDir;
+    /** Path of the thumbnail endpoint for this app session; requests for any other path are refused. */
+    private final String mEndpointPath = "/thumb/" + LocalEndpoint.newToken();
+    /** Access-ordered index of cached thumbnail files and their sizes, loaded lazily from disk. */
+    private final LinkedHashMap<String, Long> mDiskIndex = new LinkedHashMap<>(64, 0.75f, true);
+    /** Permits by host, least recently used first; only idle permits are evicted. Guarded by itself. */
+    private final LinkedHashMap<String, Semaphore> mHostPermits = new LinkedHashMap<String, Semaphore>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Semaphore> eldest) {
+            return size() > MAX_TRACKED_HOSTS && eldest.getValue().availablePermits() == PER_HOST_CONCURRENCY;
+        }
+    };
+    private final Map<String, Object> mInFlight = new HashMap<>();
+    private final SizedLruCache<String, Long> mNegativeCache;
+    private final AtomicLong mSourceBytes = new AtomicLong();
+    private final AtomicLong mServedBytes = new AtomicLong();
+    private boolean mIndexLoaded = false;
+    private long mDiskBytes = 0;
+
+    /**
+     * Constructs a new LogoThumbnailService instance.
+     *
+     * @param context The context used to locate the cache directory and the cache registry.
+     */
+    public LogoThumbnailService(Context context) {
+        this.mCacheDir = new File(context.getCacheDir(), "logos");
+        this.mNegativeCache = new SizedLruCache<>(NEGATIVE_CACHE_BYTES, (url, expiry) -> url.length() * 2 + 32);
+        CacheRegistry.getInstance(context).register("logo-negative", mNegativeCache);
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.counterFunction(MetricsRegistry.UPSTREAM_BYTES, MetricsRegistry.UPSTREAM_BYTES_HELP, mSourceBytes::get, "component", "logos");
+        metrics.counterFunction("ivids_logo_served_bytes_total", "Thumbnail bytes served to the WebView.", mServedBytes::get);
+    }
+
+    /**
+     * @param appKey The app key from {@code window.ividsEndpoints}; embed frames cannot obtain it.
+     * @return The endpoint logo URLs are wrapped in: {@code <endpoint>?s=<px>&url=<encoded logo URL>}. It includes
+     *         this app session's token. Null if the key is wrong.
+     */
+    @JavascriptInterface
+    public String getEndpoint(String appKey) {
+        if (!LocalEndpoint.isAppKey(appKey)) {
+            Log.w(TAG, "Refusing the thumbnail endpoint without the app key");
+            return null;
+        }
+        return "https://" + THUMBNAIL_HOST + mEndpointPath;
+    }
+
+    /**
+     * Returns transfer statistics of this app session.
+     *
+     * @return A JSON string: {sourceBytes, servedBytes, diskBytes, negativeCacheBytes}.
+     */
+    @JavascriptInterface
+    public String getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("sourceBytes", mSourceBytes.get());
+            stats.put("servedBytes", mServedBytes.get());
+            synchronized (mDiskIndex) {
+                stats.put("diskBytes", mDiskBytes);
+            }
+            stats.put("negativeCacheBytes", mNegativeCache.estimateSizeBytes());
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing logo stats", e);
+        }
+        return stats.toString();
+    }
+
+    /**
+     * @param url A request URL.
+     * @return true if the URL targets the virtual thumbnail endpoint.
+     */
+    public boolean canHandle(Uri url) {
+        return url != null && THUMBNAIL_HOST.equals(url.getHost());
+    }
+
+    /**
+     * Serves a thumbnail request. Called from WebViewClient.shouldInterceptRequest on a WebView background thread.
+     *
+     * @param request The intercepted request whose URL targets the thumbnail endpoint.
+     * @return The WebP thumbnail, a 404 response if the logo cannot be loaded (the page then shows its fallback icon),
+     *         or a 403 response if the request does not carry the endpoint token.
+     */
+    public WebResourceResponse handle(WebResourceRequest request) {
+        Uri uri = request.getUrl();
+        if (!mEndpointPath.equals(uri.getPath())) {
+            Log.w(TAG, "Refusing thumbnail request without the endpoint token");
+            return errorResponse(request, 403, "Forbidden");
+        }
+        String source = uri.getQueryParameter("url");
+        if (source == null || !(source.startsWith("http://") || source.startsWith("https://"))) {
+            return errorResponse(request, 404, "Not Found");
+        }
+        int size = normalizeSize(uri.getQueryParameter("s"));
+        String key = cacheKey(source, size);
+
+        File cached = lookup(key);
+        if (cached != null) {
+            return serve(request, cached);
+        }
+        if (isNegative(source)) {
+            return errorResponse(request, 404, "Not Found");
+        }
+
+        Object lock;
+        synchronized (mInFlight) {
+            lock = mInFlight.get(key);
+            if (lock == null) {
+                lock = new Object();
+                mInFlight.put(key, lock);
+            }
+        }
+        try {
+            synchronized (lock) {
+                // Another request may have produced the thumbnail while this one waited.
+                cached = lookup(key);
+                if (cached == null && !isNegative(source)) {
+                    cached = produce(source, size, key);
+                }
+            }
+        } finally {
+            synchronized (mInFlight) {
+                mInFlight.remove(key);
+            }
+        }
+        return cached != null ? serve(request, cached) : errorResponse(request, 404, "Not Found");
+    }
+
+    /**
+     * Downloads, downsamples and stores one thumbnail.
+     *
+     * @return The cache file, or null if the logo could not be loaded. Only definitive failures are negatively cached.
+     */
+    private File produce(String source, int size, String key) {
+        long start = SystemClock.elapsedRealtime();
+        byte[] original;
+        try {
+            original = download(source);
+        } catch (IOException e) {
+            Log.w(TAG, "Error downloading logo " + source + ": " + e.getMessage());
+            return null;
+        }
+        Bitmap bitmap = original != null ? decodeScaled(original, size) : null;
+        if (bitmap == null) {
+            markNegative(source);
+            return null;
+        }
+        File target = new File(mCacheDir, key);
+        File temp = new File(mCacheDir, key + ".tmp");
+        try {
+            if (!mCacheDir.exists() && !mCacheDir.mkdirs()) {
+                throw new IOException("Cannot create " + mCacheDir);
+            }
+            try (OutputStream out = new FileOutputStream(temp)) {
+                bitmap.compress(webpFormat(), WEBP_QUALITY, out);
+            }
+            if (!temp.renameTo(target)) {
+                throw new IOException("Cannot move thumbnail into place");
+            }
+            store(key, target.length());
+            Log.d(TAG, "Thumbnail " + size + "px for " + source + ": " + original.length + " -> " + target.length()
+                    + " bytes in " + (SystemClock.elapsedRealtime() - start) + " ms");
+            return target;
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing thumbnail for " + source, e);
+            temp.delete();
+            return null;
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Downloads a logo with the per-host concurrency limit.
+     *
+     * @return The logo bytes, or null on a definitive failure (HTTP 4xx or a body over {@link #MAX_SOURCE_BYTES}).
+     * @throws IOException On transient failures: timeouts, no free download slot for the host, connection errors,
+     *                     HTTP 5xx or interruption.
+     */
+    private byte[] download(String source) throws IOException {
+        String host = Uri.parse(source).getHost();
+        Semaphore permits = permitsFor(host != null ? host.toLowerCase(Locale.ROOT) : "");
+        try {
+            if (!permits.tryAcquire(PERMIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new IOException("No download slot for " + host + " within " + PERMIT_TIMEOUT_MS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a download slot");
+        }
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) new URL(source).openConnection();
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setInstanceFollowRedirects(true);
+            int status = conn.getResponseCode();
+            if (status >= 500) {
+                throw new IOException("HTTP " + status);
+            }
+            if (status >= 400) {
+                Log.w(TAG, "Logo returned HTTP " + status + ": " + source);
+                return null;
+            }
+            if (conn.getContentLength() > MAX_SOURCE_BYTES) {
+                Log.w(TAG, "Logo too large (" + conn.getContentLength() + " bytes): " + source);
+                return null;
+            }
+            try (InputStream in = conn.getInputStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(conn.getContentLength(), 16 * 1024));
+                byte[] buffer = new byte[16 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    if (out.size() + read > MAX_SOURCE_BYTES) {
+                        Log.w(TAG, "Logo exceeded " + MAX_SOURCE_BYTES + " bytes: " + source);
+                        return null;
+                    }
+                    out.write(buffer, 0, read);
+                }
+                mSourceBytes.addAndGet(out.size());
+                return out.toByteArray();
+            }
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+            permits.release();
+        }
+    }
+
+    /**
+     * Decodes an image so that it fits in a size x size box, subsampling while decoding so the full-resolution
+     * bitmap is never allocated.
+     */
+    private static Bitmap decodeScaled(byte[] data, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= size && options.outHeight / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap decoded = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (decoded == null) {
+            return null;
+        }
+        float scale = Math.min(1f, (float) size / Math.max(decoded.getWidth(), decoded.getHeight()));
+        if (scale >= 1f) {
+            return decoded;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded,
+                Math.max(1, Math.round(decoded.getWidth() * scale)),
+                Math.max(1, Math.round(decoded.getHeight() * scale)), true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webpFormat() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+    }
+
+    private Semaphore permitsFor(String host) {
+        synchronized (mHostPermits) {
+            Semaphore permits = mHostPermits.get(host);
+            if (permits == null) {
+                permits = new Semaphore(PER_HOST_CONCURRENCY);
+                mHostPermits.put(host, permits);
+            }
+            return permits;
+        }
+    }
+
+    private boolean isNegative(String source) {
+        Long expiry = mNegativeCache.get(source);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry < SystemClock.elapsedRealtime()) {
+            mNegativeCache.remove(source);
+            return false;
+        }
+        return true;
+    }
+
+    private void markNegative(String source) {
+        mNegativeCache.putAndReport(source, SystemClock.elapsedRealtime() + NEGATIVE_TTL_MS);
+    }
+
+    /**
+     * @return The cached thumbnail file for a key, or null if it is not on disk.
+     */
+    private File lookup(String key) {
+        synchronized (mDiskIndex) {
+            loadIndexLocked();
+            if (mDiskIndex.get(key) == null) {
+                return null;
+            }
+        }
+        File file = new File(mCacheDir, key);
+        if (!file.exists()) {
+            synchronized (mDiskIndex) {
+                Long removed = mDiskIndex.remove(key);
+                if (removed != null) {
+                    mDiskBytes -= removed;
+                }
+            }
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Adds a stored thumbnail to the index and evicts least recently used files beyond the disk budget.
+     */
+    private void store(String key, long length) {
+        synchronized (mDiskIndex) {
+            loadIndexLocked();
+            Long previous = mDiskIndex.put(key, length);
+            mDiskBytes += length - (previous != null ? previous : 0);
+            Iterator<Map.Entry<String, Long>> iterator = mDiskIndex.entrySet().iterator();
+            while (mDiskBytes > DISK_CACHE_BYTES && iterator.hasNext()) {
+                Map.Entry<String, Long> eldest = iterator.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                new File(mCacheDir, eldest.getKey()).delete();
+                mDiskBytes -= eldest.getValue();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the in-memory LRU index from the cache directory, oldest files first.
+     */
+    private void loadIndexLocked() {
+        if (mIndexLoaded) {
+            return;
+        }
+        mIndexLoaded = true;
+        File[] files = mCacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                file.delete();
+                continue;
+            }
+            mDiskIndex.put(file.getName(), file.length());
+            mDiskBytes += file.length();
+        }
+    }
+
+    private WebResourceResponse serve(WebResourceRequest request, File file) {
+        try {
+            Map<String, String> headers = LocalEndpoint.corsHeaders(request);
+            headers.put("Cache-Control", "public, max-age=604800");
+            mServedBytes.addAndGet(file.length());
+            return new WebResourceResponse("image/webp", null, 200, "OK", headers, new FileInputStream(file));
+        } catch (IOException e) {
+            Log.e(TAG, "Error serving thumbnail " + file, e);
+            return errorResponse(request, 404, "Not Found");
+        }
+    }
+
+    private static WebResourceResponse errorResponse(WebResourceRequest request, int status, String reason) {
+        return new WebResourceResponse("text/plain", "utf-8", status, reason, LocalEndpoint.corsHeaders(request),
+                new ByteArrayInputStream(new byte[0]));
+    }
+
+    private static int normalizeSize(String value) {
+        int size = MIN_SIZE;
+        if (value != null) {
+            try {
+                size = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                size = MIN_SIZE;
+            }
+        }
+        size = ((size + SIZE_STEP - 1) / SIZE_STEP) * SIZE_STEP;
+        return Math.max(MIN_SIZE, Math.min(MAX_SIZE, size));
+    }
+
+    private static String cacheKey(String source, int size) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(hash.length * 2 + 8);
+            for (byte b : hash) {
+                key.append(String.format("%02x", b));
+            }
+            return key.append('_').append(size).append(".webp").toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(source.hashCode()) + "_" + size + ".webp";
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.kenjigames.ivids;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 import android.webkit.ConsoleMessage;
 import android.webkit.WebResourceError;
@@ -15,9 +16,9 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.view.WindowCompat;
+import com.kenjigames.ivids.core.AdHostMatcher;
+
 import java.io.ByteArrayInputStream;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * MainActivity is the primary entry point for the IVIDS Android application.
@@ -27,233 +28,26 @@ import java.util.Set;
 public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "MainActivity";
-    private static final Set<String> AD_HOSTS = new HashSet<>();
-    static {
-        AD_HOSTS.add("doubleclick.net");
-        AD_HOSTS.add("admob.com");
-        AD_HOSTS.add("googlesyndication.com");
-        AD_HOSTS.add("google-analytics.com");
-        AD_HOSTS.add("ads.google.com");
-        AD_HOSTS.add("pagead2.googlesyndication.com");
-        AD_HOSTS.add("ad.doubleclick.net");
-        AD_HOSTS.add("googleads.g.doubleclick.net");
-        AD_HOSTS.add("pubads.g.doubleclick.net");
-        AD_HOSTS.add("securepubads.g.doubleclick.net");
-        AD_HOSTS.add("adservice.google.com");
-        AD_HOSTS.add("app-measurement.com");
-        AD_HOSTS.add("inmobi.com");
-        AD_HOSTS.add("mopub.com");
-        AD_HOSTS.add("unity3d.com");
-        AD_HOSTS.add("applovin.com");
-        AD_HOSTS.add("chartboost.com");
-        AD_HOSTS.add("vungle.com");
-        AD_HOSTS.add("startapp.com");
-        AD_HOSTS.add("flurry.com");
-        AD_HOSTS.add("adcolony.com");
-        AD_HOSTS.add("ads.facebook.com");
-        AD_HOSTS.add("analytics.yahoo.com");
-        AD_HOSTS.add("admarvel.com");
-        AD_HOSTS.add("millennialmedia.com");
-        AD_HOSTS.add("supersonicads.com");
-        AD_HOSTS.add("tapjoy.com");
-        AD_HOSTS.add("ironsrc.com");
-        AD_HOSTS.add("fyber.com");
-        AD_HOSTS.add("conversantmedia.com");
-        AD_HOSTS.add("criteo.com");
-        AD_HOSTS.add("taboola.com");
-        AD_HOSTS.add("outbrain.com");
-        AD_HOSTS.add("revcontent.com");
-        AD_HOSTS.add("smaato.com");
-        AD_HOSTS.add("googletagservices.com");
-        AD_HOSTS.add("googletagmanager.com");
-        AD_HOSTS.add("connect.facebook.net");
-        AD_HOSTS.add("adnxs.com");
-        AD_HOSTS.add("openx.net");
-        AD_HOSTS.add("rubiconproject.com");
-        AD_HOSTS.add("advertising.com");
-        AD_HOSTS.add("media.net");
-        AD_HOSTS.add("pubmatic.com");
-        AD_HOSTS.add("yieldmo.com");
-        AD_HOSTS.add("sharethrough.com");
-        AD_HOSTS.add("adsrvr.org");
-        AD_HOSTS.add("2mdn.net");
-        AD_HOSTS.add("yandex.ru");
-        AD_HOSTS.add("scorecardresearch.com");
-        AD_HOSTS.add("amazon-adsystem.com");
-        AD_HOSTS.add("casalemedia.com");
-        AD_HOSTS.add("contextweb.com");
-        AD_HOSTS.add("tribalfusion.com");
-        AD_HOSTS.add("quantserve.com");
-        AD_HOSTS.add("mathtag.com");
-        AD_HOSTS.add("bidswitch.net");
-        AD_HOSTS.add("openx.com");
-        AD_HOSTS.add("an.yandex.ru");
-        AD_HOSTS.add("imasdk.googleapis.com");
-        AD_HOSTS.add("adroll.com");
-        AD_HOSTS.add("rlcdn.com");
-        AD_HOSTS.add("ads.yahoo.com");
-        AD_HOSTS.add("ads.twitter.com");
-        AD_HOSTS.add("ads.linkedin.com");
-        AD_HOSTS.add("ads.pinterest.com");
-        AD_HOSTS.add("ads.snapchat.com");
-        AD_HOSTS.add("ads.tiktok.com");
-        AD_HOSTS.add("analytics.tiktok.com");
-        AD_HOSTS.add("bat.bing.com");
-        AD_HOSTS.add("ad.zaloapp.com");
-        AD_HOSTS.add("ad.atdmt.com");
-        AD_HOSTS.add("ad.wsod.com");
-        AD_HOSTS.add("ad.watch.tv");
-        AD_HOSTS.add("ad.turn.com");
-        AD_HOSTS.add("ad.tradedoubler.com");
-        AD_HOSTS.add("ad.tiscali.it");
-        AD_HOSTS.add("ad.terra.com.br");
-        AD_HOSTS.add("ad.tagdelivery.com");
-        AD_HOSTS.add("ad.tagul.com");
-        AD_HOSTS.add("ad.tandem.com");
-        AD_HOSTS.add("ad.systran.com");
-        AD_HOSTS.add("ad.sueddeutsche.de");
-        AD_HOSTS.add("ad.specificclick.net");
-        AD_HOSTS.add("ad.speedbit.com");
-        AD_HOSTS.add("ad.simpli.fi");
-        AD_HOSTS.add("ad.shop.com");
-        AD_HOSTS.add("ad.seznam.cz");
-        AD_HOSTS.add("ad.sensismediasmart.com.au");
-        AD_HOSTS.add("ad.scanmedios.com");
-        AD_HOSTS.add("ad.republika.co.id");
-        AD_HOSTS.add("ad.renren.com");
-        AD_HOSTS.add("ad.reduxmedia.com");
-        AD_HOSTS.add("ad.rambler.ru");
-        AD_HOSTS.add("ad.quikr.com");
-        AD_HOSTS.add("ad.qip.ru");
-        AD_HOSTS.add("ad.qq.com");
-        AD_HOSTS.add("ad.primogif.com");
-        AD_HOSTS.add("ad.pressboard.ca");
-        AD_HOSTS.add("ad.pconline.com.cn");
-        AD_HOSTS.add("ad.path.com");
-        AD_HOSTS.add("ad.pandora.tv");
-        AD_HOSTS.add("ad.orange.co.uk");
-        AD_HOSTS.add("ad.orbitz.com");
-        AD_HOSTS.add("ad.optusnet.com.au");
-        AD_HOSTS.add("ad.opinionstage.com");
-        AD_HOSTS.add("ad.onespot.com");
-        AD_HOSTS.add("ad.onet.pl");
-        AD_HOSTS.add("ad.omegle.com");
-        AD_HOSTS.add("ad.nuggad.net");
-        AD_HOSTS.add("ad.noos.fr");
-        AD_HOSTS.add("ad.nl");
-        AD_HOSTS.add("ad.netmera.com");
-        AD_HOSTS.add("ad.netdna-cdn.com");
-        AD_HOSTS.add("ad.nate.com");
-        AD_HOSTS.add("ad.mywebsearch.com");
-        AD_HOSTS.add("ad.msn.com");
-        AD_HOSTS.add("ad.mirror.co.uk");
-        AD_HOSTS.add("ad.mail.ru");
-        AD_HOSTS.add("ad.madvertise.de");
-        AD_HOSTS.add("ad.lycos.com");
-        AD_HOSTS.add("ad.lgappstv.com");
-        AD_HOSTS.add("ad.letv.com");
-        AD_HOSTS.add("ad.lemonde.fr");
-        AD_HOSTS.add("ad.lavanet.ru");
-        AD_HOSTS.add("ad.lapresse.ca");
-        AD_HOSTS.add("ad.joins.com");
-        AD_HOSTS.add("ad.interia.pl");
-        AD_HOSTS.add("ad.infoseek.co.jp");
-        AD_HOSTS.add("ad.infobae.com");
-        AD_HOSTS.add("ad.infobae.com");
-        AD_HOSTS.add("ad.indiatimes.com");
-        AD_HOSTS.add("ad.impress.co.jp");
-        AD_HOSTS.add("ad.ilivid.com");
-        AD_HOSTS.add("ad.ibtimes.com");
-        AD_HOSTS.add("ad.hexun.com");
-        AD_HOSTS.add("ad.hulu.com");
-        AD_HOSTS.add("ad.haber7.com");
-        AD_HOSTS.add("ad.groupon.com");
-        AD_HOSTS.add("ad.globeandmail.com");
-        AD_HOSTS.add("ad.giga.de");
-        AD_HOSTS.add("ad.geocities.com");
-        AD_HOSTS.add("ad.gawker.com");
-        AD_HOSTS.add("ad.foxnetworks.com");
-        AD_HOSTS.add("ad.focalink.com");
-        AD_HOSTS.add("ad.flashtalking.com");
-        AD_HOSTS.add("ad.findly.com");
-        AD_HOSTS.add("ad.eurosport.com");
-        AD_HOSTS.add("ad.eonline.com");
-        AD_HOSTS.add("ad.elsevier.com");
-        AD_HOSTS.add("ad.digitoday.com");
-        AD_HOSTS.add("ad.digitru.st");
-        AD_HOSTS.add("ad.daum.net");
-        AD_HOSTS.add("ad.crwdcntrl.net");
-        AD_HOSTS.add("ad.cnet.com");
-        AD_HOSTS.add("ad.chosun.com");
-        AD_HOSTS.add("ad.canalplus.fr");
-        AD_HOSTS.add("ad.ca.msn.com");
-        AD_HOSTS.add("ad.broadspring.com");
-        AD_HOSTS.add("ad.bn.ee");
-        AD_HOSTS.add("ad.bloomberg.com");
-        AD_HOSTS.add("ad.bharatmatrimony.com");
-        AD_HOSTS.add("ad.beinsports.com");
-        AD_HOSTS.add("ad.baidu.com");
-        AD_HOSTS.add("ad.auditude.com");
-        AD_HOSTS.add("ad.au.msn.com");
-        AD_HOSTS.add("ad.wsj.com");
-        AD_HOSTS.add("ad.adsmart.net");
-        AD_HOSTS.add("ad.adjuggler.net");
-        AD_HOSTS.add("ad.adtoma.com");
-        AD_HOSTS.add("ad.adserver.com");
-
-        // Added VidSrc specific ad/tracking hosts
-        AD_HOSTS.add("vidsrc.xyz");
-        AD_HOSTS.add("vidplay.site");
-        AD_HOSTS.add("2embed.cc");
-        AD_HOSTS.add("proadblocker.xyz");
-        AD_HOSTS.add("ad-delivery.net");
-        AD_HOSTS.add("clickbored.com");
-        AD_HOSTS.add("mmo-ads.com");
-        AD_HOSTS.add("vidsrc.stream");
-        AD_HOSTS.add("upstream.to");
-        AD_HOSTS.add("dood.to");
-        AD_HOSTS.add("fembed.com");
-        AD_HOSTS.add("rabbitstream.net");
-        AD_HOSTS.add("dokicloud.one");
-        AD_HOSTS.add("megacloud.tv");
-        AD_HOSTS.add("vizcloud.online");
-        AD_HOSTS.add("vidsrc.me");
-        AD_HOSTS.add("playercdn.net");
-        AD_HOSTS.add("vidstreaming.io");
-        AD_HOSTS.add("streamtape.com");
-        AD_HOSTS.add("mixdrop.co");
-        AD_HOSTS.add("gogoplay.io");
-
-        // More general ad hosts
-        AD_HOSTS.add("adswizz.com");
-        AD_HOSTS.add("smartadserver.com");
-        AD_HOSTS.add("indexexchange.com");
-        AD_HOSTS.add("spotx.tv");
-        AD_HOSTS.add("bidvertiser.com");
-        AD_HOSTS.add("popads.net");
-        AD_HOSTS.add("propellerads.com");
-        AD_HOSTS.add("zeropark.com");
-        AD_HOSTS.add("adsterra.com");
-        AD_HOSTS.add("exoclick.com");
-        AD_HOSTS.add("plugrush.com");
-        AD_HOSTS.add("juicyads.com");
-        AD_HOSTS.add("ero-advertising.com");
-        AD_HOSTS.add("doublepimp.com");
-        AD_HOSTS.add("ad4game.com");
-        AD_HOSTS.add("adform.net");
-        AD_HOSTS.add("adriver.ru");
-        AD_HOSTS.add("weborama.fr");
-        AD_HOSTS.add("ligatus.com");
-        AD_HOSTS.add("teads.tv");
-        AD_HOSTS.add("adblade.com");
-        AD_HOSTS.add("disqusads.com");
-        AD_HOSTS.add("liveadexchanger.com");
-        AD_HOSTS.add("revjet.com");
-        AD_HOSTS.add("adkernel.com");
-    }
+    private static final AdHostMatcher AD_HOST_MATCHER = AdHostMatcher.createDefault();
 
     private WebView mWebView;
     private UpdateManager mUpdateManager;
+    private CacheRegistry mCacheRegistry;
+    private XtreamClient mXtreamClient;
+    private DpadInputPipeline mInputPipeline;
+    private AutoplayController mAutoplayController;
+    private HlsProxy mHlsProxy;
+    private LogoThumbnailService mLogoService;
+    private NetworkQualityMonitor mNetworkMonitor;
+    private StartupWarmup mStartupWarmup;
+    private TmdbProjectionService mTmdbProjection;
+    private MainThreadWatchdog mWatchdog;
+    private MetricsService mMetrics;
+    private RecommendationService mRecommendations;
+    private HomeSnapshotStore mHomeSnapshot;
+    private CosmeticFilterService mCosmeticFilter;
+    private NavigationGuard mNavigationGuard;
+    private EpgIndexService mEpgIndex;
 
     /**
      * Simulates a physical touch click on the screen at the specified coordinates.
@@ -280,6 +74,7 @@ public class MainActivity extends AppCompatActivity {
 
     /**
      * Intercepts hardware remote/keyboard key events before they are processed by the WebView.
+     * Held D-pad keys are coalesced by the DpadInputPipeline into rate-limited moves.
      * If the user presses the 'ENTER' or 'DPAD_CENTER' button while in the player iframe,
      * it triggers a simulated click to ensure TV remote compatibility.
      * 
@@ -288,12 +83,14 @@ public class MainActivity extends AppCompatActivity {
      */
     @Override
     public boolean dispatchKeyEvent(android.view.KeyEvent event) {
+        if (mInputPipeline != null && mInputPipeline.handleKeyEvent(event)) {
+            return true;
+        }
         int keyCode = event.getKeyCode();
         if (event.getAction() == android.view.KeyEvent.ACTION_DOWN) {
             if (keyCode == android.view.KeyEvent.KEYCODE_DPAD_CENTER
                     || keyCode == android.view.KeyEvent.KEYCODE_ENTER) {
-                String url = mWebView.getUrl();
-                if (url != null && !url.contains("file:///android_asset/")) {
+                if (mInputPipeline != null && !mInputPipeline.isLocalPage()) {
                     // We are in the player iframe or external content
                     simulateClick(mWebView.getWidth() / 2f, mWebView.getHeight() / 2f);
                     return true;
@@ -306,9 +103,41 @@ public class MainActivity extends AppCompatActivity {
     /**
      * A custom WebViewClient that aggressively blocks known advertisement domains and tracking scripts.
      * It intercepts every network request made by the WebView and compares the host against a predefined blacklist.
-     * It also injects a simulated click when a known video provider page finishes loading to trigger autoplay.
+     * It also reports embed player page loads to the AutoplayController, which clicks once the player is ready.
+     * Main frame navigations outside the app and the player hosts are stopped by the NavigationGuard.
+     * Every intercepted request is counted by the handler that answered it, and page load times are recorded
+     * separately for the app shell and embed pages.
      */
     private static class AdBlockingWebViewClient extends WebViewClient {
+        private static final String REQUESTS = "ivids_webview_requests_total";
+        private static final String REQUESTS_HELP = "WebView resource requests by the handler that answered them.";
+        private static final String PAGE_LOAD = "ivids_webview_page_load_seconds";
+        private static final String PAGE_LOAD_HELP = "Page start until page finished, for the app shell and embed pages.";
+        private static final String APP_PAGE_PREFIX = "file:///android_asset/";
+
+        private final MetricsRegistry.Counter mHlsRequests;
+        private final MetricsRegistry.Counter mLogoRequests;
+        private final MetricsRegistry.Counter mTmdbRequests;
+        private final MetricsRegistry.Counter mNetworkRequests;
+        private final MetricsRegistry.Counter mBlockedRequests;
+        private final MetricsRegistry.Counter mPassthroughRequests;
+        private final LatencyHistogram mAppPageLoad = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+        private final LatencyHistogram mEmbedPageLoad = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+        /** Main thread only. */
+        private long mPageStartedAt = 0;
+
+        AdBlockingWebViewClient() {
+            MetricsRegistry metrics = MetricsRegistry.getInstance();
+            mHlsRequests = metrics.counter(REQUESTS, REQUESTS_HELP, "handler", "hls");
+            mLogoRequests = metrics.counter(REQUESTS, REQUESTS_HELP, "handler", "logo");
+            mTmdbRequests = metrics.counter(REQUESTS, REQUESTS_HELP, "handler", "tmdb");
+            mNetworkRequests = metrics.counter(REQUESTS, REQUESTS_HELP, "handler", "network");
+            mBlockedRequests = metrics.counter(REQUESTS, REQUESTS_HELP, "handler", "blocked");
+            mPassthroughRequests = metrics.counter(REQUESTS, REQUESTS_HELP, "handler", "passthrough");
+            metrics.histogram(PAGE_LOAD, PAGE_LOAD_HELP, mAppPageLoad, "page", "app");
+            metrics.histogram(PAGE_LOAD, PAGE_LOAD_HELP, mEmbedPageLoad, "page", "embed");
+        }
+
         /**
          * Intercepts individual resource requests made by the WebView.
          * If the requested URL matches a known ad-serving host, it returns an empty response to block the ad.
@@ -320,17 +149,148 @@ public class MainActivity extends AppCompatActivity {
         @Override
         public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
             Uri url = request.getUrl();
+            if (view.getContext() instanceof MainActivity) {
+                MainActivity activity = (MainActivity) view.getContext();
+                WebResourceResponse nativeResponse = interceptNatively(activity, request, url);
+                StartupWarmup startupWarmup = activity.mStartupWarmup;
+                if (startupWarmup != null) {
+                    startupWarmup.onRequest(url, nativeResponse != null);
+                }
+                if (nativeResponse != null) {
+                    return nativeResponse;
+                }
+            }
             if (url != null && isAd(url.getHost())) {
                 Log.d(TAG, "Blocking ad request: " + url);
+                mBlockedRequests.inc();
                 return new WebResourceResponse("text/plain", "UTF-8", new ByteArrayInputStream("".getBytes()));
             }
+            mPassthroughRequests.inc();
             return super.shouldInterceptRequest(view, request);
         }
 
+        /**
+         * Offers a request to the native handlers, which fetch upstream with HttpURLConnection.
+         *
+         * @return The native response, or null if the WebView's own network stack should load the request.
+         */
+        private WebResourceResponse interceptNatively(MainActivity activity, WebResourceRequest request, Uri url) {
+            HlsProxy hlsProxy = activity.mHlsProxy;
+            if (hlsProxy != null && hlsProxy.canHandle(url)) {
+                mHlsRequests.inc();
+                return hlsProxy.handle(request);
+            }
+            LogoThumbnailService logoService = activity.mLogoService;
+            if (logoService != null && logoService.canHandle(url)) {
+                mLogoRequests.inc();
+                return logoService.handle(request);
+            }
+            TmdbProjectionService tmdbProjection = activity.mTmdbProjection;
+            if (tmdbProjection != null && tmdbProjection.canHandle(request)) {
+                WebResourceResponse projected = tmdbProjection.handle(request);
+                if (projected != null) {
+                    mTmdbRequests.inc();
+                    return projected;
+                }
+            }
+            NetworkQualityMonitor networkMonitor = activity.mNetworkMonitor;
+            if (networkMonitor != null && networkMonitor.canHandle(url)) {
+                WebResourceResponse downsized = networkMonitor.handle(request);
+                if (downsized != null) {
+                    mNetworkRequests.inc();
+                    return downsized;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Decides whether a navigation may leave the current page. Main frame navigations are checked against the
+         * NavigationGuard, so embed players cannot take the app to ad redirect chains and landing pages;
+         * subframe navigations are only reported for non-network schemes, which are always stopped.
+         *
+         * @param view The WebView that is navigating.
+         * @param request The navigation request.
+         * @return true to cancel the navigation, false to let the WebView load it.
+         */
+        @RequiresApi(Build.VERSION_CODES.N)
+        @Override
+        public boolean shouldOverrideUrlLoading(WebView view, WebResourceRequest request) {
+            NavigationGuard guard = view.getContext() instanceof MainActivity
+                    ? ((MainActivity) view.getContext()).mNavigationGuard : null;
+            if (guard == null) {
+                return false;
+            }
+            if (!request.isForMainFrame()) {
+                return guard.shouldBlockSubframe(request.getUrl());
+            }
+            return guard.shouldBlock(request.getUrl(), request.hasGesture() && !request.isRedirect());
+        }
+
+        /**
+         * Navigation check for API levels below 24, which report neither gestures nor redirects;
+         * every navigation to an allowed host then counts toward the scripted navigation limit.
+         *
+         * @param view The WebView that is navigating.
+         * @param url The navigation target.
+         * @return true to cancel the navigation, false to let the WebView load it.
+         */
+        @SuppressWarnings("deprecation")
+        @Override
+        public boolean shouldOverrideUrlLoading(WebView view, String url) {
+            NavigationGuard guard = view.getContext() instanceof MainActivity
+                    ? ((MainActivity) view.getContext()).mNavigationGuard : null;
+            return guard != null && url != null && guard.shouldBlock(Uri.parse(url), false);
+        }
+
+        /**
+         * Triggered when a page starts loading in the WebView.
+         * Updates the cached page state used by the key handling so it never has to query the WebView URL,
+         * and starts an autoplay session when a video provider page is opened directly.
+         * 
+         * @param view The WebView that started loading.
+         * @param url The URL of the page being loaded.
+         * @param favicon The favicon of the page, if already available.
+         */
+        @Override
+        public void onPageStarted(WebView view, String url, android.graphics.Bitmap favicon) {
+            super.onPageStarted(view, url, favicon);
+            mPageStartedAt = SystemClock.elapsedRealtime();
+            if (view.getContext() instanceof MainActivity) {
+                MainActivity activity = (MainActivity) view.getContext();
+                if (activity.mInputPipeline != null) {
+                    activity.mInputPipeline.onPageChanged(url);
+                }
+                if (activity.mAutoplayController != null) {
+                    activity.mAutoplayController.onEmbedLoading(url);
+                }
+            }
+        }
+
+        /**
+         * Triggered when the new page's content is about to be drawn (API 23+).
+         * Injects the cosmetic stylesheet into provider pages on devices without document-start scripts; by now
+         * the new document has replaced the previous one.
+         *
+         * @param view The WebView showing the page.
+         * @param url The URL of the page.
+         */
+        @Override
+        public void onPageCommitVisible(WebView view, String url) {
+            super.onPageCommitVisible(view, url);
+            if (view.getContext() instanceof MainActivity) {
+                MainActivity activity = (MainActivity) view.getContext();
+                if (activity.mCosmeticFilter != null) {
+                    activity.mCosmeticFilter.onPageVisible(view, url);
+                }
+            }
+        }
+
         /**
          * Triggered when a page finishes loading in the WebView.
-         * Checks if the loaded URL belongs to a known video player provider and schedules an automated click 
-         * in the center of the screen to force the video to autoplay without user interaction.
+         * Refreshes the cached page state and arms the autoplay fallback clicks; the actual click is sent
+         * as soon as the player reports readiness. Also injects the cosmetic stylesheet on versions without
+         * {@code onPageCommitVisible}.
          * 
          * @param view The WebView that finished loading.
          * @param url The URL of the loaded page.
@@ -338,16 +298,26 @@ public class MainActivity extends AppCompatActivity {
         @Override
         public void onPageFinished(WebView view, String url) {
             super.onPageFinished(view, url);
-            if (url != null && (url.contains("vidsrc") || url.contains("vidlink") || url.contains("videasy") || url.contains("embed"))) {
-                // Auto-click the center after a delay to simulate autoplay
-                view.postDelayed(() -> {
-                    if (view.getContext() instanceof MainActivity) {
-                        MainActivity activity = (MainActivity) view.getContext();
-                        if (!activity.isFinishing() && !activity.isDestroyed()) {
-                            activity.simulateClick(view.getWidth() / 2f, view.getHeight() / 2f);
-                        }
-                    }
-                }, 2500); // 2.5 seconds delay to allow player initialization
+            if (mPageStartedAt != 0) {
+                long loadMs = SystemClock.elapsedRealtime() - mPageStartedAt;
+                mPageStartedAt = 0;
+                boolean appPage = url != null && url.startsWith(APP_PAGE_PREFIX);
+                (appPage ? mAppPageLoad : mEmbedPageLoad).record(loadMs);
+            }
+            if (view.getContext() instanceof MainActivity) {
+                MainActivity activity = (MainActivity) view.getContext();
+                if (activity.mInputPipeline != null) {
+                    activity.mInputPipeline.onPageChanged(url);
+                }
+                if (activity.mAutoplayController != null) {
+                    activity.mAutoplayController.onEmbedLoaded(url);
+                }
+                if (activity.mCosmeticFilter != null) {
+                    activity.mCosmeticFilter.onPageVisible(view, url);
+                }
+                if (activity.mStartupWarmup != null) {
+                    activity.mStartupWarmup.mark("pageFinished");
+                }
             }
         }
 
@@ -387,19 +357,13 @@ public class MainActivity extends AppCompatActivity {
         }
 
         /**
-         * Checks if a given URL host is present in the static blacklist of ad domains.
+         * Checks if a given URL host is, or is a subdomain of, a domain in the ad blacklist.
          * 
          * @param host The hostname to verify (e.g., "admob.com").
          * @return true if the host is a known ad provider, false otherwise.
          */
         private boolean isAd(@Nullable String host) {
-            if (host == null)
-                return false;
-            for (String adHost : AD_HOSTS) {
-                if (host.contains(adHost))
-                    return true;
-            }
-            return false;
+            return AD_HOST_MATCHER.isAd(host);
         }
     }
 
@@ -415,6 +379,20 @@ public class MainActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        // Resolve and pre-connect TMDB and the player host while the WebView is being set up
+        mStartupWarmup = new StartupWarmup(this);
+        mStartupWarmup.start();
+
+        // Read the home screen of the previous session while the WebView is being set up
+        mHomeSnapshot = new HomeSnapshotStore(this, mStartupWarmup);
+        mHomeSnapshot.preload();
+
+        // Monitor the UI thread from the start so stalls during WebView setup are captured as well
+        mWatchdog = new MainThreadWatchdog(this);
+        mWatchdog.start();
+
+        mCacheRegistry = CacheRegistry.getInstance(this);
+
         mWebView = new WebView(this);
         setContentView(mWebView);
 
@@ -439,11 +417,54 @@ public class MainActivity extends AppCompatActivity {
         webSettings.setJavaScriptCanOpenWindowsAutomatically(false);
         webSettings.setSupportMultipleWindows(false);
 
+        mInputPipeline = new DpadInputPipeline(mWebView);
+        mHlsProxy = new HlsProxy(this);
+        mLogoService = new LogoThumbnailService(this);
+        mNetworkMonitor = new NetworkQualityMonitor(this, mWebView);
+        mNetworkMonitor.start();
+        mHlsProxy.setNetworkMonitor(mNetworkMonitor);
+        mTmdbProjection = new TmdbProjectionService(this);
+        mTmdbProjection.setNetworkMonitor(mNetworkMonitor);
+        mAutoplayController = new AutoplayController(this, () -> {
+            if (!isFinishing() && !isDestroyed()) {
+                simulateClick(mWebView.getWidth() / 2f, mWebView.getHeight() / 2f);
+            }
+        });
+        mAutoplayController.install(mWebView);
+        mCosmeticFilter = new CosmeticFilterService(this);
+        mCosmeticFilter.install(mWebView);
+        mAutoplayController.setReadyListener((providerId, readyMs) -> mCosmeticFilter.recordPlayerReady(readyMs));
+        mNavigationGuard = new NavigationGuard(this);
         mWebView.setWebViewClient(new AdBlockingWebViewClient());
 
         mUpdateManager = new UpdateManager(this, mWebView);
         mWebView.addJavascriptInterface(mUpdateManager, "AndroidUpdate");
         mWebView.addJavascriptInterface(new SettingsBridge(this), "AndroidSettings");
+        mWebView.addJavascriptInterface(new ChannelDbBridge(this), "AndroidChannelDb");
+        mWebView.addJavascriptInterface(mInputPipeline, "AndroidInput");
+        mWebView.addJavascriptInterface(mAutoplayController, "AndroidAutoplay");
+        // HlsProxy and LogoThumbnailService only issue endpoint tokens for the key handed out on this channel
+        LocalEndpoint.installAppChannel(mWebView);
+        mWebView.addJavascriptInterface(mHlsProxy, "AndroidHls");
+        mWebView.addJavascriptInterface(mLogoService, "AndroidLogos");
+        mWebView.addJavascriptInterface(mNetworkMonitor, "AndroidNetwork");
+        mWebView.addJavascriptInterface(mStartupWarmup, "AndroidStartup");
+        mWebView.addJavascriptInterface(mTmdbProjection, "AndroidTmdb");
+        mWebView.addJavascriptInterface(mWatchdog, "AndroidWatchdog");
+        mWebView.addJavascriptInterface(BackgroundScheduler.getInstance(), "AndroidScheduler");
+        mMetrics = new MetricsService(this);
+        mMetrics.start();
+        mWebView.addJavascriptInterface(mMetrics, "AndroidMetrics");
+        mRecommendations = new RecommendationService(this, mWebView);
+        mWebView.addJavascriptInterface(mRecommendations, "AndroidRecommendations");
+        mWebView.addJavascriptInterface(mHomeSnapshot, "AndroidSnapshot");
+        mWebView.addJavascriptInterface(mCosmeticFilter, "AndroidCosmetic");
+        mWebView.addJavascriptInterface(mNavigationGuard, "AndroidNavigation");
+        mEpgIndex = new EpgIndexService(this, mWebView);
+        mWebView.addJavascriptInterface(mEpgIndex, "AndroidEpg");
+
+        mXtreamClient = new XtreamClient(this, mWebView);
+        mWebView.addJavascriptInterface(mXtreamClient, "AndroidXtream");
 
         mWebView.setWebChromeClient(new android.webkit.WebChromeClient() {
             @Override
@@ -473,6 +494,7 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
+        mStartupWarmup.mark("loadUrl");
         mWebView.loadUrl("file:///android_asset/main/gui/index.html");
     }
 
@@ -505,15 +527,105 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Called when the activity is no longer visible.
+     * Triggers JS callback so the web application can persist the home screen for the next cold start.
+     */
+    @Override
+    protected void onStop() {
+        if (mWebView != null) {
+            mWebView.evaluateJavascript(
+                "if(typeof window.onAppBackground === 'function') window.onAppBackground();",
+                null
+            );
+        }
+        super.onStop();
+    }
+
+    /**
+     * Called when the system asks the app to release memory.
+     * Applies graded eviction to all native caches and forwards the trim level to the web layer
+     * so it can revoke its own blob URLs and drop in-memory API responses.
+     * 
+     * @param level The memory trim level reported by the system.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (mCacheRegistry != null) {
+            mCacheRegistry.onTrimMemory(level);
+        }
+        notifyWebMemoryTrim(level);
+    }
+
+    /**
+     * Called when the overall system is running low on memory.
+     * Clears all native caches and asks the web layer to release everything it can.
+     */
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        if (mCacheRegistry != null) {
+            mCacheRegistry.onLowMemory();
+        }
+        notifyWebMemoryTrim(android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    /**
+     * Sends a JavaScript callback to the WebView notifying it of memory pressure.
+     * 
+     * @param level The memory trim level forwarded to {@code window.onMemoryTrim}.
+     */
+    private void notifyWebMemoryTrim(int level) {
+        if (mWebView != null) {
+            mWebView.evaluateJavascript(
+                "if(typeof window.onMemoryTrim === 'function') window.onMemoryTrim(" + level + ");",
+                null
+            );
+        }
+    }
+
     /**
      * Called when the activity is being destroyed.
-     * Shuts down the update manager executor threads to prevent memory leaks.
+     * Shuts down the update manager, Xtream client, zap warm-up, watchdog, metrics endpoint and recommendation threads
+     * to prevent memory leaks.
+     * Pending autoplay clicks are cancelled and the autoplay probe is removed. The playback flag of the app-wide
+     * scheduler is cleared, since the player cannot report its end once the activity is gone.
      */
     @Override
     protected void onDestroy() {
+        if (mAutoplayController != null) {
+            mAutoplayController.onEmbedClosed();
+            mAutoplayController.shutdown();
+        }
+        BackgroundScheduler.getInstance().setPlaybackActive(false);
         if (mUpdateManager != null) {
             mUpdateManager.shutdown();
         }
+        if (mXtreamClient != null) {
+            mXtreamClient.shutdown();
+        }
+        if (mNetworkMonitor != null) {
+            mNetworkMonitor.stop();
+        }
+        if (mHlsProxy != null) {
+            mHlsProxy.shutdown();
+        }
+        if (mWatchdog != null) {
+            mWatchdog.stop();
+        }
+        if (mMetrics != null) {
+            mMetrics.stop();
+        }
+        if (mRecommendations != null) {
+            mRecommendations.shutdown();
+        }
+        if (mNavigationGuard != null) {
+            mNavigationGuard.shutdown();
+        }
+        if (mEpgIndex != null) {
+            mEpgIndex.shutdown();
+        }
         super.onDestroy();
     }
 }
@@ -0,0 +1,431 @@
+package com.kenjigames.ivids;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Printer;
+import android.webkit.JavascriptInterface;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * MainThreadWatchdog detects stalls of the UI thread, exposed to the WebView as {@code AndroidWatchdog}.
+ * Message dispatch on the main Looper is timed through its logging Printer, which also names the Handler and
+ * callback that stalled (e.g. a runOnUiThread lambda of UpdateManager). A heartbeat posted from a background
+ * thread catches stalls outside message dispatch, such as key event handling. While a stall lasts, the
+ * background thread samples the main thread's stack; the aggregated samples show where the time went.
+ * The last stalls are kept in a ring buffer and can be exported as a JSON report. A stall that reaches the ANR
+ * threshold is written to disk immediately, because the process may be killed before it ends.
+ */
+public class MainThreadWatchdog {
+    private static final String TAG = "MainThreadWatchdog";
+
+    /** A dispatch longer than this is a stall (six frames at 60 Hz). */
+    private static final long STALL_THRESHOLD_MS = 100;
+    /** Android reports an ANR when input is not handled within five seconds. */
+    private static final long ANR_THRESHOLD_MS = 5000;
+    private static final long SAMPLE_INTERVAL_MS = 50;
+    private static final int MAX_EVENTS = 64;
+    private static final int MAX_SAMPLES_PER_EVENT = 100;
+    private static final int MAX_STACK_FRAMES = 24;
+    private static final int MAX_EXPORTS = 5;
+    private static final String EXPORT_DIR = "diagnostics";
+    private static final String ANR_FILE = "main-thread-anr.json";
+    private static final String DISPATCH_PREFIX = ">>>>> Dispatching to ";
+    private static final String OUTSIDE_DISPATCH = "(outside message dispatch: input event or native callback)";
+
+    /**
+     * One stall, in progress while its samples are collected.
+     */
+    private static final class Stall {
+        final long key;
+        final String message;
+        final long wallStart;
+        long durationMs;
+        int sampleCount;
+        boolean anrReported;
+        /** Distinct stacks with their sample counts, in order of first appearance. */
+        final Map<String, Integer> stacks = new LinkedHashMap<>();
+
+        Stall(long key, String message, long elapsedMs) {
+            this.key = key;
+            this.message = message;
+            this.wallStart = System.currentTimeMillis() - elapsedMs;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("startedAt", wallStart);
+            json.put("durationMs", durationMs);
+            json.put("anr", durationMs >= ANR_THRESHOLD_MS);
+            json.put("message", message);
+            json.put("samples", sampleCount);
+            JSONArray stackJson = new JSONArray();
+            for (Map.Entry<String, Integer> entry : stacks.entrySet()) {
+                JSONObject stack = new JSONObject();
+                stack.put("count", entry.getValue());
+                stack.put("frames", new JSONArray(Arrays.asList(entry.getKey().split("\n"))));
+                stackJson.put(stack);
+            }
+            json.put("stacks", stackJson);
+            return json;
+        }
+    }
+
+    private final Context mContext;
+    private final Looper mMainLooper = Looper.getMainLooper();
+    private final Handler mMainHandler = new Handler(mMainLooper);
+    private final Object mLock = new Object();
+    private final ArrayDeque<Stall> mEvents = new ArrayDeque<>();
+    private final LatencyHistogram mDispatchMs = new LatencyHistogram();
+    private HandlerThread mThread;
+    private volatile Handler mHandler;
+    private Stall mCurrent;
+    private long mDispatched = 0;
+    private long mStallCount = 0;
+    private long mAnrCount = 0;
+    private long mNextTickId = 1;
+
+    /** Written by the main thread; cleared by stop(). */
+    private volatile long mDispatchStartMs = 0;
+    private volatile long mDispatchSeq = 0;
+    private volatile String mDispatchMessage;
+    /** Heartbeat in flight, written by the watchdog thread and cleared by the main thread. */
+    private volatile long mTickPostedMs = 0;
+    private volatile long mTickId = 0;
+
+    private final Printer mPrinter = this::onLooperLog;
+
+    private final Runnable mTick = new Runnable() {
+        @Override
+        public void run() {
+            long posted = mTickPostedMs;
+            long tickId = mTickId;
+            mTickPostedMs = 0;
+            if (posted != 0) {
+                finishStall(-tickId, SystemClock.uptimeMillis() - posted);
+            }
+        }
+    };
+
+    private final Runnable mSample = new Runnable() {
+        @Override
+        public void run() {
+            sample();
+            Handler handler = mHandler;
+            if (handler != null) {
+                handler.postDelayed(this, SAMPLE_INTERVAL_MS);
+            }
+        }
+    };
+
+    /**
+     * Constructs a new MainThreadWatchdog instance.
+     *
+     * @param context The context whose external files directory receives the exported reports.
+     */
+    public MainThreadWatchdog(Context context) {
+        this.mContext = context.getApplicationContext();
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.histogram("ivids_main_thread_dispatch_seconds", "Duration of main Looper message dispatches.", mDispatchMs);
+        metrics.counterFunction("ivids_main_thread_stalls_total", "Main thread stalls over the stall threshold.", () -> {
+            synchronized (mLock) {
+                return mStallCount;
+            }
+        });
+    }
+
+    /**
+     * Installs the dispatch Printer and starts the sampling thread. The main Looper accepts a single Printer, so
+     * nothing else in the app may call {@code setMessageLogging}.
+     */
+    public synchronized void start() {
+        if (mThread != null) {
+            return;
+        }
+        mThread = new HandlerThread(TAG);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+        mMainLooper.setMessageLogging(mPrinter);
+        mHandler.postDelayed(mSample, SAMPLE_INTERVAL_MS);
+    }
+
+    /**
+     * Removes the Printer and stops the sampling thread. Recorded stalls are kept.
+     */
+    public synchronized void stop() {
+        if (mThread == null) {
+            return;
+        }
+        mMainLooper.setMessageLogging(null);
+        mMainHandler.removeCallbacks(mTick);
+        mThread.quit();
+        mThread = null;
+        mHandler = null;
+        mDispatchStartMs = 0;
+        mTickPostedMs = 0;
+    }
+
+    /**
+     * Turns the watchdog on or off, e.g. to compare the app with and without the dispatch logging overhead.
+     *
+     * @param enabled Whether the main thread is monitored.
+     */
+    @JavascriptInterface
+    public void setEnabled(boolean enabled) {
+        if (enabled) {
+            start();
+        } else {
+            stop();
+        }
+    }
+
+    /**
+     * Returns the recorded stalls of this app session, most recent first.
+     *
+     * @return A JSON string: {enabled, thresholdMs, dispatched, stalls, anrs, dispatchMs: histogram,
+     *         events: [{startedAt, durationMs, anr, message, samples, stacks: [{count, frames}]}]}.
+     */
+    @JavascriptInterface
+    public String getStalls() {
+        try {
+            return buildReport().toString();
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing stalls", e);
+            return "{}";
+        }
+    }
+
+    /**
+     * Writes the stall report with device details to {@code Android/data/<package>/files/diagnostics/}, where it
+     * can be pulled with adb or a file manager. Only the most recent reports are kept.
+     *
+     * @return The absolute path of the report, or an empty string if writing failed.
+     */
+    @JavascriptInterface
+    public String exportDiagnostics() {
+        String name = "main-thread-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date()) + ".json";
+        try {
+            File file = writeReport(name, buildReport());
+            pruneExports(file.getParentFile());
+            Log.d(TAG, "Exported main thread report to " + file);
+            return file.getAbsolutePath();
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Failed to export main thread report", e);
+            return "";
+        }
+    }
+
+    /**
+     * Receives the Looper's "&gt;&gt;&gt;&gt;&gt; Dispatching to ..." and "&lt;&lt;&lt;&lt;&lt; Finished to ..." lines
+     * on the main thread.
+     */
+    private void onLooperLog(String line) {
+        if (line == null || line.isEmpty()) {
+            return;
+        }
+        if (line.charAt(0) == '>') {
+            mDispatchMessage = line;
+            mDispatchSeq++;
+            mDispatchStartMs = SystemClock.uptimeMillis();
+        } else if (line.charAt(0) == '<') {
+            long start = mDispatchStartMs;
+            mDispatchStartMs = 0;
+            if (start == 0) {
+                return;
+            }
+            long elapsed = SystemClock.uptimeMillis() - start;
+            mDispatchMs.record(elapsed);
+            synchronized (mLock) {
+                mDispatched++;
+            }
+            finishStall(mDispatchSeq, elapsed);
+        }
+    }
+
+    /**
+     * Runs on the watchdog thread: keeps a heartbeat in flight and samples the main thread while it is stalled.
+     */
+    private void sample() {
+        long now = SystemClock.uptimeMillis();
+        long dispatchStart = mDispatchStartMs;
+        long seq = mDispatchSeq;
+        String message = mDispatchMessage;
+        long tickPosted = mTickPostedMs;
+        long tickId = mTickId;
+
+        long key;
+        long elapsed;
+        if (dispatchStart != 0 && now - dispatchStart >= STALL_THRESHOLD_MS) {
+            key = seq;
+            elapsed = now - dispatchStart;
+            message = describe(message);
+        } else if (dispatchStart == 0 && tickPosted != 0 && now - tickPosted >= STALL_THRESHOLD_MS) {
+            key = -tickId;
+            elapsed = now - tickPosted;
+            message = OUTSIDE_DISPATCH;
+        } else {
+            if (tickPosted == 0) {
+                mTickId = mNextTickId++;
+                mTickPostedMs = now;
+                mMainHandler.post(mTick);
+            }
+            return;
+        }
+
+        StackTraceElement[] trace = mMainLooper.getThread().getStackTrace();
+        // The stall may have ended while the stack was captured; the sample would then belong to other code.
+        if (key > 0 ? mDispatchSeq != seq || mDispatchStartMs == 0 : mTickPostedMs == 0 || mTickId != tickId) {
+            return;
+        }
+        StringBuilder stack = new StringBuilder();
+        for (int i = 0; i < Math.min(trace.length, MAX_STACK_FRAMES); i++) {
+            if (i > 0) {
+                stack.append('\n');
+            }
+            stack.append(trace[i]);
+        }
+
+        Stall anr = null;
+        synchronized (mLock) {
+            if (mCurrent == null || mCurrent.key != key) {
+                mCurrent = new Stall(key, message, elapsed);
+            }
+            if (mCurrent.sampleCount < MAX_SAMPLES_PER_EVENT) {
+                mCurrent.sampleCount++;
+                String stackKey = stack.toString();
+                Integer count = mCurrent.stacks.get(stackKey);
+                mCurrent.stacks.put(stackKey, count == null ? 1 : count + 1);
+            }
+            if (elapsed >= ANR_THRESHOLD_MS && !mCurrent.anrReported) {
+                mCurrent.anrReported = true;
+                mCurrent.durationMs = elapsed;
+                anr = mCurrent;
+            }
+        }
+        if (anr != null) {
+            Log.e(TAG, "Main thread blocked for " + elapsed + " ms in " + message);
+            try {
+                JSONObject report = buildReport();
+                report.put("inProgress", anr.toJson());
+                writeReport(ANR_FILE, report);
+            } catch (IOException | JSONException e) {
+                Log.e(TAG, "Failed to write ANR report", e);
+            }
+        }
+    }
+
+    /**
+     * Ends a dispatch or heartbeat and records it if it was a stall.
+     *
+     * @param key The dispatch sequence number, or the negated heartbeat id.
+     * @param elapsed The measured duration in milliseconds.
+     */
+    private void finishStall(long key, long elapsed) {
+        synchronized (mLock) {
+            Stall stall = mCurrent != null && mCurrent.key == key ? mCurrent : null;
+            if (stall != null) {
+                mCurrent = null;
+            }
+            if (elapsed < STALL_THRESHOLD_MS) {
+                return;
+            }
+            if (stall == null) {
+                if (key < 0) {
+                    // A late heartbeat without samples outside dispatch was delayed by a stall already recorded
+                    return;
+                }
+                // Ended before the first sample; only the dispatch line is known
+                stall = new Stall(key, describe(mDispatchMessage), elapsed);
+            }
+            stall.durationMs = elapsed;
+            mStallCount++;
+            if (elapsed >= ANR_THRESHOLD_MS) {
+                mAnrCount++;
+            }
+            mEvents.addFirst(stall);
+            while (mEvents.size() > MAX_EVENTS) {
+                mEvents.removeLast();
+            }
+            Log.w(TAG, "Main thread stalled for " + elapsed + " ms in " + stall.message);
+        }
+    }
+
+    /**
+     * @return The Handler, callback and message code of a dispatch line.
+     */
+    private static String describe(String dispatchLine) {
+        return dispatchLine.startsWith(DISPATCH_PREFIX) ? dispatchLine.substring(DISPATCH_PREFIX.length()) : dispatchLine;
+    }
+
+    private JSONObject buildReport() throws JSONException {
+        JSONObject report = new JSONObject();
+        synchronized (this) {
+            report.put("enabled", mThread != null);
+        }
+        report.put("thresholdMs", STALL_THRESHOLD_MS);
+        report.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+        report.put("sdk", Build.VERSION.SDK_INT);
+        report.put("dispatchMs", mDispatchMs.toJson());
+        synchronized (mLock) {
+            report.put("dispatched", mDispatched);
+            report.put("stalls", mStallCount);
+            report.put("anrs", mAnrCount);
+            JSONArray events = new JSONArray();
+            for (Stall stall : mEvents) {
+                events.put(stall.toJson());
+            }
+            report.put("events", events);
+        }
+        return report;
+    }
+
+    private File writeReport(String name, JSONObject report) throws IOException, JSONException {
+        File base = mContext.getExternalFilesDir(null);
+        File dir = new File(base != null ? base : mContext.getFilesDir(), EXPORT_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File file = new File(dir, name);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(report.toString(2).getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    /**
+     * Deletes all but the most recent exported reports; the ANR report is kept.
+     */
+    private static void pruneExports(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("main-thread-") && !name.equals(ANR_FILE));
+        if (files == null || files.length <= MAX_EXPORTS) {
+            return;
+        }
+        // Timestamped names sort chronologically
+        Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+        for (int i = 0; i < files.length - MAX_EXPORTS; i++) {
+            if (!files[i].delete()) {
+                Log.w(TAG, "Failed to delete old report " + files[i]);
+            }
+        }
+    }
+}
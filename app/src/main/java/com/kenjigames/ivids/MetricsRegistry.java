@@ -0,0 +1,321 @@
+package com.kenjigames.ivids;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MetricsRegistry is the process-wide registry of performance metrics that native components report into:
+ * counters, gauges and latency histograms, each identified by a metric name and a fixed set of labels.
+ * Registration takes a lock and is done once per component; recording goes through the returned
+ * {@link Counter} or {@link LatencyHistogram} and is lock-free. Values that a component already tracks
+ * can be exposed as function counters or gauges, which are read only when a snapshot is taken.
+ * Snapshots are exported as JSON ({@code AndroidMetrics.getSnapshot()}) or in the Prometheus text format
+ * by {@link MetricsService}.
+ */
+public class MetricsRegistry {
+    private static final String TAG = "MetricsRegistry";
+
+    /** Bytes read from upstream servers, labelled by the component that read them. */
+    public static final String UPSTREAM_BYTES = "ivids_upstream_bytes_total";
+    public static final String UPSTREAM_BYTES_HELP = "Bytes received from upstream servers by native components.";
+
+    private static final String TYPE_COUNTER = "counter";
+    private static final String TYPE_GAUGE = "gauge";
+    private static final String TYPE_HISTOGRAM = "histogram";
+
+    private static MetricsRegistry sInstance;
+
+    /**
+     * Supplies the current value of a function counter or gauge.
+     */
+    public interface LongSource {
+        long get();
+    }
+
+    /**
+     * A monotonically increasing count.
+     */
+    public static final class Counter {
+        private final AtomicLong mValue = new AtomicLong();
+
+        public void inc() {
+            mValue.incrementAndGet();
+        }
+
+        /**
+         * @param delta The amount to add; negative values are ignored so the counter never decreases.
+         */
+        public void add(long delta) {
+            if (delta > 0) {
+                mValue.addAndGet(delta);
+            }
+        }
+
+        public long get() {
+            return mValue.get();
+        }
+    }
+
+    /**
+     * One labelled series of a metric; exactly one of the value fields is set.
+     */
+    private static final class Series {
+        final String[] labels;
+        final Counter counter;
+        final LongSource source;
+        final LatencyHistogram histogram;
+
+        Series(String[] labels, Counter counter, LongSource source, LatencyHistogram histogram) {
+            this.labels = labels;
+            this.counter = counter;
+            this.source = source;
+            this.histogram = histogram;
+        }
+
+        long value() {
+            if (counter != null) {
+                return counter.get();
+            }
+            try {
+                return source.get();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Metric source failed", e);
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * All series sharing a metric name.
+     */
+    private static final class Family {
+        final String name;
+        final String help;
+        final String type;
+        final Map<String, Series> series = new LinkedHashMap<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final Map<String, Family> mFamilies = new LinkedHashMap<>();
+
+    /**
+     * @return The process-wide registry.
+     */
+    public static synchronized MetricsRegistry getInstance() {
+        if (sInstance == null) {
+            sInstance = new MetricsRegistry();
+        }
+        return sInstance;
+    }
+
+    MetricsRegistry() {
+    }
+
+    /**
+     * Returns the counter for a name and label set, creating it on first use.
+     *
+     * @param name The metric name, e.g. {@code ivids_webview_requests_total}.
+     * @param help A one-line description.
+     * @param labels Alternating label names and values.
+     * @return The counter; the same instance for repeated calls with the same labels.
+     */
+    public synchronized Counter counter(String name, String help, String... labels) {
+        Family family = family(name, help, TYPE_COUNTER);
+        String key = labelKey(labels);
+        Series series = family.series.get(key);
+        if (series == null || series.counter == null) {
+            series = new Series(labels, new Counter(), null, null);
+            family.series.put(key, series);
+        }
+        return series.counter;
+    }
+
+    /**
+     * Exposes a count a component already tracks. Replaces an earlier source with the same labels.
+     *
+     * @param name The metric name.
+     * @param help A one-line description.
+     * @param source Reads the current count; called when a snapshot is taken.
+     * @param labels Alternating label names and values.
+     */
+    public synchronized void counterFunction(String name, String help, LongSource source, String... labels) {
+        family(name, help, TYPE_COUNTER).series.put(labelKey(labels), new Series(labels, null, source, null));
+    }
+
+    /**
+     * Exposes a value that can go up and down. Replaces an earlier source with the same labels.
+     *
+     * @param name The metric name.
+     * @param help A one-line description.
+     * @param source Reads the current value; called when a snapshot is taken.
+     * @param labels Alternating label names and values.
+     */
+    public synchronized void gauge(String name, String help, LongSource source, String... labels) {
+        family(name, help, TYPE_GAUGE).series.put(labelKey(labels), new Series(labels, null, source, null));
+    }
+
+    /**
+     * Exposes a latency histogram a component records into. Replaces an earlier histogram with the same labels,
+     * so a component recreated with the activity reports its new instance.
+     *
+     * @param name The metric name; should end in {@code _seconds} since the text export converts to seconds.
+     * @param help A one-line description.
+     * @param histogram The histogram.
+     * @param labels Alternating label names and values.
+     */
+    public synchronized void histogram(String name, String help, LatencyHistogram histogram, String... labels) {
+        family(name, help, TYPE_HISTOGRAM).series.put(labelKey(labels), new Series(labels, null, null, histogram));
+    }
+
+    /**
+     * Serializes all metrics for the WebView.
+     *
+     * @return A JSON object keyed by metric name: {type, help, series: [{labels: {}, value} or {labels: {}, histogram}]}.
+     */
+    public JSONObject snapshot() {
+        JSONObject json = new JSONObject();
+        try {
+            for (Family family : families()) {
+                JSONArray seriesJson = new JSONArray();
+                for (Series series : seriesOf(family)) {
+                    JSONObject item = new JSONObject();
+                    JSONObject labels = new JSONObject();
+                    for (int i = 0; i + 1 < series.labels.length; i += 2) {
+                        labels.put(series.labels[i], series.labels[i + 1]);
+                    }
+                    item.put("labels", labels);
+                    if (series.histogram != null) {
+                        item.put("histogram", series.histogram.toJson());
+                    } else {
+                        item.put("value", series.value());
+                    }
+                    seriesJson.put(item);
+                }
+                JSONObject familyJson = new JSONObject();
+                familyJson.put("type", family.type);
+                familyJson.put("help", family.help);
+                familyJson.put("series", seriesJson);
+                json.put(family.name, familyJson);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing metrics", e);
+        }
+        return json;
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format (version 0.0.4).
+     * Histograms are converted from milliseconds to seconds with cumulative {@code le} buckets at each
+     * histogram's own bounds.
+     *
+     * @param out The buffer to append to.
+     */
+    public void writePrometheus(StringBuilder out) {
+        for (Family family : families()) {
+            out.append("# HELP ").append(family.name).append(' ').append(escapeHelp(family.help)).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Series series : seriesOf(family)) {
+                if (series.histogram == null) {
+                    out.append(family.name);
+                    appendLabels(out, series.labels, null);
+                    out.append(' ').append(series.value()).append('\n');
+                    continue;
+                }
+                long[] bounds = series.histogram.getBoundsMs();
+                long[] counts = series.histogram.getBucketCounts();
+                long cumulative = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    cumulative += counts[i];
+                    String le = i < bounds.length ? formatSeconds(bounds[i]) : "+Inf";
+                    out.append(family.name).append("_bucket");
+                    appendLabels(out, series.labels, le);
+                    out.append(' ').append(cumulative).append('\n');
+                }
+                out.append(family.name).append("_sum");
+                appendLabels(out, series.labels, null);
+                out.append(' ').append(formatSeconds(series.histogram.getSumMs())).append('\n');
+                out.append(family.name).append("_count");
+                appendLabels(out, series.labels, null);
+                // The bucket total, so _count always equals the +Inf bucket of the same scrape
+                out.append(' ').append(cumulative).append('\n');
+            }
+        }
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = mFamilies.get(name);
+        if (family == null) {
+            family = new Family(name, help, type);
+            mFamilies.put(name, family);
+        } else if (!family.type.equals(type)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    private synchronized List<Family> families() {
+        return new ArrayList<>(mFamilies.values());
+    }
+
+    private synchronized List<Series> seriesOf(Family family) {
+        return new ArrayList<>(family.series.values());
+    }
+
+    private static String labelKey(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        StringBuilder key = new StringBuilder();
+        for (String label : labels) {
+            key.append(label).append('\u0000');
+        }
+        return key.toString();
+    }
+
+    private static void appendLabels(StringBuilder out, String[] labels, String le) {
+        if (labels.length == 0 && le == null) {
+            return;
+        }
+        out.append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(labels[i]).append("=\"").append(escapeLabel(labels[i + 1])).append('"');
+        }
+        if (le != null) {
+            if (labels.length > 0) {
+                out.append(',');
+            }
+            out.append("le=\"").append(le).append('"');
+        }
+        out.append('}');
+    }
+
+    private static String formatSeconds(long millis) {
+        return String.format(Locale.US, "%.3f", millis / 1000.0);
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,187 @@
+package com.kenjigames.ivids;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MetricsService exports the {@link MetricsRegistry} to the WebView as {@code AndroidMetrics} and, when enabled,
+ * on a loopback HTTP endpoint in the Prometheus text format. The endpoint only binds to 127.0.0.1, so it is not
+ * reachable from the network; a collector reads it through {@code adb forward tcp:9464 tcp:9464} and
+ * {@code http://localhost:9464/metrics}. The setting is persisted so a box keeps exporting after a restart.
+ */
+public class MetricsService {
+    private static final String TAG = "MetricsService";
+    private static final String PREFS_NAME = "ivids_metrics";
+    private static final String KEY_ENDPOINT_ENABLED = "endpointEnabled";
+
+    /** The default port of Prometheus exporters that have no port of their own. */
+    static final int PORT = 9464;
+    private static final String PATH = "/metrics";
+    private static final int SOCKET_TIMEOUT_MS = 5000;
+    private static final int MAX_HEADER_LINES = 100;
+
+    private final SharedPreferences mPrefs;
+    private ServerSocket mServerSocket;
+    private Thread mServerThread;
+
+    /**
+     * @param context The context used to read the persisted endpoint setting.
+     */
+    public MetricsService(Context context) {
+        this.mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Starts the endpoint if it was enabled before.
+     */
+    public void start() {
+        if (mPrefs.getBoolean(KEY_ENDPOINT_ENABLED, false)) {
+            startServer();
+        }
+    }
+
+    /**
+     * Stops the endpoint without changing the persisted setting.
+     */
+    public synchronized void stop() {
+        if (mServerSocket != null) {
+            try {
+                mServerSocket.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing metrics endpoint", e);
+            }
+            mServerSocket = null;
+        }
+        mServerThread = null;
+    }
+
+    /**
+     * Returns all registered metrics.
+     *
+     * @return A JSON string, see {@link MetricsRegistry#snapshot()}.
+     */
+    @JavascriptInterface
+    public String getSnapshot() {
+        return MetricsRegistry.getInstance().snapshot().toString();
+    }
+
+    @JavascriptInterface
+    public boolean isEndpointEnabled() {
+        return mPrefs.getBoolean(KEY_ENDPOINT_ENABLED, false);
+    }
+
+    /**
+     * Enables or disables the loopback endpoint and persists the choice.
+     *
+     * @param enabled Whether the endpoint should run.
+     * @return Whether the endpoint is running after the call.
+     */
+    @JavascriptInterface
+    public boolean setEndpointEnabled(boolean enabled) {
+        mPrefs.edit().putBoolean(KEY_ENDPOINT_ENABLED, enabled).apply();
+        if (enabled) {
+            return startServer();
+        }
+        stop();
+        return false;
+    }
+
+    /**
+     * @return The endpoint URL on the device, or an empty string while it is not running.
+     */
+    @JavascriptInterface
+    public synchronized String getEndpointUrl() {
+        return mServerSocket != null ? "http://127.0.0.1:" + PORT + PATH : "";
+    }
+
+    private synchronized boolean startServer() {
+        if (mServerSocket != null) {
+            return true;
+        }
+        try {
+            ServerSocket serverSocket = new ServerSocket(PORT, 4, InetAddress.getByName("127.0.0.1"));
+            mServerSocket = serverSocket;
+            mServerThread = new Thread(() -> serve(serverSocket), "MetricsEndpoint");
+            mServerThread.setDaemon(true);
+            mServerThread.start();
+            Log.d(TAG, "Metrics endpoint listening on 127.0.0.1:" + PORT);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Could not start metrics endpoint", e);
+            return false;
+        }
+    }
+
+    /**
+     * Answers scrapes one at a time until the socket is closed; scrapes are rare and small.
+     */
+    private void serve(ServerSocket serverSocket) {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setSoTimeout(SOCKET_TIMEOUT_MS);
+                handle(socket);
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    Log.w(TAG, "Metrics scrape failed", e);
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        String requestLine = reader.readLine();
+        if (requestLine == null) {
+            return;
+        }
+        // Drains the headers; a scrape has no body
+        String header;
+        int lines = 0;
+        while ((header = reader.readLine()) != null && !header.isEmpty() && ++lines < MAX_HEADER_LINES) {
+            // Ignored
+        }
+
+        String[] parts = requestLine.split(" ");
+        String method = parts.length > 0 ? parts[0] : "";
+        String path = parts.length > 1 ? parts[1] : "";
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+
+        OutputStream out = socket.getOutputStream();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            respond(out, "405 Method Not Allowed", "text/plain; charset=utf-8", "Method not allowed\n", true);
+        } else if (!PATH.equals(path)) {
+            respond(out, "404 Not Found", "text/plain; charset=utf-8", "Not found, try " + PATH + "\n", true);
+        } else {
+            StringBuilder body = new StringBuilder(8192);
+            MetricsRegistry.getInstance().writePrometheus(body);
+            respond(out, "200 OK", "text/plain; version=0.0.4; charset=utf-8", body.toString(), !"HEAD".equals(method));
+        }
+    }
+
+    private static void respond(OutputStream out, String status, String contentType, String body, boolean withBody) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String head = "HTTP/1.1 " + status + "\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Length: " + bytes.length + "\r\n"
+                + "Connection: close\r\n\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        if (withBody) {
+            out.write(bytes);
+        }
+        out.flush();
+    }
+}
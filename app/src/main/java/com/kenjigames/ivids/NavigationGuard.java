@@ -0,0 +1,216 @@
+package com.kenjigames.ivids;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+
+import com.kenjigames.ivids.core.NavigationPolicy;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * NavigationGuard applies the core {@code NavigationPolicy} to the main frame navigations of the WebView and is
+ * exposed to the WebView as {@code AndroidNavigation}. It stops embed players from navigating the app to ad
+ * redirect chains and landing pages before they load. The allowlist is the default player and app hosts plus
+ * the player servers configured in the settings of every account, and it follows settings changes.
+ * Prevented navigations are counted per reason and host, with an estimate of the bytes they would have cost.
+ */
+public class NavigationGuard {
+    private static final String TAG = "NavigationGuard";
+    static final String SETTINGS_PREFS = "ivids_settings";
+    private static final String PREVENTED = "ivids_navigations_prevented_total";
+    private static final String PREVENTED_HELP = "Main frame navigations stopped before loading, by reason.";
+    /**
+     * Bytes a prevented page load is assumed to cost: about the median transfer size of a mobile page.
+     * The real size is unknown, as the page is never requested.
+     */
+    static final long ESTIMATED_PAGE_BYTES = 2_000_000L;
+    private static final int MAX_TRACKED_HOSTS = 20;
+
+    private final SharedPreferences mSettings;
+    private final NavigationPolicy mPolicy;
+    private final MetricsRegistry.Counter mAllowed;
+    private final MetricsRegistry.Counter mBlockedHost;
+    private final MetricsRegistry.Counter mBlockedScheme;
+    private final MetricsRegistry.Counter mRateLimited;
+    private final MetricsRegistry.Counter mBytesSaved;
+    /** Host to prevented navigations, in first-seen order. Guarded by itself. */
+    private final Map<String, Integer> mPreventedHosts = new LinkedHashMap<>();
+    // Held as a field: SharedPreferences only keeps weak references to its listeners
+    private final SharedPreferences.OnSharedPreferenceChangeListener mSettingsListener = (prefs, key) -> {
+        if (key != null && key.endsWith("settings")) {
+            refreshHosts();
+        }
+    };
+
+    /**
+     * Constructs a new NavigationGuard instance.
+     *
+     * @param context The context used to read the player servers from the mirrored settings.
+     */
+    public NavigationGuard(Context context) {
+        this.mSettings = context.getSharedPreferences(SETTINGS_PREFS, Context.MODE_PRIVATE);
+        this.mPolicy = NavigationPolicy.createDefault(readPlayerHosts(mSettings));
+        mSettings.registerOnSharedPreferenceChangeListener(mSettingsListener);
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        mAllowed = metrics.counter("ivids_navigations_allowed_total", "Main frame navigations allowed by the navigation guard.");
+        mBlockedHost = metrics.counter(PREVENTED, PREVENTED_HELP, "reason", "host");
+        mBlockedScheme = metrics.counter(PREVENTED, PREVENTED_HELP, "reason", "scheme");
+        mRateLimited = metrics.counter(PREVENTED, PREVENTED_HELP, "reason", "rate_limited");
+        mBytesSaved = metrics.counter("ivids_navigation_bytes_saved_estimate_total",
+                "Estimated bytes of prevented page loads (" + ESTIMATED_PAGE_BYTES + " per page).");
+    }
+
+    /**
+     * Checks a main frame navigation. Called from {@code shouldOverrideUrlLoading} on the main thread.
+     *
+     * @param url The navigation target.
+     * @param userGesture Whether the navigation was started by the user.
+     * @return true if the navigation must be cancelled.
+     */
+    public boolean shouldBlock(Uri url, boolean userGesture) {
+        if (url == null) {
+            return false;
+        }
+        String host = url.getHost();
+        NavigationPolicy.Decision decision = mPolicy.decide(url.getScheme(), host, userGesture, SystemClock.elapsedRealtime());
+        switch (decision) {
+            case ALLOW:
+                mAllowed.inc();
+                return false;
+            case BLOCK_HOST:
+                mBlockedHost.inc();
+                break;
+            case BLOCK_SCHEME:
+                mBlockedScheme.inc();
+                break;
+            case RATE_LIMITED:
+                mRateLimited.inc();
+                break;
+        }
+        // Non-network schemes would not have loaded a page
+        if (decision != NavigationPolicy.Decision.BLOCK_SCHEME) {
+            mBytesSaved.add(ESTIMATED_PAGE_BYTES);
+        }
+        String key = host != null ? host : url.getScheme() + ":";
+        synchronized (mPreventedHosts) {
+            Integer count = mPreventedHosts.get(key);
+            if (count != null || mPreventedHosts.size() < MAX_TRACKED_HOSTS) {
+                mPreventedHosts.put(key, count == null ? 1 : count + 1);
+            }
+        }
+        Log.d(TAG, "Prevented navigation (" + decision + "): " + url);
+        return true;
+    }
+
+    /**
+     * Checks a subframe navigation. WebView only reports those with non-network schemes, which would try to
+     * leave the app (e.g. {@code intent:} links in an ad frame).
+     *
+     * @param url The navigation target.
+     * @return true if the navigation must be cancelled.
+     */
+    public boolean shouldBlockSubframe(Uri url) {
+        String scheme = url != null ? url.getScheme() : null;
+        if ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)) {
+            return false;
+        }
+        mBlockedScheme.inc();
+        Log.d(TAG, "Prevented subframe navigation: " + url);
+        return true;
+    }
+
+    /**
+     * Returns the navigations allowed and prevented in this process.
+     *
+     * @return A JSON string: {allowed, blockedHost, blockedScheme, rateLimited, prevented, estimatedBytesSaved,
+     * hosts: {host: count}}.
+     */
+    @JavascriptInterface
+    public String getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            long prevented = mBlockedHost.get() + mBlockedScheme.get() + mRateLimited.get();
+            stats.put("allowed", mAllowed.get());
+            stats.put("blockedHost", mBlockedHost.get());
+            stats.put("blockedScheme", mBlockedScheme.get());
+            stats.put("rateLimited", mRateLimited.get());
+            stats.put("prevented", prevented);
+            stats.put("estimatedBytesSaved", mBytesSaved.get());
+            JSONObject hosts = new JSONObject();
+            synchronized (mPreventedHosts) {
+                for (Map.Entry<String, Integer> entry : mPreventedHosts.entrySet()) {
+                    hosts.put(entry.getKey(), entry.getValue());
+                }
+            }
+            stats.put("hosts", hosts);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing navigation stats", e);
+        }
+        return stats.toString();
+    }
+
+    /**
+     * Stops following settings changes.
+     */
+    public void shutdown() {
+        mSettings.unregisterOnSharedPreferenceChangeListener(mSettingsListener);
+    }
+
+    private void refreshHosts() {
+        Set<String> hosts = new LinkedHashSet<>(NavigationPolicy.DEFAULT_HOSTS);
+        hosts.addAll(readPlayerHosts(mSettings));
+        mPolicy.setHosts(hosts);
+    }
+
+    /**
+     * Collects the hosts of the player servers (base URL and provider list) from the settings of all accounts.
+     *
+     * @param settingsPrefs The mirrored settings ({@link #SETTINGS_PREFS}).
+     * @return The player server hosts, in settings order.
+     */
+    static Set<String> readPlayerHosts(SharedPreferences settingsPrefs) {
+        Set<String> hosts = new LinkedHashSet<>();
+        try {
+            for (Map.Entry<String, ?> entry : settingsPrefs.getAll().entrySet()) {
+                if (!entry.getKey().endsWith("settings") || !(entry.getValue() instanceof String)) {
+                    continue;
+                }
+                try {
+                    JSONObject settings = new JSONObject((String) entry.getValue());
+                    addHost(hosts, settings.optString("playerBaseUrl", null));
+                    JSONArray providers = settings.optJSONArray("playerProviders");
+                    for (int i = 0; providers != null && i < providers.length(); i++) {
+                        JSONObject provider = providers.optJSONObject(i);
+                        if (provider != null) {
+                            addHost(hosts, provider.optString("url", null));
+                        }
+                    }
+                } catch (JSONException ignored) {
+                    // Not a settings object
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error reading player servers from settings", e);
+        }
+        return hosts;
+    }
+
+    private static void addHost(Set<String> hosts, String url) {
+        String host = url != null && !url.isEmpty() ? Uri.parse(url).getHost() : null;
+        if (host != null && !host.isEmpty()) {
+            hosts.add(host);
+        }
+    }
+}
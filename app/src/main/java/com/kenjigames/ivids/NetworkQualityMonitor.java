@@ -0,0 +1,467 @@
+package com.kenjigames.ivids;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+
+import com.kenjigames.ivids.core.TmdbImageSizes;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * NetworkQualityMonitor classifies the current link and drives the native data saver, exposed to the WebView as
+ * {@code AndroidNetwork}. The classification combines the ConnectivityManager network callback (connectivity,
+ * metered flag, advertised link bandwidth) with rolling RTT and throughput samples from the app's own native
+ * transfers (HLS segments, channel logos, rewritten images).
+ * While data saving is active, TMDB image requests are rewritten at the interception layer to smaller variants
+ * and the estimated bytes saved are reported through the bridge.
+ */
+public class NetworkQualityMonitor {
+    private static final String TAG = "NetworkQualityMonitor";
+
+    /** Link classes, from worst to best. */
+    static final String CLASS_OFFLINE = "offline";
+    static final String CLASS_SLOW = "slow";
+    static final String CLASS_MODERATE = "moderate";
+    static final String CLASS_FAST = "fast";
+
+    private static final String TMDB_IMAGE_HOST = "image.tmdb.org";
+    /** Below this throughput (kbps) the link is slow; matches NETWORK_CONFIG.SLOW_THRESHOLD_MBPS in JS. */
+    private static final long SLOW_KBPS = 1500;
+    /** Below this throughput (kbps) the link is moderate. */
+    private static final long MODERATE_KBPS = 5000;
+    /** Time to first byte above which the link is treated as slow regardless of throughput. */
+    private static final long SLOW_RTT_MS = 1200;
+    /** Transfers smaller than this are latency dominated and only contribute an RTT sample. */
+    private static final long MIN_THROUGHPUT_SAMPLE_BYTES = 16 * 1024;
+    /** Weight of a new sample in the exponentially weighted moving averages. */
+    private static final double SAMPLE_WEIGHT = 0.25;
+    private static final int CONNECT_TIMEOUT_MS = 8000;
+    private static final int READ_TIMEOUT_MS = 15000;
+
+    private final Context mContext;
+    private final ConnectivityManager mConnectivityManager;
+    private final WebView mWebView;
+    private ConnectivityManager.NetworkCallback mCallback;
+    private BroadcastReceiver mDataSaverReceiver;
+
+    /** Networks reported available by the callback; only the default network on API 24+. */
+    private final Set<Network> mNetworks = new HashSet<>();
+    private volatile boolean mConnected = true;
+    private volatile boolean mMetered = false;
+    private volatile long mLinkKbps = 0;
+    private volatile boolean mSystemDataSaver = false;
+    private volatile boolean mUserDataSaver = false;
+    private String mLastClass = null;
+
+    private double mRttMs = -1;
+    private double mThroughputKbps = -1;
+    private long mRewrites = 0;
+    private long mRewrittenBytes = 0;
+    private long mBytesSaved = 0;
+
+    /**
+     * Constructs a new NetworkQualityMonitor instance.
+     *
+     * @param context The context used to access the connectivity service.
+     * @param webView The WebView notified about link class changes via {@code window.onNetworkQualityChanged}.
+     */
+    public NetworkQualityMonitor(Context context, WebView webView) {
+        this.mContext = context;
+        this.mConnectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.mWebView = webView;
+    }
+
+    /**
+     * Starts listening to network changes. On API 24+ only the default network is tracked, so connectivity, the
+     * metered flag and the link bandwidth always describe the network the app's traffic actually uses.
+     */
+    public void start() {
+        if (mConnectivityManager == null || mCallback != null) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            // The callback only reports networks that come up, so an offline start has to be seen here
+            mConnected = mConnectivityManager.getActiveNetwork() != null;
+        }
+        mCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                synchronized (mNetworks) {
+                    mNetworks.add(network);
+                    mConnected = true;
+                }
+                notifyIfChanged();
+            }
+
+            @Override
+            public void onLost(Network network) {
+                synchronized (mNetworks) {
+                    mNetworks.remove(network);
+                    mConnected = !mNetworks.isEmpty();
+                }
+                notifyIfChanged();
+            }
+
+            @Override
+            public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+                mMetered = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+                mLinkKbps = capabilities.getLinkDownstreamBandwidthKbps();
+                refreshSystemDataSaver();
+                notifyIfChanged();
+            }
+        };
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                mConnectivityManager.registerDefaultNetworkCallback(mCallback);
+                registerDataSaverReceiver();
+            } else {
+                NetworkRequest request = new NetworkRequest.Builder()
+                        .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                        .build();
+                mConnectivityManager.registerNetworkCallback(request, mCallback);
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to register network callback", e);
+            mCallback = null;
+        }
+    }
+
+    /**
+     * Stops listening to network changes.
+     */
+    public void stop() {
+        if (mConnectivityManager != null && mCallback != null) {
+            try {
+                mConnectivityManager.unregisterNetworkCallback(mCallback);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Network callback was not registered", e);
+            }
+            mCallback = null;
+        }
+        if (mDataSaverReceiver != null) {
+            try {
+                mContext.unregisterReceiver(mDataSaverReceiver);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Data saver receiver was not registered", e);
+            }
+            mDataSaverReceiver = null;
+        }
+        synchronized (mNetworks) {
+            mNetworks.clear();
+        }
+    }
+
+    /**
+     * Follows the system Data Saver toggle, which changes the restrict background status without any network
+     * callback. The broadcast is only delivered to receivers registered at runtime.
+     */
+    private void registerDataSaverReceiver() {
+        mDataSaverReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                refreshSystemDataSaver();
+                notifyIfChanged();
+            }
+        };
+        mContext.registerReceiver(mDataSaverReceiver, new IntentFilter(ConnectivityManager.ACTION_RESTRICT_BACKGROUND_CHANGED));
+    }
+
+    /**
+     * Caches whether the system Data Saver applies to the current network, so {@link #canHandle} stays free of
+     * binder calls on the request path.
+     */
+    private void refreshSystemDataSaver() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return;
+        }
+        try {
+            mSystemDataSaver = mMetered && mConnectivityManager.getRestrictBackgroundStatus()
+                    == ConnectivityManager.RESTRICT_BACKGROUND_STATUS_ENABLED;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to read the Data Saver status", e);
+        }
+    }
+
+    /**
+     * Mirrors the user's Data Saver setting from the web settings page.
+     *
+     * @param enabled Whether the user enabled Data Saver.
+     */
+    @JavascriptInterface
+    public void setDataSaver(boolean enabled) {
+        mUserDataSaver = enabled;
+        notifyIfChanged();
+    }
+
+    /**
+     * @return true if images should currently be loaded at the smallest sizes (data saver or slow link).
+     */
+    @JavascriptInterface
+    public boolean isSlow() {
+        return getSavingLevel() == TmdbImageSizes.Level.MINIMAL;
+    }
+
+    /**
+     * Returns the current link classification and the data saver statistics of this app session.
+     *
+     * @return A JSON string: {linkClass, metered, dataSaver, rttMs, throughputKbps, rewrites, rewrittenBytes, bytesSaved}.
+     */
+    @JavascriptInterface
+    public String getNetworkStatus() {
+        JSONObject status = new JSONObject();
+        try {
+            status.put("linkClass", classify());
+            status.put("metered", mMetered);
+            status.put("dataSaver", mUserDataSaver || isSystemDataSaverOn());
+            synchronized (this) {
+                status.put("rttMs", Math.round(mRttMs));
+                status.put("throughputKbps", Math.round(mThroughputKbps));
+                status.put("rewrites", mRewrites);
+                status.put("rewrittenBytes", mRewrittenBytes);
+                status.put("bytesSaved", mBytesSaved);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing network status", e);
+        }
+        return status.toString();
+    }
+
+    /**
+     * Classifies the link from the measured samples, falling back to the advertised link bandwidth.
+     *
+     * @return One of offline, slow, moderate or fast.
+     */
+    String classify() {
+        if (!mConnected) {
+            return CLASS_OFFLINE;
+        }
+        double throughput;
+        double rtt;
+        synchronized (this) {
+            throughput = mThroughputKbps;
+            rtt = mRttMs;
+        }
+        if (rtt > SLOW_RTT_MS) {
+            return CLASS_SLOW;
+        }
+        if (throughput < 0) {
+            throughput = mLinkKbps > 0 ? mLinkKbps : MODERATE_KBPS;
+        }
+        if (throughput < SLOW_KBPS) {
+            return CLASS_SLOW;
+        }
+        return throughput < MODERATE_KBPS ? CLASS_MODERATE : CLASS_FAST;
+    }
+
+    /**
+     * @return The image downsizing level for the current link and settings.
+     */
+    TmdbImageSizes.Level getSavingLevel() {
+        String linkClass = classify();
+        if (mUserDataSaver || isSystemDataSaverOn() || CLASS_SLOW.equals(linkClass)) {
+            return TmdbImageSizes.Level.MINIMAL;
+        }
+        if (mMetered && CLASS_MODERATE.equals(linkClass)) {
+            return TmdbImageSizes.Level.REDUCED;
+        }
+        return TmdbImageSizes.Level.NONE;
+    }
+
+    private boolean isSystemDataSaverOn() {
+        return mSystemDataSaver;
+    }
+
+    /**
+     * Records one completed native transfer.
+     *
+     * @param bytes The body bytes transferred.
+     * @param ttfbMs The time from request to response headers.
+     * @param transferMs The time from response headers to the end of the body.
+     */
+    public void recordTransfer(long bytes, long ttfbMs, long transferMs) {
+        synchronized (this) {
+            mRttMs = mRttMs < 0 ? ttfbMs : mRttMs + SAMPLE_WEIGHT * (ttfbMs - mRttMs);
+            if (bytes >= MIN_THROUGHPUT_SAMPLE_BYTES && transferMs > 0) {
+                double kbps = bytes * 8.0 / transferMs;
+                mThroughputKbps = mThroughputKbps < 0 ? kbps : mThroughputKbps + SAMPLE_WEIGHT * (kbps - mThroughputKbps);
+            }
+        }
+        notifyIfChanged();
+    }
+
+    /**
+     * Wraps a response body so its size and duration are recorded as a transfer sample when it is fully read
+     * or closed.
+     *
+     * @param body The response body.
+     * @param requestStartMs {@link SystemClock#elapsedRealtime()} when the request was sent.
+     * @return The measuring stream.
+     */
+    public InputStream measure(InputStream body, long requestStartMs) {
+        return new MeasuringInputStream(body, requestStartMs, SystemClock.elapsedRealtime(), null, null);
+    }
+
+    /**
+     * @param url A request URL.
+     * @return true if the request is a TMDB image that should currently be downsized.
+     */
+    public boolean canHandle(Uri url) {
+        return url != null && TMDB_IMAGE_HOST.equals(url.getHost())
+                && TmdbImageSizes.rewritePath(url.getPath(), getSavingLevel()) != null;
+    }
+
+    /**
+     * Loads the downsized variant of a TMDB image. Called from WebViewClient.shouldInterceptRequest on a
+     * WebView background thread.
+     *
+     * @param request The intercepted TMDB image request.
+     * @return The smaller image, or null to let the WebView load the original if the variant cannot be fetched.
+     */
+    public WebResourceResponse handle(WebResourceRequest request) {
+        Uri url = request.getUrl();
+        String path = url.getPath();
+        String rewritten = TmdbImageSizes.rewritePath(path, getSavingLevel());
+        if (rewritten == null) {
+            return null;
+        }
+        String originalSize = TmdbImageSizes.sizeOf(path);
+        String servedSize = TmdbImageSizes.sizeOf(rewritten);
+        long start = SystemClock.elapsedRealtime();
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) new URL("https://" + TMDB_IMAGE_HOST + rewritten).openConnection();
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                conn.disconnect();
+                return null;
+            }
+            String contentType = conn.getContentType();
+            String mimeType = contentType != null ? contentType.split(";")[0].trim() : "image/jpeg";
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Cache-Control", "public, max-age=604800");
+            headers.put("Access-Control-Allow-Origin", "*");
+            InputStream body = new MeasuringInputStream(conn.getInputStream(), start, SystemClock.elapsedRealtime(),
+                    originalSize, servedSize);
+            return new WebResourceResponse(mimeType, null, 200, "OK", headers, body);
+        } catch (IOException e) {
+            Log.w(TAG, "Downsized image failed, loading original: " + e.getMessage());
+            if (conn != null) {
+                conn.disconnect();
+            }
+            return null;
+        }
+    }
+
+    private void recordRewrite(String originalSize, String servedSize, long bytes) {
+        synchronized (this) {
+            mRewrites++;
+            mRewrittenBytes += bytes;
+            mBytesSaved += TmdbImageSizes.estimateBytesSaved(originalSize, servedSize, bytes);
+        }
+    }
+
+    /**
+     * Pushes the link class to the web app when it changes.
+     */
+    private void notifyIfChanged() {
+        String linkClass = classify();
+        synchronized (this) {
+            if (linkClass.equals(mLastClass)) {
+                return;
+            }
+            mLastClass = linkClass;
+        }
+        Log.d(TAG, "Link class: " + linkClass + " (metered: " + mMetered + ", saving: " + getSavingLevel() + ")");
+        mWebView.post(() -> mWebView.evaluateJavascript(
+                "if(typeof window.onNetworkQualityChanged === 'function') window.onNetworkQualityChanged('" + linkClass + "')",
+                null));
+    }
+
+    /**
+     * Counts body bytes and records a transfer sample (and, for rewritten images, the bytes saved) once.
+     */
+    private final class MeasuringInputStream extends FilterInputStream {
+        private final long mRequestStart;
+        private final long mHeadersAt;
+        private final String mOriginalSize;
+        private final String mServedSize;
+        private long mBytes = 0;
+        private boolean mRecorded = false;
+
+        MeasuringInputStream(InputStream in, long requestStart, long headersAt, String originalSize, String servedSize) {
+            super(in);
+            this.mRequestStart = requestStart;
+            this.mHeadersAt = headersAt;
+            this.mOriginalSize = originalSize;
+            this.mServedSize = servedSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value == -1) {
+                record();
+            } else {
+                mBytes++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count == -1) {
+                record();
+            } else {
+                mBytes += count;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                record();
+            }
+        }
+
+        private void record() {
+            if (mRecorded) {
+                return;
+            }
+            mRecorded = true;
+            recordTransfer(mBytes, mHeadersAt - mRequestStart, SystemClock.elapsedRealtime() - mHeadersAt);
+            if (mOriginalSize != null) {
+                recordRewrite(mOriginalSize, mServedSize, mBytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package com.kenjigames.ivids;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebView;
+
+import com.kenjigames.ivids.core.PriorityScheduler;
+import com.kenjigames.ivids.core.RecommendationMerger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * RecommendationService builds the home screen's "Recommended for You" row natively, exposed to the WebView as
+ * {@code AndroidRecommendations}. It reads the watch history from SharedPreferences (PersistentStorage mirrors it
+ * there), fetches the TMDB recommendations of the most recently watched titles in parallel on a small pool, and
+ * merges them with {@link RecommendationMerger} into one compact ranked list, so the WebView makes one bridge call
+ * instead of a request and a JSON parse per title.
+ * Per-title lists are kept in a disk cache for a day; the merged list is kept in memory and on disk and is only
+ * rebuilt when the history changes. A rebuilt list is pushed to {@code window.onRecommendationsUpdated}.
+ */
+public class RecommendationService {
+    private static final String TAG = "RecommendationService";
+    private static final String PREFS_NAME = "ivids_settings";
+    private static final String TMDB_API = "https://api.themoviedb.org/3";
+    private static final String MERGED_FILE = "merged.json";
+
+    /** Recently watched titles whose recommendations are merged. */
+    private static final int MAX_SOURCES = 8;
+    private static final int MAX_RESULTS = 40;
+    private static final int FETCH_THREADS = 4;
+    private static final long SOURCE_TTL_MS = TimeUnit.HOURS.toMillis(24);
+    /** Per-title lists not used for this long are deleted. */
+    private static final long SOURCE_MAX_AGE_MS = TimeUnit.DAYS.toMillis(7);
+    private static final int CONNECT_TIMEOUT_MS = 8000;
+    private static final int READ_TIMEOUT_MS = 15000;
+    private static final long FETCH_WAIT_MS = 20000;
+    private static final String[] ITEM_FIELDS = {
+            "title", "name", "poster_path", "backdrop_path", "vote_average", "release_date", "first_air_date"
+    };
+
+    private final WebView mWebView;
+    private final SharedPreferences mPrefs;
+    private final File mCacheDir;
+    private final ExecutorService mFetchPool;
+    private final LatencyHistogram mBuildMs = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+    private final LatencyHistogram mRowBuildMs = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+    private final MetricsRegistry.Counter mCachedSources;
+    private final MetricsRegistry.Counter mFetchedSources;
+    private final MetricsRegistry.Counter mFailedSources;
+    private final MetricsRegistry.Counter mUpstreamBytes;
+
+    private String mHistoryKey;
+    private String mApiKey;
+    private String mLanguage;
+    private boolean mIncludeAdult;
+    private String mMerged;
+    private String mMergedFingerprint;
+    private PriorityScheduler.Task mRefreshTask;
+    private String mRefreshFingerprint;
+
+    /** Rebuilds the list when the watched history key is written. Held strongly: SharedPreferences keeps a weak reference. */
+    private final SharedPreferences.OnSharedPreferenceChangeListener mHistoryListener = (prefs, key) -> {
+        boolean watched;
+        synchronized (this) {
+            watched = key != null && key.equals(mHistoryKey);
+        }
+        if (watched) {
+            scheduleRefresh();
+        }
+    };
+
+    /**
+     * Constructs a new RecommendationService instance.
+     *
+     * @param context The context used to read the watch history and locate the cache directory.
+     * @param webView The WebView that receives rebuilt lists.
+     */
+    public RecommendationService(Context context, WebView webView) {
+        this.mWebView = webView;
+        this.mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.mCacheDir = new File(context.getCacheDir(), "recommendations");
+        this.mFetchPool = Executors.newFixedThreadPool(FETCH_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "RecommendationFetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        mPrefs.registerOnSharedPreferenceChangeListener(mHistoryListener);
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        String sourcesName = "ivids_recommendation_sources_total";
+        String sourcesHelp = "Per-title recommendation lists by where they came from.";
+        mCachedSources = metrics.counter(sourcesName, sourcesHelp, "result", "cache");
+        mFetchedSources = metrics.counter(sourcesName, sourcesHelp, "result", "network");
+        mFailedSources = metrics.counter(sourcesName, sourcesHelp, "result", "error");
+        mUpstreamBytes = metrics.counter(MetricsRegistry.UPSTREAM_BYTES, MetricsRegistry.UPSTREAM_BYTES_HELP, "component", "recommendations");
+        metrics.histogram("ivids_recommendations_build_seconds", "Native fan-out and merge of the recommendation row.", mBuildMs);
+        metrics.histogram("ivids_home_row_build_seconds", "Home row request until its posters are in the DOM.", mRowBuildMs,
+                "row", "recommended");
+    }
+
+    /**
+     * Returns the merged recommendations for the given history and starts a rebuild in the background if the
+     * history changed since the list was built.
+     *
+     * @param historyKey The SharedPreferences key of the active account's watch history.
+     * @param apiKey The TMDB API key.
+     * @param language The TMDB language code, e.g. {@code en-US}.
+     * @param includeAdult Whether adult titles may be recommended.
+     * @return A JSON array of compact TMDB items; possibly built for an older history while the rebuild runs, or
+     *         an empty string if no list exists yet.
+     */
+    @JavascriptInterface
+    public String getRecommendations(String historyKey, String apiKey, String language, boolean includeAdult) {
+        synchronized (this) {
+            mHistoryKey = historyKey;
+            mApiKey = apiKey;
+            mLanguage = language;
+            mIncludeAdult = includeAdult;
+        }
+        String fingerprint = fingerprint(readHistory());
+        String merged;
+        synchronized (this) {
+            if (mMerged == null) {
+                loadMerged();
+            }
+            if (fingerprint.equals(mMergedFingerprint)) {
+                return mMerged;
+            }
+            // A list built for an older history of the same account is shown until the rebuild replaces it, but not
+            // one in another language or with a different adult setting
+            boolean sameAccount = mMergedFingerprint != null
+                    && mMergedFingerprint.startsWith(configPrefix(historyKey, language, includeAdult));
+            merged = sameAccount ? mMerged : null;
+        }
+        scheduleRefresh();
+        return merged != null ? merged : "";
+    }
+
+    /**
+     * Records how long the WebView took to show the row, from its request until the posters were added.
+     *
+     * @param ms The row build time in milliseconds.
+     */
+    @JavascriptInterface
+    public void reportRowBuild(double ms) {
+        mRowBuildMs.record(Math.round(ms));
+    }
+
+    /**
+     * Returns build statistics of this app session.
+     *
+     * @return A JSON string: {buildMs, rowBuildMs, sources: {cache, network, error}}.
+     */
+    @JavascriptInterface
+    public String getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("buildMs", mBuildMs.toJson());
+            stats.put("rowBuildMs", mRowBuildMs.toJson());
+            JSONObject sources = new JSONObject();
+            sources.put("cache", mCachedSources.get());
+            sources.put("network", mFetchedSources.get());
+            sources.put("error", mFailedSources.get());
+            stats.put("sources", sources);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing recommendation stats", e);
+        }
+        return stats.toString();
+    }
+
+    /**
+     * Stops the fetch pool and history listener.
+     */
+    public void shutdown() {
+        mPrefs.unregisterOnSharedPreferenceChangeListener(mHistoryListener);
+        synchronized (this) {
+            if (mRefreshTask != null) {
+                mRefreshTask.cancel();
+            }
+        }
+        mFetchPool.shutdownNow();
+    }
+
+    /**
+     * Queues a rebuild as prefetch work, replacing a queued or running rebuild for an older history.
+     */
+    private void scheduleRefresh() {
+        String fingerprint = fingerprint(readHistory());
+        synchronized (this) {
+            if (mApiKey == null || fingerprint.equals(mMergedFingerprint)) {
+                return;
+            }
+            if (fingerprint.equals(mRefreshFingerprint) && !mRefreshTask.isCancelled()) {
+                return;
+            }
+            if (mRefreshTask != null) {
+                mRefreshTask.cancel();
+            }
+            mRefreshFingerprint = fingerprint;
+            mRefreshTask = BackgroundScheduler.getInstance().submit("recommendations", PriorityScheduler.Priority.PREFETCH, this::rebuild);
+        }
+    }
+
+    private void rebuild(PriorityScheduler.Task task) throws InterruptedException {
+        long start = SystemClock.elapsedRealtime();
+        String apiKey;
+        String language;
+        boolean includeAdult;
+        synchronized (this) {
+            apiKey = mApiKey;
+            language = mLanguage;
+            includeAdult = mIncludeAdult;
+        }
+        JSONArray history = readHistory();
+        String fingerprint = fingerprint(history);
+        List<String> watchedKeys = new ArrayList<>();
+        List<Future<List<RecommendationMerger.Item>>> fetches = new ArrayList<>();
+        for (int i = 0; i < history.length(); i++) {
+            JSONObject item = history.optJSONObject(i);
+            if (item == null) {
+                continue;
+            }
+            String type = item.optString("media_type", "movie");
+            long id = item.optLong("id", -1);
+            if (id < 0 || (!"movie".equals(type) && !"tv".equals(type))) {
+                continue;
+            }
+            watchedKeys.add(RecommendationMerger.key(type, id));
+            if (fetches.size() < MAX_SOURCES) {
+                fetches.add(mFetchPool.submit(() -> loadSource(type, id, apiKey, language, includeAdult)));
+            }
+        }
+
+        List<List<RecommendationMerger.Item>> sources = new ArrayList<>();
+        int failed = 0;
+        long deadline = SystemClock.elapsedRealtime() + FETCH_WAIT_MS;
+        try {
+            for (Future<List<RecommendationMerger.Item>> fetch : fetches) {
+                task.checkpoint();
+                try {
+                    sources.add(fetch.get(Math.max(0, deadline - SystemClock.elapsedRealtime()), TimeUnit.MILLISECONDS));
+                } catch (ExecutionException | TimeoutException e) {
+                    mFailedSources.inc();
+                    failed++;
+                    Log.w(TAG, "Recommendation source failed: " + e);
+                    sources.add(new ArrayList<>());
+                }
+            }
+        } finally {
+            for (Future<List<RecommendationMerger.Item>> fetch : fetches) {
+                fetch.cancel(true);
+            }
+        }
+        task.checkpoint();
+        if (failed > 0 && failed == fetches.size()) {
+            // Offline: keep the previous list and retry on the next request
+            synchronized (this) {
+                mRefreshFingerprint = null;
+            }
+            return;
+        }
+
+        List<RecommendationMerger.Item> merged = RecommendationMerger.merge(sources, watchedKeys, today(), MAX_RESULTS);
+        StringBuilder json = new StringBuilder(merged.size() * 256).append('[');
+        for (int i = 0; i < merged.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(merged.get(i).payload);
+        }
+        final String result = json.append(']').toString();
+        synchronized (this) {
+            mMerged = result;
+            mMergedFingerprint = fingerprint;
+        }
+        saveMerged(fingerprint, result);
+        pruneCache();
+        long buildMs = SystemClock.elapsedRealtime() - start;
+        mBuildMs.record(buildMs);
+        Log.d(TAG, "Built " + merged.size() + " recommendations from " + fetches.size() + " titles in " + buildMs + " ms");
+
+        mWebView.post(() -> mWebView.evaluateJavascript(
+                "if(typeof window.onRecommendationsUpdated === 'function') window.onRecommendationsUpdated(" + result + ");",
+                null));
+    }
+
+    /**
+     * Returns the compact recommendation list of one title, from the disk cache if it is fresh.
+     */
+    private List<RecommendationMerger.Item> loadSource(String type, long id, String apiKey, String language,
+                                                      boolean includeAdult) throws IOException, JSONException {
+        File file = new File(mCacheDir, type + "-" + id + "-" + language.replaceAll("[^A-Za-z-]", "") + (includeAdult ? "-adult" : "") + ".json");
+        if (file.exists() && System.currentTimeMillis() - file.lastModified() < SOURCE_TTL_MS) {
+            try {
+                List<RecommendationMerger.Item> items = toItems(new JSONArray(readFile(file)), type);
+                mCachedSources.inc();
+                return items;
+            } catch (IOException | JSONException e) {
+                Log.w(TAG, "Discarding unreadable cache file " + file.getName(), e);
+            }
+        }
+
+        String url = TMDB_API + "/" + type + "/" + id + "/recommendations?api_key=" + URLEncoder.encode(apiKey, "UTF-8")
+                + "&include_adult=" + includeAdult + "&language=" + URLEncoder.encode(language, "UTF-8");
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        JSONArray compact = new JSONArray();
+        try {
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setRequestProperty("Accept", "application/json");
+            int status = conn.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status + " for " + type + "/" + id);
+            }
+            byte[] body;
+            try (InputStream in = conn.getInputStream()) {
+                body = readBytes(in);
+            }
+            mUpstreamBytes.add(body.length);
+            JSONArray results = new JSONObject(new String(body, StandardCharsets.UTF_8)).optJSONArray("results");
+            for (int i = 0; results != null && i < results.length(); i++) {
+                JSONObject result = results.optJSONObject(i);
+                if (result == null || result.isNull("poster_path")) {
+                    continue;
+                }
+                JSONObject item = new JSONObject();
+                item.put("id", result.getLong("id"));
+                item.put("media_type", result.optString("media_type", type));
+                for (String field : ITEM_FIELDS) {
+                    if (result.has(field) && !result.isNull(field)) {
+                        item.put(field, result.get(field));
+                    }
+                }
+                compact.put(item);
+            }
+        } finally {
+            conn.disconnect();
+        }
+        mFetchedSources.inc();
+
+        if (mCacheDir.isDirectory() || mCacheDir.mkdirs()) {
+            writeFile(file, compact.toString());
+        }
+        return toItems(compact, type);
+    }
+
+    private static List<RecommendationMerger.Item> toItems(JSONArray compact, String defaultType) throws JSONException {
+        List<RecommendationMerger.Item> items = new ArrayList<>(compact.length());
+        for (int i = 0; i < compact.length(); i++) {
+            JSONObject item = compact.getJSONObject(i);
+            String releaseDate = item.optString("release_date", item.optString("first_air_date", ""));
+            items.add(new RecommendationMerger.Item(item.optString("media_type", defaultType), item.getLong("id"),
+                    releaseDate, item.toString()));
+        }
+        return items;
+    }
+
+    private JSONArray readHistory() {
+        String key;
+        synchronized (this) {
+            key = mHistoryKey;
+        }
+        String stored = key != null ? mPrefs.getString(key, null) : null;
+        if (stored == null) {
+            return new JSONArray();
+        }
+        try {
+            return new JSONArray(stored);
+        } catch (JSONException e) {
+            Log.w(TAG, "Unreadable watch history", e);
+            return new JSONArray();
+        }
+    }
+
+    /**
+     * @return The part of a fingerprint that identifies the account and request configuration.
+     */
+    private static String configPrefix(String historyKey, String language, boolean includeAdult) {
+        return historyKey + '|' + language + '|' + includeAdult + '|';
+    }
+
+    /**
+     * Identifies a history and request configuration; only the order of titles matters, not the resume positions.
+     */
+    private String fingerprint(JSONArray history) {
+        StringBuilder fingerprint = new StringBuilder();
+        synchronized (this) {
+            fingerprint.append(configPrefix(mHistoryKey, mLanguage, mIncludeAdult));
+        }
+        for (int i = 0; i < history.length(); i++) {
+            JSONObject item = history.optJSONObject(i);
+            if (item != null) {
+                fingerprint.append(item.optString("media_type")).append(':').append(item.optString("id")).append(',');
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Restores the list built in an earlier session, so the row is filled before any network request. Must hold the lock.
+     */
+    private void loadMerged() {
+        File file = new File(mCacheDir, MERGED_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            JSONObject saved = new JSONObject(readFile(file));
+            mMergedFingerprint = saved.getString("fingerprint");
+            mMerged = saved.getJSONArray("items").toString();
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Discarding unreadable merged recommendations", e);
+        }
+    }
+
+    private void saveMerged(String fingerprint, String merged) {
+        try {
+            if (mCacheDir.isDirectory() || mCacheDir.mkdirs()) {
+                JSONObject saved = new JSONObject();
+                saved.put("fingerprint", fingerprint);
+                saved.put("items", new JSONArray(merged));
+                writeFile(new File(mCacheDir, MERGED_FILE), saved.toString());
+            }
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Could not save merged recommendations", e);
+        }
+    }
+
+    private void pruneCache() {
+        File[] files = mCacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (!MERGED_FILE.equals(file.getName()) && now - file.lastModified() > SOURCE_MAX_AGE_MS && !file.delete()) {
+                Log.w(TAG, "Could not delete " + file.getName());
+            }
+        }
+    }
+
+    private static String today() {
+        return new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date());
+    }
+
+    private static String readFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return new String(readBytes(in), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] readBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeFile(File file, String content) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not replace " + file.getName());
+        }
+    }
+}
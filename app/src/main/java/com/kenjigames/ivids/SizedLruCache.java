@@ -0,0 +1,84 @@
+package com.kenjigames.ivids;
+
+import android.util.LruCache;
+
+/**
+ * SizedLruCache is a byte-bounded LruCache that measures its entries with a pluggable {@link SizeEstimator}.
+ * It implements {@link TrimmableCache} so it can be registered with the {@link CacheRegistry} and trimmed
+ * on memory pressure together with every other native cache.
+ *
+ * @param <K> The cache key type.
+ * @param <V> The cached value type.
+ */
+public class SizedLruCache<K, V> extends LruCache<K, V> implements TrimmableCache {
+
+    /**
+     * Estimates the heap footprint of a single cache entry.
+     *
+     * @param <K> The cache key type.
+     * @param <V> The cached value type.
+     */
+    public interface SizeEstimator<K, V> {
+        /**
+         * @param key The entry key.
+         * @param value The entry value.
+         * @return The estimated size of the entry in bytes (must be at least 1).
+         */
+        int sizeOf(K key, V value);
+    }
+
+    private final SizeEstimator<K, V> mEstimator;
+    private volatile Runnable mGrowthListener;
+
+    /**
+     * Constructs a new SizedLruCache instance.
+     *
+     * @param maxBytes The maximum total size of the cache in bytes.
+     * @param estimator The estimator used to measure each entry.
+     */
+    public SizedLruCache(int maxBytes, SizeEstimator<K, V> estimator) {
+        super(Math.max(1, maxBytes));
+        this.mEstimator = estimator;
+    }
+
+    /**
+     * Inserts an entry like {@link #put(Object, Object)}, then runs the growth listener so the {@link CacheRegistry}
+     * can enforce the global budget. LruCache's {@code put} is final, so registered caches insert through this method.
+     *
+     * @param key The entry key.
+     * @param value The entry value.
+     * @return The previous value for the key, or null.
+     */
+    public V putAndReport(K key, V value) {
+        V previous = put(key, value);
+        Runnable listener = mGrowthListener;
+        if (listener != null) {
+            listener.run();
+        }
+        return previous;
+    }
+
+    @Override
+    public void setGrowthListener(Runnable listener) {
+        mGrowthListener = listener;
+    }
+
+    @Override
+    protected int sizeOf(K key, V value) {
+        return Math.max(1, mEstimator.sizeOf(key, value));
+    }
+
+    @Override
+    public long estimateSizeBytes() {
+        return size();
+    }
+
+    @Override
+    public void trimToSize(long maxBytes) {
+        if (maxBytes <= 0) {
+            evictAll();
+        } else {
+            trimToSize((int) Math.min(Integer.MAX_VALUE, maxBytes));
+        }
+    }
+}
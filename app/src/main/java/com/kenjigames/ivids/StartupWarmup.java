@@ -0,0 +1,292 @@
+package com.kenjigames.ivids;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * StartupWarmup resolves and pre-connects the hosts the home screen and player need first, on background threads
+ * started at the very beginning of MainActivity.onCreate, so DNS and the TCP/TLS handshake are off the critical
+ * path of the first paint.
+ * The warm-up uses HttpURLConnection, so the pooled keep-alive connections are reused by native fetches from the
+ * interception layer; requests made by the WebView's own network stack only benefit from the warm system DNS cache,
+ * so only the DNS time is counted as saved for them.
+ * The startup trace is exposed to the WebView as {@code AndroidStartup.getStartupTrace()}.
+ */
+public class StartupWarmup {
+    private static final String TAG = "StartupWarmup";
+
+    private static final String[] TMDB_HOSTS = {"api.themoviedb.org", "image.tmdb.org"};
+    /** Matches API_CONFIG.DEFAULT_PLAYER_BASE_URL in logic/constants.js. */
+    private static final String DEFAULT_PLAYER_HOST = "vidlink.pro";
+    /** SharedPreferences file written by SettingsBridge (PersistentStorage in JS). */
+    private static final String SETTINGS_PREFS = "ivids_settings";
+    private static final int MAX_PLAYER_HOSTS = 2;
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 5000;
+
+    /**
+     * Warm-up result and first use of one host. All times are milliseconds since {@link #start()}.
+     */
+    private static final class HostTrace {
+        final String host;
+        long startedAt = -1;
+        long dnsMs = -1;
+        long connectMs = -1;
+        long warmedAt = -1;
+        long firstRequestAt = -1;
+        /** Whether the first request was fetched natively and could reuse the pooled connection. */
+        boolean firstRequestNative;
+        String error;
+
+        HostTrace(String host) {
+            this.host = host;
+        }
+
+        /**
+         * @return The DNS and, for a native first request, handshake time the first request did not have to pay,
+         *         or 0 if it was not warmed in time.
+         */
+        long savedMs() {
+            if (firstRequestAt < 0 || startedAt < 0 || error != null && dnsMs < 0) {
+                return 0;
+            }
+            long warmCost = Math.max(dnsMs, 0) + (firstRequestNative ? Math.max(connectMs, 0) : 0);
+            if (warmedAt >= 0 && warmedAt <= firstRequestAt) {
+                return warmCost;
+            }
+            return Math.max(0, Math.min(warmCost, firstRequestAt - startedAt));
+        }
+    }
+
+    private final Context mContext;
+    private final Map<String, HostTrace> mHosts = new LinkedHashMap<>();
+    private final Map<String, Long> mMarks = new LinkedHashMap<>();
+    private ExecutorService mExecutor;
+    private long mStartedAt;
+
+    /**
+     * Constructs a new StartupWarmup instance.
+     *
+     * @param context The context used to read the configured player host.
+     */
+    public StartupWarmup(Context context) {
+        this.mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Starts resolving and pre-connecting all warm-up hosts in parallel. Returns immediately.
+     */
+    public void start() {
+        mStartedAt = SystemClock.elapsedRealtime();
+        mark("onCreate");
+        mExecutor = Executors.newFixedThreadPool(TMDB_HOSTS.length + MAX_PLAYER_HOSTS);
+        for (String host : TMDB_HOSTS) {
+            warm(host);
+        }
+        // Reading the player host touches SharedPreferences, so it is done off the main thread as well
+        mExecutor.execute(() -> {
+            for (String host : readPlayerHosts()) {
+                warm(host);
+            }
+            mExecutor.shutdown();
+        });
+    }
+
+    private void warm(String host) {
+        HostTrace trace;
+        synchronized (this) {
+            if (mHosts.containsKey(host)) {
+                return;
+            }
+            trace = new HostTrace(host);
+            mHosts.put(host, trace);
+        }
+        mExecutor.execute(() -> connect(trace));
+    }
+
+    /**
+     * Resolves the host, then opens an HTTPS connection and completes a HEAD request so the connection is
+     * released into the keep-alive pool.
+     */
+    private void connect(HostTrace trace) {
+        long start = SystemClock.elapsedRealtime();
+        synchronized (this) {
+            trace.startedAt = start - mStartedAt;
+        }
+        HttpURLConnection conn = null;
+        try {
+            InetAddress.getAllByName(trace.host);
+            long resolved = SystemClock.elapsedRealtime();
+            synchronized (this) {
+                trace.dnsMs = resolved - start;
+            }
+
+            conn = (HttpURLConnection) new URL("https://" + trace.host + "/").openConnection();
+            conn.setRequestMethod("HEAD");
+            conn.setInstanceFollowRedirects(false);
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            try (InputStream in = conn.getResponseCode() >= 400 ? conn.getErrorStream() : conn.getInputStream()) {
+                // HEAD has no body; closing the stream hands the connection back to the pool
+            }
+            long connected = SystemClock.elapsedRealtime();
+            synchronized (this) {
+                trace.connectMs = connected - resolved;
+                trace.warmedAt = connected - mStartedAt;
+            }
+            Log.d(TAG, "Warmed " + trace.host + ": dns " + trace.dnsMs + " ms, connect " + trace.connectMs + " ms");
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                trace.error = e.getClass().getSimpleName();
+            }
+            Log.w(TAG, "Warm-up failed for " + trace.host + ": " + e.getMessage());
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Collects the player base hosts from the stored settings of all accounts.
+     *
+     * @return The player hosts, at most {@link #MAX_PLAYER_HOSTS}, or the default player host.
+     */
+    private List<String> readPlayerHosts() {
+        Set<String> hosts = new LinkedHashSet<>();
+        try {
+            SharedPreferences prefs = mContext.getSharedPreferences(SETTINGS_PREFS, Context.MODE_PRIVATE);
+            for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+                if (!entry.getKey().endsWith("settings") || !(entry.getValue() instanceof String)) {
+                    continue;
+                }
+                try {
+                    String baseUrl = new JSONObject((String) entry.getValue()).optString("playerBaseUrl", null);
+                    String host = baseUrl != null ? Uri.parse(baseUrl).getHost() : null;
+                    if (host != null && !host.isEmpty() && hosts.size() < MAX_PLAYER_HOSTS) {
+                        hosts.add(host);
+                    }
+                } catch (JSONException ignored) {
+                    // Not a settings object
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error reading player host from settings", e);
+        }
+        if (hosts.isEmpty()) {
+            hosts.add(DEFAULT_PLAYER_HOST);
+        }
+        return new ArrayList<>(hosts);
+    }
+
+    /**
+     * Records the first request to a warmed host. Called for every intercepted request, so it only does a map
+     * lookup.
+     *
+     * @param url The request URL.
+     * @param nativeFetch true if the request was answered by a native handler (HttpURLConnection), false if the
+     *        WebView's network stack loads it.
+     */
+    public void onRequest(Uri url, boolean nativeFetch) {
+        String host = url != null ? url.getHost() : null;
+        if (host == null) {
+            return;
+        }
+        synchronized (this) {
+            HostTrace trace = mHosts.get(host);
+            if (trace != null && trace.firstRequestAt < 0) {
+                trace.firstRequestAt = SystemClock.elapsedRealtime() - mStartedAt;
+                trace.firstRequestNative = nativeFetch;
+                Log.d(TAG, "First request to " + host + " at +" + trace.firstRequestAt + " ms (" + (nativeFetch ? "native" : "WebView")
+                        + "), saved " + trace.savedMs() + " ms");
+            }
+        }
+    }
+
+    /**
+     * Records a named startup milestone. The first occurrence of each name is kept.
+     *
+     * @param name The milestone name (e.g. "pageFinished", "homeRendered").
+     */
+    @JavascriptInterface
+    public void mark(String name) {
+        if (name == null) {
+            return;
+        }
+        synchronized (this) {
+            if (!mMarks.containsKey(name)) {
+                mMarks.put(name, SystemClock.elapsedRealtime() - mStartedAt);
+            }
+        }
+    }
+
+    /**
+     * @return Milliseconds since {@link #start()}, the time base of the startup trace.
+     */
+    long elapsedMs() {
+        return SystemClock.elapsedRealtime() - mStartedAt;
+    }
+
+    /**
+     * Returns the startup trace: milestones, per-host warm-up timings and the handshake time saved.
+     *
+     * @return A JSON string: {marks: {name: ms}, hosts: [{host, startedAt, dnsMs, connectMs, warmedAt,
+     *         firstRequestAt, firstRequestNative, savedMs, error}], savedMs}.
+     */
+    @JavascriptInterface
+    public synchronized String getStartupTrace() {
+        JSONObject json = new JSONObject();
+        try {
+            JSONObject marks = new JSONObject();
+            for (Map.Entry<String, Long> entry : mMarks.entrySet()) {
+                marks.put(entry.getKey(), entry.getValue());
+            }
+            json.put("marks", marks);
+
+            JSONArray hosts = new JSONArray();
+            long totalSaved = 0;
+            for (HostTrace trace : mHosts.values()) {
+                JSONObject host = new JSONObject();
+                host.put("host", trace.host);
+                host.put("startedAt", trace.startedAt);
+                host.put("dnsMs", trace.dnsMs);
+                host.put("connectMs", trace.connectMs);
+                host.put("warmedAt", trace.warmedAt);
+                host.put("firstRequestAt", trace.firstRequestAt);
+                host.put("firstRequestNative", trace.firstRequestNative);
+                host.put("savedMs", trace.savedMs());
+                if (trace.error != null) {
+                    host.put("error", trace.error);
+                }
+                totalSaved += trace.savedMs();
+                hosts.put(host);
+            }
+            json.put("hosts", hosts);
+            json.put("savedMs", totalSaved);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing startup trace", e);
+        }
+        return json.toString();
+    }
+}
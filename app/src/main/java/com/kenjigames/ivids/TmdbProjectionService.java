@@ -0,0 +1,229 @@
+package com.kenjigames.ivids;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import com.kenjigames.ivids.core.TmdbProjectionSpecs;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * TmdbProjectionService shrinks TMDB API responses before the WebView parses them, exposed to the WebView as
+ * {@code AndroidTmdb}. Requests to endpoints declared in {@code logic/tmdb-projections.json} are fetched natively
+ * and streamed through a pull parser that only emits the fields the UI reads (core {@code JsonProjection});
+ * everything else, including requests with an undeclared append_to_response, goes to the network unchanged.
+ */
+public class TmdbProjectionService {
+    private static final String TAG = "TmdbProjectionService";
+
+    private static final String TMDB_API_HOST = "api.themoviedb.org";
+    private static final String SPECS_ASSET = "main/logic/tmdb-projections.json";
+    private static final int CONNECT_TIMEOUT_MS = 8000;
+    private static final int READ_TIMEOUT_MS = 15000;
+
+    /**
+     * Byte counts and projection time of one endpoint.
+     */
+    private static final class EndpointStats {
+        long responses;
+        long upstreamBytes;
+        long deliveredBytes;
+        /** Time from response headers until the projected document is complete (body transfer included). */
+        final LatencyHistogram streamMs = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+    }
+
+    private final Context mContext;
+    private final Map<String, EndpointStats> mStats = new LinkedHashMap<>();
+    private final MetricsRegistry.Counter mUpstreamBytes = MetricsRegistry.getInstance().counter(
+            MetricsRegistry.UPSTREAM_BYTES, MetricsRegistry.UPSTREAM_BYTES_HELP, "component", "tmdb");
+    private volatile TmdbProjectionSpecs mSpecs;
+    private volatile boolean mSpecsFailed = false;
+    private volatile boolean mEnabled = true;
+    private volatile NetworkQualityMonitor mNetworkMonitor;
+
+    /**
+     * Constructs a new TmdbProjectionService instance.
+     *
+     * @param context The context used to load the projection specs from the assets.
+     */
+    public TmdbProjectionService(Context context) {
+        this.mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Reports upstream transfers to the given monitor as throughput samples.
+     *
+     * @param monitor The network quality monitor, or null to stop reporting.
+     */
+    public void setNetworkMonitor(NetworkQualityMonitor monitor) {
+        mNetworkMonitor = monitor;
+    }
+
+    /**
+     * Turns the projection on or off, e.g. to compare payload sizes and parse times.
+     *
+     * @param enabled Whether declared TMDB responses are projected.
+     */
+    @JavascriptInterface
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * Returns per-endpoint projection statistics for this app session.
+     *
+     * @return A JSON string: {enabled, endpoints: {id: {responses, upstreamBytes, deliveredBytes, streamMs}}}.
+     */
+    @JavascriptInterface
+    public String getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("enabled", mEnabled);
+            JSONObject endpoints = new JSONObject();
+            synchronized (mStats) {
+                for (Map.Entry<String, EndpointStats> entry : mStats.entrySet()) {
+                    EndpointStats endpoint = entry.getValue();
+                    JSONObject json = new JSONObject();
+                    json.put("responses", endpoint.responses);
+                    json.put("upstreamBytes", endpoint.upstreamBytes);
+                    json.put("deliveredBytes", endpoint.deliveredBytes);
+                    json.put("streamMs", endpoint.streamMs.toJson());
+                    endpoints.put(entry.getKey(), json);
+                }
+            }
+            stats.put("endpoints", endpoints);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing projection stats", e);
+        }
+        return stats.toString();
+    }
+
+    /**
+     * @param request An intercepted request.
+     * @return true if the request is a TMDB API GET whose response has a declared projection.
+     */
+    public boolean canHandle(WebResourceRequest request) {
+        Uri url = request.getUrl();
+        if (!mEnabled || url == null || !TMDB_API_HOST.equals(url.getHost()) || !"GET".equals(request.getMethod())) {
+            return false;
+        }
+        TmdbProjectionSpecs specs = getSpecs();
+        return specs != null && specs.match(url.getPath(), url.getQueryParameter("append_to_response")) != null;
+    }
+
+    /**
+     * Fetches a TMDB API response and projects it. Called from WebViewClient.shouldInterceptRequest on a WebView
+     * background thread.
+     *
+     * @param request The intercepted request, accepted by {@link #canHandle(WebResourceRequest)}.
+     * @return The projected response, or null to let the WebView load the original if TMDB answers with an error or
+     *         fetching or parsing fails.
+     */
+    public WebResourceResponse handle(WebResourceRequest request) {
+        Uri url = request.getUrl();
+        TmdbProjectionSpecs.Endpoint endpoint = getSpecs().match(url.getPath(), url.getQueryParameter("append_to_response"));
+        long start = SystemClock.elapsedRealtime();
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) new URL(url.toString()).openConnection();
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setRequestProperty("Accept", "application/json");
+            int status = conn.getResponseCode();
+            long headersAt = SystemClock.elapsedRealtime();
+
+            if (status >= 400) {
+                // Error bodies have no projection; the WebView refetches so the page sees TMDB's original error
+                conn.disconnect();
+                return null;
+            }
+            InputStream upstream = conn.getInputStream();
+            // Closing the fully read body (not disconnect) returns the connection to the keep-alive pool
+            CountingInputStream body = new CountingInputStream(upstream);
+            StringBuilder projected = new StringBuilder();
+            try (InputStreamReader reader = new InputStreamReader(body, StandardCharsets.UTF_8)) {
+                endpoint.projection.project(reader, projected);
+            }
+            long done = SystemClock.elapsedRealtime();
+            byte[] bytes = projected.toString().getBytes(StandardCharsets.UTF_8);
+            record(endpoint.id, body.getCount(), bytes.length, done - headersAt);
+            NetworkQualityMonitor monitor = mNetworkMonitor;
+            if (monitor != null) {
+                monitor.recordTransfer(body.getCount(), headersAt - start, done - headersAt);
+            }
+
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Access-Control-Allow-Origin", "*");
+            String cacheControl = conn.getHeaderField("Cache-Control");
+            if (cacheControl != null) {
+                headers.put("Cache-Control", cacheControl);
+            }
+            String reason = conn.getResponseMessage();
+            return new WebResourceResponse("application/json", "utf-8", status,
+                    reason != null && !reason.isEmpty() ? reason : "OK", headers, new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            Log.w(TAG, "Projection failed for " + endpoint.id + ", loading original: " + e.getMessage());
+            if (conn != null) {
+                conn.disconnect();
+            }
+            return null;
+        }
+    }
+
+    private void record(String endpointId, long upstreamBytes, long deliveredBytes, long streamMs) {
+        synchronized (mStats) {
+            EndpointStats stats = mStats.get(endpointId);
+            if (stats == null) {
+                stats = new EndpointStats();
+                mStats.put(endpointId, stats);
+                MetricsRegistry.getInstance().histogram("ivids_tmdb_projection_seconds",
+                        "TMDB response headers until the projected document is complete.", stats.streamMs, "endpoint", endpointId);
+            }
+            stats.responses++;
+            stats.upstreamBytes += upstreamBytes;
+            stats.deliveredBytes += deliveredBytes;
+            stats.streamMs.record(streamMs);
+        }
+        mUpstreamBytes.add(upstreamBytes);
+        Log.d(TAG, "Projected " + endpointId + ": " + upstreamBytes + " -> " + deliveredBytes + " bytes in " + streamMs + " ms");
+    }
+
+    /**
+     * Loads the projection specs from the assets on first use.
+     *
+     * @return The specs, or null if the spec file is missing or invalid (projection is then skipped).
+     */
+    private TmdbProjectionSpecs getSpecs() {
+        if (mSpecs == null && !mSpecsFailed) {
+            synchronized (this) {
+                if (mSpecs == null && !mSpecsFailed) {
+                    try (InputStreamReader reader = new InputStreamReader(mContext.getAssets().open(SPECS_ASSET), StandardCharsets.UTF_8)) {
+                        mSpecs = TmdbProjectionSpecs.parse(reader);
+                        Log.d(TAG, "Loaded " + mSpecs.size() + " TMDB projection specs");
+                    } catch (IOException e) {
+                        Log.e(TAG, "Failed to load TMDB projection specs", e);
+                        mSpecsFailed = true;
+                    }
+                }
+            }
+        }
+        return mSpecs;
+    }
+}
@@ -0,0 +1,32 @@
+package com.kenjigames.ivids;
+
+/**
+ * TrimmableCache is implemented by every native in-memory cache that registers with the {@link CacheRegistry}.
+ * It exposes a size estimate so the registry can enforce the global memory budget, and a trim operation
+ * so the registry can shrink the cache when Android signals memory pressure.
+ */
+public interface TrimmableCache {
+
+    /**
+     * Returns the estimated number of bytes currently held by this cache.
+     *
+     * @return The estimated heap footprint of the cached entries in bytes.
+     */
+    long estimateSizeBytes();
+
+    /**
+     * Evicts entries (least recently used first) until the estimated size is at or below the given limit.
+     *
+     * @param maxBytes The target upper bound in bytes. A value of 0 clears the cache completely.
+     */
+    void trimToSize(long maxBytes);
+
+    /**
+     * Sets the callback the cache runs after it grew, e.g. after an insert. The {@link CacheRegistry} installs one on
+     * registration to enforce the global budget. Caches that never grow after registration can ignore it.
+     *
+     * @param listener The callback, or null to remove it.
+     */
+    default void setGrowthListener(Runnable listener) {
+    }
+}
@@ -7,12 +7,17 @@ import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Uri;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 import android.webkit.JavascriptInterface;
 import android.webkit.WebView;
 
 import androidx.core.content.FileProvider;
 
+import com.kenjigames.ivids.core.PriorityScheduler;
+import com.kenjigames.ivids.core.ReleaseAssetSelector;
+import com.kenjigames.ivids.core.VersionComparator;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -28,23 +33,35 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * UpdateManager handles the automatic OTA (Over-The-Air) update checking and installation process.
  * It interacts with the GitHub API to find the latest releases, compares version tags,
  * downloads the new APK securely via HTTP, and initiates the Android package installation intent.
  * It acts as a bridge between the WebView (JavaScript) and native Android code.
+ * Update checks and APK downloads run as user-visible work on the shared BackgroundScheduler, since the user starts
+ * both; a download resumes with a Range request if the connection was lost meanwhile.
  */
 public class UpdateManager {
     private static final String TAG = "UpdateManager";
     private static final String GITHUB_API_URL = "https://api.github.com/repos/kenjikellens/IVIDS/releases";
     private static final String REPO_APK_URL = "https://github.com/kenjikellens/IVIDS/raw/main/IVIDS.apk";
+    private static final int MAX_REDIRECTS = 5;
+    /** Reconnects after a dropped connection, e.g. when a paused download's socket timed out. */
+    private static final int MAX_RESUMES = 3;
 
     private final Activity mActivity;
     private final WebView mWebView;
-    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final BackgroundScheduler mScheduler = BackgroundScheduler.getInstance();
+    private volatile PriorityScheduler.Task mCheckTask;
+    private volatile PriorityScheduler.Task mDownloadTask;
+    private final MetricsRegistry.Counter mDownloadBytes;
+    /** Average speed of the last completed download over its wall-clock time, including resumes. */
+    private final AtomicLong mDownloadBytesPerSecond = new AtomicLong();
 
     private String mDownloadUrl = null;
     private String mLatestVersion = null;
@@ -58,6 +75,11 @@ public class UpdateManager {
     public UpdateManager(Activity activity, WebView webView) {
         this.mActivity = activity;
         this.mWebView = webView;
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        this.mDownloadBytes = metrics.counter(MetricsRegistry.UPSTREAM_BYTES, MetricsRegistry.UPSTREAM_BYTES_HELP, "component", "update");
+        metrics.gauge("ivids_update_download_bytes_per_second",
+                "Average speed of the last completed APK download over its wall-clock time, including resumes.",
+                mDownloadBytesPerSecond::get);
     }
 
     /**
@@ -74,7 +96,7 @@ public class UpdateManager {
             return;
         }
 
-        mExecutor.execute(() -> {
+        mCheckTask = mScheduler.submit("update-check", PriorityScheduler.Priority.USER_VISIBLE, task -> {
             HttpURLConnection conn = null;
             BufferedReader reader = null;
             try {
@@ -94,6 +116,7 @@ public class UpdateManager {
                         response.append(line);
                     }
 
+                    task.checkpoint();
                     JSONArray releases = new JSONArray(response.toString());
                     notifyWebUpdateStatus("fetching-releases");
                     if (releases.length() == 0) {
@@ -118,33 +141,21 @@ public class UpdateManager {
                         if (uiModeManager != null) {
                             isTv = uiModeManager.getCurrentModeType() == android.content.res.Configuration.UI_MODE_TYPE_TELEVISION;
                         }
-                        String targetKeyword = isTv ? "tv" : "mobile";
+                        String targetKeyword = ReleaseAssetSelector.keywordFor(isTv);
                         Log.d(TAG, "Device target UI mode television is: " + isTv + ", seeking keyword: " + targetKeyword);
 
                         JSONArray assets = latestRelease.getJSONArray("assets");
-                        String fallbackApkUrl = null;
-                        
+                        List<ReleaseAssetSelector.Asset> apkAssets = new ArrayList<>();
                         for (int i = 0; i < assets.length(); i++) {
                             JSONObject asset = assets.getJSONObject(i);
-                            String assetName = asset.getString("name").toLowerCase();
-                            if (assetName.endsWith(".apk")) {
-                                String downloadUrl = asset.getString("browser_download_url");
-                                if (assetName.contains(targetKeyword)) {
-                                    mDownloadUrl = downloadUrl;
-                                    Log.d(TAG, "Selected asset matched target keyword '" + targetKeyword + "': " + assetName);
-                                    break;
-                                }
-                                if (fallbackApkUrl == null) {
-                                    fallbackApkUrl = downloadUrl;
-                                }
-                            }
+                            apkAssets.add(new ReleaseAssetSelector.Asset(
+                                    asset.getString("name"), asset.optString("browser_download_url", null)));
                         }
 
-                        if (mDownloadUrl == null) {
-                            mDownloadUrl = fallbackApkUrl;
-                            if (mDownloadUrl != null) {
-                                Log.d(TAG, "No asset matched target keyword '" + targetKeyword + "', falling back to: " + mDownloadUrl);
-                            }
+                        ReleaseAssetSelector.Asset selected = ReleaseAssetSelector.select(apkAssets, targetKeyword);
+                        if (selected != null) {
+                            mDownloadUrl = selected.downloadUrl;
+                            Log.d(TAG, "Selected asset '" + selected.name + "' for target keyword '" + targetKeyword + "'");
                         }
 
                         if (mDownloadUrl != null) {
@@ -171,6 +182,8 @@ public class UpdateManager {
             } catch (JSONException e) {
                 Log.e(TAG, "Error parsing JSON response", e);
                 notifyWebUpdateError();
+            } catch (CancellationException e) {
+                Log.d(TAG, "Update check cancelled");
             } catch (Exception e) {
                 Log.e(TAG, "An unexpected error occurred while checking for updates", e);
                 notifyWebUpdateError();
@@ -191,46 +204,15 @@ public class UpdateManager {
 
     /**
      * Compares the current installed app version against the latest version tag from GitHub.
-     * Handles semantic versioning comparison (e.g., v1.0.1 vs v1.0.2).
+     * Handles semantic versioning comparison (e.g., v1.0.1 vs v1.0.2) via the pure-Java VersionComparator.
      * 
      * @param current The current app version name (e.g., "1.0.0").
      * @param latest The latest release tag from GitHub (e.g., "v1.0.1").
      * @return true if the latest version is newer than the current version, false otherwise.
      */
     private boolean isNewerVersion(String current, String latest) {
-        // ... (existing implementation is reasonably robust)
-        try {
-            notifyWebUpdateStatus("comparing-versions");
-
-            // Special case: if current is "1.0", it's a legacy incorrect version
-            // and should be considered older than any "v0.x.x" release.
-            if ("1.0".equals(current) || "1.0.0".equals(current)) {
-                return true;
-            }
-
-            // Remove 'v' prefix if present
-            String c = current.startsWith("v") ? current.substring(1) : current;
-            String l = latest.startsWith("v") ? latest.substring(1) : latest;
-
-            String[] cParts = c.split("\\.");
-            String[] lParts = l.split("\\.");
-
-            int length = Math.max(cParts.length, lParts.length);
-            for (int i = 0; i < length; i++) {
-                int cPart = i < cParts.length ? Integer.parseInt(cParts[i].replaceAll("[^0-9]", "")) : 0;
-                int lPart = i < lParts.length ? Integer.parseInt(lParts[i].replaceAll("[^0-9]", "")) : 0;
-
-                if (lPart > cPart)
-                    return true;
-                if (cPart > lPart)
-                    return false;
-            }
-        } catch (NumberFormatException e) {
-            Log.e(TAG, "Error comparing versions", e);
-            // Fallback: simple string comparison if parsing fails
-            return !current.equals(latest);
-        }
-        return false;
+        notifyWebUpdateStatus("comparing-versions");
+        return VersionComparator.isNewerVersion(current, latest);
     }
 
     /**
@@ -323,117 +305,157 @@ public class UpdateManager {
      */
     @JavascriptInterface
     public void downloadAndInstall() {
-        if (mDownloadUrl == null) {
+        final String downloadUrl = mDownloadUrl;
+        if (downloadUrl == null) {
             Log.e(TAG, "No download URL available");
             notifyWebUpdateError();
             return;
         }
 
-        Log.d(TAG, "Starting download: " + mDownloadUrl);
-        mExecutor.execute(() -> {
-            HttpURLConnection conn = null;
-            InputStream is = null;
-            FileOutputStream fos = null;
+        Log.d(TAG, "Starting download: " + downloadUrl);
+        PriorityScheduler.Task previous = mDownloadTask;
+        if (previous != null) {
+            previous.cancel();
+        }
+        mDownloadTask = mScheduler.submit("update-download", PriorityScheduler.Priority.USER_VISIBLE, task -> {
+            File downloadDir = new File(mActivity.getExternalCacheDir(), "updates");
+            if (!downloadDir.exists()) {
+                downloadDir.mkdirs();
+            }
+            File apkFile = new File(downloadDir, "IVIDS-update.apk");
+            if (apkFile.exists()) {
+                apkFile.delete();
+            }
+
             try {
-                URL url = URI.create(mDownloadUrl).toURL();
                 notifyWebUpdateStatus("downloading");
-
-                // Follow redirects manually (GitHub redirects to CDN)
-                String finalUrl = mDownloadUrl;
-                int redirectCount = 0;
-                final int MAX_REDIRECTS = 5;
-
-                while (redirectCount < MAX_REDIRECTS) {
-                    conn = (HttpURLConnection) URI.create(finalUrl).toURL().openConnection();
-                    conn.setRequestProperty("User-Agent", "IVIDS-Android-App");
-                    conn.setInstanceFollowRedirects(false);
-                    conn.setConnectTimeout(15000);
-                    conn.setReadTimeout(30000);
-                    conn.connect();
-
-                    int responseCode = conn.getResponseCode();
-                    Log.d(TAG, "Response code: " + responseCode + " for URL: " + finalUrl);
-
-                    if (responseCode == HttpURLConnection.HTTP_MOVED_PERM ||
-                            responseCode == HttpURLConnection.HTTP_MOVED_TEMP ||
-                            responseCode == 307 || responseCode == 308) {
-                        String location = conn.getHeaderField("Location");
-                        if (location == null) {
-                            Log.e(TAG, "Redirect with no Location header");
-                            notifyWebUpdateError();
-                            return;
+                long total = 0;
+                int lastProgress = -1;
+                int resumes = 0;
+                long transferred = 0;
+                long startedAt = SystemClock.elapsedRealtime();
+                while (true) {
+                    HttpURLConnection conn = null;
+                    try {
+                        conn = openDownload(downloadUrl, total);
+                        boolean resumed = total > 0 && conn.getResponseCode() == HttpURLConnection.HTTP_PARTIAL;
+                        if (!resumed) {
+                            // Fresh start, or the server ignored the Range header
+                            total = 0;
+                        }
+                        long remaining = conn.getContentLength();
+                        long fileLength = remaining > 0 ? total + remaining : -1;
+
+                        try (InputStream is = new BufferedInputStream(conn.getInputStream());
+                             FileOutputStream fos = new FileOutputStream(apkFile, resumed)) {
+                            byte[] data = new byte[8192];
+                            int count;
+                            while ((count = is.read(data)) != -1) {
+                                fos.write(data, 0, count);
+                                total += count;
+                                transferred += count;
+                                mDownloadBytes.add(count);
+                                // Publish progress once per percent; a callback per chunk floods the UI thread
+                                if (fileLength > 0) {
+                                    final int progress = (int) (total * 100 / fileLength);
+                                    if (progress != lastProgress) {
+                                        lastProgress = progress;
+                                        mActivity.runOnUiThread(() -> {
+                                            mWebView.evaluateJavascript(
+                                                    "if(typeof onUpdateProgress === 'function') onUpdateProgress(" + progress + ");",
+                                                    null);
+                                        });
+                                    }
+                                }
+                                // Downloads are user-visible and never paused, so this only stops a cancelled download
+                                task.checkpoint();
+                            }
                         }
-                        Log.d(TAG, "Redirecting to: " + location);
-                        finalUrl = location;
-                        conn.disconnect();
-                        redirectCount++;
-                    } else if (responseCode == HttpURLConnection.HTTP_OK) {
                         break;
-                    } else {
-                        Log.e(TAG, "HTTP error: " + responseCode);
-                        notifyWebUpdateError();
-                        return;
-                    }
-                }
-
-                if (redirectCount >= MAX_REDIRECTS) {
-                    Log.e(TAG, "Too many redirects");
-                    notifyWebUpdateError();
-                    return;
-                }
-
-                File downloadDir = new File(mActivity.getExternalCacheDir(), "updates");
-                if (!downloadDir.exists()) {
-                    downloadDir.mkdirs();
-                }
-
-                File apkFile = new File(downloadDir, "IVIDS-update.apk");
-                if (apkFile.exists()) {
-                    apkFile.delete();
-                }
-
-                is = new BufferedInputStream(conn.getInputStream());
-                fos = new FileOutputStream(apkFile);
-
-                byte[] data = new byte[8192];
-                int count;
-                long total = 0;
-                int fileLength = conn.getContentLength();
-                while ((count = is.read(data)) != -1) {
-                    total += count;
-                    // publishing the progress....
-                    if (fileLength > 0) {
-                        final int progress = (int) (total * 100 / fileLength);
-                        mActivity.runOnUiThread(() -> {
-                            mWebView.evaluateJavascript(
-                                    "if(typeof onUpdateProgress === 'function') onUpdateProgress(" + progress + ");",
-                                    null);
-                        });
+                    } catch (IOException e) {
+                        if (total == 0 || resumes >= MAX_RESUMES) {
+                            throw e;
+                        }
+                        resumes++;
+                        Log.w(TAG, "Download interrupted at " + total + " bytes, resuming: " + e.getMessage());
+                    } finally {
+                        if (conn != null) {
+                            conn.disconnect();
+                        }
                     }
-                    fos.write(data, 0, count);
                 }
 
-                Log.d(TAG, "Download complete: " + apkFile.getAbsolutePath());
+                long elapsedMs = Math.max(1, SystemClock.elapsedRealtime() - startedAt);
+                mDownloadBytesPerSecond.set(transferred * 1000 / elapsedMs);
+                Log.d(TAG, "Download complete: " + apkFile.getAbsolutePath() + " (" + transferred + " bytes in " + elapsedMs + " ms)");
                 installApk(apkFile);
+            } catch (CancellationException e) {
+                Log.d(TAG, "Download cancelled");
+                apkFile.delete();
             } catch (IOException e) {
                 Log.e(TAG, "Error downloading update", e);
                 notifyWebUpdateError();
-            } finally {
-                try {
-                    if (fos != null)
-                        fos.close();
-                    if (is != null)
-                        is.close();
-                } catch (IOException e) {
-                    Log.e(TAG, "Error closing streams", e);
-                }
-                if (conn != null) {
-                    conn.disconnect();
-                }
             }
         });
     }
 
+    /**
+     * Cancels a running update check, e.g. when the user cancels it in the settings page. Its result callbacks
+     * are then no longer sent; a running download is not affected.
+     * This method is exposed to JavaScript via the @JavascriptInterface annotation.
+     */
+    @JavascriptInterface
+    public void cancelUpdateCheck() {
+        PriorityScheduler.Task check = mCheckTask;
+        if (check != null) {
+            check.cancel();
+        }
+    }
+
+    /**
+     * Opens the APK download, following redirects manually (GitHub redirects to a CDN).
+     *
+     * @param downloadUrl The APK URL.
+     * @param offset The number of bytes already downloaded; a Range request is sent when it is positive.
+     * @return The connection with a 200 or 206 response.
+     * @throws IOException On network errors, HTTP errors or too many redirects.
+     */
+    private HttpURLConnection openDownload(String downloadUrl, long offset) throws IOException {
+        String finalUrl = downloadUrl;
+        for (int redirectCount = 0; redirectCount < MAX_REDIRECTS; redirectCount++) {
+            HttpURLConnection conn = (HttpURLConnection) URI.create(finalUrl).toURL().openConnection();
+            conn.setRequestProperty("User-Agent", "IVIDS-Android-App");
+            if (offset > 0) {
+                conn.setRequestProperty("Range", "bytes=" + offset + "-");
+            }
+            conn.setInstanceFollowRedirects(false);
+            conn.setConnectTimeout(15000);
+            conn.setReadTimeout(30000);
+            conn.connect();
+
+            int responseCode = conn.getResponseCode();
+            Log.d(TAG, "Response code: " + responseCode + " for URL: " + finalUrl);
+
+            if (responseCode == HttpURLConnection.HTTP_MOVED_PERM ||
+                    responseCode == HttpURLConnection.HTTP_MOVED_TEMP ||
+                    responseCode == 307 || responseCode == 308) {
+                String location = conn.getHeaderField("Location");
+                conn.disconnect();
+                if (location == null) {
+                    throw new IOException("Redirect with no Location header");
+                }
+                Log.d(TAG, "Redirecting to: " + location);
+                finalUrl = location;
+            } else if (responseCode == HttpURLConnection.HTTP_OK || responseCode == HttpURLConnection.HTTP_PARTIAL) {
+                return conn;
+            } else {
+                conn.disconnect();
+                throw new IOException("HTTP error: " + responseCode);
+            }
+        }
+        throw new IOException("Too many redirects");
+    }
+
     /**
      * Triggers the Android system package installer to install the downloaded APK.
      * Uses FileProvider to securely grant the installer read access to the downloaded file.
@@ -500,11 +522,15 @@ public class UpdateManager {
     }
 
     /**
-     * Shuts down the background executor service.
+     * Cancels the pending update check and download.
      * Should be called when the activity is destroyed to prevent memory leaks.
      */
     public void shutdown() {
-        mExecutor.shutdown();
+        cancelUpdateCheck();
+        PriorityScheduler.Task download = mDownloadTask;
+        if (download != null) {
+            download.cancel();
+        }
     }
 
     /**
@@ -0,0 +1,620 @@
+package com.kenjigames.ivids;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebView;
+
+import com.kenjigames.ivids.core.XtreamCatalog;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * XtreamClient is a native Xtream Codes client exposed to the WebView as {@code AndroidXtream}.
+ * Instead of handing the full {@code get_live_streams} catalog (often 20k+ streams) to the WebView as one JSON parse,
+ * it streams the response into a core {@link XtreamCatalog}: one compact record per stream in a local data file,
+ * with the record offsets indexed by category. The UI then pulls category pages on demand.
+ * Refreshes run on their own thread, so pages of the stored catalog are served while a new one downloads.
+ * Short EPG lookups for visible channels are batched, cached and rate limited across the whole grid.
+ */
+public class XtreamClient {
+    private static final String TAG = "XtreamClient";
+
+    /** Catalogs older than this are refreshed in the background when the UI asks for them. */
+    private static final long CATALOG_TTL_MS = 6 * 60 * 60 * 1000L;
+    /** Short EPG listings are considered fresh for this long. */
+    private static final long SHORT_EPG_TTL_MS = 10 * 60 * 1000L;
+    /** Upper bound for the short EPG memory cache. */
+    private static final int SHORT_EPG_CACHE_BYTES = 1024 * 1024;
+    /** Minimum spacing between two short EPG requests to the same provider. */
+    private static final long SHORT_EPG_MIN_INTERVAL_MS = 75;
+    /** Number of short EPG requests that may be in flight at once. */
+    private static final int SHORT_EPG_CONCURRENCY = 3;
+    /** Upper bound for the streams returned by one search. */
+    private static final int SEARCH_LIMIT = 500;
+    private static final String INDEX_FILE = "index.bin";
+
+    private final Activity mActivity;
+    private final WebView mWebView;
+    private final File mRootDir;
+    private final ExecutorService mCatalogExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mRefreshExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mBatchExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mEpgExecutor = Executors.newFixedThreadPool(SHORT_EPG_CONCURRENCY);
+    private final SizedLruCache<String, EpgEntry> mShortEpgCache;
+
+    private Account mAccount = new Account("", "", "");
+    /** Accounts with a refresh queued or running. */
+    private final Set<Account> mRefreshing = new HashSet<>();
+
+    private volatile XtreamCatalog mCatalog;
+    private long mNextEpgSlot = 0;
+
+    /**
+     * The credentials of one account. {@link #configure} replaces the instance as a whole, so work that captured an
+     * account uses one consistent host, username and password, and can tell whether the account changed meanwhile
+     * by comparing references.
+     */
+    private static final class Account {
+        final String host;
+        final String username;
+        final String password;
+
+        Account(String host, String username, String password) {
+            this.host = host;
+            this.username = username;
+            this.password = password;
+        }
+
+        boolean matches(String host, String username, String password) {
+            return this.host.equals(host) && this.username.equals(username) && this.password.equals(password);
+        }
+
+        boolean isComplete() {
+            return !host.isEmpty() && !username.isEmpty() && !password.isEmpty();
+        }
+
+        /**
+         * Builds a {@code player_api.php} URL for this account.
+         *
+         * @param action The API action, or null for the authentication endpoint.
+         * @param extraQuery Additional already-encoded query parameters (starting with '&'), or an empty string.
+         * @return The full API URL.
+         */
+        String apiUrl(String action, String extraQuery) {
+            try {
+                String url = host + "/player_api.php?username=" + URLEncoder.encode(username, "UTF-8")
+                        + "&password=" + URLEncoder.encode(password, "UTF-8");
+                if (action != null) {
+                    url += "&action=" + action;
+                }
+                return url + extraQuery;
+            } catch (java.io.UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * @param root The directory holding all stored catalogs.
+         * @return The directory holding the stored catalog of this account.
+         */
+        File dir(File root) {
+            return new File(root, Integer.toHexString((host + "|" + username).hashCode()));
+        }
+    }
+
+    /**
+     * A cached short EPG response for one stream.
+     */
+    private static final class EpgEntry {
+        final String listingsJson;
+        final long fetchedAt;
+
+        EpgEntry(String listingsJson, long fetchedAt) {
+            this.listingsJson = listingsJson;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * Constructs a new XtreamClient instance.
+     *
+     * @param activity The main activity used for the cache directory and UI thread callbacks.
+     * @param webView The WebView instance used to send JavaScript callbacks.
+     */
+    public XtreamClient(Activity activity, WebView webView) {
+        this.mActivity = activity;
+        this.mWebView = webView;
+        this.mRootDir = new File(activity.getCacheDir(), "xtream");
+        this.mShortEpgCache = new SizedLruCache<>(SHORT_EPG_CACHE_BYTES,
+                (key, value) -> 2 * (key.length() + value.listingsJson.length()) + 32);
+        CacheRegistry.getInstance(activity).register("xtream-short-epg", mShortEpgCache);
+    }
+
+    /**
+     * Sets the Xtream server credentials. Switching accounts drops the loaded catalog, and a refresh still running for
+     * the previous account is discarded when it completes.
+     * Only the host is trimmed; usernames and passwords may contain leading or trailing spaces.
+     *
+     * @param host The Xtream server URL (e.g. http://example.com:8080).
+     * @param username The IPTV account username.
+     * @param password The IPTV account password.
+     */
+    @JavascriptInterface
+    public synchronized void configure(String host, String username, String password) {
+        String h = host == null ? "" : host.trim().replaceAll("/+$", "");
+        String u = username == null ? "" : username;
+        String p = password == null ? "" : password;
+        if (!mAccount.matches(h, u, p)) {
+            mAccount = new Account(h, u, p);
+            mCatalog = null;
+            mShortEpgCache.evictAll();
+        }
+    }
+
+    /**
+     * Loads the live stream catalog in the background.
+     * A catalog stored on disk by a previous session is served immediately; it is then refreshed
+     * in the background if it is older than the TTL or if {@code force} is true. The refresh runs on its own thread,
+     * so later calls and page reads never wait for the download.
+     * Completion is reported through {@code window.onXtreamCatalogLoaded(success)} and
+     * background refreshes through {@code window.onXtreamCatalogUpdated(changedCategoryIdsJson)}.
+     *
+     * @param force true to refresh from the server even if the stored catalog is still fresh.
+     */
+    @JavascriptInterface
+    public void loadCatalog(boolean force) {
+        mCatalogExecutor.execute(() -> {
+            Account account = currentAccount();
+            if (!account.isComplete()) {
+                notifyWebCatalogLoaded(false);
+                return;
+            }
+            XtreamCatalog current = mCatalog;
+            if (current == null) {
+                current = readStoredCatalog(account);
+                synchronized (this) {
+                    if (mAccount != account) {
+                        // configure() switched accounts meanwhile; its own load reports the result
+                        return;
+                    }
+                    mCatalog = current;
+                }
+            }
+            if (current != null) {
+                notifyWebCatalogLoaded(true);
+                if (!force && System.currentTimeMillis() - current.getBuiltAt() < CATALOG_TTL_MS) {
+                    return;
+                }
+            }
+            scheduleRefresh(account, current);
+        });
+    }
+
+    /**
+     * Returns the categories of the loaded catalog with their stream counts.
+     *
+     * @return A JSON array string of {category_id, category_name, count} objects, or "[]" if no catalog is loaded.
+     */
+    @JavascriptInterface
+    public String getCategories() {
+        XtreamCatalog catalog = mCatalog;
+        if (catalog == null) {
+            return "[]";
+        }
+        JSONArray result = new JSONArray();
+        try {
+            for (XtreamCatalog.Category category : catalog.getCategories().values()) {
+                JSONObject obj = new JSONObject();
+                obj.put("category_id", category.id);
+                obj.put("category_name", category.name);
+                obj.put("count", category.size());
+                result.put(obj);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing categories", e);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Reads one page of raw Xtream stream objects for a category from the local store.
+     *
+     * @param categoryId The category id, or an empty string for all streams in category order.
+     * @param offset The index of the first stream to return.
+     * @param limit The maximum number of streams to return.
+     * @return A JSON array string of raw stream objects, or "[]" if the page is empty or unavailable.
+     */
+    @JavascriptInterface
+    public String getCategoryPage(String categoryId, int offset, int limit) {
+        XtreamCatalog catalog = mCatalog;
+        if (catalog == null) {
+            return "[]";
+        }
+        try {
+            return catalog.readPage(categoryId, offset, limit);
+        } catch (IOException e) {
+            // A refresh may have swapped the catalog and deleted this generation's data file meanwhile
+            XtreamCatalog latest = mCatalog;
+            if (latest != null && latest != catalog) {
+                return getCategoryPage(categoryId, offset, limit);
+            }
+            Log.e(TAG, "Error reading category page for " + categoryId, e);
+            return "[]";
+        }
+    }
+
+    /**
+     * Searches the names of all streams in the loaded catalog, including those the UI has not paged in yet.
+     *
+     * @param query The text to look for, ignoring case.
+     * @return A JSON array string of raw stream objects in server order (at most 500), or "[]" if nothing matches.
+     */
+    @JavascriptInterface
+    public String searchStreams(String query) {
+        XtreamCatalog catalog = mCatalog;
+        if (catalog == null || query == null || query.trim().isEmpty()) {
+            return "[]";
+        }
+        try {
+            return catalog.search(query.trim(), SEARCH_LIMIT);
+        } catch (IOException e) {
+            XtreamCatalog latest = mCatalog;
+            if (latest != null && latest != catalog) {
+                return searchStreams(query);
+            }
+            Log.e(TAG, "Error searching the catalog for " + query, e);
+            return "[]";
+        }
+    }
+
+    /**
+     * Requests short EPG listings for a batch of visible channels.
+     * Cached listings are reused, missing ones are fetched with bounded concurrency and a minimum request spacing,
+     * and the combined result is delivered once through {@code window.onXtreamShortEpg(requestId, resultJson)}.
+     *
+     * @param requestId An id chosen by the caller to match the callback to the request.
+     * @param streamIdsCsv A comma-separated list of Xtream stream ids.
+     * @param limit The maximum number of programme entries per stream.
+     */
+    @JavascriptInterface
+    public void requestShortEpg(String requestId, String streamIdsCsv, int limit) {
+        final String[] streamIds = streamIdsCsv == null ? new String[0] : streamIdsCsv.split(",");
+        final Account account = currentAccount();
+        mBatchExecutor.execute(() -> {
+            JSONObject result = new JSONObject();
+            Map<String, Future<String>> pending = new LinkedHashMap<>();
+            long now = System.currentTimeMillis();
+            for (String raw : streamIds) {
+                final String streamId = raw.trim();
+                if (streamId.isEmpty() || result.has(streamId) || pending.containsKey(streamId)) {
+                    continue;
+                }
+                EpgEntry cached = mShortEpgCache.get(streamId + ":" + limit);
+                if (cached != null && now - cached.fetchedAt < SHORT_EPG_TTL_MS) {
+                    putRawJson(result, streamId, cached.listingsJson);
+                } else {
+                    pending.put(streamId, mEpgExecutor.submit(() -> fetchShortEpg(account, streamId, limit)));
+                }
+            }
+            for (Map.Entry<String, Future<String>> entry : pending.entrySet()) {
+                String listings = "[]";
+                try {
+                    listings = entry.getValue().get();
+                } catch (Exception e) {
+                    Log.e(TAG, "Short EPG fetch failed for stream " + entry.getKey(), e);
+                }
+                putRawJson(result, entry.getKey(), listings);
+            }
+            notifyWebShortEpg(requestId, result.toString());
+        });
+    }
+
+    /**
+     * Shuts down the background executors. Should be called when the activity is destroyed.
+     */
+    public void shutdown() {
+        mCatalogExecutor.shutdownNow();
+        mRefreshExecutor.shutdownNow();
+        mBatchExecutor.shutdownNow();
+        mEpgExecutor.shutdownNow();
+    }
+
+    private synchronized Account currentAccount() {
+        return mAccount;
+    }
+
+    /**
+     * Queues a catalog refresh for {@code account} unless one is already queued or running for it.
+     *
+     * @param account The account to refresh.
+     * @param previous The catalog currently served, or null on first load.
+     */
+    private void scheduleRefresh(Account account, XtreamCatalog previous) {
+        synchronized (this) {
+            if (!mRefreshing.add(account)) return;
+        }
+        mRefreshExecutor.execute(() -> {
+            try {
+                refreshCatalog(account, previous);
+            } finally {
+                synchronized (this) {
+                    mRefreshing.remove(account);
+                }
+            }
+        });
+    }
+
+    private static HttpURLConnection openConnection(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        conn.setRequestProperty("User-Agent", "IVIDS-Android-App");
+        conn.setConnectTimeout(15000);
+        conn.setReadTimeout(60000);
+        return conn;
+    }
+
+    /**
+     * Downloads the catalog from the server into a new data file generation and index, then swaps it in and deletes
+     * the previous generation. Pages of the previous catalog never read the new file, because every generation has
+     * its own file name. Notifies the WebView of the categories whose contents changed compared to {@code previous}.
+     * The result is dropped if {@link #configure} switched accounts during the download.
+     *
+     * @param account The account captured when the refresh was scheduled.
+     * @param previous The catalog currently served, or null on first load.
+     */
+    private void refreshCatalog(Account account, XtreamCatalog previous) {
+        long start = SystemClock.elapsedRealtime();
+        long builtAt = System.currentTimeMillis();
+        File dir = account.dir(mRootDir);
+        File dataFile = new File(dir, "streams-" + builtAt + ".ndjson");
+        boolean installed = false;
+        try {
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            Map<String, XtreamCatalog.Category> categories = fetchCategories(account);
+            XtreamCatalog catalog;
+            HttpURLConnection conn = openConnection(account.apiUrl("get_live_streams", ""));
+            try {
+                if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("get_live_streams returned " + conn.getResponseCode());
+                }
+                try (Reader reader = new InputStreamReader(new BufferedInputStream(conn.getInputStream()), StandardCharsets.UTF_8)) {
+                    catalog = XtreamCatalog.build(categories, reader, dataFile, builtAt);
+                }
+            } finally {
+                conn.disconnect();
+            }
+            if (currentAccount() != account) {
+                Log.d(TAG, "Account changed during the catalog refresh, discarding it");
+                return;
+            }
+            writeIndex(catalog, dir);
+            deleteOtherGenerations(dir, dataFile);
+            synchronized (this) {
+                if (mAccount != account) {
+                    // The index stays valid for its own account's next session
+                    Log.d(TAG, "Account changed during the catalog refresh, not serving it");
+                    return;
+                }
+                mCatalog = catalog;
+                installed = true;
+            }
+
+            Runtime rt = Runtime.getRuntime();
+            Log.d(TAG, "Catalog indexed: " + catalog.getStreamCount() + " streams in " + catalog.getCategories().size()
+                    + " categories, " + (SystemClock.elapsedRealtime() - start) + " ms, heap in use "
+                    + ((rt.totalMemory() - rt.freeMemory()) / 1024) + " KB");
+
+            if (previous == null) {
+                notifyWebCatalogLoaded(true);
+            } else {
+                notifyWebCatalogUpdated(new JSONArray(catalog.changedSince(previous)));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error refreshing Xtream catalog", e);
+            if (previous == null && currentAccount() == account) {
+                notifyWebCatalogLoaded(false);
+            }
+        } finally {
+            if (!installed && !isIndexed(dir, dataFile)) {
+                dataFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Fetches {@code get_live_categories}, which is small.
+     *
+     * @return The categories in server order, keyed by id.
+     */
+    private static Map<String, XtreamCatalog.Category> fetchCategories(Account account) throws IOException {
+        HttpURLConnection conn = openConnection(account.apiUrl("get_live_categories", ""));
+        try {
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("get_live_categories returned " + conn.getResponseCode());
+            }
+            try (Reader reader = new InputStreamReader(new BufferedInputStream(conn.getInputStream()), StandardCharsets.UTF_8)) {
+                return XtreamCatalog.parseCategories(reader);
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * Persists the category index next to the data file so the next session can serve pages without a download.
+     *
+     * @param catalog The catalog to persist.
+     * @param dir The account directory.
+     */
+    private static void writeIndex(XtreamCatalog catalog, File dir) throws IOException {
+        File tmp = new File(dir, "index.tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+            catalog.writeIndex(out);
+        }
+        File index = new File(dir, INDEX_FILE);
+        if ((index.exists() && !index.delete()) || !tmp.renameTo(index)) {
+            throw new IOException("Cannot replace " + index);
+        }
+    }
+
+    /**
+     * @return true if the persisted index in {@code dir} points to {@code dataFile}.
+     */
+    private static boolean isIndexed(File dir, File dataFile) {
+        File index = new File(dir, INDEX_FILE);
+        if (!index.exists()) {
+            return false;
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(index))) {
+            return XtreamCatalog.readIndex(in, dir).getDataFile().equals(dataFile);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the data files of earlier catalog generations (and of interrupted refreshes) once the index points to
+     * {@code current}.
+     */
+    private static void deleteOtherGenerations(File dir, File current) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith("streams") && name.endsWith(".ndjson") && !name.equals(current.getName()) && !file.delete()) {
+                Log.w(TAG, "Cannot delete old catalog data " + file);
+            }
+        }
+    }
+
+    /**
+     * Loads the catalog stored by a previous session for an account.
+     *
+     * @return The stored catalog, or null if none exists or it is unreadable.
+     */
+    private XtreamCatalog readStoredCatalog(Account account) {
+        File dir = account.dir(mRootDir);
+        File index = new File(dir, INDEX_FILE);
+        if (!index.exists()) {
+            return null;
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(index))) {
+            return XtreamCatalog.readIndex(in, dir);
+        } catch (IOException e) {
+            Log.e(TAG, "Stored Xtream catalog is unreadable, refetching", e);
+            return null;
+        }
+    }
+
+    /**
+     * Fetches {@code get_short_epg} for a single stream, honouring the shared request spacing.
+     *
+     * @return The {@code epg_listings} array as a JSON string ("[]" on failure).
+     */
+    private String fetchShortEpg(Account account, String streamId, int limit) {
+        waitForEpgSlot();
+        HttpURLConnection conn = null;
+        try {
+            conn = openConnection(account.apiUrl("get_short_epg",
+                    "&stream_id=" + URLEncoder.encode(streamId, "UTF-8") + "&limit=" + limit));
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return "[]";
+            }
+            StringBuilder body = new StringBuilder();
+            try (InputStream is = conn.getInputStream();
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    body.append(line);
+                }
+            }
+            JSONArray listings = new JSONObject(body.toString()).optJSONArray("epg_listings");
+            String json = listings != null ? listings.toString() : "[]";
+            if (currentAccount() == account) {
+                mShortEpgCache.putAndReport(streamId + ":" + limit, new EpgEntry(json, System.currentTimeMillis()));
+            }
+            return json;
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Failed to fetch short EPG for stream " + streamId + ": " + e.getMessage());
+            return "[]";
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Blocks until the next short EPG request slot so bursts from scrolling never hammer the provider.
+     */
+    private void waitForEpgSlot() {
+        long wait;
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            long slot = Math.max(now, mNextEpgSlot);
+            mNextEpgSlot = slot + SHORT_EPG_MIN_INTERVAL_MS;
+            wait = slot - now;
+        }
+        if (wait > 0) {
+            SystemClock.sleep(wait);
+        }
+    }
+
+    private static void putRawJson(JSONObject target, String key, String json) {
+        try {
+            target.put(key, new JSONArray(json));
+        } catch (JSONException e) {
+            Log.e(TAG, "Invalid cached EPG JSON for " + key, e);
+        }
+    }
+
+    private void notifyWebCatalogLoaded(boolean success) {
+        mActivity.runOnUiThread(() -> mWebView.evaluateJavascript(
+                "if(typeof window.onXtreamCatalogLoaded === 'function') window.onXtreamCatalogLoaded(" + success + ");",
+                null));
+    }
+
+    private void notifyWebCatalogUpdated(JSONArray changedCategoryIds) {
+        if (changedCategoryIds.length() == 0) return;
+        final String json = JSONObject.quote(changedCategoryIds.toString());
+        mActivity.runOnUiThread(() -> mWebView.evaluateJavascript(
+                "if(typeof window.onXtreamCatalogUpdated === 'function') window.onXtreamCatalogUpdated(" + json + ");",
+                null));
+    }
+
+    private void notifyWebShortEpg(String requestId, String resultJson) {
+        final String id = JSONObject.quote(requestId == null ? "" : requestId);
+        final String json = JSONObject.quote(resultJson);
+        mActivity.runOnUiThread(() -> mWebView.evaluateJavascript(
+                "if(typeof window.onXtreamShortEpg === 'function') window.onXtreamShortEpg(" + id + ", " + json + ");",
+                null));
+    }
+}
@@ -0,0 +1,312 @@
+package com.kenjigames.ivids;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.kenjigames.ivids.core.HlsStartPlanner;
+import com.kenjigames.ivids.core.TmdbImageSizes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ZapAccelerator keeps the start of the previous and next Live TV channels warm while a channel plays: the master
+ * and variant playlists and the start segment are fetched through HlsProxy's upstream connection and held in memory,
+ * so a zap is answered from memory instead of three sequential round trips.
+ * A channel is warmed as one consistent snapshot (playlists plus the segment they point at), so a warm zap starts
+ * at most one refresh interval behind the live edge.
+ * Warming stops under data saving or a slow link and is limited by a token bucket (1 Mbit/s average, 6 MB burst).
+ */
+class ZapAccelerator {
+    private static final String TAG = "ZapAccelerator";
+
+    /** Matches liveSyncDurationCount in gui/pages/tv-player.js. */
+    private static final int LIVE_SYNC_SEGMENTS = 2;
+    /** Gives the playing channel time to fill its buffer before neighbours compete for bandwidth. */
+    private static final long START_DELAY_MS = 3000;
+    private static final long CHECK_INTERVAL_MS = 5000;
+    /** A snapshot is refreshed after this many target durations. */
+    private static final int REFRESH_TARGET_DURATIONS = 2;
+    private static final long MIN_REFRESH_MS = 10000;
+    private static final int MAX_PLAYLIST_BYTES = 512 * 1024;
+    private static final int MAX_SEGMENT_BYTES = 3 * 1024 * 1024;
+    private static final double BUDGET_CAPACITY_BYTES = 6 * 1024 * 1024;
+    private static final double BUDGET_REFILL_BYTES_PER_MS = 128 * 1024 / 1000.0;
+    private static final int CACHE_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * One warmed response.
+     */
+    static final class Entry {
+        final byte[] body;
+        final String finalUrl;
+        final String contentType;
+        final long expiresAt;
+
+        Entry(byte[] body, String finalUrl, String contentType, long expiresAt) {
+            this.body = body;
+            this.finalUrl = finalUrl;
+            this.contentType = contentType;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final HlsProxy mProxy;
+    private final SizedLruCache<String, Entry> mCache;
+    private final MetricsRegistry.Counter mUpstreamBytes;
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+    /** Next refresh time per neighbour channel URL. */
+    private final Map<String, Long> mRefreshAt = new HashMap<>();
+    private volatile NetworkQualityMonitor mNetworkMonitor;
+    private List<String> mNeighbors = Collections.emptyList();
+    private ScheduledFuture<?> mTask;
+    private double mTokens = BUDGET_CAPACITY_BYTES;
+    private long mTokensAt = SystemClock.elapsedRealtime();
+    private long mWarmedBytes = 0;
+    private long mHits = 0;
+
+    /**
+     * @param proxy The proxy whose upstream connection settings (timeouts, User-Agent) are reused.
+     * @param cacheRegistry The registry that trims the warm cache under memory pressure.
+     */
+    ZapAccelerator(HlsProxy proxy, CacheRegistry cacheRegistry) {
+        this.mProxy = proxy;
+        this.mCache = new SizedLruCache<>(CACHE_BYTES, (key, entry) -> entry.body.length + key.length() * 2 + 64);
+        cacheRegistry.register("hls-zap", mCache);
+        this.mUpstreamBytes = MetricsRegistry.getInstance().counter(MetricsRegistry.UPSTREAM_BYTES,
+                MetricsRegistry.UPSTREAM_BYTES_HELP, "component", "zap");
+    }
+
+    void setNetworkMonitor(NetworkQualityMonitor monitor) {
+        mNetworkMonitor = monitor;
+    }
+
+    /**
+     * Replaces the channels kept warm. An empty list stops warming and drops the warm cache.
+     *
+     * @param channelUrls The stream URLs of the adjacent channels.
+     */
+    synchronized void setNeighbors(List<String> channelUrls) {
+        if (mTask != null) {
+            mTask.cancel(false);
+            mTask = null;
+        }
+        mNeighbors = new ArrayList<>(channelUrls);
+        mRefreshAt.keySet().retainAll(mNeighbors);
+        if (mNeighbors.isEmpty()) {
+            mCache.evictAll();
+            return;
+        }
+        mTask = mExecutor.scheduleWithFixedDelay(this::warmNeighbors, START_DELAY_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes and returns a warm response, so live playlists are only ever served once from memory.
+     *
+     * @param url The upstream URL the player requested.
+     * @return The warm response, or null if none is cached or it expired.
+     */
+    Entry take(String url) {
+        Entry entry = mCache.remove(url);
+        if (entry == null || entry.expiresAt < SystemClock.elapsedRealtime()) {
+            return null;
+        }
+        synchronized (this) {
+            mHits++;
+        }
+        return entry;
+    }
+
+    synchronized long getHits() {
+        return mHits;
+    }
+
+    synchronized long getWarmedBytes() {
+        return mWarmedBytes;
+    }
+
+    long getCacheBytes() {
+        return mCache.estimateSizeBytes();
+    }
+
+    /**
+     * Stops the warm-up thread.
+     */
+    void shutdown() {
+        mExecutor.shutdownNow();
+        mCache.evictAll();
+    }
+
+    private void warmNeighbors() {
+        NetworkQualityMonitor monitor = mNetworkMonitor;
+        if (monitor != null && monitor.getSavingLevel() != TmdbImageSizes.Level.NONE) {
+            return;
+        }
+        List<String> neighbors;
+        synchronized (this) {
+            neighbors = mNeighbors;
+        }
+        long now = SystemClock.elapsedRealtime();
+        for (String url : neighbors) {
+            Long refreshAt;
+            synchronized (this) {
+                refreshAt = mRefreshAt.get(url);
+            }
+            if (refreshAt != null && refreshAt > now) {
+                continue;
+            }
+            try {
+                warm(url);
+            } catch (IOException e) {
+                Log.d(TAG, "Warm-up skipped for " + url + ": " + e.getMessage());
+                synchronized (this) {
+                    mRefreshAt.put(url, now + MIN_REFRESH_MS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetches a fresh snapshot of one channel: master playlist, first variant and its start segment.
+     */
+    private void warm(String channelUrl) throws IOException {
+        Fetched master = fetch(channelUrl, MAX_PLAYLIST_BYTES);
+        String mediaUrl = channelUrl;
+        Fetched media = master;
+        String mediaPlaylist = master.text();
+        if (HlsStartPlanner.isMaster(mediaPlaylist)) {
+            mediaUrl = HlsStartPlanner.firstVariantUrl(mediaPlaylist, master.finalUrl);
+            if (mediaUrl == null) {
+                throw new IOException("Master playlist without variants");
+            }
+            media = fetch(mediaUrl, MAX_PLAYLIST_BYTES);
+            mediaPlaylist = media.text();
+        }
+
+        long targetMs = HlsStartPlanner.targetDurationSeconds(mediaPlaylist) * 1000L;
+        long refreshMs = Math.max(MIN_REFRESH_MS, REFRESH_TARGET_DURATIONS * targetMs);
+        // Playlists without their segment are still worth two round trips, but only while they are current.
+        long playlistTtl = targetMs;
+        Map<String, Fetched> segments = new LinkedHashMap<>();
+        for (String segmentUrl : HlsStartPlanner.startSegmentUrls(mediaPlaylist, media.finalUrl, LIVE_SYNC_SEGMENTS)) {
+            if (!hasBudget(MAX_SEGMENT_BYTES / 2)) {
+                segments.clear();
+                break;
+            }
+            segments.put(segmentUrl, fetch(segmentUrl, MAX_SEGMENT_BYTES));
+        }
+        if (!segments.isEmpty()) {
+            playlistTtl = refreshMs + targetMs;
+        } else {
+            refreshMs = Math.max(targetMs, CHECK_INTERVAL_MS);
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        store(channelUrl, master, now + playlistTtl);
+        if (media != master) {
+            store(mediaUrl, media, now + playlistTtl);
+        }
+        for (Map.Entry<String, Fetched> segment : segments.entrySet()) {
+            store(segment.getKey(), segment.getValue(), now + refreshMs + targetMs);
+        }
+        synchronized (this) {
+            mRefreshAt.put(channelUrl, now + refreshMs);
+        }
+    }
+
+    private void store(String url, Fetched fetched, long expiresAt) {
+        mCache.putAndReport(url, new Entry(fetched.body, fetched.finalUrl, fetched.contentType, expiresAt));
+    }
+
+    /**
+     * Downloads one resource within the remaining budget.
+     */
+    private Fetched fetch(String url, int maxBytes) throws IOException {
+        HttpURLConnection conn = mProxy.openUpstream(url, null);
+        try {
+            int status = conn.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status);
+            }
+            String contentLength = conn.getHeaderField("Content-Length");
+            long limit = (long) Math.min(maxBytes, availableTokens());
+            if (contentLength != null && parseLong(contentLength) > limit) {
+                throw new IOException("Over budget (" + contentLength + " bytes)");
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[16 * 1024];
+            try (InputStream in = conn.getInputStream()) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                    if (body.size() > limit) {
+                        throw new IOException("Over budget");
+                    }
+                }
+            } finally {
+                charge(body.size());
+            }
+            return new Fetched(body.toByteArray(), conn.getURL().toString(), conn.getContentType());
+        } catch (IOException e) {
+            conn.disconnect();
+            throw e;
+        }
+    }
+
+    private synchronized double availableTokens() {
+        long now = SystemClock.elapsedRealtime();
+        mTokens = Math.min(BUDGET_CAPACITY_BYTES, mTokens + (now - mTokensAt) * BUDGET_REFILL_BYTES_PER_MS);
+        mTokensAt = now;
+        return mTokens;
+    }
+
+    private boolean hasBudget(long bytes) {
+        return availableTokens() >= bytes;
+    }
+
+    private synchronized void charge(long bytes) {
+        mTokens -= bytes;
+        mWarmedBytes += bytes;
+        mUpstreamBytes.add(bytes);
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * A downloaded resource before it is stored.
+     */
+    private static final class Fetched {
+        final byte[] body;
+        final String finalUrl;
+        final String contentType;
+
+        Fetched(byte[] body, String finalUrl, String contentType) {
+            this.body = body;
+            this.finalUrl = finalUrl;
+            this.contentType = contentType;
+        }
+
+        String text() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+}
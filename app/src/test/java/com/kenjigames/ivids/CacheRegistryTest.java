@@ -0,0 +1,149 @@
+package com.kenjigames.ivids;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Drives {@link CacheRegistry} with simulated {@code onTrimMemory} callbacks against fake caches and checks that the
+ * graded targets and the global budget are respected.
+ */
+public class CacheRegistryTest {
+
+    private static final long BUDGET = 8L * 1024 * 1024;
+
+    /** A cache that holds a plain byte count and records its trims. */
+    private static final class FakeCache implements TrimmableCache {
+        long size;
+        int trims;
+        Runnable growthListener;
+
+        FakeCache(long size) {
+            this.size = size;
+        }
+
+        void grow(long bytes) {
+            size += bytes;
+            if (growthListener != null) {
+                growthListener.run();
+            }
+        }
+
+        @Override
+        public long estimateSizeBytes() {
+            return size;
+        }
+
+        @Override
+        public void trimToSize(long maxBytes) {
+            trims++;
+            size = Math.min(size, Math.max(0, maxBytes));
+        }
+
+        @Override
+        public void setGrowthListener(Runnable listener) {
+            growthListener = listener;
+        }
+    }
+
+    private CacheRegistry mRegistry;
+    private FakeCache mLarge;
+    private FakeCache mSmall;
+
+    @Before
+    public void setUp() {
+        mRegistry = new CacheRegistry(BUDGET);
+        mLarge = new FakeCache(BUDGET * 3 / 4);
+        mSmall = new FakeCache(BUDGET / 4);
+        mRegistry.register("large", mLarge);
+        mRegistry.register("small", mSmall);
+    }
+
+    @Test
+    public void fullCachesWithinBudgetAreNotTrimmed() {
+        assertEquals(BUDGET, mRegistry.getTotalSizeBytes());
+        mRegistry.enforceBudget();
+        assertEquals(0, mLarge.trims + mSmall.trims);
+    }
+
+    @Test
+    public void runningModerateHalvesTheBudget() {
+        mRegistry.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertTrue(mRegistry.getTotalSizeBytes() <= BUDGET / 2);
+    }
+
+    @Test
+    public void lowPressureAndHiddenUiQuarterTheBudget() {
+        int[] levels = {
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW,
+                ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN,
+                ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+        };
+        for (int level : levels) {
+            setUp();
+            mRegistry.onTrimMemory(level);
+            assertTrue("level " + level, mRegistry.getTotalSizeBytes() <= BUDGET / 4);
+            assertTrue("level " + level, mRegistry.getTotalSizeBytes() > 0);
+        }
+    }
+
+    @Test
+    public void criticalPressureClearsEveryCache() {
+        int[] levels = {
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL,
+                ComponentCallbacks2.TRIM_MEMORY_MODERATE,
+                ComponentCallbacks2.TRIM_MEMORY_COMPLETE
+        };
+        for (int level : levels) {
+            setUp();
+            mRegistry.onTrimMemory(level);
+            assertEquals("level " + level, 0, mRegistry.getTotalSizeBytes());
+        }
+    }
+
+    @Test
+    public void lowMemoryClearsEveryCache() {
+        mRegistry.onLowMemory();
+        assertEquals(0, mLarge.size);
+        assertEquals(0, mSmall.size);
+    }
+
+    @Test
+    public void trimKeepsSharesProportionalToSize() {
+        mRegistry.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(BUDGET * 3 / 8, mLarge.size);
+        assertEquals(BUDGET / 8, mSmall.size);
+    }
+
+    @Test
+    public void registeringOverBudgetTrimsToTheBudget() {
+        mRegistry.register("third", new FakeCache(BUDGET));
+        assertTrue(mRegistry.getTotalSizeBytes() <= BUDGET);
+    }
+
+    @Test
+    public void growthAfterRegistrationIsHeldToTheBudget() {
+        mSmall.grow(BUDGET);
+        assertTrue(mRegistry.getTotalSizeBytes() <= BUDGET);
+        assertTrue(mLarge.trims > 0);
+    }
+
+    @Test
+    public void unregisteredCachesAreLeftAlone() {
+        mRegistry.unregister("small");
+        mSmall.grow(BUDGET);
+        assertEquals(BUDGET * 5 / 4, mSmall.size);
+        mRegistry.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(BUDGET * 5 / 4, mSmall.size);
+        assertEquals(0, mLarge.size);
+    }
+
+    @Test
+    public void budgetHasALowerBound() {
+        assertEquals(4L * 1024 * 1024, new CacheRegistry(1024).getBudgetBytes());
+    }
+}
@@ -0,0 +1,117 @@
+package com.kenjigames.ivids;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+import android.webkit.WebResourceRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Checks that the HLS proxy only starts sessions for the app page and refuses requests that do not carry the token
+ * of one, so embed frames cannot use it to reach arbitrary URLs.
+ */
+public class HlsProxyTest {
+
+    private static final String STREAM_URL = "http://iptv.example/live/index.m3u8";
+
+    private HlsProxy mProxy;
+
+    @Before
+    public void setUp() {
+        mProxy = new HlsProxy(new CacheRegistry(8L * 1024 * 1024));
+    }
+
+    @Test
+    public void appKeyIsOnlyHandedToTheAppOrigin() {
+        assertNotNull(LocalEndpoint.keyFor(LocalEndpoint.APP_ORIGIN));
+        assertNull(LocalEndpoint.keyFor("https://vidlink.pro"));
+        // Sandboxed and opaque frames report "null"
+        assertNull(LocalEndpoint.keyFor("null"));
+        assertNull(LocalEndpoint.keyFor(null));
+
+        assertTrue(LocalEndpoint.isAppKey(LocalEndpoint.keyFor(LocalEndpoint.APP_ORIGIN)));
+        assertFalse(LocalEndpoint.isAppKey("0123456789abcdef0123456789abcdef"));
+        assertFalse(LocalEndpoint.isAppKey(null));
+    }
+
+    @Test
+    public void noSessionIsStartedWithoutTheAppKey() {
+        assertEquals(STREAM_URL, mProxy.getProxyUrl(STREAM_URL, null));
+        assertEquals(STREAM_URL, mProxy.getProxyUrl(STREAM_URL, "0123456789abcdef0123456789abcdef"));
+    }
+
+    @Test
+    public void requestWithoutAnAppIssuedTokenIsForbidden() {
+        assertEquals(403, mProxy.refusalStatus(STREAM_URL, null));
+        assertEquals(403, mProxy.refusalStatus(STREAM_URL, ""));
+        assertEquals(403, mProxy.refusalStatus(STREAM_URL, "0123456789abcdef0123456789abcdef"));
+        // The app key itself is not a session token
+        assertEquals(403, mProxy.refusalStatus(STREAM_URL, LocalEndpoint.keyFor(LocalEndpoint.APP_ORIGIN)));
+    }
+
+    @Test
+    public void appPageSessionIsServed() {
+        String proxied = mProxy.getProxyUrl(STREAM_URL, LocalEndpoint.keyFor(LocalEndpoint.APP_ORIGIN));
+        assertNotEquals(STREAM_URL, proxied);
+        assertTrue(proxied.startsWith("https://" + HlsProxy.PROXY_HOST + "/proxy?sid="));
+        String token = proxied.substring(proxied.indexOf("sid=") + 4, proxied.indexOf("&url="));
+
+        assertEquals(0, mProxy.refusalStatus(STREAM_URL, token));
+        assertEquals(400, mProxy.refusalStatus("file:///data/data/com.kenjigames.ivids/shared_prefs/x.xml", token));
+        assertEquals(400, mProxy.refusalStatus(null, token));
+    }
+
+    @Test
+    public void corsHeadersAreOnlySentToTheAppOrigin() {
+        assertEquals("file://", LocalEndpoint.corsHeaders(request("file://")).get("Access-Control-Allow-Origin"));
+        assertTrue(LocalEndpoint.corsHeaders(request("null")).isEmpty());
+        assertTrue(LocalEndpoint.corsHeaders(request("https://vidlink.pro")).isEmpty());
+        assertTrue(LocalEndpoint.corsHeaders(request(null)).isEmpty());
+    }
+
+    private static WebResourceRequest request(String origin) {
+        Map<String, String> headers = origin != null
+                ? Collections.singletonMap("Origin", origin) : Collections.<String, String>emptyMap();
+        return new WebResourceRequest() {
+            @Override
+            public Uri getUrl() {
+                return null;
+            }
+
+            @Override
+            public boolean isForMainFrame() {
+                return false;
+            }
+
+            @Override
+            public boolean isRedirect() {
+                return false;
+            }
+
+            @Override
+            public boolean hasGesture() {
+                return false;
+            }
+
+            @Override
+            public String getMethod() {
+                return "GET";
+            }
+
+            @Override
+            public Map<String, String> getRequestHeaders() {
+                return headers;
+            }
+        };
+    }
+}
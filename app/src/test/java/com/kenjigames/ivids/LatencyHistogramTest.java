@@ -0,0 +1,145 @@
+package com.kenjigames.ivids;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks the bucketing and percentile math of {@link LatencyHistogram} and its Prometheus text export through
+ * {@link MetricsRegistry}.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBoundsAreInclusive() {
+        LatencyHistogram histogram = new LatencyHistogram(new long[] {10, 100, 1000});
+        histogram.record(0);
+        histogram.record(10);
+        histogram.record(11);
+        histogram.record(100);
+        histogram.record(1000);
+        histogram.record(1001);
+        histogram.record(-5);
+
+        assertArrayEquals(new long[] {2, 2, 1, 1}, histogram.getBucketCounts());
+        assertEquals(6, histogram.getCount());
+        assertEquals(2122, histogram.getSumMs());
+    }
+
+    @Test
+    public void multiSecondSamplesKeepTheirResolutionWithNetworkBounds() {
+        LatencyHistogram frame = new LatencyHistogram();
+        LatencyHistogram network = new LatencyHistogram(LatencyHistogram.NETWORK_BOUNDS_MS);
+        for (long sample : new long[] {1500, 3000, 7000, 12000}) {
+            frame.record(sample);
+            network.record(sample);
+        }
+
+        // With frame bounds every sample is in the overflow bucket, and the median collapses to the maximum
+        assertEquals(4, frame.getBucketCounts()[LatencyHistogram.FRAME_BOUNDS_MS.length]);
+        assertEquals(12000, frame.percentileMs(50));
+        assertEquals(0, network.getBucketCounts()[LatencyHistogram.NETWORK_BOUNDS_MS.length]);
+        assertEquals(4000, network.percentileMs(50));
+        assertEquals(12000, network.percentileMs(95));
+    }
+
+    @Test
+    public void percentileIsTheUpperBoundOfItsBucket() {
+        LatencyHistogram histogram = new LatencyHistogram(new long[] {10, 100, 1000});
+        for (int i = 0; i < 90; i++) {
+            histogram.record(5);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(50);
+        }
+        histogram.record(5000);
+
+        assertEquals(10, histogram.percentileMs(50));
+        assertEquals(10, histogram.percentileMs(90));
+        assertEquals(100, histogram.percentileMs(95));
+        assertEquals(100, histogram.percentileMs(99));
+        // The overflow bucket reports the observed maximum
+        assertEquals(5000, histogram.percentileMs(100));
+    }
+
+    @Test
+    public void percentileNeverExceedsTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram(new long[] {10, 100, 1000});
+        histogram.record(42);
+
+        assertEquals(42, histogram.percentileMs(50));
+        assertEquals(0, new LatencyHistogram().percentileMs(50));
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(20);
+        histogram.record(2000);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getSumMs());
+        assertEquals(0, histogram.percentileMs(99));
+        assertArrayEquals(new long[LatencyHistogram.FRAME_BOUNDS_MS.length + 1], histogram.getBucketCounts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unorderedBoundsAreRejected() {
+        new LatencyHistogram(new long[] {100, 100, 1000});
+    }
+
+    @Test
+    public void boundsAreCopied() {
+        long[] bounds = {10, 100};
+        LatencyHistogram histogram = new LatencyHistogram(bounds);
+        bounds[0] = 1;
+        histogram.getBoundsMs()[1] = 5;
+
+        assertArrayEquals(new long[] {10, 100}, histogram.getBoundsMs());
+    }
+
+    @Test
+    public void textExportUsesEachHistogramsBounds() {
+        MetricsRegistry registry = new MetricsRegistry();
+        LatencyHistogram fast = new LatencyHistogram(new long[] {10, 100});
+        LatencyHistogram slow = new LatencyHistogram(new long[] {1000, 60000});
+        fast.record(5);
+        fast.record(50);
+        slow.record(2500);
+        slow.record(90000);
+        registry.histogram("ivids_test_seconds", "Test \\ help\nline.", fast, "kind", "fast");
+        registry.histogram("ivids_test_seconds", "Ignored for the existing family.", slow, "kind", "s\"low");
+
+        StringBuilder out = new StringBuilder();
+        registry.writePrometheus(out);
+
+        assertEquals("# HELP ivids_test_seconds Test \\\\ help\\nline.\n"
+                + "# TYPE ivids_test_seconds histogram\n"
+                + "ivids_test_seconds_bucket{kind=\"fast\",le=\"0.010\"} 1\n"
+                + "ivids_test_seconds_bucket{kind=\"fast\",le=\"0.100\"} 2\n"
+                + "ivids_test_seconds_bucket{kind=\"fast\",le=\"+Inf\"} 2\n"
+                + "ivids_test_seconds_sum{kind=\"fast\"} 0.055\n"
+                + "ivids_test_seconds_count{kind=\"fast\"} 2\n"
+                + "ivids_test_seconds_bucket{kind=\"s\\\"low\",le=\"1.000\"} 0\n"
+                + "ivids_test_seconds_bucket{kind=\"s\\\"low\",le=\"60.000\"} 1\n"
+                + "ivids_test_seconds_bucket{kind=\"s\\\"low\",le=\"+Inf\"} 2\n"
+                + "ivids_test_seconds_sum{kind=\"s\\\"low\"} 92.500\n"
+                + "ivids_test_seconds_count{kind=\"s\\\"low\"} 2\n", out.toString());
+    }
+
+    @Test
+    public void textExportWritesCountersAndGauges() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("ivids_test_total", "Counted.").add(3);
+        registry.gauge("ivids_test_bytes", "Gauged.", () -> 7, "cache", "logos");
+
+        StringBuilder out = new StringBuilder();
+        registry.writePrometheus(out);
+
+        assertTrue(out.toString(), out.toString().contains("# TYPE ivids_test_total counter\nivids_test_total 3\n"));
+        assertTrue(out.toString(), out.toString().contains("# TYPE ivids_test_bytes gauge\nivids_test_bytes{cache=\"logos\"} 7\n"));
+    }
+}
@@ -0,0 +1,35 @@
+plugins {
+    `java`
+    alias(libs.plugins.jmh)
+}
+
+/**
+ * JMH benchmarks for the :core hot paths. Run with `./gradlew :benchmarks:jmh`; results are written as JSON
+ * to build/results/jmh/results.json. See docs/architecture/core-module.md for recording a baseline.
+ */
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    jmh(project(":core"))
+    jmh(project(":fixtures"))
+    jmh(libs.jmh.core)
+    jmhAnnotationProcessor(libs.jmh.generator.annprocess)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    // JsonProjectionBenchmark uses the projection specs the app ships
+    jvmArgsAppend.add("-Divids.tmdbProjections=" + rootProject.file("app/src/main/assets/main/logic/tmdb-projections.json").absolutePath)
+    // FixtureReplayBenchmark replays recorded fixtures instead of synthetic ones with -PividsFixtures=<dir>
+    providers.gradleProperty("ividsFixtures").orNull?.let {
+        jvmArgsAppend.add("-Divids.fixtures=" + rootProject.file(it).absolutePath)
+    }
+}
@@ -0,0 +1,61 @@
+package com.kenjigames.ivids.benchmarks;
+
+import com.kenjigames.ivids.core.AdHostMatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-request ad host check done in AdBlockingWebViewClient.shouldInterceptRequest,
+ * against the previous linear {@code host.contains(adHost)} scan as a reference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AdHostMatcherBenchmark {
+
+    /** A mix of typical request hosts: TMDB, player CDNs and blocked ad hosts. */
+    private static final String[] HOSTS = {
+            "api.themoviedb.org", "image.tmdb.org", "vidlink.pro", "cdn.jsdelivr.net",
+            "pagead2.googlesyndication.com", "securepubads.g.doubleclick.net", "s3.eu-west-1.amazonaws.com",
+            "static.videasy.net", "www.google-analytics.com", "i.ytimg.com"
+    };
+
+    private AdHostMatcher mMatcher;
+    private String[] mLegacyHosts;
+
+    @Setup
+    public void setUp() {
+        mMatcher = AdHostMatcher.createDefault();
+        mLegacyHosts = AdHostMatcher.DEFAULT_HOSTS.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public void matcher(Blackhole blackhole) {
+        for (String host : HOSTS) {
+            blackhole.consume(mMatcher.isAd(host));
+        }
+    }
+
+    @Benchmark
+    public void legacyContainsScan(Blackhole blackhole) {
+        for (String host : HOSTS) {
+            boolean ad = false;
+            for (String adHost : mLegacyHosts) {
+                if (host.contains(adHost)) {
+                    ad = true;
+                    break;
+                }
+            }
+            blackhole.consume(ad);
+        }
+    }
+}
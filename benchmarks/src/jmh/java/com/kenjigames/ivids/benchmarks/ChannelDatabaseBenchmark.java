@@ -0,0 +1,195 @@
+package com.kenjigames.ivids.benchmarks;
+
+import com.kenjigames.ivids.core.ChannelDatabase;
+import com.kenjigames.ivids.core.JsonPullParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading the Live TV broken channel list: the old path, which read broken-channels.json and normalized
+ * every URL into a set (what the WebView did with {@code JSON.parse} on every visit), against memory-mapping the
+ * compiled {@link ChannelDatabase} the way the Android {@code ChannelDbBridge} does, and the lookup of one batch of
+ * playlist URLs in each. Retained heap for each load is printed once during setup; run with {@code -prof gc} for
+ * allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class ChannelDatabaseBenchmark {
+
+    /** URLs in the synthetic list; the shipped broken-channels.json holds about 12k. */
+    @Param({"12000"})
+    public int urlCount;
+
+    /** Playlist URLs checked at once, about one large playlist. */
+    private static final int BATCH_SIZE = 2000;
+
+    private Path mTempDir;
+    private Path mJsonFile;
+    private Path mDatabaseFile;
+    private Set<String> mJsonSet;
+    private ChannelDatabase mDatabase;
+    private List<String> mBatch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mTempDir = Files.createTempDirectory("ivids-channeldb");
+        List<String> urls = syntheticUrls(urlCount);
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < urls.size(); i++) {
+            json.append(i > 0 ? ",\n" : "").append("  \"").append(urls.get(i)).append('"');
+        }
+        json.append("\n]");
+        mJsonFile = Files.write(mTempDir.resolve("broken-channels.json"), json.toString().getBytes(StandardCharsets.UTF_8));
+        mDatabaseFile = Files.write(mTempDir.resolve("broken-channels.bin"), ChannelDatabase.compile(urls));
+        mJsonSet = loadJsonSet();
+        mDatabase = mapDatabase();
+
+        // Half of the batch is listed as broken, half is not
+        mBatch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            String url = i % 2 == 0 ? urls.get(i * 5 % urls.size()) : "http://live.example.invalid/ok/" + i + "/index.m3u8";
+            mBatch.add(ChannelDatabase.normalize(url));
+        }
+
+        System.out.println("\nList: " + mDatabase.size() + " URLs, JSON " + Files.size(mJsonFile) + " bytes, compiled "
+                + Files.size(mDatabaseFile) + " bytes");
+        System.out.println("JSON set: retained " + measureRetainedHeap(this::loadJsonSet) / 1024 + " kB");
+        System.out.println("Mapped database: retained " + measureRetainedHeap(this::mapDatabase) / 1024 + " kB");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(mJsonFile);
+        Files.deleteIfExists(mDatabaseFile);
+        Files.deleteIfExists(mTempDir);
+    }
+
+    @Benchmark
+    public Set<String> loadJsonSet() throws IOException {
+        Set<String> urls = new HashSet<>();
+        try (Reader reader = Files.newBufferedReader(mJsonFile, StandardCharsets.UTF_8)) {
+            JsonPullParser parser = new JsonPullParser(reader);
+            parser.next();
+            while (parser.next() == JsonPullParser.Token.VALUE) {
+                urls.add(ChannelDatabase.normalize(parser.decodedText()));
+            }
+        }
+        return urls;
+    }
+
+    @Benchmark
+    public ChannelDatabase mapDatabase() throws IOException {
+        try (FileChannel channel = FileChannel.open(mDatabaseFile, StandardOpenOption.READ)) {
+            return new ChannelDatabase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Benchmark
+    public int findBrokenInJsonSet() {
+        int broken = 0;
+        for (String url : mBatch) {
+            if (mJsonSet.contains(url)) {
+                broken++;
+            }
+        }
+        return broken;
+    }
+
+    @Benchmark
+    public int findBrokenInDatabase() {
+        int broken = 0;
+        for (String url : mBatch) {
+            if (mDatabase.contains(url)) {
+                broken++;
+            }
+        }
+        return broken;
+    }
+
+    private interface Load {
+        Object run() throws IOException;
+    }
+
+    /**
+     * Runs one load after a GC and returns what its result still holds on the heap after another GC.
+     */
+    private static long measureRetainedHeap(Load load) throws IOException {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pools.add(pool);
+            }
+        }
+        collect();
+        long baseline = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            baseline += pool.getUsage().getUsed();
+        }
+        Object result = load.run();
+        collect();
+        long retained = -baseline;
+        for (MemoryPoolMXBean pool : pools) {
+            retained += pool.getUsage().getUsed();
+        }
+        // Keeps the result reachable until the heap has been measured
+        return result != null ? retained : 0;
+    }
+
+    /**
+     * Runs a few collections: a single {@code System.gc()} can leave the previous load's garbage in the old
+     * generation and skew the baseline.
+     */
+    private static void collect() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+    }
+
+    /**
+     * @return URLs shaped like the shipped list: IPTV hosts with ports and HLS paths, plus some bare hosts.
+     */
+    private static List<String> syntheticUrls(int count) {
+        List<String> urls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String host = (i * 7919 % 250) + "." + (i % 200) + "." + (i / 200 % 250) + ".1";
+            if (i % 10 == 0) {
+                urls.add("stream" + i + ".example.invalid:8000");
+            } else if (i % 3 == 0) {
+                urls.add("https://" + host + ":1935/live/channel" + i + "/playlist.m3u8");
+            } else {
+                urls.add("http://" + host + ":8000/play/a" + Integer.toHexString(i) + "/index.m3u8");
+            }
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,86 @@
+package com.kenjigames.ivids.benchmarks;
+
+import com.kenjigames.ivids.core.EpgGuideIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two ways Live TV gets its channel-to-guide mapping: building it from the iptv-org guides list (what
+ * the page did on every visit, and what the app now does once per refresh) and loading the persisted index, plus
+ * resolving one rendered chunk of channels. The list is synthetic, with the country mix and feed share of the real one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EpgGuideIndexBenchmark {
+
+    private static final String[] COUNTRIES = {"us", "uk", "be", "nl", "fr", "de", "ca", "au", "es", "it", "pt", "br"};
+
+    /** Entries in the guides list; the real one has tens of thousands. */
+    @Param({"20000", "60000"})
+    public int guideCount;
+
+    private String mGuidesJson;
+    private byte[] mPersisted;
+    private EpgGuideIndex mIndex;
+    private String[] mChunk;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < guideCount; i++) {
+            String country = COUNTRIES[i % COUNTRIES.length];
+            json.append(i > 0 ? "," : "").append("{\"channel\":\"Channel").append(i / 3).append('.').append(country).append('"')
+                    .append(",\"feed\":").append(i % 4 == 0 ? "\"SD\"" : "null")
+                    .append(",\"site\":\"site").append(i % 50).append(".example.invalid\",\"site_id\":\"").append(i)
+                    .append("\",\"site_name\":\"Channel ").append(i).append("\",\"lang\":\"").append(country.equals("be") ? "nl" : "en")
+                    .append("\"}");
+        }
+        mGuidesJson = json.append(']').toString();
+        mIndex = EpgGuideIndex.build(new StringReader(mGuidesJson));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mIndex.writeTo(out);
+        mPersisted = out.toByteArray();
+        System.out.println("\nGuides JSON: " + mGuidesJson.length() + " chars, persisted index: " + mPersisted.length
+                + " bytes for " + mIndex.size() + " ids");
+
+        // One chunk as rendered by the Live TV grid: known channels, channel@feed ids and channels without a guide.
+        mChunk = new String[60];
+        for (int i = 0; i < mChunk.length; i++) {
+            int entry = i * 4 * 97 % guideCount;
+            String channelId = "Channel" + entry / 3 + "." + COUNTRIES[entry % COUNTRIES.length];
+            mChunk[i] = i % 5 == 4 ? "Unknown" + channelId : channelId + (i % 3 == 0 ? "@SD" : "");
+        }
+    }
+
+    @Benchmark
+    public EpgGuideIndex buildFromGuidesJson() throws IOException {
+        return EpgGuideIndex.build(new StringReader(mGuidesJson));
+    }
+
+    @Benchmark
+    public EpgGuideIndex loadPersisted() throws IOException {
+        return EpgGuideIndex.readFrom(new ByteArrayInputStream(mPersisted));
+    }
+
+    @Benchmark
+    public void resolveChunk(Blackhole blackhole) {
+        for (String tvgId : mChunk) {
+            blackhole.consume(mIndex.resolve(tvgId));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.kenjigames.ivids.benchmarks;
+
+import com.kenjigames.ivids.core.M3uParser;
+import com.kenjigames.ivids.core.XmltvParser;
+import com.kenjigames.ivids.fixtures.Fixture;
+import com.kenjigames.ivids.fixtures.FixtureServer;
+import com.kenjigames.ivids.fixtures.FixtureStore;
+import com.kenjigames.ivids.fixtures.NetworkConditions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures download-and-parse of an IPTV playlist and an XMLTV guide replayed by the fixture server under
+ * simulated network profiles, so changes to the download paths can be compared without live services.
+ * The documents are synthetic (the shape of {@code PlaylistParserBenchmark}) unless {@code -Divids.fixtures}
+ * ({@code -PividsFixtures} for Gradle) points to a recorded fixture directory holding {@link #PLAYLIST_URL} and
+ * {@link #GUIDE_URL}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class FixtureReplayBenchmark {
+
+    static final String PLAYLIST_URL = "https://iptv-org.github.io/iptv/categories/sports.m3u";
+    static final String GUIDE_URL = "https://raw.githubusercontent.com/globetvapp/epg/main/Belgium/belgium1.xml";
+
+    /** loopback: no shaping; wifi: 20 ms, 2.5 MB/s; mobile: 80 ms plus up to 40 ms jitter, 500 kB/s. */
+    @Param({"loopback", "wifi", "mobile"})
+    public String network;
+
+    private FixtureServer mServer;
+    private Path mTempDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String recorded = System.getProperty("ivids.fixtures");
+        FixtureStore store;
+        if (recorded != null) {
+            store = new FixtureStore(Paths.get(recorded));
+        } else {
+            mTempDir = Files.createTempDirectory("ivids-fixtures");
+            store = new FixtureStore(mTempDir);
+            writeSyntheticFixtures(store, 1000);
+        }
+        mServer = new FixtureServer(store, FixtureServer.Mode.REPLAY, conditionsFor(network)).start(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mServer.stop();
+        if (mTempDir != null) {
+            try (Stream<Path> files = Files.walk(mTempDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public void downloadAndParseM3u(Blackhole blackhole) throws IOException {
+        try (Reader reader = open(mServer.urlFor(PLAYLIST_URL))) {
+            M3uParser.parse(reader, blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void downloadAndParseXmltv(Blackhole blackhole) throws IOException {
+        try (Reader reader = open(mServer.urlFor(GUIDE_URL))) {
+            XmltvParser.parse(reader, (channelId, startMs, stopMs, title) -> blackhole.consume(title));
+        }
+    }
+
+    private static Reader open(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        if (conn.getResponseCode() != 200) {
+            throw new IOException("HTTP " + conn.getResponseCode() + " (" + conn.getHeaderField("X-Fixture") + ") for " + url);
+        }
+        InputStream in = conn.getInputStream();
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    private static NetworkConditions conditionsFor(String network) {
+        switch (network) {
+            case "wifi":
+                return new NetworkConditions(20, 0, 2_500_000, 0, 0, 503, 1);
+            case "mobile":
+                return new NetworkConditions(80, 40, 500_000, 0, 0, 503, 1);
+            default:
+                return NetworkConditions.NONE;
+        }
+    }
+
+    private static void writeSyntheticFixtures(FixtureStore store, int channelCount) throws IOException {
+        StringBuilder playlist = new StringBuilder("#EXTM3U\n");
+        StringBuilder guide = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<tv>\n");
+        for (int i = 0; i < channelCount; i++) {
+            playlist.append("#EXTINF:-1 tvg-id=\"Channel").append(i).append(".be\" tvg-logo=\"https://logos.example.invalid/")
+                    .append(i).append(".png\" group-title=\"Group ").append(i % 40).append("\",Channel ").append(i).append('\n')
+                    .append("https://streams.example.invalid/live/").append(i).append("/index.m3u8\n");
+            for (int p = 0; p < 8; p++) {
+                guide.append("<programme start=\"2026052").append(p % 7).append("190000 +0200\" stop=\"2026052")
+                        .append(p % 7).append("200000 +0200\" channel=\"Channel").append(i).append(".be\">")
+                        .append("<title lang=\"en\">Programme ").append(p).append(" &amp; more</title>")
+                        .append("<desc lang=\"en\">A description that the parser skips.</desc></programme>\n");
+            }
+        }
+        guide.append("</tv>\n");
+        store.put(Fixture.of(PLAYLIST_URL, "audio/x-mpegurl", playlist.toString().getBytes(StandardCharsets.UTF_8)));
+        store.put(Fixture.of(GUIDE_URL, "application/xml", guide.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+}
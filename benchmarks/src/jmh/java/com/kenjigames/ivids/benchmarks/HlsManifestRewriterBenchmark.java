@@ -0,0 +1,141 @@
+package com.kenjigames.ivids.benchmarks;
+
+import com.kenjigames.ivids.core.HlsManifestRewriter;
+import com.sun.net.httpserver.HttpServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures HLS playlist rewriting as done by the Android HlsProxy, and time-to-first-segment against a local
+ * stand-in HLS origin (master playlist, variant playlist, segments) with and without the rewriting step.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HlsManifestRewriterBenchmark {
+
+    private static final String PROXY_PREFIX = "https://hls.ivids.invalid/proxy?sid=1&url=";
+    private static final int SEGMENT_BYTES = 188 * 2048;
+
+    private HttpServer mOrigin;
+    private String mMasterUrl;
+    private byte[] mMediaPlaylist;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StringBuilder media = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:4\n#EXT-X-MEDIA-SEQUENCE:1000\n");
+        media.append("#EXT-X-KEY:METHOD=AES-128,URI=\"key.bin\"\n");
+        for (int i = 0; i < 300; i++) {
+            media.append("#EXTINF:4.000,\nseg").append(i).append(".ts\n");
+        }
+        mMediaPlaylist = media.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] master = ("#EXTM3U\n#EXT-X-STREAM-INF:BANDWIDTH=2500000,RESOLUTION=1280x720\n720p/index.m3u8\n"
+                + "#EXT-X-STREAM-INF:BANDWIDTH=800000,RESOLUTION=640x360\n360p/index.m3u8\n").getBytes(StandardCharsets.UTF_8);
+        byte[] segment = new byte[SEGMENT_BYTES];
+
+        mOrigin = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mOrigin.createContext("/live/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = path.endsWith("master.m3u8") ? master : path.endsWith(".m3u8") ? mMediaPlaylist : segment;
+            exchange.getResponseHeaders().set("Content-Type",
+                    path.endsWith(".m3u8") ? "application/vnd.apple.mpegurl" : "video/mp2t");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        mOrigin.start();
+        mMasterUrl = "http://127.0.0.1:" + mOrigin.getAddress().getPort() + "/live/master.m3u8";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mOrigin.stop(0);
+    }
+
+    @Benchmark
+    public long rewriteMediaPlaylist() throws IOException {
+        HlsManifestRewriter rewriter = new HlsManifestRewriter("http://origin.example/live/720p/index.m3u8", PROXY_PREFIX);
+        return drain(rewriter.rewritingStream(new ByteArrayInputStream(mMediaPlaylist), StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public long timeToFirstSegmentDirect() throws IOException {
+        String variant = URI.create(mMasterUrl).resolve(firstUri(open(mMasterUrl), false)).toString();
+        String segment = URI.create(variant).resolve(firstUri(open(variant), false)).toString();
+        return firstChunk(open(segment));
+    }
+
+    @Benchmark
+    public long timeToFirstSegmentRewritten() throws IOException {
+        String variant = unproxy(firstUri(rewrite(mMasterUrl), true));
+        String segment = unproxy(firstUri(rewrite(variant), true));
+        return firstChunk(open(segment));
+    }
+
+    private InputStream rewrite(String url) throws IOException {
+        return new HlsManifestRewriter(url, PROXY_PREFIX).rewritingStream(open(url), StandardCharsets.UTF_8);
+    }
+
+    private static InputStream open(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        return conn.getInputStream();
+    }
+
+    private static String firstUri(InputStream playlist, boolean proxied) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(playlist, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    return proxied ? line : line.trim();
+                }
+            }
+        }
+        throw new IOException("Playlist has no URI lines");
+    }
+
+    private static String unproxy(String proxiedUrl) throws IOException {
+        return URLDecoder.decode(proxiedUrl.substring(PROXY_PREFIX.length()), "UTF-8");
+    }
+
+    private static long firstChunk(InputStream in) throws IOException {
+        try (InputStream segment = in) {
+            byte[] buffer = new byte[188 * 64];
+            return segment.read(buffer);
+        }
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream stream = in) {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                total += read;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,107 @@
+package com.kenjigames.ivids.benchmarks;
+
+import com.kenjigames.ivids.core.JsonProjection;
+import com.kenjigames.ivids.core.JsonPullParser;
+import com.kenjigames.ivids.core.TmdbProjectionSpecs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the TMDB details projection on a synthetic {@code /3/movie/{id}?append_to_response=release_dates,videos,credits}
+ * response, using the spec file the app ships. The bytes delivered to the WebView before and after projection are
+ * printed during setup; JS parse time is reported on the device by the "Details Payload" diagnostic in Settings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonProjectionBenchmark {
+
+    /** Cast and crew entries in the synthetic response; popular titles have 100+ cast and 300+ crew members. */
+    @Param({"40", "300"})
+    public int creditCount;
+
+    private String mResponse;
+    private JsonProjection mProjection;
+
+    @Setup
+    public void setUp() throws IOException {
+        String specsPath = System.getProperty("ivids.tmdbProjections");
+        try (Reader reader = new InputStreamReader(new FileInputStream(specsPath), StandardCharsets.UTF_8)) {
+            mProjection = TmdbProjectionSpecs.parse(reader).match("/3/movie/550", "release_dates,videos,credits").projection;
+        }
+
+        StringBuilder json = new StringBuilder("{\"adult\":false,\"backdrop_path\":\"/b.jpg\",\"belongs_to_collection\":null,")
+                .append("\"budget\":63000000,\"genres\":[{\"id\":18,\"name\":\"Drama\"},{\"id\":53,\"name\":\"Thriller\"}],")
+                .append("\"homepage\":\"https://example.invalid\",\"id\":550,\"imdb_id\":\"tt0137523\",")
+                .append("\"overview\":\"A ticking-time-bomb insomniac and a slippery soap salesman channel primal male aggression into a shocking new form of therapy.\",")
+                .append("\"popularity\":61.4,\"poster_path\":\"/p.jpg\",\"production_companies\":[");
+        for (int i = 0; i < 6; i++) {
+            json.append(i > 0 ? "," : "").append("{\"id\":").append(i).append(",\"logo_path\":\"/l").append(i)
+                    .append(".png\",\"name\":\"Company ").append(i).append("\",\"origin_country\":\"US\"}");
+        }
+        json.append("],\"release_date\":\"1999-10-15\",\"revenue\":100853753,\"runtime\":139,\"spoken_languages\":[{\"english_name\":\"English\",\"iso_639_1\":\"en\",\"name\":\"English\"}],")
+                .append("\"status\":\"Released\",\"tagline\":\"Mischief. Mayhem. Soap.\",\"title\":\"Fight Club\",\"video\":false,")
+                .append("\"vote_average\":8.4,\"vote_count\":26280,\"release_dates\":{\"results\":[");
+        for (int i = 0; i < 40; i++) {
+            json.append(i > 0 ? "," : "").append("{\"iso_3166_1\":\"C").append(i).append("\",\"release_dates\":[{\"certification\":\"R\",")
+                    .append("\"descriptors\":[],\"iso_639_1\":\"\",\"note\":\"\",\"release_date\":\"1999-10-15T00:00:00.000Z\",\"type\":3}]}");
+        }
+        json.append("]},\"videos\":{\"results\":[");
+        for (int i = 0; i < 20; i++) {
+            json.append(i > 0 ? "," : "").append("{\"iso_639_1\":\"en\",\"iso_3166_1\":\"US\",\"name\":\"Trailer ").append(i)
+                    .append("\",\"key\":\"k").append(i).append("\",\"site\":\"YouTube\",\"size\":1080,\"type\":\"Trailer\",")
+                    .append("\"official\":true,\"published_at\":\"2019-10-15T00:00:00.000Z\",\"id\":\"5c9294240e0a267cd516835f\"}");
+        }
+        json.append("]},\"credits\":{\"cast\":[");
+        for (int i = 0; i < creditCount; i++) {
+            json.append(i > 0 ? "," : "").append("{\"adult\":false,\"gender\":2,\"id\":").append(i)
+                    .append(",\"known_for_department\":\"Acting\",\"name\":\"Actor ").append(i).append("\",\"original_name\":\"Actor ")
+                    .append(i).append("\",\"popularity\":12.5,\"profile_path\":\"/a").append(i).append(".jpg\",\"cast_id\":").append(i)
+                    .append(",\"character\":\"Character ").append(i).append("\",\"credit_id\":\"52fe4250c3a36847f80149f3\",\"order\":").append(i).append('}');
+        }
+        json.append("],\"crew\":[");
+        for (int i = 0; i < creditCount; i++) {
+            json.append(i > 0 ? "," : "").append("{\"adult\":false,\"gender\":2,\"id\":").append(i)
+                    .append(",\"known_for_department\":\"Crew\",\"name\":\"Crew ").append(i).append("\",\"original_name\":\"Crew ")
+                    .append(i).append("\",\"popularity\":2.5,\"profile_path\":null,\"credit_id\":\"55731b7792514111610027d7\",")
+                    .append("\"department\":\"Production\",\"job\":\"Producer\"}");
+        }
+        json.append("]}}");
+        mResponse = json.toString();
+
+        StringBuilder projected = new StringBuilder();
+        mProjection.project(new StringReader(mResponse), projected);
+        System.out.println("details response: " + mResponse.length() + " chars, projected: " + projected.length() + " chars");
+    }
+
+    @Benchmark
+    public void project(Blackhole blackhole) throws IOException {
+        StringBuilder out = new StringBuilder(4096);
+        mProjection.project(new StringReader(mResponse), out);
+        blackhole.consume(out);
+    }
+
+    /** Tokenizer cost alone: the whole response copied through the pull parser. */
+    @Benchmark
+    public void copy(Blackhole blackhole) throws IOException {
+        StringBuilder out = new StringBuilder(mResponse.length());
+        new JsonPullParser(new StringReader(mResponse)).copyValue(out);
+        blackhole.consume(out);
+    }
+}
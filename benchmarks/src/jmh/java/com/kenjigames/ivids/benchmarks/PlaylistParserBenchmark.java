@@ -0,0 +1,63 @@
+package com.kenjigames.ivids.benchmarks;
+
+import com.kenjigames.ivids.core.M3uParser;
+import com.kenjigames.ivids.core.XmltvParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures M3U playlist and XMLTV guide parsing on synthetic documents shaped like iptv-org playlists and guides.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PlaylistParserBenchmark {
+
+    @Param({"1000", "10000"})
+    public int channelCount;
+
+    private String mPlaylist;
+    private String mGuide;
+
+    @Setup
+    public void setUp() {
+        StringBuilder playlist = new StringBuilder("#EXTM3U\n");
+        StringBuilder guide = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<tv>\n");
+        for (int i = 0; i < channelCount; i++) {
+            playlist.append("#EXTINF:-1 tvg-id=\"Channel").append(i).append(".be\" tvg-logo=\"https://logos.example.invalid/")
+                    .append(i).append(".png\" group-title=\"Group ").append(i % 40).append("\",Channel ").append(i).append('\n')
+                    .append("https://streams.example.invalid/live/").append(i).append("/index.m3u8\n");
+            for (int p = 0; p < 8; p++) {
+                guide.append("<programme start=\"2026052").append(p % 7).append("190000 +0200\" stop=\"2026052")
+                        .append(p % 7).append("200000 +0200\" channel=\"Channel").append(i).append(".be\">")
+                        .append("<title lang=\"en\">Programme ").append(p).append(" &amp; more</title>")
+                        .append("<desc lang=\"en\">A description that the parser skips.</desc></programme>\n");
+            }
+        }
+        guide.append("</tv>\n");
+        mPlaylist = playlist.toString();
+        mGuide = guide.toString();
+    }
+
+    @Benchmark
+    public void parseM3u(Blackhole blackhole) throws IOException {
+        M3uParser.parse(new StringReader(mPlaylist), blackhole::consume);
+    }
+
+    @Benchmark
+    public void parseXmltv(Blackhole blackhole) throws IOException {
+        XmltvParser.parse(new StringReader(mGuide), (channelId, startMs, stopMs, title) -> blackhole.consume(title));
+    }
+}
@@ -0,0 +1,64 @@
+package com.kenjigames.ivids.benchmarks;
+
+import com.kenjigames.ivids.core.RecommendationMerger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the merge step of the home screen's "Recommended for You" row: {@code sources} recommendation lists of
+ * 20 titles each (one TMDB page), drawn from a pool small enough that lists overlap as they do in practice.
+ * The network part of the row build is reported on the device as {@code ivids_recommendations_build_seconds} and
+ * the time until the posters are in the DOM as {@code ivids_home_row_build_seconds} (see the metrics endpoint).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RecommendationMergeBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    /** Watched titles merged; the app merges up to 8. */
+    @Param({"1", "8", "20"})
+    public int sources;
+
+    private List<List<RecommendationMerger.Item>> mLists;
+    private List<String> mHistory;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int pool = sources * PAGE_SIZE / 2;
+        mLists = new ArrayList<>();
+        mHistory = new ArrayList<>();
+        for (int s = 0; s < sources; s++) {
+            mHistory.add(RecommendationMerger.key("movie", 1_000_000 + s));
+            List<RecommendationMerger.Item> list = new ArrayList<>();
+            for (int p = 0; p < PAGE_SIZE; p++) {
+                long id = random.nextInt(Math.max(pool, PAGE_SIZE));
+                String type = id % 3 == 0 ? "tv" : "movie";
+                String payload = "{\"id\":" + id + ",\"media_type\":\"" + type + "\",\"title\":\"Title " + id
+                        + "\",\"poster_path\":\"/p" + id + ".jpg\",\"backdrop_path\":\"/b" + id + ".jpg\",\"vote_average\":7.1,"
+                        + "\"release_date\":\"2019-05-01\"}";
+                list.add(new RecommendationMerger.Item(type, id, "2019-05-01", payload));
+            }
+            mLists.add(list);
+        }
+    }
+
+    @Benchmark
+    public List<RecommendationMerger.Item> merge() {
+        return RecommendationMerger.merge(mLists, mHistory, "2026-01-01", 40);
+    }
+}
@@ -0,0 +1,45 @@
+package com.kenjigames.ivids.benchmarks;
+
+import com.kenjigames.ivids.core.ReleaseAssetSelector;
+import com.kenjigames.ivids.core.VersionComparator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the update check's version comparison and release asset selection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VersionComparatorBenchmark {
+
+    private List<ReleaseAssetSelector.Asset> mAssets;
+
+    @Setup
+    public void setUp() {
+        mAssets = new ArrayList<>();
+        mAssets.add(new ReleaseAssetSelector.Asset("checksums.txt", "https://example.invalid/checksums.txt"));
+        mAssets.add(new ReleaseAssetSelector.Asset("IVIDS-mobile.apk", "https://example.invalid/IVIDS-mobile.apk"));
+        mAssets.add(new ReleaseAssetSelector.Asset("IVIDS-tv.apk", "https://example.invalid/IVIDS-tv.apk"));
+    }
+
+    @Benchmark
+    public boolean isNewerVersion() {
+        return VersionComparator.isNewerVersion("v0.4.12", "v0.4.13-beta");
+    }
+
+    @Benchmark
+    public ReleaseAssetSelector.Asset selectTvAsset() {
+        return ReleaseAssetSelector.select(mAssets, ReleaseAssetSelector.keywordFor(true));
+    }
+}
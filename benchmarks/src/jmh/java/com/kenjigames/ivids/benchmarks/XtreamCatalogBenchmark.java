@@ -0,0 +1,213 @@
+package com.kenjigames.ivids.benchmarks;
+
+import com.kenjigames.ivids.core.JsonPullParser;
+import com.kenjigames.ivids.core.XtreamCatalog;
+import com.kenjigames.ivids.fixtures.Fixture;
+import com.kenjigames.ivids.fixtures.FixtureServer;
+import com.kenjigames.ivids.fixtures.FixtureStore;
+import com.kenjigames.ivids.fixtures.NetworkConditions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures loading a large Xtream live catalog served by the fixture server: the old path, which downloaded
+ * {@code get_live_streams} as one document and parsed every stream into objects (what the WebView's
+ * {@code JSON.parse} did), against the native path, which streams it into an {@link XtreamCatalog} data file,
+ * and the first page read the UI then does. Peak heap for each load is printed once during setup; run with
+ * {@code -prof gc} for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class XtreamCatalogBenchmark {
+
+    static final String CATEGORIES_URL = "http://xtream.example.invalid/player_api.php?action=get_live_categories";
+    static final String STREAMS_URL = "http://xtream.example.invalid/player_api.php?action=get_live_streams";
+
+    /** Streams in the synthetic catalog; large providers list 20k to 50k+. */
+    @Param({"50000"})
+    public int streamCount;
+
+    private Path mTempDir;
+    private FixtureServer mServer;
+    private XtreamCatalog mCatalog;
+    private int mGeneration;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mTempDir = Files.createTempDirectory("ivids-xtream");
+        FixtureStore store = new FixtureStore(mTempDir.resolve("fixtures"));
+        writeSyntheticFixtures(store, streamCount);
+        mServer = new FixtureServer(store, FixtureServer.Mode.REPLAY, NetworkConditions.NONE).start(0);
+        mCatalog = loadNativeCatalog();
+
+        long[] document = measureHeap(this::loadAsOneDocument);
+        long[] catalog = measureHeap(this::loadNativeCatalog);
+        System.out.println("\nCatalog: " + mCatalog.getStreamCount() + " streams in " + mCatalog.getCategories().size()
+                + " categories, data file " + mCatalog.getDataFile().length() + " bytes");
+        System.out.println("One document: peak heap +" + document[0] / 1024 + " kB, retained " + document[1] / 1024 + " kB");
+        System.out.println("Native catalog: peak heap +" + catalog[0] / 1024 + " kB, retained " + catalog[1] / 1024 + " kB");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mServer.stop();
+        try (Stream<Path> files = Files.walk(mTempDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public List<Map<String, String>> loadAsOneDocument() throws IOException {
+        String body;
+        try (Reader reader = open(mServer.urlFor(STREAMS_URL))) {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, read);
+            }
+            body = text.toString();
+        }
+        List<Map<String, String>> streams = new ArrayList<>();
+        JsonPullParser parser = new JsonPullParser(new StringReader(body));
+        parser.next();
+        while (parser.peek() == JsonPullParser.Token.BEGIN_OBJECT) {
+            parser.next();
+            Map<String, String> stream = new HashMap<>();
+            while (parser.peek() == JsonPullParser.Token.NAME) {
+                parser.next();
+                String name = parser.decodedText();
+                if (parser.peek() == JsonPullParser.Token.VALUE) {
+                    parser.next();
+                    stream.put(name, parser.decodedText());
+                } else {
+                    parser.skipValue();
+                }
+            }
+            parser.next();
+            streams.add(stream);
+        }
+        return streams;
+    }
+
+    @Benchmark
+    public XtreamCatalog loadNativeCatalog() throws IOException {
+        Map<String, XtreamCatalog.Category> categories;
+        try (Reader reader = open(mServer.urlFor(CATEGORIES_URL))) {
+            categories = XtreamCatalog.parseCategories(reader);
+        }
+        File dataFile = mTempDir.resolve("streams-" + (mGeneration++ % 2) + ".ndjson").toFile();
+        try (Reader reader = open(mServer.urlFor(STREAMS_URL))) {
+            return XtreamCatalog.build(categories, reader, dataFile, System.currentTimeMillis());
+        }
+    }
+
+    @Benchmark
+    public String readFirstPage() throws IOException {
+        return mCatalog.readPage("", 0, 500);
+    }
+
+    private interface Load {
+        Object run() throws IOException;
+    }
+
+    /**
+     * Runs one load after a GC and returns the heap peak it reached above the live set before it started, and what
+     * the result still holds after another GC.
+     */
+    private static long[] measureHeap(Load load) throws IOException {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pools.add(pool);
+            }
+        }
+        System.gc();
+        long baseline = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            pool.resetPeakUsage();
+            baseline += pool.getUsage().getUsed();
+        }
+        Object result = load.run();
+        long peak = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        System.gc();
+        long retained = -baseline;
+        for (MemoryPoolMXBean pool : pools) {
+            retained += pool.getUsage().getUsed();
+        }
+        // Keeps the result reachable until the heap has been measured
+        return new long[] {peak - baseline, result != null ? retained : 0};
+    }
+
+    private static Reader open(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        if (conn.getResponseCode() != 200) {
+            throw new IOException("HTTP " + conn.getResponseCode() + " (" + conn.getHeaderField("X-Fixture") + ") for " + url);
+        }
+        return new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8);
+    }
+
+    private static void writeSyntheticFixtures(FixtureStore store, int streamCount) throws IOException {
+        int categoryCount = Math.max(1, streamCount / 250);
+        StringBuilder categories = new StringBuilder("[");
+        for (int c = 0; c < categoryCount; c++) {
+            categories.append(c > 0 ? "," : "").append("{\"category_id\":\"").append(c + 1)
+                    .append("\",\"category_name\":\"BE | Category ").append(c + 1).append("\",\"parent_id\":0}");
+        }
+        categories.append(']');
+        // The field set and value types of a typical get_live_streams response
+        StringBuilder streams = new StringBuilder("[");
+        for (int i = 0; i < streamCount; i++) {
+            streams.append(i > 0 ? "," : "").append("{\"num\":").append(i + 1)
+                    .append(",\"name\":\"BE | Channel ").append(i).append(i % 3 == 0 ? " FHD" : " HD")
+                    .append("\",\"stream_type\":\"live\",\"stream_id\":").append(100000 + i)
+                    .append(",\"stream_icon\":\"http:\\/\\/logos.example.invalid\\/").append(i).append(".png\"")
+                    .append(",\"epg_channel_id\":").append(i % 4 == 0 ? "null" : "\"Channel" + i + ".be\"")
+                    .append(",\"added\":\"").append(1600000000 + i).append("\",\"is_adult\":\"0\"")
+                    .append(",\"category_id\":\"").append(i % categoryCount + 1).append('"')
+                    .append(",\"custom_sid\":\"\",\"tv_archive\":").append(i % 10 == 0 ? 1 : 0)
+                    .append(",\"direct_source\":\"\",\"tv_archive_duration\":").append(i % 10 == 0 ? 7 : 0).append('}');
+        }
+        streams.append(']');
+        store.put(Fixture.of(CATEGORIES_URL, "application/json", categories.toString().getBytes(StandardCharsets.UTF_8)));
+        store.put(Fixture.of(STREAMS_URL, "application/json", streams.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,16 @@
+plugins {
+    `java-library`
+}
+
+/**
+ * Android-independent logic shared by the app and the JMH benchmarks (:benchmarks).
+ * Must only depend on the JDK APIs available on Android minSdk 21 (with desugaring).
+ */
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
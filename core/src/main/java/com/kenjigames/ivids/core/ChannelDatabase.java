@@ -0,0 +1,241 @@
+package com.kenjigames.ivids.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * ChannelDatabase answers membership queries against a compiled channel URL list
+ * (produced by the {@code compileChannelDatabases} Gradle task from broken-channels.json, or by {@link #compile}).
+ * It only reads from a {@link ByteBuffer}: the Android {@code ChannelDbBridge} memory-maps the database straight
+ * out of the APK, so only the pages touched by a lookup are loaded and nothing is copied into the Java or
+ * JavaScript heap.
+ * <p>
+ * Layout: magic "IVCD", version, entry count, block size, block count, int[block count] block offsets, then per
+ * block: varint length + bytes of the first key, followed by (varint shared prefix, varint suffix length, suffix
+ * bytes) for the remaining keys. Keys are normalized URLs sorted by unsigned UTF-8 bytes.
+ */
+public final class ChannelDatabase {
+    private static final int MAGIC = 0x49564344; // "IVCD"
+    private static final int FORMAT_VERSION = 1;
+    private static final int BLOCK_SIZE = 32;
+
+    private final ByteBuffer mBuffer;
+    private final int mEntryCount;
+    private final int mBlockCount;
+    private final int mBlockTableStart;
+    private final int mDataStart;
+    private final byte[][] mBlockFirstKeys;
+
+    /**
+     * Constructs a database over an already mapped (or in-memory) buffer.
+     *
+     * @param buffer The buffer holding the compiled database.
+     * @throws IOException If the header is invalid.
+     */
+    public ChannelDatabase(ByteBuffer buffer) throws IOException {
+        mBuffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Not a channel database (version " + FORMAT_VERSION + ")");
+        }
+        mEntryCount = buffer.getInt(8);
+        mBlockCount = buffer.getInt(16);
+        mBlockTableStart = 20;
+        mDataStart = mBlockTableStart + mBlockCount * 4;
+
+        // The first key of every block is kept decoded for the binary search (one key per 32 entries).
+        mBlockFirstKeys = new byte[mBlockCount][];
+        int[] cursor = new int[1];
+        for (int b = 0; b < mBlockCount; b++) {
+            cursor[0] = mDataStart + mBuffer.getInt(mBlockTableStart + b * 4);
+            int length = readVarInt(cursor);
+            mBlockFirstKeys[b] = readBytes(cursor, length, null, 0);
+        }
+    }
+
+    /**
+     * Compiles a URL list the same way as the {@code compileChannelDatabases} Gradle task: URLs are normalized,
+     * de-duplicated, sorted and front-coded in blocks of 32.
+     *
+     * @param urls The channel URLs, in any order and normalization.
+     * @return The compiled database.
+     */
+    public static byte[] compile(Collection<String> urls) {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String url : urls) {
+            String normalized = normalize(url);
+            if (!normalized.isEmpty()) {
+                unique.add(normalized);
+            }
+        }
+        List<byte[]> keys = new ArrayList<>(unique.size());
+        for (String url : unique) {
+            keys.add(url.getBytes(StandardCharsets.UTF_8));
+        }
+        keys.sort(ChannelDatabase::compare);
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        List<Integer> blockOffsets = new ArrayList<>();
+        byte[] previous = new byte[0];
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] key = keys.get(i);
+            if (i % BLOCK_SIZE == 0) {
+                blockOffsets.add(data.size());
+                writeVarInt(data, key.length);
+                data.write(key, 0, key.length);
+            } else {
+                int shared = 0;
+                while (shared < previous.length && shared < key.length && previous[shared] == key[shared]) {
+                    shared++;
+                }
+                writeVarInt(data, shared);
+                writeVarInt(data, key.length - shared);
+                data.write(key, shared, key.length - shared);
+            }
+            previous = key;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(20 + blockOffsets.size() * 4 + data.size());
+        try (DataOutputStream header = new DataOutputStream(out)) {
+            header.writeInt(MAGIC);
+            header.writeInt(FORMAT_VERSION);
+            header.writeInt(keys.size());
+            header.writeInt(BLOCK_SIZE);
+            header.writeInt(blockOffsets.size());
+            for (int offset : blockOffsets) {
+                header.writeInt(offset);
+            }
+            data.writeTo(header);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Normalizes a URL like {@code normalizeUrl()} in livetv.js: trimmed, lower case, without scheme and
+     * trailing slashes.
+     *
+     * @param url The URL.
+     * @return The normalized URL; empty for null.
+     */
+    public static String normalize(String url) {
+        if (url == null) {
+            return "";
+        }
+        return url.trim().toLowerCase(Locale.ROOT).replaceFirst("^https?://", "").replaceFirst("/+$", "");
+    }
+
+    /**
+     * @return The number of URLs in the database.
+     */
+    public int size() {
+        return mEntryCount;
+    }
+
+    /**
+     * Checks whether a URL is present. The URL must already be normalized the same way as
+     * {@code normalizeUrl()} in livetv.js (trimmed, lower case, without scheme and trailing slashes).
+     *
+     * @param normalizedUrl The normalized URL.
+     * @return true if the URL is in the database.
+     */
+    public boolean contains(String normalizedUrl) {
+        if (normalizedUrl == null || mBlockCount == 0) {
+            return false;
+        }
+        byte[] key = normalizedUrl.getBytes(StandardCharsets.UTF_8);
+
+        // Find the last block whose first key is <= key
+        int lo = 0;
+        int hi = mBlockCount - 1;
+        int block = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(mBlockFirstKeys[mid], key);
+            if (cmp == 0) {
+                return true;
+            } else if (cmp < 0) {
+                block = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (block < 0) {
+            return false;
+        }
+
+        // Linear scan through the front-coded entries of that block
+        int[] cursor = new int[1];
+        cursor[0] = mDataStart + mBuffer.getInt(mBlockTableStart + block * 4);
+        int firstLength = readVarInt(cursor);
+        cursor[0] += firstLength;
+        byte[] previous = mBlockFirstKeys[block];
+        int blockSize = mBuffer.getInt(12);
+        int entriesInBlock = Math.min(blockSize, mEntryCount - block * blockSize);
+        for (int i = 1; i < entriesInBlock; i++) {
+            int shared = readVarInt(cursor);
+            int suffixLength = readVarInt(cursor);
+            byte[] current = readBytes(cursor, suffixLength, previous, shared);
+            int cmp = compare(current, key);
+            if (cmp == 0) {
+                return true;
+            }
+            if (cmp > 0) {
+                return false;
+            }
+            previous = current;
+        }
+        return false;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private int readVarInt(int[] cursor) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = mBuffer.get(cursor[0]++) & 0xFF;
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private byte[] readBytes(int[] cursor, int length, byte[] prefix, int prefixLength) {
+        byte[] result = prefix == null ? new byte[length] : Arrays.copyOf(prefix, prefixLength + length);
+        for (int i = 0; i < length; i++) {
+            result[prefixLength + i] = mBuffer.get(cursor[0]++);
+        }
+        return result;
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+}
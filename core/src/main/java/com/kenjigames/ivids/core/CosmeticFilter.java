@@ -0,0 +1,269 @@
+package com.kenjigames.ivids.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CosmeticFilter compiles element-hiding rules into one stylesheet per host. It hides the ad overlays and
+ * click-jacking layers that embed player pages render from first-party scripts, which network blocking cannot
+ * remove. Rules use the common filter list syntax:
+ * <ul>
+ *     <li>{@code example.com,other.net##selector} hides matching elements on those domains and their subdomains;</li>
+ *     <li>{@code ~sub.example.com} in the domain list excludes a domain and its subdomains from that rule only;</li>
+ *     <li>{@code ##selector} is a generic rule, applied on every domain that has rules of its own;</li>
+ *     <li>{@code example.com#@#selector} is an exception that removes the selector on those domains, whichever rule
+ *     added it; {@code #@#selector} removes it everywhere. Exceptions apply regardless of their position in the
+ *     list;</li>
+ *     <li>lines starting with {@code !} are comments.</li>
+ * </ul>
+ * Procedural and scriptlet rules ({@code #?#}, {@code #$#}, {@code ##+js(...)}, {@code :has-text(...)} etc.) are
+ * skipped: CSS cannot express them, and one invalid selector would void the whole compiled rule.
+ * A host's stylesheet is a single de-duplicated {@code selector,...{display:none!important}} rule, compiled on first
+ * use and cached.
+ */
+public final class CosmeticFilter {
+
+    /** Element-hiding rules for the embed providers of {@code PLAYER_CONFIG} and their mirrors. */
+    public static final List<String> DEFAULT_RULES = Collections.unmodifiableList(Arrays.asList(
+            "! Generic ad containers and full-page click catchers",
+            "##iframe[src*=\"/ads/\"]",
+            "##iframe[src*=\"doubleclick\"]",
+            "##div[id^=\"ad-\"]",
+            "##div[class^=\"ad-\"]",
+            "##a[href*=\"/aff_c?\"]",
+            "##div[style*=\"z-index: 2147483647\"]",
+            "##div[style*=\"z-index:2147483647\"]",
+            "##a[target=\"_blank\"][style*=\"position: fixed\"]",
+            "##a[target=\"_blank\"][style*=\"position:fixed\"]",
+            "! VidLink",
+            "vidlink.pro##.popup-ad",
+            "vidlink.pro##.ad-overlay",
+            "vidlink.pro##div[class*=\"banner\"]",
+            "! VidSrc",
+            "vidsrc.to,vidsrc.me,vidsrc.net,vidsrc.cc##.ad-container",
+            "vidsrc.to,vidsrc.me,vidsrc.net,vidsrc.cc###pop-ad",
+            "vidsrc.to,vidsrc.me,vidsrc.net,vidsrc.cc##body > div[style*=\"position: absolute\"][style*=\"opacity: 0\"]",
+            "! Videasy",
+            "videasy.net##.ads",
+            "videasy.net##div[class*=\"overlay-ad\"]",
+            "! Embed.su",
+            "embed.su##.ad-banner",
+            "embed.su##div[id*=\"popunder\"]"
+    ));
+
+    private static final String[] PROCEDURAL_MARKERS = {
+            ":has-text(", ":-abp-", ":xpath(", ":upward(", ":remove(", ":style(", ":matches-css", ":min-text-length(",
+            ":watch-attr(", ":others(", ":contains("
+    };
+    private static final String HIDE_DECLARATION = "{display:none!important}";
+
+    /**
+     * One hiding or exception rule with the domains its {@code ~domain} entries exclude.
+     */
+    private static final class Rule {
+        final String selector;
+        final List<String> excluded;
+
+        Rule(String selector, List<String> excluded) {
+            this.selector = selector;
+            this.excluded = excluded;
+        }
+
+        boolean isExcludedOn(String host) {
+            for (String domain : excluded) {
+                if (host.equals(domain) || host.endsWith("." + domain)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Domain to the hiding rules listing it, in rule order. */
+    private final Map<String, List<Rule>> mDomainRules = new HashMap<>();
+    /** Domain to the exception rules listing it. */
+    private final Map<String, List<Rule>> mDomainExceptions = new HashMap<>();
+    private final List<Rule> mGeneric = new ArrayList<>();
+    private final List<Rule> mGenericExceptions = new ArrayList<>();
+    private final Map<String, String> mStylesheets = new ConcurrentHashMap<>();
+    private int mRuleCount = 0;
+    private int mSkippedCount = 0;
+
+    /**
+     * Compiles a rule list.
+     *
+     * @param rules Filter rules, one per entry.
+     */
+    public CosmeticFilter(Collection<String> rules) {
+        for (String rule : rules) {
+            parse(rule);
+        }
+    }
+
+    /**
+     * @return A filter compiled from {@link #DEFAULT_RULES}.
+     */
+    public static CosmeticFilter createDefault() {
+        return new CosmeticFilter(DEFAULT_RULES);
+    }
+
+    /**
+     * @return The domains with their own rules; stylesheets are only injected on these and their subdomains.
+     */
+    public Set<String> getDomains() {
+        return Collections.unmodifiableSet(mDomainRules.keySet());
+    }
+
+    /**
+     * @return The number of hiding and exception rules compiled.
+     */
+    public int getRuleCount() {
+        return mRuleCount;
+    }
+
+    /**
+     * @return The number of rules skipped as procedural, scriptlet or malformed.
+     */
+    public int getSkippedCount() {
+        return mSkippedCount;
+    }
+
+    /**
+     * Returns the stylesheet for a host: the generic rules plus the rules of the host and its parent domains,
+     * minus exceptions and exclusions. Compiled on the first call for a host and cached.
+     *
+     * @param host The page host, e.g. {@code www.vidlink.pro}.
+     * @return The stylesheet, or an empty string if nothing is hidden on the host.
+     */
+    public String stylesheetFor(String host) {
+        if (host == null || host.isEmpty()) {
+            return "";
+        }
+        String key = host.toLowerCase(Locale.ROOT);
+        String cached = mStylesheets.get(key);
+        if (cached == null) {
+            cached = compile(key);
+            mStylesheets.put(key, cached);
+        }
+        return cached;
+    }
+
+    private String compile(String host) {
+        LinkedHashSet<String> selectors = new LinkedHashSet<>();
+        Set<String> removed = new LinkedHashSet<>();
+        collect(mGeneric, host, selectors);
+        collect(mGenericExceptions, host, removed);
+        // Walk the host and its parent domains: www.vidlink.pro, vidlink.pro, pro
+        String domain = host;
+        while (true) {
+            collect(mDomainRules.get(domain), host, selectors);
+            collect(mDomainExceptions.get(domain), host, removed);
+            int dot = domain.indexOf('.');
+            if (dot < 0) {
+                break;
+            }
+            domain = domain.substring(dot + 1);
+        }
+        selectors.removeAll(removed);
+        if (selectors.isEmpty()) {
+            return "";
+        }
+        StringBuilder css = new StringBuilder();
+        for (String selector : selectors) {
+            if (css.length() > 0) {
+                css.append(',');
+            }
+            css.append(selector);
+        }
+        return css.append(HIDE_DECLARATION).toString();
+    }
+
+    /**
+     * Adds the selectors of the rules that are not excluded on the host.
+     */
+    private static void collect(List<Rule> rules, String host, Set<String> selectors) {
+        if (rules == null) {
+            return;
+        }
+        for (Rule rule : rules) {
+            if (!rule.isExcludedOn(host)) {
+                selectors.add(rule.selector);
+            }
+        }
+    }
+
+    private void parse(String line) {
+        String rule = line == null ? "" : line.trim();
+        if (rule.isEmpty() || rule.startsWith("!") || rule.startsWith("[")) {
+            return;
+        }
+        boolean exception = false;
+        int separator = rule.indexOf("#@#");
+        if (separator >= 0) {
+            exception = true;
+        } else {
+            separator = rule.indexOf("##");
+        }
+        if (separator < 0 || rule.contains("#?#") || rule.contains("#$#") || rule.contains("#%#")) {
+            mSkippedCount++;
+            return;
+        }
+        String selector = rule.substring(separator + (exception ? 3 : 2)).trim();
+        if (!isPlainSelector(selector)) {
+            mSkippedCount++;
+            return;
+        }
+
+        List<String> included = new ArrayList<>();
+        List<String> excluded = new ArrayList<>();
+        for (String domain : rule.substring(0, separator).split(",")) {
+            String name = domain.trim().toLowerCase(Locale.ROOT);
+            if (name.startsWith("~")) {
+                excluded.add(name.substring(1));
+            } else if (!name.isEmpty()) {
+                included.add(name);
+            }
+        }
+
+        mRuleCount++;
+        Rule parsed = new Rule(selector, excluded);
+        if (included.isEmpty()) {
+            (exception ? mGenericExceptions : mGeneric).add(parsed);
+            return;
+        }
+        Map<String, List<Rule>> byDomain = exception ? mDomainExceptions : mDomainRules;
+        for (String domain : included) {
+            List<Rule> domainRules = byDomain.get(domain);
+            if (domainRules == null) {
+                domainRules = new ArrayList<>();
+                byDomain.put(domain, domainRules);
+            }
+            domainRules.add(parsed);
+        }
+    }
+
+    /**
+     * @return Whether the selector is plain CSS that can be joined into the compiled rule.
+     */
+    private static boolean isPlainSelector(String selector) {
+        if (selector.isEmpty() || selector.startsWith("+js(") || selector.startsWith("^")
+                || selector.indexOf('{') >= 0 || selector.indexOf('}') >= 0) {
+            return false;
+        }
+        for (String marker : PROCEDURAL_MARKERS) {
+            if (selector.contains(marker)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,360 @@
+package com.kenjigames.ivids.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * EpgGuideIndex maps normalized tvg-ids to the XMLTV guide that carries their programmes. It is built from the
+ * iptv-org guides list ({@link #GUIDES_URL}) with the same rules as {@code EpgManager.registerGuide} in the
+ * WebView: every guide entry registers its channel id and its {@code channel@feed} id, the first entry for an id
+ * wins, and the guide URL follows from the channel's country suffix or language.
+ * <p>
+ * The index is compact: a sorted array of 64-bit hashes of the ids, with per-id indexes into a table of guide
+ * URLs (a few dozen) and a table of feed names. The ids themselves are not kept; the channel id of a match is
+ * the requested id up to its {@code @}. {@link #writeTo(OutputStream)} persists it in that form, so it loads
+ * with a few array reads instead of a JSON parse.
+ */
+public final class EpgGuideIndex {
+
+    public static final String GUIDES_URL = "https://iptv-org.github.io/api/guides.json";
+
+    private static final String EPGTALK = "https://raw.githubusercontent.com/acidjesuz/EPGTalk/master/";
+    private static final String GLOBETV = "https://raw.githubusercontent.com/globetvapp/epg/main/";
+    private static final int MAGIC = 0x49564547; // "IVEG"
+    private static final int VERSION = 1;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * The guide of a channel, in the shape of the WebView's guide lookup entries.
+     */
+    public static final class Guide {
+        /** The normalized channel id, without feed. */
+        public final String channelId;
+        /** The feed of the guide entry that registered the id, or null. */
+        public final String feed;
+        public final String url;
+
+        Guide(String channelId, String feed, String url) {
+            this.channelId = channelId;
+            this.feed = feed;
+            this.url = url;
+        }
+    }
+
+    private final long[] mHashes;
+    private final short[] mUrlIndexes;
+    /** Index into {@link #mFeeds}, or -1 for none. */
+    private final int[] mFeedIndexes;
+    private final String[] mUrls;
+    private final String[] mFeeds;
+
+    private EpgGuideIndex(long[] hashes, short[] urlIndexes, int[] feedIndexes, String[] urls, String[] feeds) {
+        this.mHashes = hashes;
+        this.mUrlIndexes = urlIndexes;
+        this.mFeedIndexes = feedIndexes;
+        this.mUrls = urls;
+        this.mFeeds = feeds;
+    }
+
+    /**
+     * Builds the index from the iptv-org guides list, streaming: only the table under construction is held.
+     *
+     * @param guidesJson The guides JSON array; entries without a channel are skipped.
+     * @return The index.
+     * @throws IOException If the source cannot be read or is not a JSON array of objects.
+     */
+    public static EpgGuideIndex build(Reader guidesJson) throws IOException {
+        JsonPullParser parser = new JsonPullParser(guidesJson);
+        Map<Long, long[]> entries = new HashMap<>();
+        List<String> urls = new ArrayList<>();
+        Map<String, Integer> urlIds = new HashMap<>();
+        List<String> feeds = new ArrayList<>();
+        Map<String, Integer> feedIds = new HashMap<>();
+
+        expect(parser, JsonPullParser.Token.BEGIN_ARRAY);
+        while (parser.peek() != JsonPullParser.Token.END_ARRAY) {
+            String channel = null;
+            String feed = null;
+            String lang = null;
+            expect(parser, JsonPullParser.Token.BEGIN_OBJECT);
+            while (parser.next() == JsonPullParser.Token.NAME) {
+                switch (parser.decodedText()) {
+                    case "channel":
+                        channel = nextString(parser);
+                        break;
+                    case "feed":
+                        feed = nextString(parser);
+                        break;
+                    case "lang":
+                        lang = nextString(parser);
+                        break;
+                    default:
+                        parser.skipValue();
+                        break;
+                }
+            }
+            if (channel == null || channel.isEmpty()) {
+                continue;
+            }
+            String url = guideUrlFor(channel, lang);
+            Integer urlId = urlIds.get(url);
+            if (urlId == null) {
+                urlId = urls.size();
+                urlIds.put(url, urlId);
+                urls.add(url);
+            }
+            int feedId = -1;
+            if (feed != null && !feed.isEmpty()) {
+                Integer known = feedIds.get(feed);
+                if (known == null) {
+                    known = feeds.size();
+                    feedIds.put(feed, known);
+                    feeds.add(feed);
+                }
+                feedId = known;
+            }
+            long[] entry = {urlId, feedId};
+            entries.putIfAbsent(hash(normalize(channel)), entry);
+            if (feedId >= 0) {
+                entries.putIfAbsent(hash(normalize(channel + "@" + feed)), entry);
+            }
+        }
+        parser.next();
+        if (urls.size() > Short.MAX_VALUE) {
+            throw new IOException("Too many guide URLs: " + urls.size());
+        }
+
+        long[] hashes = new long[entries.size()];
+        int i = 0;
+        for (Long key : entries.keySet()) {
+            hashes[i++] = key;
+        }
+        Arrays.sort(hashes);
+        short[] urlIndexes = new short[hashes.length];
+        int[] feedIndexes = new int[hashes.length];
+        for (i = 0; i < hashes.length; i++) {
+            long[] entry = entries.get(hashes[i]);
+            urlIndexes[i] = (short) entry[0];
+            feedIndexes[i] = (int) entry[1];
+        }
+        return new EpgGuideIndex(hashes, urlIndexes, feedIndexes, urls.toArray(new String[0]), feeds.toArray(new String[0]));
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in The persisted index; buffered by the caller.
+     * @return The index.
+     * @throws IOException If the data cannot be read or was written by another format version.
+     */
+    public static EpgGuideIndex readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Not a guide index of version " + VERSION);
+        }
+        String[] urls = new String[data.readInt()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = data.readUTF();
+        }
+        String[] feeds = new String[data.readInt()];
+        for (int i = 0; i < feeds.length; i++) {
+            feeds[i] = data.readUTF();
+        }
+        int count = data.readInt();
+        long[] hashes = new long[count];
+        short[] urlIndexes = new short[count];
+        int[] feedIndexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = data.readLong();
+            urlIndexes[i] = data.readShort();
+            feedIndexes[i] = data.readInt();
+            if (urlIndexes[i] < 0 || urlIndexes[i] >= urls.length || feedIndexes[i] >= feeds.length
+                    || (i > 0 && hashes[i] <= hashes[i - 1])) {
+                throw new IOException("Corrupt guide index at entry " + i);
+            }
+        }
+        return new EpgGuideIndex(hashes, urlIndexes, feedIndexes, urls, feeds);
+    }
+
+    /**
+     * Writes the index in its compact binary form: the URL and feed tables, then 14 bytes per id.
+     *
+     * @param out The destination; buffered by the caller.
+     * @throws IOException If writing fails.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(mUrls.length);
+        for (String url : mUrls) {
+            data.writeUTF(url);
+        }
+        data.writeInt(mFeeds.length);
+        for (String feed : mFeeds) {
+            data.writeUTF(feed);
+        }
+        data.writeInt(mHashes.length);
+        for (int i = 0; i < mHashes.length; i++) {
+            data.writeLong(mHashes[i]);
+            data.writeShort(mUrlIndexes[i]);
+            data.writeInt(mFeedIndexes[i]);
+        }
+        data.flush();
+    }
+
+    /**
+     * @return The number of indexed ids (channel and channel@feed).
+     */
+    public int size() {
+        return mHashes.length;
+    }
+
+    /**
+     * @return The number of distinct guide URLs.
+     */
+    public int getUrlCount() {
+        return mUrls.length;
+    }
+
+    /**
+     * Finds the guide of a channel by its exact id, then by its id without feed, as
+     * {@code EpgManager.resolveGuide} does.
+     *
+     * @param tvgId A raw tvg-id, e.g. {@code BBCOne.uk@HD}.
+     * @return The guide, or null if the channel has none.
+     */
+    public Guide resolve(String tvgId) {
+        String normalized = normalize(tvgId);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        int at = normalized.indexOf('@');
+        String channelId = at >= 0 ? normalized.substring(0, at) : normalized;
+        int i = Arrays.binarySearch(mHashes, hash(normalized));
+        if (i < 0 && at >= 0) {
+            i = Arrays.binarySearch(mHashes, hash(channelId));
+        }
+        if (i < 0) {
+            return null;
+        }
+        return new Guide(channelId, mFeedIndexes[i] >= 0 ? mFeeds[mFeedIndexes[i]] : null, mUrls[mUrlIndexes[i]]);
+    }
+
+    /**
+     * Picks the XMLTV guide for a channel: the EPGTalk daily guides for the US/Canada, the UK and Latin America,
+     * the globetvapp country guide when the country is known, and the EPGTalk combined guide otherwise.
+     *
+     * @param channel The iptv-org channel id, e.g. {@code een.be}.
+     * @param lang The guide language code, or null.
+     * @return The guide URL.
+     */
+    public static String guideUrlFor(String channel, String lang) {
+        String lowerChannel = channel.toLowerCase(Locale.ROOT);
+        String lowerLang = lang == null ? "" : lang.toLowerCase(Locale.ROOT);
+        boolean english = lowerLang.equals("eng");
+        if (lowerChannel.endsWith(".us") || lowerChannel.endsWith(".ca")
+                || (english && (lowerChannel.contains(".us") || lowerChannel.contains(".ca")))) {
+            return EPGTALK + "US_guide.xml.gz";
+        }
+        if (lowerChannel.endsWith(".uk") || (english && lowerChannel.contains(".uk"))) {
+            return EPGTALK + "UK_guide.xml.gz";
+        }
+        switch (lowerLang) {
+            case "spa": case "por": case "es": case "pt":
+                return EPGTALK + "Latino_guide.xml.gz";
+            default:
+                break;
+        }
+        for (String suffix : new String[]{".mx", ".cl", ".ar", ".co", ".pe", ".br"}) {
+            if (lowerChannel.endsWith(suffix)) {
+                return EPGTALK + "Latino_guide.xml.gz";
+            }
+        }
+        String folder = globetvCountryFolder(lowerChannel, lowerLang);
+        if (folder != null) {
+            return GLOBETV + folder + "/" + folder.toLowerCase(Locale.ROOT) + "1.xml";
+        }
+        return EPGTALK + "guide.xml.gz";
+    }
+
+    /**
+     * Mirrors {@code EpgManager.getGlobetvCountryFolder}: the channel's country suffix first, then its language.
+     */
+    private static String globetvCountryFolder(String lowerChannel, String lowerLang) {
+        int dot = lowerChannel.lastIndexOf('.');
+        switch (dot >= 0 ? lowerChannel.substring(dot) : "") {
+            case ".nl": return "Netherlands";
+            case ".fr": return "France";
+            case ".de": return "Germany";
+            case ".it": return "Italy";
+            case ".es": return "Spain";
+            case ".pt": return "Portugal";
+            case ".au": return "Australia";
+            case ".be": return "Belgium";
+            case ".ro": return "Romania";
+            case ".pl": return "Poland";
+            case ".gr": return "Greece";
+            case ".tr": return "Turkey";
+            default: break;
+        }
+        switch (lowerLang) {
+            case "nld": case "nl": return "Netherlands";
+            case "fra": case "fr": return "France";
+            case "deu": case "de": return "Germany";
+            case "ita": case "it": return "Italy";
+            case "ron": case "ro": return "Romania";
+            case "pol": case "pl": return "Poland";
+            case "ell": case "el": case "gr": return "Greece";
+            case "tur": case "tr": return "Turkey";
+            case "bel": return "Belgium";
+            default: return null;
+        }
+    }
+
+    /**
+     * Normalizes a tvg-id like {@code EpgManager.normalizeTvgId}: trimmed and lower case.
+     */
+    static String normalize(String tvgId) {
+        return tvgId == null ? "" : tvgId.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units: stable across runs and JVMs, so persisted indexes stay valid.
+     */
+    static long hash(String value) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static String nextString(JsonPullParser parser) throws IOException {
+        JsonPullParser.Token token = parser.next();
+        if (token != JsonPullParser.Token.VALUE) {
+            throw new IOException("Expected a value but was " + token);
+        }
+        return "null".equals(parser.text()) ? null : parser.decodedText();
+    }
+
+    private static void expect(JsonPullParser parser, JsonPullParser.Token expected) throws IOException {
+        JsonPullParser.Token token = parser.next();
+        if (token != expected) {
+            throw new IOException("Expected " + expected + " but was " + token);
+        }
+    }
+}
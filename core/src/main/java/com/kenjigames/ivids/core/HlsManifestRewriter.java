@@ -0,0 +1,220 @@
+package com.kenjigames.ivids.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * HlsManifestRewriter is the streaming Java counterpart of rewrite_m3u8 in run_pc.py. It resolves every URI in an
+ * HLS playlist (variant and segment lines, plus {@code URI="..."} attributes of EXT-X tags such as keys and maps)
+ * against the playlist URL and prefixes it with a proxy URL, so that all sub-resources route through the proxy.
+ * Playlists are rewritten one line at a time and never buffered as a whole.
+ */
+public final class HlsManifestRewriter {
+
+    private static final String URI_ATTRIBUTE = "URI=\"";
+
+    private final URI mBase;
+    private final String mBaseUrl;
+    private final String mProxyPrefix;
+
+    /**
+     * Constructs a rewriter for one playlist.
+     *
+     * @param baseUrl The final (post-redirect) URL of the playlist, used to resolve relative URIs.
+     * @param proxyPrefix The prefix the URL-encoded absolute URI is appended to (e.g. "https://proxy/hls?url=").
+     */
+    public HlsManifestRewriter(String baseUrl, String proxyPrefix) {
+        URI base;
+        try {
+            base = new URI(baseUrl);
+        } catch (Exception e) {
+            base = null;
+        }
+        this.mBase = base;
+        this.mBaseUrl = baseUrl;
+        this.mProxyPrefix = proxyPrefix;
+    }
+
+    /**
+     * Checks whether a response is an HLS playlist based on its URL path and content type.
+     *
+     * @param path The URL path (may be null).
+     * @param contentType The response content type (may be null).
+     * @return true if the response should be rewritten.
+     */
+    public static boolean isManifest(String path, String contentType) {
+        if (path != null) {
+            String lowerPath = path.toLowerCase(Locale.ROOT);
+            if (lowerPath.endsWith(".m3u8") || lowerPath.endsWith(".m3u")) {
+                return true;
+            }
+        }
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("mpegurl");
+    }
+
+    /**
+     * Rewrites a single playlist line.
+     *
+     * @param line The raw line.
+     * @return The rewritten line (trimmed, like run_pc.py).
+     */
+    public String rewriteLine(String line) {
+        String stripped = line.trim();
+        if (stripped.isEmpty()) {
+            return stripped;
+        }
+        if (stripped.charAt(0) != '#') {
+            return proxied(stripped);
+        }
+        int index = stripped.indexOf(URI_ATTRIBUTE);
+        if (index == -1) {
+            return stripped;
+        }
+        StringBuilder out = new StringBuilder(stripped.length() + 64);
+        int from = 0;
+        while (index != -1) {
+            int start = index + URI_ATTRIBUTE.length();
+            int end = stripped.indexOf('"', start);
+            if (end == -1) {
+                break;
+            }
+            out.append(stripped, from, start).append(proxied(stripped.substring(start, end)));
+            from = end;
+            index = stripped.indexOf(URI_ATTRIBUTE, end + 1);
+        }
+        return out.append(stripped, from, stripped.length()).toString();
+    }
+
+    /**
+     * Rewrites a whole playlist from a reader to a writer, line by line.
+     *
+     * @param in The playlist.
+     * @param out Receives the rewritten playlist.
+     * @throws IOException if reading or writing fails.
+     */
+    public void rewrite(Reader in, Writer out) throws IOException {
+        BufferedReader lines = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        String line;
+        boolean first = true;
+        while ((line = lines.readLine()) != null) {
+            if (!first) {
+                out.write('\n');
+            }
+            out.write(rewriteLine(line));
+            first = false;
+        }
+    }
+
+    /**
+     * Wraps an upstream playlist body in a stream that yields the rewritten playlist as UTF-8,
+     * reading and rewriting one line at a time as the consumer reads.
+     *
+     * @param upstream The raw playlist body.
+     * @param charset The playlist charset (HLS mandates UTF-8).
+     * @return The rewriting stream; closing it closes the upstream.
+     */
+    public InputStream rewritingStream(InputStream upstream, Charset charset) {
+        return new RewritingInputStream(new BufferedReader(new InputStreamReader(upstream, charset)));
+    }
+
+    private String proxied(String uri) {
+        return mProxyPrefix + encode(resolve(uri));
+    }
+
+    /**
+     * Resolves a playlist URI against the playlist URL, exactly as the rewritten playlist will reference it.
+     *
+     * @param uri A URI from the playlist, absolute or relative.
+     * @return The absolute URI.
+     */
+    public String resolve(String uri) {
+        if (uri.startsWith("http://") || uri.startsWith("https://") || mBase == null) {
+            return uri;
+        }
+        try {
+            return mBase.resolve(uri).toString();
+        } catch (IllegalArgumentException e) {
+            // Not a valid URI reference (e.g. unescaped spaces); resolve textually against the base directory.
+            int slash = mBaseUrl.lastIndexOf('/');
+            return (slash != -1 ? mBaseUrl.substring(0, slash + 1) : mBaseUrl) + uri;
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            // URLEncoder emits + for spaces; use %20 so the query value decodes the same everywhere.
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Pull-based line rewriter: each refill reads one upstream line and exposes its rewritten bytes.
+     */
+    private final class RewritingInputStream extends InputStream {
+        private final BufferedReader mReader;
+        private byte[] mLine = new byte[0];
+        private int mPos = 0;
+        private boolean mEof = false;
+
+        RewritingInputStream(BufferedReader reader) {
+            this.mReader = reader;
+        }
+
+        private boolean fill() throws IOException {
+            while (mPos >= mLine.length) {
+                if (mEof) {
+                    return false;
+                }
+                String line = mReader.readLine();
+                if (line == null) {
+                    mEof = true;
+                    return false;
+                }
+                mLine = (rewriteLine(line) + "\n").getBytes(StandardCharsets.UTF_8);
+                mPos = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? mLine[mPos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(len, mLine.length - mPos);
+            System.arraycopy(mLine, mPos, b, off, count);
+            mPos += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return mLine.length - mPos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            mReader.close();
+        }
+    }
+}
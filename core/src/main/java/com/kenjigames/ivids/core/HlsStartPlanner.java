@@ -0,0 +1,114 @@
+package com.kenjigames.ivids.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HlsStartPlanner predicts which resources a player requests to start an HLS stream: the first variant of a master
+ * playlist, then the initialization map and the segment at the start position of a media playlist. URIs are
+ * resolved with {@link HlsManifestRewriter#resolve(String)}, so they match the proxied URLs the player will request.
+ */
+public final class HlsStartPlanner {
+
+    private static final String STREAM_INF = "#EXT-X-STREAM-INF";
+    private static final String TARGET_DURATION = "#EXT-X-TARGETDURATION:";
+    private static final String MAP = "#EXT-X-MAP:";
+    private static final String END_LIST = "#EXT-X-ENDLIST";
+    private static final String URI_ATTRIBUTE = "URI=\"";
+    private static final int DEFAULT_TARGET_DURATION_SECONDS = 6;
+
+    private HlsStartPlanner() {
+    }
+
+    /**
+     * @param playlist The playlist text.
+     * @return true if the playlist is a master playlist (lists variants rather than segments).
+     */
+    public static boolean isMaster(String playlist) {
+        return playlist.contains(STREAM_INF);
+    }
+
+    /**
+     * @param playlist A master playlist.
+     * @param baseUrl The final URL of the playlist.
+     * @return The absolute URL of the first listed variant, which hls.js and native players start on, or null.
+     */
+    public static String firstVariantUrl(String playlist, String baseUrl) {
+        boolean afterStreamInf = false;
+        for (String raw : playlist.split("\n")) {
+            String line = raw.trim();
+            if (line.startsWith(STREAM_INF)) {
+                afterStreamInf = true;
+            } else if (afterStreamInf && !line.isEmpty() && line.charAt(0) != '#') {
+                return new HlsManifestRewriter(baseUrl, "").resolve(line);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the resources fetched to start a media playlist: the EXT-X-MAP initialization section (if any) and
+     * the start segment. For live playlists the player starts {@code liveSyncSegments} segments before the end
+     * (hls.js {@code liveSyncDurationCount}); for VOD it starts at the first segment.
+     *
+     * @param playlist A media playlist.
+     * @param baseUrl The final URL of the playlist.
+     * @param liveSyncSegments The player's live sync distance in segments.
+     * @return The absolute URLs, in request order; empty if the playlist has no segments.
+     */
+    public static List<String> startSegmentUrls(String playlist, String baseUrl, int liveSyncSegments) {
+        List<String> segments = new ArrayList<>();
+        String map = null;
+        boolean vod = false;
+        for (String raw : playlist.split("\n")) {
+            String line = raw.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.charAt(0) != '#') {
+                segments.add(line);
+            } else if (line.startsWith(MAP) && map == null) {
+                int start = line.indexOf(URI_ATTRIBUTE);
+                int end = start == -1 ? -1 : line.indexOf('"', start + URI_ATTRIBUTE.length());
+                if (end != -1) {
+                    map = line.substring(start + URI_ATTRIBUTE.length(), end);
+                }
+            } else if (line.startsWith(END_LIST)) {
+                vod = true;
+            }
+        }
+        List<String> urls = new ArrayList<>(2);
+        if (segments.isEmpty()) {
+            return urls;
+        }
+        HlsManifestRewriter resolver = new HlsManifestRewriter(baseUrl, "");
+        if (map != null) {
+            urls.add(resolver.resolve(map));
+        }
+        int index = vod ? 0 : Math.max(0, segments.size() - liveSyncSegments);
+        urls.add(resolver.resolve(segments.get(index)));
+        return urls;
+    }
+
+    /**
+     * @param playlist A media playlist.
+     * @return The EXT-X-TARGETDURATION in seconds, or 6 if absent or invalid.
+     */
+    public static int targetDurationSeconds(String playlist) {
+        int index = playlist.indexOf(TARGET_DURATION);
+        if (index == -1) {
+            return DEFAULT_TARGET_DURATION_SECONDS;
+        }
+        int start = index + TARGET_DURATION.length();
+        int end = start;
+        while (end < playlist.length() && Character.isDigit(playlist.charAt(end))) {
+            end++;
+        }
+        try {
+            int seconds = Integer.parseInt(playlist.substring(start, end));
+            return seconds > 0 ? seconds : DEFAULT_TARGET_DURATION_SECONDS;
+        } catch (NumberFormatException e) {
+            return DEFAULT_TARGET_DURATION_SECONDS;
+        }
+    }
+}
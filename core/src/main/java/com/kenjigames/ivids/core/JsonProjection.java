@@ -0,0 +1,144 @@
+package com.kenjigames.ivids.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JsonProjection streams a JSON document through {@link JsonPullParser} and writes a document that only contains
+ * the declared fields. Unlisted fields are skipped without being decoded or buffered.
+ * <p>
+ * Field paths use dots for nesting and {@code []} for array elements, e.g. {@code credits.cast[].name}. A listed
+ * path keeps the whole value below it. Limits cap the number of array elements kept at a path (without
+ * {@code []}), e.g. {@code credits.cast -> 12}.
+ */
+public final class JsonProjection {
+
+    /**
+     * One level of the projection tree.
+     */
+    private static final class Node {
+        final Map<String, Node> fields = new HashMap<>();
+        Node elements;
+        boolean whole;
+        int limit = Integer.MAX_VALUE;
+    }
+
+    private final Node mRoot;
+
+    private JsonProjection(Node root) {
+        this.mRoot = root;
+    }
+
+    /**
+     * Compiles a projection from field paths.
+     *
+     * @param fields The field paths to keep.
+     * @param limits Maximum array lengths per field path; may be empty.
+     * @return The compiled projection.
+     * @throws IllegalArgumentException If a limit targets a path that is not declared in the fields.
+     */
+    public static JsonProjection compile(Collection<String> fields, Map<String, Integer> limits) {
+        Node root = new Node();
+        for (String field : fields) {
+            Node node = root;
+            for (String segment : field.split("\\.")) {
+                String name = segment;
+                int arrays = 0;
+                while (name.endsWith("[]")) {
+                    name = name.substring(0, name.length() - 2);
+                    arrays++;
+                }
+                node = node.fields.computeIfAbsent(name, k -> new Node());
+                for (int i = 0; i < arrays; i++) {
+                    if (node.elements == null) {
+                        node.elements = new Node();
+                    }
+                    node = node.elements;
+                }
+            }
+            node.whole = true;
+        }
+        for (Map.Entry<String, Integer> limit : limits.entrySet()) {
+            Node node = root;
+            for (String name : limit.getKey().split("\\.")) {
+                node = node.fields.get(name);
+                if (node == null) {
+                    throw new IllegalArgumentException("Limit on undeclared field: " + limit.getKey());
+                }
+            }
+            node.limit = limit.getValue();
+        }
+        return new JsonProjection(root);
+    }
+
+    /**
+     * Projects one JSON document.
+     *
+     * @param in The source document.
+     * @param out The destination for the projected document (compact JSON).
+     * @throws IOException If reading or writing fails, or the source is not well-formed JSON.
+     */
+    public void project(Reader in, Appendable out) throws IOException {
+        JsonPullParser parser = new JsonPullParser(in);
+        project(parser, mRoot, out);
+        if (parser.next() != JsonPullParser.Token.END_DOCUMENT) {
+            throw new IOException("Trailing data after document");
+        }
+    }
+
+    private static void project(JsonPullParser parser, Node node, Appendable out) throws IOException {
+        if (node.whole) {
+            parser.copyValue(out);
+            return;
+        }
+        JsonPullParser.Token token = parser.next();
+        switch (token) {
+            case BEGIN_OBJECT:
+                out.append('{');
+                boolean first = true;
+                while (parser.next() == JsonPullParser.Token.NAME) {
+                    Node child = node.fields.get(parser.decodedText());
+                    if (child == null) {
+                        parser.skipValue();
+                        continue;
+                    }
+                    if (!first) {
+                        out.append(',');
+                    }
+                    first = false;
+                    out.append(parser.text()).append(':');
+                    project(parser, child, out);
+                }
+                out.append('}');
+                break;
+            case BEGIN_ARRAY:
+                // Without [] in the path, the object fields apply to each element
+                Node elements = node.elements != null ? node.elements : node;
+                out.append('[');
+                int count = 0;
+                while (parser.peek() != JsonPullParser.Token.END_ARRAY) {
+                    if (count >= node.limit) {
+                        parser.skipValue();
+                        continue;
+                    }
+                    if (count > 0) {
+                        out.append(',');
+                    }
+                    project(parser, elements, out);
+                    count++;
+                }
+                parser.next();
+                out.append(']');
+                break;
+            case VALUE:
+                // A scalar (usually null) where an object was declared is kept as-is
+                out.append(parser.text());
+                break;
+            default:
+                throw new IOException("Expected value but was " + token);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.kenjigames.ivids.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Minimal streaming JSON tokenizer. Scalars are returned as their raw source text (strings keep their quotes
+ * and escapes), so values can be copied to the output without being decoded and re-encoded; only object names
+ * are decoded for matching.
+ */
+public final class JsonPullParser {
+
+    /** Token types returned by {@link #peek()} and {@link #next()}. */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, VALUE, END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[8192];
+    private int mPos = 0;
+    private int mLimit = 0;
+    private int[] mStack = new int[32];
+    private int mDepth = 1;
+    private Token mPeeked;
+    private final StringBuilder mText = new StringBuilder();
+
+    /**
+     * @param reader The JSON source. Buffered internally.
+     */
+    public JsonPullParser(Reader reader) {
+        this.mReader = reader;
+        mStack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * @return The next token without consuming it.
+     * @throws IOException If the source cannot be read or is not well-formed JSON.
+     */
+    public Token peek() throws IOException {
+        if (mPeeked != null) {
+            return mPeeked;
+        }
+        int c;
+        switch (mStack[mDepth - 1]) {
+            case EMPTY_DOCUMENT:
+                mStack[mDepth - 1] = NONEMPTY_DOCUMENT;
+                return mPeeked = readValue();
+            case NONEMPTY_DOCUMENT:
+                if (nextNonWhitespace() != -1) {
+                    throw syntaxError("Trailing data after document");
+                }
+                return mPeeked = Token.END_DOCUMENT;
+            case EMPTY_ARRAY:
+                mStack[mDepth - 1] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return mPeeked = Token.END_ARRAY;
+                }
+                if (c == -1) {
+                    throw syntaxError("Unterminated array");
+                }
+                mPos--;
+                return mPeeked = readValue();
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return mPeeked = Token.END_ARRAY;
+                }
+                if (c != ',') {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+                return mPeeked = readValue();
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    return mPeeked = Token.END_OBJECT;
+                }
+                if (mStack[mDepth - 1] == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected name");
+                }
+                mText.setLength(0);
+                readRawString();
+                mStack[mDepth - 1] = DANGLING_NAME;
+                return mPeeked = Token.NAME;
+            case DANGLING_NAME:
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                mStack[mDepth - 1] = NONEMPTY_OBJECT;
+                return mPeeked = readValue();
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Consumes and returns the next token. After {@link Token#NAME} and {@link Token#VALUE} the token text is
+     * available from {@link #text()} until the next call.
+     *
+     * @return The consumed token.
+     * @throws IOException If the source cannot be read or is not well-formed JSON.
+     */
+    public Token next() throws IOException {
+        Token token = peek();
+        mPeeked = null;
+        if (token == Token.END_OBJECT || token == Token.END_ARRAY) {
+            mDepth--;
+        }
+        return token;
+    }
+
+    /**
+     * @return The raw source text of the last name or scalar value; strings include their quotes.
+     */
+    public String text() {
+        return mText.toString();
+    }
+
+    /**
+     * @return The last name or string value with quotes removed and escapes decoded; other scalars as-is.
+     */
+    public String decodedText() {
+        if (mText.length() == 0 || mText.charAt(0) != '"') {
+            return mText.toString();
+        }
+        StringBuilder out = new StringBuilder(mText.length());
+        for (int i = 1; i < mText.length() - 1; i++) {
+            char c = mText.charAt(i);
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            char e = mText.charAt(++i);
+            switch (e) {
+                case 'b': out.append('\b'); break;
+                case 'f': out.append('\f'); break;
+                case 'n': out.append('\n'); break;
+                case 'r': out.append('\r'); break;
+                case 't': out.append('\t'); break;
+                case 'u':
+                    out.append((char) Integer.parseInt(mText.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default: out.append(e); break;
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Consumes the next value, including all nested values of an object or array.
+     *
+     * @throws IOException If the source cannot be read or is not well-formed JSON.
+     */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            Token token = next();
+            if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+                depth++;
+            } else if (token == Token.END_OBJECT || token == Token.END_ARRAY) {
+                depth--;
+            } else if (token == Token.END_DOCUMENT) {
+                throw syntaxError("Unexpected end of document");
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * Copies the next value, including all nested values, to the output in compact form.
+     *
+     * @param out The destination.
+     * @throws IOException If the source cannot be read or is not well-formed JSON.
+     */
+    public void copyValue(Appendable out) throws IOException {
+        Token token = next();
+        switch (token) {
+            case BEGIN_OBJECT:
+                out.append('{');
+                for (boolean first = true; next() == Token.NAME; first = false) {
+                    if (!first) {
+                        out.append(',');
+                    }
+                    out.append(mText).append(':');
+                    copyValue(out);
+                }
+                out.append('}');
+                break;
+            case BEGIN_ARRAY:
+                out.append('[');
+                for (boolean first = true; peek() != Token.END_ARRAY; first = false) {
+                    if (!first) {
+                        out.append(',');
+                    }
+                    copyValue(out);
+                }
+                next();
+                out.append(']');
+                break;
+            case VALUE:
+                out.append(mText);
+                break;
+            default:
+                throw syntaxError("Expected value but was " + token);
+        }
+    }
+
+    private Token readValue() throws IOException {
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                push(EMPTY_OBJECT);
+                return Token.BEGIN_OBJECT;
+            case '[':
+                push(EMPTY_ARRAY);
+                return Token.BEGIN_ARRAY;
+            case '"':
+                mText.setLength(0);
+                readRawString();
+                return Token.VALUE;
+            case -1:
+                throw syntaxError("Unexpected end of document");
+            default:
+                mText.setLength(0);
+                mText.append((char) c);
+                readLiteral();
+                return Token.VALUE;
+        }
+    }
+
+    /**
+     * Appends a string token, opening quote already consumed, to mText verbatim including both quotes.
+     */
+    private void readRawString() throws IOException {
+        mText.append('"');
+        while (true) {
+            if (mPos == mLimit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            int start = mPos;
+            while (mPos < mLimit) {
+                char c = mBuffer[mPos++];
+                if (c == '"') {
+                    mText.append(mBuffer, start, mPos - start);
+                    return;
+                }
+                if (c == '\\') {
+                    if (mPos == mLimit) {
+                        mText.append(mBuffer, start, mPos - start);
+                        if (!fill()) {
+                            throw syntaxError("Unterminated escape");
+                        }
+                        start = mPos;
+                    }
+                    mPos++;
+                }
+            }
+            mText.append(mBuffer, start, mPos - start);
+        }
+    }
+
+    /**
+     * Appends the rest of a number, true, false or null to mText.
+     */
+    private void readLiteral() throws IOException {
+        while (mPos < mLimit || fill()) {
+            char c = mBuffer[mPos];
+            if (c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                return;
+            }
+            mText.append(c);
+            mPos++;
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (mPos < mLimit || fill()) {
+            char c = mBuffer[mPos++];
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Refills the buffer. Keeps the last character so a single step back with mPos-- is always valid.
+     */
+    private boolean fill() throws IOException {
+        if (mLimit > 0) {
+            mBuffer[0] = mBuffer[mLimit - 1];
+            mPos = 1;
+            mLimit = 1;
+        }
+        int read = mReader.read(mBuffer, mLimit, mBuffer.length - mLimit);
+        if (read <= 0) {
+            return false;
+        }
+        mLimit += read;
+        return true;
+    }
+
+    private void push(int context) {
+        if (mDepth == mStack.length) {
+            mStack = Arrays.copyOf(mStack, mDepth * 2);
+        }
+        mStack[mDepth++] = context;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at depth " + (mDepth - 1));
+    }
+}
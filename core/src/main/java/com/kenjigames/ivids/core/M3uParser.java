@@ -0,0 +1,114 @@
+package com.kenjigames.ivids.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * M3uParser is the streaming Java counterpart of logic/m3u-parser.js. It reads an M3U playlist line by line
+ * and produces the same channel fields and ids as the JavaScript parser, so native and web code agree on
+ * which channel is which.
+ */
+public final class M3uParser {
+
+    /**
+     * A parsed playlist entry.
+     */
+    public static final class Channel {
+        public String id;
+        public String name;
+        public String url;
+        public String group;
+        public String tvgId;
+        public String logo;
+    }
+
+    /**
+     * Receives channels as they are parsed, so large playlists never have to be held in memory.
+     */
+    public interface Listener {
+        /**
+         * @param channel The parsed channel.
+         */
+        void onChannel(Channel channel);
+    }
+
+    private M3uParser() {
+    }
+
+    /**
+     * Parses a playlist into a list of channels.
+     *
+     * @param reader The playlist content.
+     * @return The parsed channels in playlist order.
+     * @throws IOException if reading fails.
+     */
+    public static List<Channel> parse(Reader reader) throws IOException {
+        List<Channel> channels = new ArrayList<>();
+        parse(reader, channels::add);
+        return channels;
+    }
+
+    /**
+     * Streams a playlist, reporting each complete channel (an #EXTINF line followed by its URL) to the listener.
+     *
+     * @param reader The playlist content.
+     * @param listener Receives each channel.
+     * @throws IOException if reading fails.
+     */
+    public static void parse(Reader reader, Listener listener) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        Channel current = null;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#EXTM3U")) {
+                continue;
+            }
+            if (line.startsWith("#EXTINF:")) {
+                current = new Channel();
+                current.group = attribute(line, "group-title=\"");
+                current.tvgId = attribute(line, "tvg-id=\"");
+                current.logo = attribute(line, "tvg-logo=\"");
+                int commaIndex = line.lastIndexOf(',');
+                String namePart = commaIndex != -1
+                        ? line.substring(commaIndex + 1).trim()
+                        : line.substring(line.lastIndexOf(':') + 1).trim();
+                current.name = namePart.isEmpty() ? "Unknown Channel" : namePart;
+            } else if (!line.startsWith("#") && current != null) {
+                current.url = line;
+                current.id = createChannelId(line);
+                listener.onChannel(current);
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * Creates the same stable ASCII-safe identifier as M3UParser.createChannelId in JavaScript
+     * (a 32-bit string hash rendered in base 36).
+     *
+     * @param value The channel URL.
+     * @return The channel id, e.g. "live_1x2y3z".
+     */
+    public static String createChannelId(String value) {
+        int hash = 0;
+        String input = value != null ? value : "";
+        for (int i = 0; i < input.length(); i++) {
+            hash = ((hash << 5) - hash) + input.charAt(i);
+        }
+        return "live_" + Long.toString(Math.abs((long) hash), 36);
+    }
+
+    private static String attribute(String line, String prefix) {
+        int index = line.indexOf(prefix);
+        if (index == -1) {
+            return null;
+        }
+        int start = index + prefix.length();
+        int end = line.indexOf('"', start);
+        return end != -1 ? line.substring(start, end) : null;
+    }
+}
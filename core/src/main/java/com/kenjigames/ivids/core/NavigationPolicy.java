@@ -0,0 +1,161 @@
+package com.kenjigames.ivids.core;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * NavigationPolicy decides whether a top-level navigation of the WebView may proceed. Embed players (and the ad
+ * scripts they load) can navigate the main frame away from the app to redirect chains and landing pages; only the
+ * app shell and an allowlist of player and app hosts may be loaded at top level. Navigations without a user
+ * gesture (scripted navigations and server redirects) to allowed hosts are rate-limited, so a page cannot bounce
+ * the app through a chain of mirrors. The allowlist decision is cached per host.
+ */
+public final class NavigationPolicy {
+
+    /**
+     * The outcome of a navigation check.
+     */
+    public enum Decision {
+        ALLOW,
+        /** The host is not on the allowlist. */
+        BLOCK_HOST,
+        /** A scheme that would leave the WebView, e.g. {@code intent:} or {@code market:}. */
+        BLOCK_SCHEME,
+        /** Too many navigations without a user gesture in the rate window. */
+        RATE_LIMITED
+    }
+
+    /** Embed player hosts of {@code PLAYER_CONFIG}, and GitHub for release pages and update downloads. */
+    public static final List<String> DEFAULT_HOSTS = Collections.unmodifiableList(Arrays.asList(
+            "vidlink.pro",
+            "vidsrc.to",
+            "vidsrc.cc",
+            "videasy.net",
+            "embed.su",
+            "github.com",
+            "githubusercontent.com"
+    ));
+
+    /** Navigations without a gesture allowed per window; a player page may redirect once or twice while loading. */
+    public static final int DEFAULT_MAX_SCRIPTED = 3;
+    public static final long DEFAULT_WINDOW_MS = 10_000;
+
+    private final int mMaxScripted;
+    private final long mWindowMs;
+    private final ArrayDeque<Long> mScriptedTimes = new ArrayDeque<>();
+    private final Map<String, Boolean> mHostCache = new ConcurrentHashMap<>();
+    private volatile Set<String> mHosts;
+
+    /**
+     * @param hosts Allowed hosts; subdomains of a listed host are allowed as well.
+     * @param maxScripted Navigations without a user gesture allowed per window.
+     * @param windowMs The rate window in milliseconds.
+     */
+    public NavigationPolicy(Collection<String> hosts, int maxScripted, long windowMs) {
+        this.mMaxScripted = maxScripted;
+        this.mWindowMs = windowMs;
+        setHosts(hosts);
+    }
+
+    /**
+     * @param extraHosts Hosts allowed on top of {@link #DEFAULT_HOSTS}, e.g. custom player servers.
+     * @return A policy with the default allowlist and rate limit.
+     */
+    public static NavigationPolicy createDefault(Collection<String> extraHosts) {
+        Set<String> hosts = new HashSet<>(DEFAULT_HOSTS);
+        hosts.addAll(extraHosts);
+        return new NavigationPolicy(hosts, DEFAULT_MAX_SCRIPTED, DEFAULT_WINDOW_MS);
+    }
+
+    /**
+     * Replaces the allowlist and clears the per-host cache.
+     *
+     * @param hosts Allowed hosts.
+     */
+    public void setHosts(Collection<String> hosts) {
+        Set<String> normalized = new HashSet<>();
+        for (String host : hosts) {
+            if (host != null && !host.isEmpty()) {
+                normalized.add(host.toLowerCase(Locale.ROOT));
+            }
+        }
+        mHosts = normalized;
+        mHostCache.clear();
+    }
+
+    /**
+     * Checks a top-level navigation.
+     *
+     * @param scheme The URL scheme, e.g. {@code https}.
+     * @param host The URL host; may be null for non-network schemes.
+     * @param userGesture Whether the navigation was started by the user.
+     * @param nowMs A monotonic timestamp in milliseconds.
+     * @return The decision.
+     */
+    public Decision decide(String scheme, String host, boolean userGesture, long nowMs) {
+        String lowerScheme = scheme == null ? "" : scheme.toLowerCase(Locale.ROOT);
+        if (lowerScheme.equals("file") || lowerScheme.equals("about") || lowerScheme.equals("data")) {
+            // The app shell and its blank and inline documents
+            return Decision.ALLOW;
+        }
+        if (!lowerScheme.equals("https") && !lowerScheme.equals("http")) {
+            return Decision.BLOCK_SCHEME;
+        }
+        if (!isAllowedHost(host)) {
+            return Decision.BLOCK_HOST;
+        }
+        if (userGesture) {
+            return Decision.ALLOW;
+        }
+        synchronized (mScriptedTimes) {
+            while (!mScriptedTimes.isEmpty() && nowMs - mScriptedTimes.peekFirst() >= mWindowMs) {
+                mScriptedTimes.pollFirst();
+            }
+            if (mScriptedTimes.size() >= mMaxScripted) {
+                return Decision.RATE_LIMITED;
+            }
+            mScriptedTimes.addLast(nowMs);
+        }
+        return Decision.ALLOW;
+    }
+
+    /**
+     * @param host A host name.
+     * @return Whether the host or one of its parent domains is on the allowlist.
+     */
+    public boolean isAllowedHost(String host) {
+        if (host == null || host.isEmpty()) {
+            return false;
+        }
+        String key = host.toLowerCase(Locale.ROOT);
+        Boolean cached = mHostCache.get(key);
+        if (cached == null) {
+            cached = matches(key);
+            mHostCache.put(key, cached);
+        }
+        return cached;
+    }
+
+    private boolean matches(String host) {
+        Set<String> hosts = mHosts;
+        String domain = host;
+        while (true) {
+            if (hosts.contains(domain)) {
+                return true;
+            }
+            int dot = domain.indexOf('.');
+            if (dot < 0) {
+                return false;
+            }
+            domain = domain.substring(dot + 1);
+        }
+    }
+}
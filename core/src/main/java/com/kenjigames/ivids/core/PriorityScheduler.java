@@ -0,0 +1,276 @@
+package com.kenjigames.ivids.core;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PriorityScheduler runs background work in three priority classes with a concurrency limit per class.
+ * Queued work starts in class order (user-visible, then prefetch, then maintenance) and in submission order
+ * within a class, so a short user-visible request never waits behind a long maintenance download.
+ * <p>
+ * Every job receives a {@link Task} that doubles as its cancellation token. Long jobs call
+ * {@link Task#checkpoint()} between units of work: it throws once the task is cancelled and blocks while the
+ * task's class is paused. Pausing a class (e.g. maintenance during playback) holds back its queued jobs and
+ * parks its running jobs at their next checkpoint.
+ */
+public final class PriorityScheduler {
+
+    /**
+     * Priority classes, highest first.
+     */
+    public enum Priority {
+        /** Work the user is waiting for, e.g. an update check started from the settings page. */
+        USER_VISIBLE(Thread.NORM_PRIORITY),
+        /** Speculative work that makes a likely next step faster. */
+        PREFETCH(Thread.NORM_PRIORITY - 2),
+        /** Work nobody waits for, e.g. large downloads and cache upkeep. */
+        MAINTENANCE(Thread.MIN_PRIORITY);
+
+        final int threadPriority;
+
+        Priority(int threadPriority) {
+            this.threadPriority = threadPriority;
+        }
+    }
+
+    /**
+     * A unit of background work.
+     */
+    public interface Job {
+        /**
+         * @param task The task handle, used to poll cancellation and pause through {@link Task#checkpoint()}.
+         * @throws Exception Any failure; it is reported to the scheduler's error listener.
+         */
+        void run(Task task) throws Exception;
+    }
+
+    /**
+     * Receives failures of jobs, which would otherwise be lost on the worker thread.
+     */
+    public interface ErrorListener {
+        /**
+         * @param name The name the job was submitted with.
+         * @param error The exception the job threw.
+         */
+        void onJobFailed(String name, Throwable error);
+    }
+
+    /**
+     * Handle and cancellation token of one submitted job.
+     */
+    public final class Task {
+        private final String mName;
+        private final Priority mPriority;
+        private final Job mJob;
+        private volatile boolean mCancelled = false;
+        private volatile boolean mStarted = false;
+
+        private Task(String name, Priority priority, Job job) {
+            this.mName = name;
+            this.mPriority = priority;
+            this.mJob = job;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public Priority getPriority() {
+            return mPriority;
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        /**
+         * Cancels the task. A queued task never starts; a running task stops at its next checkpoint.
+         */
+        public void cancel() {
+            synchronized (PriorityScheduler.this) {
+                mCancelled = true;
+                if (!mStarted) {
+                    mQueues[mPriority.ordinal()].remove(this);
+                }
+                // Wakes the task if it is parked in a paused checkpoint
+                PriorityScheduler.this.notifyAll();
+            }
+        }
+
+        /**
+         * Called by the job between units of work.
+         *
+         * @throws CancellationException If the task was cancelled or the scheduler shut down.
+         * @throws InterruptedException If the worker thread was interrupted while parked.
+         */
+        public void checkpoint() throws InterruptedException {
+            synchronized (PriorityScheduler.this) {
+                while (mPaused[mPriority.ordinal()] && !mCancelled) {
+                    PriorityScheduler.this.wait();
+                }
+            }
+            if (mCancelled) {
+                throw new CancellationException(mName + " cancelled");
+            }
+        }
+    }
+
+    private static final int CLASS_COUNT = Priority.values().length;
+
+    private final int[] mLimits;
+    private final int[] mRunning = new int[CLASS_COUNT];
+    private final boolean[] mPaused = new boolean[CLASS_COUNT];
+    private final long[] mCompleted = new long[CLASS_COUNT];
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Task>[] mQueues = new ArrayDeque[CLASS_COUNT];
+    private final Set<Task> mActive = new HashSet<>();
+    private final ExecutorService mWorkers;
+    private volatile ErrorListener mErrorListener;
+    private boolean mShutdown = false;
+
+    /**
+     * Constructs a scheduler. Worker threads are created on demand and never exceed the sum of the limits.
+     *
+     * @param userVisibleLimit Maximum concurrently running user-visible jobs.
+     * @param prefetchLimit Maximum concurrently running prefetch jobs.
+     * @param maintenanceLimit Maximum concurrently running maintenance jobs.
+     */
+    public PriorityScheduler(int userVisibleLimit, int prefetchLimit, int maintenanceLimit) {
+        this.mLimits = new int[]{userVisibleLimit, prefetchLimit, maintenanceLimit};
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            mQueues[i] = new ArrayDeque<>();
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.mWorkers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "PriorityScheduler-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void setErrorListener(ErrorListener listener) {
+        mErrorListener = listener;
+    }
+
+    /**
+     * Queues a job.
+     *
+     * @param name A short name for logs and statistics.
+     * @param priority The priority class.
+     * @param job The work.
+     * @return The task handle; already cancelled if the scheduler was shut down.
+     */
+    public Task submit(String name, Priority priority, Job job) {
+        Task task = new Task(name, priority, job);
+        synchronized (this) {
+            if (mShutdown) {
+                task.mCancelled = true;
+                return task;
+            }
+            mQueues[priority.ordinal()].addLast(task);
+            dispatch();
+        }
+        return task;
+    }
+
+    /**
+     * Pauses or resumes a priority class.
+     *
+     * @param priority The class.
+     * @param paused Whether its queued jobs are held back and its running jobs park at their next checkpoint.
+     */
+    public synchronized void setPaused(Priority priority, boolean paused) {
+        mPaused[priority.ordinal()] = paused;
+        if (!paused) {
+            notifyAll();
+            dispatch();
+        }
+    }
+
+    public synchronized boolean isPaused(Priority priority) {
+        return mPaused[priority.ordinal()];
+    }
+
+    public synchronized int getQueued(Priority priority) {
+        return mQueues[priority.ordinal()].size();
+    }
+
+    public synchronized int getRunning(Priority priority) {
+        return mRunning[priority.ordinal()];
+    }
+
+    public synchronized long getCompleted(Priority priority) {
+        return mCompleted[priority.ordinal()];
+    }
+
+    /**
+     * Cancels all queued and running tasks and stops accepting work.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            mShutdown = true;
+            for (ArrayDeque<Task> queue : mQueues) {
+                for (Task task : queue) {
+                    task.mCancelled = true;
+                }
+                queue.clear();
+            }
+            for (Task task : mActive) {
+                task.mCancelled = true;
+            }
+            notifyAll();
+        }
+        mWorkers.shutdownNow();
+    }
+
+    /**
+     * Starts queued tasks while their class has free slots. Must hold the lock.
+     */
+    private void dispatch() {
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            while (!mPaused[i] && mRunning[i] < mLimits[i] && !mQueues[i].isEmpty()) {
+                Task task = mQueues[i].pollFirst();
+                task.mStarted = true;
+                mActive.add(task);
+                mRunning[i]++;
+                mWorkers.execute(() -> runTask(task));
+            }
+        }
+    }
+
+    private void runTask(Task task) {
+        Thread thread = Thread.currentThread();
+        thread.setPriority(task.mPriority.threadPriority);
+        try {
+            if (!task.mCancelled) {
+                task.mJob.run(task);
+            }
+        } catch (CancellationException e) {
+            // Stopped at a checkpoint
+        } catch (InterruptedException e) {
+            // Interrupted by shutdown while parked
+        } catch (Throwable t) {
+            ErrorListener listener = mErrorListener;
+            if (listener != null) {
+                listener.onJobFailed(task.mName, t);
+            }
+        } finally {
+            Thread.interrupted();
+            thread.setPriority(Thread.NORM_PRIORITY);
+            synchronized (this) {
+                int i = task.mPriority.ordinal();
+                mActive.remove(task);
+                mRunning[i]--;
+                mCompleted[i]++;
+                if (!mShutdown) {
+                    dispatch();
+                }
+            }
+        }
+    }
+}
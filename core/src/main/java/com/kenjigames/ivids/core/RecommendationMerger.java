@@ -0,0 +1,124 @@
+package com.kenjigames.ivids.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * RecommendationMerger combines the TMDB recommendation lists of several recently watched titles into one ranked
+ * list. Each source list is weighted by how recently its title was watched and each entry by its position in the
+ * list, so a title recommended for several recent titles, near the top, ranks first. Duplicates are merged, and
+ * titles that were already watched or are not released yet are dropped.
+ */
+public final class RecommendationMerger {
+
+    /** Weight lost per step back in the watch history: the 5th most recent title counts half as much as the 1st. */
+    private static final double RECENCY_DECAY = 0.25;
+    /** The last entry of a source list still scores this fraction of the first. */
+    private static final double MIN_POSITION_WEIGHT = 0.5;
+
+    /**
+     * One recommended title.
+     */
+    public static final class Item {
+        public final String mediaType;
+        public final long id;
+        /** YYYY-MM-DD, or empty if unknown. */
+        public final String releaseDate;
+        /** The serialized item handed to the WebView; not interpreted here. */
+        public final String payload;
+
+        public Item(String mediaType, long id, String releaseDate, String payload) {
+            this.mediaType = mediaType;
+            this.id = id;
+            this.releaseDate = releaseDate == null ? "" : releaseDate;
+            this.payload = payload;
+        }
+
+        public String key() {
+            return RecommendationMerger.key(mediaType, id);
+        }
+    }
+
+    private static final class Scored {
+        final Item item;
+        final int firstSeen;
+        double score;
+        int sources;
+        int lastSource = -1;
+
+        Scored(Item item, int firstSeen) {
+            this.item = item;
+            this.firstSeen = firstSeen;
+        }
+    }
+
+    private RecommendationMerger() {
+    }
+
+    /**
+     * @return The de-duplication key of a title, e.g. {@code movie:550}.
+     */
+    public static String key(String mediaType, long id) {
+        return mediaType + ":" + id;
+    }
+
+    /**
+     * Merges recommendation lists.
+     *
+     * @param sources One list per watched title, most recently watched first; a failed fetch is an empty list.
+     * @param excludedKeys Keys ({@link #key}) of titles to leave out, i.e. the watch history itself.
+     * @param today Today as YYYY-MM-DD; titles released later or without a date are left out.
+     * @param limit The maximum number of items returned.
+     * @return The merged items, best first.
+     */
+    public static List<Item> merge(List<List<Item>> sources, Collection<String> excludedKeys, String today, int limit) {
+        Set<String> excluded = new HashSet<>(excludedKeys);
+        Map<String, Scored> scored = new HashMap<>();
+        List<Scored> order = new ArrayList<>();
+        for (int s = 0; s < sources.size(); s++) {
+            List<Item> source = sources.get(s);
+            double sourceWeight = 1.0 / (1.0 + RECENCY_DECAY * s);
+            int size = source.size();
+            for (int p = 0; p < size; p++) {
+                Item item = source.get(p);
+                String key = item.key();
+                if (excluded.contains(key) || item.releaseDate.isEmpty() || item.releaseDate.compareTo(today) > 0) {
+                    continue;
+                }
+                Scored entry = scored.get(key);
+                if (entry == null) {
+                    entry = new Scored(item, order.size());
+                    scored.put(key, entry);
+                    order.add(entry);
+                } else if (entry.lastSource == s) {
+                    // TMDB occasionally repeats a title within one list
+                    continue;
+                }
+                double positionWeight = size <= 1 ? 1.0 : 1.0 - (1.0 - MIN_POSITION_WEIGHT) * p / (size - 1);
+                entry.score += sourceWeight * positionWeight;
+                entry.sources++;
+                entry.lastSource = s;
+            }
+        }
+
+        Collections.sort(order, (a, b) -> {
+            int byScore = Double.compare(b.score, a.score);
+            if (byScore != 0) {
+                return byScore;
+            }
+            int bySources = Integer.compare(b.sources, a.sources);
+            return bySources != 0 ? bySources : Integer.compare(a.firstSeen, b.firstSeen);
+        });
+        List<Item> merged = new ArrayList<>(Math.min(limit, order.size()));
+        for (int i = 0; i < order.size() && i < limit; i++) {
+            merged.add(order.get(i).item);
+        }
+        return merged;
+    }
+}
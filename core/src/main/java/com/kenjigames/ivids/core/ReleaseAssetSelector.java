@@ -0,0 +1,63 @@
+package com.kenjigames.ivids.core;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ReleaseAssetSelector picks the APK to download from a release's assets: the first APK whose name contains
+ * the device keyword ("tv" or "mobile"), otherwise the first APK in the release.
+ */
+public final class ReleaseAssetSelector {
+
+    /**
+     * A downloadable release asset.
+     */
+    public static final class Asset {
+        public final String name;
+        public final String downloadUrl;
+
+        /**
+         * @param name The asset file name.
+         * @param downloadUrl The asset's browser download URL.
+         */
+        public Asset(String name, String downloadUrl) {
+            this.name = name;
+            this.downloadUrl = downloadUrl;
+        }
+    }
+
+    private ReleaseAssetSelector() {
+    }
+
+    /**
+     * @param isTv Whether the device runs in television UI mode.
+     * @return The asset name keyword for the device type.
+     */
+    public static String keywordFor(boolean isTv) {
+        return isTv ? "tv" : "mobile";
+    }
+
+    /**
+     * Selects the APK asset for a device type.
+     *
+     * @param assets The release assets in release order.
+     * @param targetKeyword The device keyword (see {@link #keywordFor(boolean)}).
+     * @return The selected asset, or null if the release contains no APK.
+     */
+    public static Asset select(List<Asset> assets, String targetKeyword) {
+        Asset fallback = null;
+        for (Asset asset : assets) {
+            String assetName = asset.name.toLowerCase(Locale.ROOT);
+            if (!assetName.endsWith(".apk")) {
+                continue;
+            }
+            if (assetName.contains(targetKeyword)) {
+                return asset;
+            }
+            if (fallback == null) {
+                fallback = asset;
+            }
+        }
+        return fallback;
+    }
+}
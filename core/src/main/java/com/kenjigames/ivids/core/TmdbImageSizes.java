@@ -0,0 +1,115 @@
+package com.kenjigames.ivids.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TmdbImageSizes maps TMDB image URLs ({@code https://image.tmdb.org/t/p/<size>/<file>}) to smaller size
+ * variants for data saving. Poster-class sizes and backdrop-class sizes are stepped down separately, matching
+ * the JS data saver plan (w92 posters, w300 backdrops at the strongest level).
+ */
+public final class TmdbImageSizes {
+
+    /**
+     * How aggressively images are downsized.
+     */
+    public enum Level {
+        /** Images are left untouched. */
+        NONE,
+        /** Large variants are stepped down one or two sizes (metered, moderate links). */
+        REDUCED,
+        /** The smallest useful variants are used (data saver or slow links). */
+        MINIMAL
+    }
+
+    private static final String PATH_PREFIX = "/t/p/";
+
+    private static final Map<String, String> REDUCED = new HashMap<>();
+    private static final Map<String, String> MINIMAL = new HashMap<>();
+    private static final Map<String, Integer> WIDTHS = new HashMap<>();
+
+    static {
+        REDUCED.put("w500", "w342");
+        REDUCED.put("w780", "w342");
+        REDUCED.put("w1280", "w780");
+        REDUCED.put("original", "w780");
+        REDUCED.put("h632", "w185");
+
+        MINIMAL.put("w154", "w92");
+        MINIMAL.put("w185", "w92");
+        MINIMAL.put("w342", "w92");
+        MINIMAL.put("w500", "w92");
+        MINIMAL.put("w780", "w300");
+        MINIMAL.put("w1280", "w300");
+        MINIMAL.put("original", "w300");
+        MINIMAL.put("h632", "w185");
+
+        WIDTHS.put("w45", 45);
+        WIDTHS.put("w92", 92);
+        WIDTHS.put("w154", 154);
+        WIDTHS.put("w185", 185);
+        WIDTHS.put("w300", 300);
+        WIDTHS.put("w342", 342);
+        WIDTHS.put("w500", 500);
+        WIDTHS.put("w780", 780);
+        WIDTHS.put("w1280", 1280);
+        WIDTHS.put("h632", 421);
+        WIDTHS.put("original", 2000);
+    }
+
+    private TmdbImageSizes() {
+    }
+
+    /**
+     * @param path The URL path, e.g. "/t/p/w500/abc.jpg".
+     * @return The size segment (e.g. "w500"), or null if the path is not a TMDB image path.
+     */
+    public static String sizeOf(String path) {
+        if (path == null || !path.startsWith(PATH_PREFIX)) {
+            return null;
+        }
+        int end = path.indexOf('/', PATH_PREFIX.length());
+        return end == -1 ? null : path.substring(PATH_PREFIX.length(), end);
+    }
+
+    /**
+     * Returns the downsized variant of an image path.
+     *
+     * @param path The URL path, e.g. "/t/p/w500/abc.jpg".
+     * @param level The data saving level.
+     * @return The rewritten path, or null if the image should be loaded unchanged.
+     */
+    public static String rewritePath(String path, Level level) {
+        if (level == Level.NONE) {
+            return null;
+        }
+        String size = sizeOf(path);
+        if (size == null) {
+            return null;
+        }
+        String target = (level == Level.MINIMAL ? MINIMAL : REDUCED).get(size);
+        if (target == null) {
+            return null;
+        }
+        return PATH_PREFIX + target + path.substring(PATH_PREFIX.length() + size.length());
+    }
+
+    /**
+     * Estimates how many bytes the original variant would have cost, from the served bytes and the pixel
+     * area ratio of both sizes (image bytes scale roughly with area).
+     *
+     * @param originalSize The requested size segment.
+     * @param servedSize The served size segment.
+     * @param servedBytes The bytes actually transferred.
+     * @return The estimated bytes saved (never negative).
+     */
+    public static long estimateBytesSaved(String originalSize, String servedSize, long servedBytes) {
+        Integer from = WIDTHS.get(originalSize);
+        Integer to = WIDTHS.get(servedSize);
+        if (from == null || to == null || to >= from) {
+            return 0;
+        }
+        double ratio = (double) from / to;
+        return Math.round(servedBytes * (ratio * ratio - 1));
+    }
+}
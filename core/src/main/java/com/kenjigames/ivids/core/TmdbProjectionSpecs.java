@@ -0,0 +1,186 @@
+package com.kenjigames.ivids.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * TmdbProjectionSpecs holds the per-endpoint field lists from {@code logic/tmdb-projections.json}, the data file in
+ * which the web UI declares which fields of each TMDB response it reads.
+ * <p>
+ * Format: {@code {"endpoints": [{"id", "path" (regex on the URL path), "append" (optional list of
+ * append_to_response values the fields cover), "fields": [paths], "limits": {path: n}}]}}.
+ */
+public final class TmdbProjectionSpecs {
+
+    /**
+     * One projected endpoint.
+     */
+    public static final class Endpoint {
+        public final String id;
+        public final JsonProjection projection;
+        private final Pattern mPath;
+        private final Set<String> mAppend;
+
+        Endpoint(String id, Pattern path, Set<String> append, JsonProjection projection) {
+            this.id = id;
+            this.mPath = path;
+            this.mAppend = append;
+            this.projection = projection;
+        }
+
+        /**
+         * @return true if the request is covered: the path matches and every appended response is declared.
+         */
+        boolean matches(String path, String appendToResponse) {
+            if (!mPath.matcher(path).matches()) {
+                return false;
+            }
+            if (appendToResponse == null || appendToResponse.isEmpty()) {
+                return true;
+            }
+            if (mAppend == null) {
+                return false;
+            }
+            for (String append : appendToResponse.split(",")) {
+                if (!mAppend.contains(append.trim())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final List<Endpoint> mEndpoints;
+
+    private TmdbProjectionSpecs(List<Endpoint> endpoints) {
+        this.mEndpoints = endpoints;
+    }
+
+    /**
+     * @return The number of declared endpoints.
+     */
+    public int size() {
+        return mEndpoints.size();
+    }
+
+    /**
+     * Finds the projection for a TMDB API request.
+     *
+     * @param path The URL path, e.g. {@code /3/movie/550}.
+     * @param appendToResponse The append_to_response query parameter, or null.
+     * @return The endpoint, or null if the response must be passed through unchanged.
+     */
+    public Endpoint match(String path, String appendToResponse) {
+        if (path == null) {
+            return null;
+        }
+        for (Endpoint endpoint : mEndpoints) {
+            if (endpoint.matches(path, appendToResponse)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses a projection spec file.
+     *
+     * @param reader The spec file.
+     * @return The parsed specs.
+     * @throws IOException If the file cannot be read or is malformed.
+     */
+    public static TmdbProjectionSpecs parse(Reader reader) throws IOException {
+        JsonPullParser parser = new JsonPullParser(reader);
+        List<Endpoint> endpoints = new ArrayList<>();
+        expect(parser, JsonPullParser.Token.BEGIN_OBJECT);
+        while (parser.next() == JsonPullParser.Token.NAME) {
+            if (!"endpoints".equals(parser.decodedText())) {
+                parser.skipValue();
+                continue;
+            }
+            expect(parser, JsonPullParser.Token.BEGIN_ARRAY);
+            while (parser.peek() != JsonPullParser.Token.END_ARRAY) {
+                endpoints.add(parseEndpoint(parser));
+            }
+            parser.next();
+        }
+        return new TmdbProjectionSpecs(Collections.unmodifiableList(endpoints));
+    }
+
+    private static Endpoint parseEndpoint(JsonPullParser parser) throws IOException {
+        String id = null;
+        String path = null;
+        Set<String> append = null;
+        List<String> fields = new ArrayList<>();
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        expect(parser, JsonPullParser.Token.BEGIN_OBJECT);
+        while (parser.next() == JsonPullParser.Token.NAME) {
+            switch (parser.decodedText()) {
+                case "id":
+                    id = nextString(parser);
+                    break;
+                case "path":
+                    path = nextString(parser);
+                    break;
+                case "append":
+                    append = new HashSet<>(nextStrings(parser));
+                    break;
+                case "fields":
+                    fields.addAll(nextStrings(parser));
+                    break;
+                case "limits":
+                    expect(parser, JsonPullParser.Token.BEGIN_OBJECT);
+                    while (parser.next() == JsonPullParser.Token.NAME) {
+                        String field = parser.decodedText();
+                        try {
+                            limits.put(field, Integer.parseInt(nextString(parser)));
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Invalid limit for " + field, e);
+                        }
+                    }
+                    break;
+                default:
+                    parser.skipValue();
+                    break;
+            }
+        }
+        if (id == null || path == null || fields.isEmpty()) {
+            throw new IOException("Endpoint needs id, path and fields: " + id);
+        }
+        try {
+            return new Endpoint(id, Pattern.compile(path), append, JsonProjection.compile(fields, limits));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid endpoint " + id, e);
+        }
+    }
+
+    private static List<String> nextStrings(JsonPullParser parser) throws IOException {
+        List<String> values = new ArrayList<>();
+        expect(parser, JsonPullParser.Token.BEGIN_ARRAY);
+        while (parser.peek() != JsonPullParser.Token.END_ARRAY) {
+            values.add(nextString(parser));
+        }
+        parser.next();
+        return values;
+    }
+
+    private static String nextString(JsonPullParser parser) throws IOException {
+        expect(parser, JsonPullParser.Token.VALUE);
+        return parser.decodedText();
+    }
+
+    private static void expect(JsonPullParser parser, JsonPullParser.Token expected) throws IOException {
+        JsonPullParser.Token token = parser.next();
+        if (token != expected) {
+            throw new IOException("Expected " + expected + " but was " + token);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.kenjigames.ivids.core;
+
+/**
+ * VersionComparator compares the installed app version against release tags (e.g. v1.0.1 vs v1.0.2).
+ */
+public final class VersionComparator {
+
+    private VersionComparator() {
+    }
+
+    /**
+     * Compares the current installed app version against the latest version tag from GitHub.
+     * Handles semantic versioning comparison with an optional 'v' prefix and non-numeric suffixes per part.
+     *
+     * @param current The current app version name (e.g., "1.0.0").
+     * @param latest The latest release tag from GitHub (e.g., "v1.0.1").
+     * @return true if the latest version is newer than the current version, false otherwise.
+     */
+    public static boolean isNewerVersion(String current, String latest) {
+        // Special case: if current is "1.0", it's a legacy incorrect version
+        // and should be considered older than any "v0.x.x" release.
+        if ("1.0".equals(current) || "1.0.0".equals(current)) {
+            return true;
+        }
+
+        // Remove 'v' prefix if present
+        String c = current.startsWith("v") ? current.substring(1) : current;
+        String l = latest.startsWith("v") ? latest.substring(1) : latest;
+
+        String[] cParts = c.split("\\.");
+        String[] lParts = l.split("\\.");
+
+        try {
+            int length = Math.max(cParts.length, lParts.length);
+            for (int i = 0; i < length; i++) {
+                int cPart = i < cParts.length ? parsePart(cParts[i]) : 0;
+                int lPart = i < lParts.length ? parsePart(lParts[i]) : 0;
+
+                if (lPart > cPart)
+                    return true;
+                if (cPart > lPart)
+                    return false;
+            }
+        } catch (NumberFormatException e) {
+            // Fallback: simple string comparison if parsing fails
+            return !current.equals(latest);
+        }
+        return false;
+    }
+
+    /**
+     * Parses the digits of a version part, ignoring any other characters (e.g. "2-beta" becomes 2).
+     *
+     * @param part The version part.
+     * @return The numeric value.
+     * @throws NumberFormatException if the part contains no digits or overflows an int.
+     */
+    private static int parsePart(String part) {
+        StringBuilder digits = new StringBuilder(part.length());
+        for (int i = 0; i < part.length(); i++) {
+            char ch = part.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                digits.append(ch);
+            }
+        }
+        return Integer.parseInt(digits.toString());
+    }
+}
@@ -0,0 +1,170 @@
+package com.kenjigames.ivids.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * XmltvParser streams {@code <programme>} elements out of an XMLTV guide without building a DOM.
+ * It mirrors EpgManager.parsePrograms in logic/livetv/epg-manager.js: only the channel, start, stop and title
+ * of each programme are read, and channel ids are normalized to trimmed lowercase.
+ * The input is scanned in fixed-size chunks, so memory use does not grow with the guide size.
+ */
+public final class XmltvParser {
+
+    /**
+     * Receives programmes as they are parsed.
+     */
+    public interface Listener {
+        /**
+         * @param channelId The normalized channel id.
+         * @param startMs The programme start in epoch milliseconds.
+         * @param stopMs The programme end in epoch milliseconds.
+         * @param title The programme title (entities decoded).
+         */
+        void onProgramme(String channelId, long startMs, long stopMs, String title);
+    }
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private XmltvParser() {
+    }
+
+    /**
+     * Streams all programmes of a guide to the listener. Programmes without a title or a valid start/stop time
+     * are skipped.
+     *
+     * @param reader The XMLTV document.
+     * @param listener Receives each programme.
+     * @throws IOException if reading fails.
+     */
+    public static void parse(Reader reader, Listener listener) throws IOException {
+        StringBuilder buffer = new StringBuilder(CHUNK_SIZE * 2);
+        char[] chunk = new char[CHUNK_SIZE];
+        boolean eof = false;
+        int pos = 0;
+        while (true) {
+            int open = buffer.indexOf("<programme", pos);
+            int close = open != -1 ? buffer.indexOf("</programme>", open) : -1;
+            if (open != -1 && close != -1) {
+                emit(buffer, open, close, listener);
+                pos = close + 12;
+                continue;
+            }
+            if (eof) {
+                return;
+            }
+            // Drop what has been consumed (or cannot start a programme) before reading more.
+            int keepFrom = open != -1 ? open : Math.max(pos, buffer.length() - 10);
+            buffer.delete(0, keepFrom);
+            pos = 0;
+            int read = reader.read(chunk);
+            if (read == -1) {
+                eof = true;
+            } else {
+                buffer.append(chunk, 0, read);
+            }
+        }
+    }
+
+    private static void emit(StringBuilder buffer, int open, int close, Listener listener) {
+        int tagEnd = buffer.indexOf(">", open);
+        if (tagEnd == -1 || tagEnd > close) {
+            return;
+        }
+        String tag = buffer.substring(open, tagEnd);
+        String channel = attribute(tag, "channel");
+        long start = parseDate(attribute(tag, "start"));
+        long stop = parseDate(attribute(tag, "stop"));
+        int titleOpen = buffer.indexOf("<title", tagEnd);
+        if (channel == null || start == Long.MIN_VALUE || stop == Long.MIN_VALUE || titleOpen == -1 || titleOpen > close) {
+            return;
+        }
+        int titleStart = buffer.indexOf(">", titleOpen) + 1;
+        int titleEnd = buffer.indexOf("</title>", titleStart);
+        if (titleStart <= 0 || titleEnd == -1 || titleEnd > close) {
+            return;
+        }
+        String title = decodeEntities(buffer.substring(titleStart, titleEnd).trim());
+        listener.onProgramme(normalizeChannelId(channel), start, stop, title);
+    }
+
+    /**
+     * Normalizes XMLTV channel ids for case-insensitive matching.
+     *
+     * @param channelId The raw id.
+     * @return The trimmed, lowercase id.
+     */
+    public static String normalizeChannelId(String channelId) {
+        return channelId == null ? "" : channelId.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parses XMLTV timestamps like "20260521193000 +0200" (seconds and zone are optional; no zone means UTC).
+     *
+     * @param value The XMLTV timestamp.
+     * @return Epoch milliseconds, or {@link Long#MIN_VALUE} if the value is not a valid timestamp.
+     */
+    public static long parseDate(String value) {
+        if (value == null || value.length() < 12) {
+            return Long.MIN_VALUE;
+        }
+        for (int i = 0; i < 12; i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return Long.MIN_VALUE;
+            }
+        }
+        int second = 0;
+        int zoneStart = 12;
+        if (value.length() >= 14 && Character.isDigit(value.charAt(12)) && Character.isDigit(value.charAt(13))) {
+            second = Integer.parseInt(value.substring(12, 14));
+            zoneStart = 14;
+        }
+        long offsetMs = 0;
+        String zone = value.substring(zoneStart).trim();
+        if (zone.length() == 5 && (zone.charAt(0) == '+' || zone.charAt(0) == '-')) {
+            try {
+                int hours = Integer.parseInt(zone.substring(1, 3));
+                int minutes = Integer.parseInt(zone.substring(3, 5));
+                offsetMs = (hours * 60L + minutes) * 60_000L * (zone.charAt(0) == '-' ? -1 : 1);
+            } catch (NumberFormatException e) {
+                return Long.MIN_VALUE;
+            }
+        }
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setLenient(false);
+        calendar.clear();
+        try {
+            calendar.set(Integer.parseInt(value.substring(0, 4)), Integer.parseInt(value.substring(4, 6)) - 1,
+                    Integer.parseInt(value.substring(6, 8)), Integer.parseInt(value.substring(8, 10)),
+                    Integer.parseInt(value.substring(10, 12)), second);
+            return calendar.getTimeInMillis() - offsetMs;
+        } catch (IllegalArgumentException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static String attribute(String tag, String name) {
+        int index = tag.indexOf(" " + name + "=");
+        if (index == -1) {
+            return null;
+        }
+        int quoteIndex = index + name.length() + 2;
+        if (quoteIndex >= tag.length()) {
+            return null;
+        }
+        char quote = tag.charAt(quoteIndex);
+        int end = tag.indexOf(quote, quoteIndex + 1);
+        return end != -1 ? decodeEntities(tag.substring(quoteIndex + 1, end)) : null;
+    }
+
+    private static String decodeEntities(String value) {
+        if (value.indexOf('&') == -1) {
+            return value;
+        }
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&");
+    }
+}
@@ -0,0 +1,455 @@
+package com.kenjigames.ivids.core;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * XtreamCatalog is the local store of an Xtream Codes live stream catalog, used by the Android {@code XtreamClient}.
+ * {@link #build} streams {@code get_live_streams} through a {@link JsonPullParser} and writes one compact JSON
+ * record per stream to a data file, indexing the byte range of each record by category; only one stream is held in
+ * memory at a time. Category pages are then read with a seek per record instead of parsing the whole catalog.
+ * <p>
+ * The index is persisted next to the data file ({@link #writeIndex(OutputStream)}). Each catalog generation names
+ * its own data file, so a refresh never rewrites a file an older catalog still points into.
+ */
+public final class XtreamCatalog {
+
+    private static final int FORMAT_VERSION = 2;
+    /** The stream fields the Live TV UI uses; all others are dropped from the records. */
+    private static final String[] KEPT_FIELDS = {"stream_id", "name", "stream_icon", "epg_channel_id", "category_id"};
+
+    /**
+     * A category with the byte ranges of its stream records inside the data file.
+     */
+    public static final class Category {
+        public final String id;
+        public final String name;
+        private int mCount = 0;
+        private long[] mOffsets = new long[16];
+        private int[] mLengths = new int[16];
+        private final CRC32 mCrc = new CRC32();
+        private long mChecksum;
+
+        /**
+         * @param id The category id.
+         * @param name The display name.
+         */
+        public Category(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        /**
+         * @return The number of streams in the category.
+         */
+        public int size() {
+            return mCount;
+        }
+
+        /**
+         * @return A checksum of the category's records, to detect changed categories between catalogs.
+         */
+        public long getChecksum() {
+            return mChecksum;
+        }
+
+        private void add(long offset, byte[] record) {
+            if (mCount == mOffsets.length) {
+                mOffsets = Arrays.copyOf(mOffsets, mCount * 2);
+                mLengths = Arrays.copyOf(mLengths, mCount * 2);
+            }
+            mOffsets[mCount] = offset;
+            mLengths[mCount] = record.length;
+            mCount++;
+            mCrc.update(record);
+        }
+    }
+
+    private final File mDataFile;
+    private final long mBuiltAt;
+    private final Map<String, Category> mCategories;
+    private final int mStreamCount;
+
+    private XtreamCatalog(File dataFile, long builtAt, Map<String, Category> categories) {
+        this.mDataFile = dataFile;
+        this.mBuiltAt = builtAt;
+        this.mCategories = categories;
+        int streams = 0;
+        for (Category category : categories.values()) {
+            streams += category.mCount;
+        }
+        this.mStreamCount = streams;
+    }
+
+    /**
+     * Parses {@code get_live_categories}, which is small.
+     *
+     * @param json The categories JSON array.
+     * @return The categories in server order, keyed by id, without streams.
+     * @throws IOException If the source cannot be read or is not a JSON array of objects.
+     */
+    public static Map<String, Category> parseCategories(Reader json) throws IOException {
+        JsonPullParser parser = new JsonPullParser(json);
+        Map<String, Category> categories = new LinkedHashMap<>();
+        expect(parser, JsonPullParser.Token.BEGIN_ARRAY);
+        while (parser.peek() != JsonPullParser.Token.END_ARRAY) {
+            String id = "";
+            String name = null;
+            expect(parser, JsonPullParser.Token.BEGIN_OBJECT);
+            while (parser.next() == JsonPullParser.Token.NAME) {
+                String field = parser.decodedText();
+                if (field.equals("category_id") && parser.peek() == JsonPullParser.Token.VALUE) {
+                    parser.next();
+                    id = parser.decodedText();
+                } else if (field.equals("category_name") && parser.peek() == JsonPullParser.Token.VALUE) {
+                    parser.next();
+                    name = parser.decodedText();
+                } else {
+                    parser.skipValue();
+                }
+            }
+            categories.put(id, new Category(id, name != null && !name.equals("null") ? name : id));
+        }
+        return categories;
+    }
+
+    /**
+     * Streams {@code get_live_streams} into a new data file. Streams of categories missing from {@code categories}
+     * get a category named after their id.
+     *
+     * @param categories The categories from {@link #parseCategories(Reader)}; taken over by the catalog.
+     * @param streamsJson The streams JSON array.
+     * @param dataFile The data file to write; replaced if it exists.
+     * @param builtAt The build time to store with the catalog, in epoch milliseconds.
+     * @return The catalog.
+     * @throws IOException If the source cannot be read, is not a JSON array of objects, or the file cannot be written.
+     */
+    public static XtreamCatalog build(Map<String, Category> categories, Reader streamsJson, File dataFile, long builtAt)
+            throws IOException {
+        JsonPullParser parser = new JsonPullParser(streamsJson);
+        StringBuilder record = new StringBuilder(256);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(dataFile))) {
+            long offset = 0;
+            expect(parser, JsonPullParser.Token.BEGIN_ARRAY);
+            while (parser.peek() != JsonPullParser.Token.END_ARRAY) {
+                String categoryId = readStream(parser, record);
+                Category category = categories.get(categoryId);
+                if (category == null) {
+                    category = new Category(categoryId, categoryId.isEmpty() ? "Xtream IPTV" : categoryId);
+                    categories.put(categoryId, category);
+                }
+                record.append(record.length() > 1 ? "," : "").append("\"category_name\":");
+                appendQuoted(record, category.name);
+                record.append('}');
+                byte[] bytes = record.toString().getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                out.write('\n');
+                category.add(offset, bytes);
+                offset += bytes.length + 1;
+            }
+        }
+        for (Category category : categories.values()) {
+            category.mChecksum = category.mCrc.getValue();
+        }
+        return new XtreamCatalog(dataFile, builtAt, categories);
+    }
+
+    /**
+     * Reads an index written by {@link #writeIndex(OutputStream)}.
+     *
+     * @param in The persisted index; buffered by the caller.
+     * @param dir The directory holding the catalog's data file.
+     * @return The catalog.
+     * @throws IOException If the index cannot be read, was written by another format version, or its data file is gone.
+     */
+    public static XtreamCatalog readIndex(InputStream in, File dir) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != FORMAT_VERSION) {
+            throw new IOException("Not a catalog index of version " + FORMAT_VERSION);
+        }
+        File dataFile = new File(dir, data.readUTF());
+        long builtAt = data.readLong();
+        int categoryCount = data.readInt();
+        Map<String, Category> categories = new LinkedHashMap<>();
+        for (int c = 0; c < categoryCount; c++) {
+            Category category = new Category(data.readUTF(), data.readUTF());
+            category.mChecksum = data.readLong();
+            int count = data.readInt();
+            category.mOffsets = new long[Math.max(1, count)];
+            category.mLengths = new int[Math.max(1, count)];
+            for (int i = 0; i < count; i++) {
+                category.mOffsets[i] = data.readLong();
+                category.mLengths[i] = data.readInt();
+            }
+            category.mCount = count;
+            categories.put(category.id, category);
+        }
+        if (!dataFile.isFile()) {
+            throw new IOException("Missing catalog data file " + dataFile);
+        }
+        return new XtreamCatalog(dataFile, builtAt, categories);
+    }
+
+    /**
+     * Persists the category index. The data file is referenced by name, relative to its directory.
+     *
+     * @param out The destination; buffered by the caller.
+     * @throws IOException If writing fails.
+     */
+    public void writeIndex(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(FORMAT_VERSION);
+        data.writeUTF(mDataFile.getName());
+        data.writeLong(mBuiltAt);
+        data.writeInt(mCategories.size());
+        for (Category category : mCategories.values()) {
+            data.writeUTF(category.id);
+            data.writeUTF(category.name);
+            data.writeLong(category.mChecksum);
+            data.writeInt(category.mCount);
+            for (int i = 0; i < category.mCount; i++) {
+                data.writeLong(category.mOffsets[i]);
+                data.writeInt(category.mLengths[i]);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * @return The data file holding the stream records.
+     */
+    public File getDataFile() {
+        return mDataFile;
+    }
+
+    /**
+     * @return When the catalog was built, in epoch milliseconds.
+     */
+    public long getBuiltAt() {
+        return mBuiltAt;
+    }
+
+    /**
+     * @return The number of streams in all categories.
+     */
+    public int getStreamCount() {
+        return mStreamCount;
+    }
+
+    /**
+     * @return The categories in server order, keyed by id.
+     */
+    public Map<String, Category> getCategories() {
+        return Collections.unmodifiableMap(mCategories);
+    }
+
+    /**
+     * Reads one page of stream records.
+     *
+     * @param categoryId The category id, or an empty string for all streams in category order.
+     * @param offset The index of the first stream to return.
+     * @param limit The maximum number of streams to return.
+     * @return A JSON array of stream records; empty for an unknown category or a page past the end.
+     * @throws IOException If the data file cannot be read.
+     */
+    public String readPage(String categoryId, int offset, int limit) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        if (limit > 0 && offset >= 0) {
+            if (categoryId == null || categoryId.isEmpty()) {
+                int skipped = 0;
+                for (Category category : mCategories.values()) {
+                    if (skipped + category.mCount <= offset) {
+                        skipped += category.mCount;
+                        continue;
+                    }
+                    for (int i = Math.max(0, offset - skipped); i < category.mCount && ranges.size() < limit; i++) {
+                        ranges.add(new long[]{category.mOffsets[i], category.mLengths[i]});
+                    }
+                    skipped += category.mCount;
+                    if (ranges.size() >= limit) {
+                        break;
+                    }
+                }
+            } else {
+                Category category = mCategories.get(categoryId);
+                int end = category == null ? 0 : Math.min(category.mCount, offset + limit);
+                for (int i = offset; i < end; i++) {
+                    ranges.add(new long[]{category.mOffsets[i], category.mLengths[i]});
+                }
+            }
+        }
+        if (ranges.isEmpty()) {
+            return "[]";
+        }
+        StringBuilder page = new StringBuilder("[");
+        try (RandomAccessFile file = new RandomAccessFile(mDataFile, "r")) {
+            for (int i = 0; i < ranges.size(); i++) {
+                byte[] record = new byte[(int) ranges.get(i)[1]];
+                file.seek(ranges.get(i)[0]);
+                file.readFully(record);
+                if (i > 0) {
+                    page.append(',');
+                }
+                page.append(new String(record, StandardCharsets.UTF_8));
+            }
+        }
+        return page.append(']').toString();
+    }
+
+    /**
+     * Finds the streams whose name contains {@code query}, ignoring case, with one sequential pass over the data file,
+     * so the UI can search channels it has not paged in yet.
+     *
+     * @param query The text to look for.
+     * @param limit The maximum number of streams to return.
+     * @return A JSON array of stream records in server order; empty if nothing matches.
+     * @throws IOException If the data file cannot be read.
+     */
+    public String search(String query, int limit) throws IOException {
+        if (limit <= 0 || query == null || query.isEmpty()) {
+            return "[]";
+        }
+        String needle = query.toLowerCase(Locale.ROOT);
+        StringBuilder page = new StringBuilder("[");
+        int found = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(mDataFile), StandardCharsets.UTF_8))) {
+            String line;
+            while (found < limit && (line = reader.readLine()) != null) {
+                String name = recordName(line);
+                if (name != null && name.toLowerCase(Locale.ROOT).contains(needle)) {
+                    if (found++ > 0) {
+                        page.append(',');
+                    }
+                    page.append(line);
+                }
+            }
+        }
+        return page.append(']').toString();
+    }
+
+    /**
+     * Compares this catalog with an older one category by category, using the record checksums.
+     *
+     * @param previous The older catalog.
+     * @return The ids of categories that were added, removed or whose streams changed.
+     */
+    public List<String> changedSince(XtreamCatalog previous) {
+        List<String> changed = new ArrayList<>();
+        for (Category category : mCategories.values()) {
+            Category old = previous.mCategories.get(category.id);
+            if (old == null || old.mChecksum != category.mChecksum || old.mCount != category.mCount) {
+                changed.add(category.id);
+            }
+        }
+        for (String id : previous.mCategories.keySet()) {
+            if (!mCategories.containsKey(id)) {
+                changed.add(id);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Reads one stream object into {@code record} as an unterminated JSON object of the kept fields. Scalars are
+     * stored as strings, so numeric ids come out the same as string ids.
+     *
+     * @return The decoded category id, or an empty string.
+     */
+    private static String readStream(JsonPullParser parser, StringBuilder record) throws IOException {
+        record.setLength(0);
+        record.append('{');
+        String categoryId = "";
+        expect(parser, JsonPullParser.Token.BEGIN_OBJECT);
+        while (parser.next() == JsonPullParser.Token.NAME) {
+            String field = parser.decodedText();
+            if (parser.peek() != JsonPullParser.Token.VALUE || !isKept(field)) {
+                parser.skipValue();
+                continue;
+            }
+            parser.next();
+            String raw = parser.text();
+            if (raw.equals("null") || raw.equals("true") || raw.equals("false")) {
+                continue;
+            }
+            record.append(record.length() > 1 ? "," : "").append('"').append(field).append("\":");
+            if (raw.charAt(0) == '"') {
+                record.append(raw);
+            } else {
+                record.append('"').append(raw).append('"');
+            }
+            if (field.equals("category_id")) {
+                categoryId = parser.decodedText();
+            }
+        }
+        return categoryId;
+    }
+
+    /**
+     * @return The decoded {@code name} of a stored record, or null if it has none.
+     */
+    private static String recordName(String record) throws IOException {
+        JsonPullParser parser = new JsonPullParser(new StringReader(record));
+        expect(parser, JsonPullParser.Token.BEGIN_OBJECT);
+        while (parser.next() == JsonPullParser.Token.NAME) {
+            if (parser.decodedText().equals("name") && parser.peek() == JsonPullParser.Token.VALUE) {
+                parser.next();
+                return parser.decodedText();
+            }
+            parser.skipValue();
+        }
+        return null;
+    }
+
+    private static boolean isKept(String field) {
+        for (String kept : KEPT_FIELDS) {
+            if (kept.equals(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void appendQuoted(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private static void expect(JsonPullParser parser, JsonPullParser.Token expected) throws IOException {
+        JsonPullParser.Token token = parser.next();
+        if (token != expected) {
+            throw new IOException("Expected " + expected + " but was " + token);
+        }
+    }
+}
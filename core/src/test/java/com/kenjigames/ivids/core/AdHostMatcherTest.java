@@ -0,0 +1,78 @@
+package com.kenjigames.ivids.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+
+/**
+ * Checks the domain and subdomain matching of {@link AdHostMatcher}.
+ */
+public class AdHostMatcherTest {
+
+    private final AdHostMatcher mMatcher = new AdHostMatcher(Arrays.asList("doubleclick.net", "ads.example.com"));
+
+    @Test
+    public void matchesListedDomainsAndTheirSubdomains() {
+        assertTrue(mMatcher.isAd("doubleclick.net"));
+        assertTrue(mMatcher.isAd("ad.doubleclick.net"));
+        assertTrue(mMatcher.isAd("googleads.g.doubleclick.net"));
+        assertTrue(mMatcher.isAd("ads.example.com"));
+        assertTrue(mMatcher.isAd("cdn.ads.example.com"));
+    }
+
+    @Test
+    public void doesNotMatchLookAlikes() {
+        assertFalse(mMatcher.isAd("notdoubleclick.net"));
+        assertFalse(mMatcher.isAd("doubleclick.net.evil.example"));
+        assertFalse(mMatcher.isAd("doubleclick.network"));
+        assertFalse(mMatcher.isAd("example.com"));
+        assertFalse(mMatcher.isAd("myads.example.com"));
+        assertFalse(mMatcher.isAd("net"));
+    }
+
+    @Test
+    public void ignoresCaseRegardlessOfTheDefaultLocale() {
+        Locale previous = Locale.getDefault();
+        // Turkish lower-cases "I" to a dotless "ı", which would miss "doubleclick"
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertTrue(mMatcher.isAd("DOUBLECLICK.NET"));
+            assertTrue(mMatcher.isAd("Ad.DoubleClick.Net"));
+            assertTrue(mMatcher.isAd("CDN.ADS.EXAMPLE.COM"));
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    public void matchesFullyQualifiedHosts() {
+        assertTrue(mMatcher.isAd("doubleclick.net."));
+        assertTrue(mMatcher.isAd("ad.doubleclick.net."));
+        assertFalse(mMatcher.isAd("notdoubleclick.net."));
+    }
+
+    @Test
+    public void rejectsMissingAndDegenerateHosts() {
+        assertFalse(mMatcher.isAd(null));
+        assertFalse(mMatcher.isAd(""));
+        assertFalse(mMatcher.isAd("."));
+        assertFalse(new AdHostMatcher(Collections.<String>emptyList()).isAd("doubleclick.net"));
+    }
+
+    @Test
+    public void defaultListBlocksKnownAdHosts() {
+        AdHostMatcher matcher = AdHostMatcher.createDefault();
+
+        assertEquals(AdHostMatcher.DEFAULT_HOSTS.size(), matcher.size());
+        assertTrue(matcher.isAd("pagead2.googlesyndication.com"));
+        assertTrue(matcher.isAd("stats.g.doubleclick.net"));
+        assertFalse(matcher.isAd("api.themoviedb.org"));
+        assertFalse(matcher.isAd("vidlink.pro"));
+    }
+}
@@ -0,0 +1,114 @@
+package com.kenjigames.ivids.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the compiled layout and the lookups of {@link ChannelDatabase}.
+ */
+public class ChannelDatabaseTest {
+
+    @Test
+    public void findsEveryCompiledUrl() throws IOException {
+        List<String> urls = Arrays.asList("http://b.example/live.m3u8", "https://a.example/1", "c.example:8000/stream");
+        ChannelDatabase db = open(urls);
+
+        assertEquals(3, db.size());
+        for (String url : urls) {
+            assertTrue(url, db.contains(ChannelDatabase.normalize(url)));
+        }
+        assertFalse(db.contains("b.example/live"));
+        assertFalse(db.contains("b.example/live.m3u8x"));
+        assertFalse(db.contains(null));
+    }
+
+    @Test
+    public void normalizesAndDeduplicatesLikeTheLiveTvPage() throws IOException {
+        ChannelDatabase db = open(Arrays.asList(" HTTP://Example.COM/Live/// ", "https://example.com/live", "example.com/live",
+                "", "   ", null));
+
+        assertEquals(1, db.size());
+        assertTrue(db.contains("example.com/live"));
+        assertFalse(db.contains("http://example.com/live"));
+        assertEquals("", ChannelDatabase.normalize(null));
+        assertEquals("ftp://host/a", ChannelDatabase.normalize("FTP://Host/A/"));
+    }
+
+    @Test
+    public void findsKeysAcrossBlockBoundaries() throws IOException {
+        // 100 keys span four blocks of 32; zero padding keeps the sorted order equal to the numeric one
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            urls.add(String.format("http://host.example/channel/%03d", i));
+        }
+        Collections.shuffle(urls, new Random(7));
+        ChannelDatabase db = open(urls);
+
+        assertEquals(100, db.size());
+        for (int i = 0; i < 100; i++) {
+            String key = String.format("host.example/channel/%03d", i);
+            assertTrue(key, db.contains(key));
+            assertFalse(key + "0", db.contains(key + "0"));
+        }
+    }
+
+    @Test
+    public void missesBeforeTheFirstAndAfterTheLastKey() throws IOException {
+        ChannelDatabase db = open(Arrays.asList("m.example/1", "m.example/2"));
+
+        assertFalse(db.contains("a.example/1"));
+        assertFalse(db.contains("z.example/1"));
+        assertFalse(db.contains(""));
+    }
+
+    @Test
+    public void sortsByUnsignedBytes() throws IOException {
+        // "é" encodes to bytes above 0x7F, which sort after ASCII only when compared unsigned
+        ChannelDatabase db = open(Arrays.asList("host.example/é", "host.example/z", "host.example/a"));
+
+        assertTrue(db.contains("host.example/é"));
+        assertTrue(db.contains("host.example/z"));
+        assertTrue(db.contains("host.example/a"));
+        assertFalse(db.contains("host.example/e"));
+    }
+
+    @Test
+    public void emptyDatabaseContainsNothing() throws IOException {
+        ChannelDatabase db = open(Collections.<String>emptyList());
+
+        assertEquals(0, db.size());
+        assertFalse(db.contains("example.com/live"));
+    }
+
+    @Test
+    public void readsFromADirectBuffer() throws IOException {
+        byte[] compiled = ChannelDatabase.compile(Arrays.asList("a.example/1", "b.example/2"));
+        ByteBuffer direct = ByteBuffer.allocateDirect(compiled.length);
+        direct.put(compiled).flip();
+        ChannelDatabase db = new ChannelDatabase(direct);
+
+        assertTrue(db.contains("b.example/2"));
+        assertFalse(db.contains("b.example/3"));
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        new ChannelDatabase(ByteBuffer.wrap("[\"http://example.com/live\"]".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static ChannelDatabase open(List<String> urls) throws IOException {
+        return new ChannelDatabase(ByteBuffer.wrap(ChannelDatabase.compile(urls)));
+    }
+}
@@ -0,0 +1,125 @@
+package com.kenjigames.ivids.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Checks the rule parsing and the per-host stylesheets of {@link CosmeticFilter}.
+ */
+public class CosmeticFilterTest {
+
+    @Test
+    public void combinesGenericAndDomainRulesOfTheHostAndItsParents() {
+        CosmeticFilter filter = filter("##.generic", "example.com##.site", "www.example.com##.www", "other.net##.other");
+
+        assertEquals(".generic,.www,.site{display:none!important}", filter.stylesheetFor("WWW.Example.com"));
+        assertEquals(".generic,.site{display:none!important}", filter.stylesheetFor("cdn.example.com"));
+        assertEquals(".generic{display:none!important}", filter.stylesheetFor("notexample.com"));
+        assertEquals(new HashSet<>(Arrays.asList("example.com", "www.example.com", "other.net")), filter.getDomains());
+    }
+
+    @Test
+    public void deduplicatesSelectors() {
+        CosmeticFilter filter = filter("##.ad", "example.com##.ad", "example.com,example.org##.ad");
+
+        assertEquals(".ad{display:none!important}", filter.stylesheetFor("example.com"));
+    }
+
+    @Test
+    public void exclusionOnlyAppliesToItsOwnRule() {
+        CosmeticFilter filter = filter("example.com,~sub.example.com##.banner", "sub.example.com##.banner",
+                "example.com,~sub.example.com##.popup");
+
+        assertEquals(".banner,.popup{display:none!important}", filter.stylesheetFor("example.com"));
+        assertEquals(".banner{display:none!important}", filter.stylesheetFor("sub.example.com"));
+        assertEquals(".banner{display:none!important}", filter.stylesheetFor("deep.sub.example.com"));
+    }
+
+    @Test
+    public void genericExclusionDoesNotRemoveADomainRule() {
+        CosmeticFilter filter = filter("~example.com##.ad", "example.com##.ad", "##.overlay");
+
+        assertEquals(".overlay,.ad{display:none!important}", filter.stylesheetFor("example.com"));
+        assertEquals(".ad,.overlay{display:none!important}", filter.stylesheetFor("other.net"));
+    }
+
+    @Test
+    public void genericExclusionHidesEverywhereElse() {
+        CosmeticFilter filter = filter("~example.com##.ad", "example.com##.site");
+
+        assertEquals(".site{display:none!important}", filter.stylesheetFor("www.example.com"));
+        assertEquals(".ad{display:none!important}", filter.stylesheetFor("example.org"));
+    }
+
+    @Test
+    public void domainExceptionRemovesTheSelectorWhicheverRuleAddedIt() {
+        CosmeticFilter filter = filter("##.ad", "example.com##.site", "example.com#@#.ad", "sub.example.com#@#.site");
+
+        assertEquals(".site{display:none!important}", filter.stylesheetFor("example.com"));
+        assertEquals("", filter.stylesheetFor("sub.example.com"));
+        assertEquals(".ad{display:none!important}", filter.stylesheetFor("other.net"));
+    }
+
+    @Test
+    public void genericExceptionDoesNotDependOnRuleOrder() {
+        CosmeticFilter before = filter("#@#.ad", "##.ad", "example.com##.ad", "example.com##.site");
+        CosmeticFilter after = filter("##.ad", "example.com##.ad", "example.com##.site", "#@#.ad");
+
+        assertEquals(".site{display:none!important}", before.stylesheetFor("example.com"));
+        assertEquals(".site{display:none!important}", after.stylesheetFor("example.com"));
+    }
+
+    @Test
+    public void exceptionsHonorTheirOwnExclusions() {
+        CosmeticFilter filter = filter("##.ad", "example.com##.site", "~example.com#@#.ad");
+
+        assertEquals(".ad,.site{display:none!important}", filter.stylesheetFor("example.com"));
+        assertEquals("", filter.stylesheetFor("example.org"));
+    }
+
+    @Test
+    public void skipsCommentsProceduralAndScriptletRules() {
+        CosmeticFilter filter = filter("! comment", "[Adblock Plus 2.0]", "", null, "example.com#?#div:has-text(Ad)",
+                "example.com##+js(nowebrtc)", "example.com#$#body{overflow:auto}", "example.com##div:-abp-has(.ad)",
+                "example.com##div{color:red}", "example.com##", "no separator", "example.com##.ok");
+
+        assertEquals(1, filter.getRuleCount());
+        assertEquals(7, filter.getSkippedCount());
+        assertEquals(".ok{display:none!important}", filter.stylesheetFor("example.com"));
+    }
+
+    @Test
+    public void emptyHostGetsNothing() {
+        CosmeticFilter filter = filter("##.ad");
+
+        assertEquals("", filter.stylesheetFor(""));
+        assertEquals("", filter.stylesheetFor(null));
+        assertEquals("", filter(Collections.<String>emptyList()).stylesheetFor("example.com"));
+    }
+
+    @Test
+    public void defaultRulesCoverTheEmbedProviders() {
+        CosmeticFilter filter = CosmeticFilter.createDefault();
+
+        assertEquals(0, filter.getSkippedCount());
+        for (String host : new String[] {"vidlink.pro", "vidsrc.to", "vidsrc.cc", "videasy.net", "embed.su"}) {
+            assertTrue(host, filter.getDomains().contains(host));
+            assertTrue(host, filter.stylesheetFor("player." + host).endsWith("{display:none!important}"));
+        }
+    }
+
+    private static CosmeticFilter filter(String... rules) {
+        return filter(Arrays.asList(rules));
+    }
+
+    private static CosmeticFilter filter(List<String> rules) {
+        return new CosmeticFilter(rules);
+    }
+}
@@ -0,0 +1,128 @@
+package com.kenjigames.ivids.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Checks that {@link EpgGuideIndex} resolves guides like {@code EpgManager.registerGuide} and
+ * {@code EpgManager.resolveGuide}, and survives a write/read round trip.
+ */
+public class EpgGuideIndexTest {
+
+    private static final String GUIDES = "["
+            + "{\"channel\":\"BBCOne.uk\",\"feed\":\"HD\",\"site\":\"sky.com\",\"lang\":\"en\"},"
+            + "{\"channel\":\"BBCOne.uk\",\"feed\":\"SD\",\"lang\":\"en\"},"
+            + "{\"channel\":\"een.be\",\"feed\":null,\"lang\":\"nld\"},"
+            + "{\"channel\":\"CanalSur.es\",\"lang\":\"spa\"},"
+            + "{\"channel\":\"CNN.us\",\"lang\":\"eng\"},"
+            + "{\"channel\":\"Arte.fr\",\"lang\":\"fra\",\"extra\":{\"nested\":[1,2]}},"
+            + "{\"channel\":\"Unknown.xx\",\"lang\":\"zzz\"},"
+            + "{\"channel\":null,\"lang\":\"eng\"},"
+            + "{\"site\":\"no-channel.example\"}"
+            + "]";
+
+    private static EpgGuideIndex build(String json) throws IOException {
+        return EpgGuideIndex.build(new StringReader(json));
+    }
+
+    @Test
+    public void registersChannelAndFeedIdsWithTheFirstEntryWinning() throws IOException {
+        EpgGuideIndex index = build(GUIDES);
+        // BBCOne.uk, BBCOne.uk@HD, BBCOne.uk@SD and one id per other channel
+        assertEquals(8, index.size());
+        EpgGuideIndex.Guide hd = index.resolve("BBCOne.uk@HD");
+        assertEquals("bbcone.uk", hd.channelId);
+        assertEquals("HD", hd.feed);
+        EpgGuideIndex.Guide sd = index.resolve("  bbcone.UK@sd ");
+        assertEquals("SD", sd.feed);
+        // The plain channel id belongs to the first entry
+        assertEquals("HD", index.resolve("BBCOne.uk").feed);
+    }
+
+    @Test
+    public void fallsBackToTheChannelIdForUnknownFeeds() throws IOException {
+        EpgGuideIndex.Guide guide = build(GUIDES).resolve("BBCOne.uk@4K");
+        assertEquals("bbcone.uk", guide.channelId);
+        assertEquals("HD", guide.feed);
+        assertNull(build(GUIDES).resolve("Missing.uk@HD"));
+        assertNull(build(GUIDES).resolve("  "));
+        assertNull(build(GUIDES).resolve(null));
+    }
+
+    @Test
+    public void picksTheGuideUrlFromCountryAndLanguage() throws IOException {
+        EpgGuideIndex index = build(GUIDES);
+        assertEquals("https://raw.githubusercontent.com/acidjesuz/EPGTalk/master/UK_guide.xml.gz", index.resolve("BBCOne.uk").url);
+        assertEquals("https://raw.githubusercontent.com/acidjesuz/EPGTalk/master/US_guide.xml.gz", index.resolve("CNN.us").url);
+        assertEquals("https://raw.githubusercontent.com/acidjesuz/EPGTalk/master/Latino_guide.xml.gz", index.resolve("CanalSur.es").url);
+        assertEquals("https://raw.githubusercontent.com/globetvapp/epg/main/Belgium/belgium1.xml", index.resolve("een.be").url);
+        assertEquals("https://raw.githubusercontent.com/globetvapp/epg/main/France/france1.xml", index.resolve("Arte.fr").url);
+        assertEquals("https://raw.githubusercontent.com/acidjesuz/EPGTalk/master/guide.xml.gz", index.resolve("Unknown.xx").url);
+        assertNull(index.resolve("een.be").feed);
+        assertEquals(6, index.getUrlCount());
+    }
+
+    @Test
+    public void languageSelectsTheGuideWhenTheSuffixIsUnknown() {
+        assertEquals("https://raw.githubusercontent.com/globetvapp/epg/main/Netherlands/netherlands1.xml",
+                EpgGuideIndex.guideUrlFor("NPO1.tv", "nl"));
+        assertEquals("https://raw.githubusercontent.com/acidjesuz/EPGTalk/master/Latino_guide.xml.gz",
+                EpgGuideIndex.guideUrlFor("Globo.br", null));
+        assertEquals("https://raw.githubusercontent.com/acidjesuz/EPGTalk/master/US_guide.xml.gz",
+                EpgGuideIndex.guideUrlFor("CNN.us.int", "eng"));
+    }
+
+    @Test
+    public void roundTripsThroughTheBinaryFormat() throws IOException {
+        EpgGuideIndex index = build(GUIDES);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeTo(out);
+        EpgGuideIndex loaded = EpgGuideIndex.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(index.size(), loaded.size());
+        assertEquals(index.getUrlCount(), loaded.getUrlCount());
+        for (String id : new String[]{"BBCOne.uk", "BBCOne.uk@SD", "BBCOne.uk@4K", "een.be", "CNN.us", "Unknown.xx"}) {
+            assertEquals(id, index.resolve(id).url, loaded.resolve(id).url);
+            assertEquals(id, index.resolve(id).feed, loaded.resolve(id).feed);
+        }
+    }
+
+    @Test
+    public void rejectsForeignAndCorruptIndexes() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        build(GUIDES).writeTo(out);
+        byte[] data = out.toByteArray();
+        byte[] wrongVersion = data.clone();
+        wrongVersion[7]++;
+        byte[] truncated = Arrays.copyOf(data, data.length - 3);
+        for (byte[] bytes : new byte[][]{wrongVersion, truncated, "not an index".getBytes(StandardCharsets.UTF_8)}) {
+            try {
+                EpgGuideIndex.readFrom(new ByteArrayInputStream(bytes));
+                fail("Accepted a corrupt index");
+            } catch (IOException expected) {
+                // Callers rebuild the index from the guides list
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsAGuidesListThatIsNotAnArray() throws IOException {
+        build("{\"channel\":\"een.be\"}");
+    }
+
+    @Test
+    public void hashIsStableAcrossRuns() {
+        // Persisted indexes depend on this value never changing
+        assertEquals(0xcbf29ce484222325L, EpgGuideIndex.hash(""));
+        assertEquals(EpgGuideIndex.hash("een.be"), EpgGuideIndex.hash(EpgGuideIndex.normalize(" EEN.be ")));
+    }
+}
@@ -0,0 +1,78 @@
+package com.kenjigames.ivids.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks {@link HlsManifestRewriter} against the output of rewrite_m3u8 in run_pc.py.
+ */
+public class HlsManifestRewriterTest {
+
+    private static final String PREFIX = "https://hls.ivids.invalid/proxy?sid=t&url=";
+    private static final String BASE = "https://cdn.example.invalid/live/channel/index.m3u8";
+
+    private final HlsManifestRewriter mRewriter = new HlsManifestRewriter(BASE, PREFIX);
+
+    @Test
+    public void proxiesRelativeAndAbsoluteUris() {
+        assertEquals(PREFIX + "https%3A%2F%2Fcdn.example.invalid%2Flive%2Fchannel%2Fseg-1.ts", mRewriter.rewriteLine("seg-1.ts"));
+        assertEquals(PREFIX + "https%3A%2F%2Fcdn.example.invalid%2Flive%2Fhd%2Findex.m3u8", mRewriter.rewriteLine("../hd/index.m3u8"));
+        assertEquals(PREFIX + "https%3A%2F%2Fcdn.example.invalid%2Fseg.ts%3Ftoken%3Da%26b%3D1", mRewriter.rewriteLine("/seg.ts?token=a&b=1"));
+        assertEquals(PREFIX + "http%3A%2F%2Fother.example.invalid%2Fa.ts", mRewriter.rewriteLine("  http://other.example.invalid/a.ts  "));
+    }
+
+    @Test
+    public void rewritesUriAttributesAndKeepsOtherTags() {
+        assertEquals("#EXT-X-KEY:METHOD=AES-128,URI=\"" + PREFIX + "https%3A%2F%2Fcdn.example.invalid%2Flive%2Fchannel%2Fkey.bin\",IV=0x1",
+                mRewriter.rewriteLine("#EXT-X-KEY:METHOD=AES-128,URI=\"key.bin\",IV=0x1"));
+        assertEquals("#EXT-X-MEDIA:TYPE=AUDIO,URI=\"" + PREFIX + "https%3A%2F%2Fcdn.example.invalid%2Fa.m3u8\",NAME=\"en\"",
+                mRewriter.rewriteLine("#EXT-X-MEDIA:TYPE=AUDIO,URI=\"/a.m3u8\",NAME=\"en\""));
+        assertEquals("#EXTINF:6.000,", mRewriter.rewriteLine("#EXTINF:6.000,"));
+        assertEquals("#EXT-X-KEY:URI=\"unterminated", mRewriter.rewriteLine("#EXT-X-KEY:URI=\"unterminated"));
+        assertEquals("", mRewriter.rewriteLine("   "));
+    }
+
+    @Test
+    public void encodesSpacesAsPercentTwenty() {
+        assertEquals(PREFIX + "https%3A%2F%2Fcdn.example.invalid%2Flive%2Fchannel%2Fmy%20seg.ts", mRewriter.rewriteLine("my seg.ts"));
+    }
+
+    @Test
+    public void streamMatchesWholePlaylistRewrite() throws IOException {
+        String playlist = "#EXTM3U\r\n#EXT-X-TARGETDURATION:6\n\n#EXTINF:6.0,\nseg-1.ts\n#EXTINF:6.0,\nseg-2.ts\n";
+        StringWriter expected = new StringWriter();
+        mRewriter.rewrite(new StringReader(playlist), expected);
+        InputStream stream = mRewriter.rewritingStream(new ByteArrayInputStream(playlist.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            actual.write(buffer, 0, read);
+        }
+        String rewritten = actual.toString("UTF-8");
+        assertEquals(expected.toString().trim(), rewritten.trim());
+        assertTrue(rewritten.contains(PREFIX + "https%3A%2F%2Fcdn.example.invalid%2Flive%2Fchannel%2Fseg-2.ts"));
+        assertFalse(rewritten.contains("\r"));
+    }
+
+    @Test
+    public void detectsManifestsByPathOrContentType() {
+        assertTrue(HlsManifestRewriter.isManifest("/live/INDEX.M3U8", null));
+        assertTrue(HlsManifestRewriter.isManifest("/playlist", "application/vnd.apple.mpegURL; charset=utf-8"));
+        assertTrue(HlsManifestRewriter.isManifest("/list.m3u", "text/plain"));
+        assertFalse(HlsManifestRewriter.isManifest("/seg-1.ts", "video/mp2t"));
+        assertFalse(HlsManifestRewriter.isManifest(null, null));
+    }
+}
@@ -0,0 +1,81 @@
+package com.kenjigames.ivids.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Checks that {@link HlsStartPlanner} predicts the variant, map and start segment a player requests first.
+ */
+public class HlsStartPlannerTest {
+
+    private static final String BASE = "https://cdn.example.invalid/live/channel/index.m3u8";
+
+    private static final String MASTER = "#EXTM3U\n"
+            + "#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"a\",URI=\"audio.m3u8\"\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=2000000,RESOLUTION=1280x720\n"
+            + "720p/index.m3u8\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=800000\n"
+            + "360p/index.m3u8\n";
+
+    private static String live(int segments) {
+        StringBuilder playlist = new StringBuilder("#EXTM3U\n#EXT-X-TARGETDURATION:4\n#EXT-X-MEDIA-SEQUENCE:100\n");
+        for (int i = 0; i < segments; i++) {
+            playlist.append("#EXTINF:4.0,\r\nseg-").append(100 + i).append(".ts\r\n");
+        }
+        return playlist.toString();
+    }
+
+    @Test
+    public void detectsMasterPlaylists() {
+        assertTrue(HlsStartPlanner.isMaster(MASTER));
+        assertFalse(HlsStartPlanner.isMaster(live(3)));
+    }
+
+    @Test
+    public void picksTheFirstListedVariant() {
+        assertEquals("https://cdn.example.invalid/live/channel/720p/index.m3u8", HlsStartPlanner.firstVariantUrl(MASTER, BASE));
+        assertNull(HlsStartPlanner.firstVariantUrl("#EXTM3U\n#EXT-X-STREAM-INF:BANDWIDTH=1\n", BASE));
+    }
+
+    @Test
+    public void liveStartsLiveSyncSegmentsBeforeTheEnd() {
+        assertEquals(Collections.singletonList("https://cdn.example.invalid/live/channel/seg-103.ts"),
+                HlsStartPlanner.startSegmentUrls(live(6), BASE, 3));
+        assertEquals(Collections.singletonList("https://cdn.example.invalid/live/channel/seg-100.ts"),
+                HlsStartPlanner.startSegmentUrls(live(2), BASE, 3));
+    }
+
+    @Test
+    public void vodStartsAtTheFirstSegment() {
+        String vod = live(6) + "#EXT-X-ENDLIST\n";
+        assertEquals(Collections.singletonList("https://cdn.example.invalid/live/channel/seg-100.ts"),
+                HlsStartPlanner.startSegmentUrls(vod, BASE, 3));
+    }
+
+    @Test
+    public void includesTheInitializationMapFirst() {
+        String fmp4 = "#EXTM3U\n#EXT-X-MAP:URI=\"/init.mp4\",BYTERANGE=\"720@0\"\n#EXTINF:4.0,\npart1.m4s\n#EXTINF:4.0,\npart2.m4s\n";
+        assertEquals(Arrays.asList("https://cdn.example.invalid/init.mp4", "https://cdn.example.invalid/live/channel/part1.m4s"),
+                HlsStartPlanner.startSegmentUrls(fmp4, BASE, 3));
+    }
+
+    @Test
+    public void playlistWithoutSegmentsHasNothingToStart() {
+        assertTrue(HlsStartPlanner.startSegmentUrls("#EXTM3U\n#EXT-X-TARGETDURATION:4\n", BASE, 3).isEmpty());
+    }
+
+    @Test
+    public void readsTheTargetDurationWithADefault() {
+        assertEquals(4, HlsStartPlanner.targetDurationSeconds(live(1)));
+        assertEquals(6, HlsStartPlanner.targetDurationSeconds("#EXTM3U\n"));
+        assertEquals(6, HlsStartPlanner.targetDurationSeconds("#EXT-X-TARGETDURATION:0\n"));
+        assertEquals(6, HlsStartPlanner.targetDurationSeconds("#EXT-X-TARGETDURATION:x\n"));
+    }
+}
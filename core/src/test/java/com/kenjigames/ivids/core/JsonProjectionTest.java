@@ -0,0 +1,95 @@
+package com.kenjigames.ivids.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks {@link JsonProjection} and the spec matching of {@link TmdbProjectionSpecs} on small TMDB-shaped documents.
+ */
+public class JsonProjectionTest {
+
+    private static String project(List<String> fields, Map<String, Integer> limits, String json) throws IOException {
+        StringBuilder out = new StringBuilder();
+        JsonProjection.compile(fields, limits).project(new StringReader(json), out);
+        return out.toString();
+    }
+
+    @Test
+    public void keepsOnlyDeclaredFieldsInSourceOrder() throws IOException {
+        assertEquals("{\"id\":550,\"title\":\"Fight Club\"}", project(Arrays.asList("title", "id"), Collections.emptyMap(),
+                "{\"adult\":false,\"id\":550,\"budget\":63000000,\"title\":\"Fight Club\",\"popularity\":61.4}"));
+    }
+
+    @Test
+    public void projectsFieldsOfArrayElementsAndNestedObjects() throws IOException {
+        String json = "{\"genres\":[{\"id\":18,\"name\":\"Drama\",\"x\":1},{\"id\":53,\"name\":\"Thriller\"}],"
+                + "\"videos\":{\"results\":[{\"key\":\"abc\",\"site\":\"YouTube\",\"size\":1080}],\"page\":1}}";
+        assertEquals("{\"genres\":[{\"id\":18},{\"id\":53}],\"videos\":{\"results\":[{\"key\":\"abc\",\"site\":\"YouTube\"}]}}",
+                project(Arrays.asList("genres[].id", "videos.results[].key", "videos.results[].site"), Collections.emptyMap(), json));
+    }
+
+    @Test
+    public void limitsArrayLengths() throws IOException {
+        String json = "{\"credits\":{\"cast\":[{\"name\":\"A\"},{\"name\":\"B\"},{\"name\":\"C\"},{\"name\":\"D\"}]}}";
+        assertEquals("{\"credits\":{\"cast\":[{\"name\":\"A\"},{\"name\":\"B\"}]}}",
+                project(Collections.singletonList("credits.cast[].name"), Collections.singletonMap("credits.cast", 2), json));
+    }
+
+    @Test
+    public void keepsWholeValuesAndEscapesVerbatim() throws IOException {
+        String json = "{\"overview\":\"Line \\\"one\\\"\\n\\u00e9\",\"production\":{\"a\":[1,{\"b\":null}]},\"skip\":[{\"deep\":[1,2]}]}";
+        assertEquals("{\"overview\":\"Line \\\"one\\\"\\n\\u00e9\",\"production\":{\"a\":[1,{\"b\":null}]}}",
+                project(Arrays.asList("overview", "production"), Collections.emptyMap(), json));
+    }
+
+    @Test
+    public void keepsScalarsWhereAnObjectWasDeclared() throws IOException {
+        assertEquals("{\"videos\":null,\"genres\":[]}", project(Arrays.asList("videos.results[].key", "genres[].id"),
+                Collections.emptyMap(), "{\"videos\":null,\"genres\":[]}"));
+    }
+
+    @Test
+    public void rejectsMalformedDocuments() {
+        List<String> fields = Collections.singletonList("id");
+        for (String json : new String[]{"{\"id\":1} {}", "{\"id\":1", "{\"id\" 1}"}) {
+            try {
+                project(fields, Collections.emptyMap(), json);
+                fail("Accepted " + json);
+            } catch (IOException expected) {
+                // Malformed input is reported, never passed through half-projected
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLimitsOnUndeclaredFields() {
+        JsonProjection.compile(Collections.singletonList("id"), Collections.singletonMap("credits.cast", 12));
+    }
+
+    @Test
+    public void specsMatchPathAndDeclaredAppendedResponses() throws IOException {
+        TmdbProjectionSpecs specs = TmdbProjectionSpecs.parse(new StringReader("{\"version\":1,\"endpoints\":["
+                + "{\"id\":\"details\",\"path\":\"^/3/(movie|tv)/\\\\d+$\",\"append\":[\"videos\",\"credits\"],"
+                + "\"fields\":[\"id\",\"credits.cast[].name\"],\"limits\":{\"credits.cast\":12}},"
+                + "{\"id\":\"search\",\"path\":\"^/3/search/multi$\",\"fields\":[\"results[].id\"]}]}"));
+        assertEquals(2, specs.size());
+        assertEquals("details", specs.match("/3/movie/550", null).id);
+        assertEquals("details", specs.match("/3/tv/1399", "videos, credits").id);
+        assertNull(specs.match("/3/movie/550", "videos,images"));
+        assertNotNull(specs.match("/3/search/multi", ""));
+        assertNull(specs.match("/3/search/multi", "videos"));
+        assertNull(specs.match("/3/movie/550/similar", null));
+        assertNull(specs.match(null, null));
+    }
+}
@@ -0,0 +1,86 @@
+package com.kenjigames.ivids.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that {@link M3uParser} yields the fields and ids of logic/m3u-parser.js.
+ */
+public class M3uParserTest {
+
+    private static List<M3uParser.Channel> parse(String playlist) throws IOException {
+        return M3uParser.parse(new StringReader(playlist));
+    }
+
+    @Test
+    public void parsesAttributesNameAndUrl() throws IOException {
+        List<M3uParser.Channel> channels = parse("#EXTM3U\n"
+                + "#EXTINF:-1 tvg-id=\"Een.be\" tvg-logo=\"https://logos.example.invalid/een.png\" group-title=\"News\",Eén HD\n"
+                + "https://streams.example.invalid/live/1/index.m3u8\n");
+        assertEquals(1, channels.size());
+        M3uParser.Channel channel = channels.get(0);
+        assertEquals("Eén HD", channel.name);
+        assertEquals("Een.be", channel.tvgId);
+        assertEquals("https://logos.example.invalid/een.png", channel.logo);
+        assertEquals("News", channel.group);
+        assertEquals("https://streams.example.invalid/live/1/index.m3u8", channel.url);
+        assertEquals("live_lpmsjk", channel.id);
+    }
+
+    @Test
+    public void missingAttributesAreNull() throws IOException {
+        M3uParser.Channel channel = parse("#EXTINF:-1,Plain\nhttp://a.b/c\n").get(0);
+        assertNull(channel.tvgId);
+        assertNull(channel.logo);
+        assertNull(channel.group);
+        assertEquals("Plain", channel.name);
+    }
+
+    @Test
+    public void emptyNameFallsBackToUnknownChannel() throws IOException {
+        assertEquals("Unknown Channel", parse("#EXTINF:-1 tvg-id=\"x\",\nhttp://a.b/c\n").get(0).name);
+    }
+
+    @Test
+    public void skipsDirectivesBlankLinesAndUrlsWithoutExtinf() throws IOException {
+        List<M3uParser.Channel> channels = parse("#EXTM3U x-tvg-url=\"http://guide\"\n"
+                + "http://orphan.example.invalid/stream\n"
+                + "\n"
+                + "  #EXTINF:-1,First  \n"
+                + "#EXTVLCOPT:http-user-agent=Test\n"
+                + "  http://a.b/first  \n"
+                + "#EXTINF:-1,Second\r\n"
+                + "http://a.b/second\r\n");
+        assertEquals(2, channels.size());
+        assertEquals("First", channels.get(0).name);
+        assertEquals("http://a.b/first", channels.get(0).url);
+        assertEquals("Second", channels.get(1).name);
+        assertEquals("http://a.b/second", channels.get(1).url);
+    }
+
+    @Test
+    public void trailingExtinfWithoutUrlIsDropped() throws IOException {
+        assertEquals(1, parse("#EXTINF:-1,One\nhttp://a.b/1\n#EXTINF:-1,Two\n").size());
+    }
+
+    @Test
+    public void streamsChannelsInPlaylistOrder() throws IOException {
+        List<String> names = new ArrayList<>();
+        M3uParser.parse(new StringReader("#EXTINF:-1,A\nhttp://a\n#EXTINF:-1,B\nhttp://b\n"), channel -> names.add(channel.name));
+        assertEquals(List.of("A", "B"), names);
+    }
+
+    @Test
+    public void channelIdsMatchTheJavaScriptHash() {
+        assertEquals("live_0", M3uParser.createChannelId(""));
+        assertEquals("live_0", M3uParser.createChannelId(null));
+        assertEquals("live_ivxjhl", M3uParser.createChannelId("http://a.b/c"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.kenjigames.ivids.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.kenjigames.ivids.core.NavigationPolicy.Decision;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+
+/**
+ * Checks the allowlist, scheme and rate limit decisions of {@link NavigationPolicy}.
+ */
+public class NavigationPolicyTest {
+
+    private final NavigationPolicy mPolicy = new NavigationPolicy(Arrays.asList("vidlink.pro", "Player.Example.com"), 2, 1000);
+
+    @Test
+    public void allowsTheAppShellSchemes() {
+        assertEquals(Decision.ALLOW, mPolicy.decide("file", null, false, 0));
+        assertEquals(Decision.ALLOW, mPolicy.decide("about", null, false, 0));
+        assertEquals(Decision.ALLOW, mPolicy.decide("DATA", null, false, 0));
+    }
+
+    @Test
+    public void blocksSchemesThatLeaveTheWebView() {
+        assertEquals(Decision.BLOCK_SCHEME, mPolicy.decide("intent", null, true, 0));
+        assertEquals(Decision.BLOCK_SCHEME, mPolicy.decide("market", "details", true, 0));
+        assertEquals(Decision.BLOCK_SCHEME, mPolicy.decide(null, "vidlink.pro", true, 0));
+    }
+
+    @Test
+    public void allowsListedHostsAndTheirSubdomainsOnly() {
+        assertTrue(mPolicy.isAllowedHost("vidlink.pro"));
+        assertTrue(mPolicy.isAllowedHost("cdn.VIDLINK.pro"));
+        assertTrue(mPolicy.isAllowedHost("player.example.com"));
+        assertFalse(mPolicy.isAllowedHost("example.com"));
+        assertFalse(mPolicy.isAllowedHost("vidlink.pro.evil.example"));
+        assertFalse(mPolicy.isAllowedHost("notvidlink.pro"));
+        assertFalse(mPolicy.isAllowedHost(""));
+        assertFalse(mPolicy.isAllowedHost(null));
+        assertEquals(Decision.BLOCK_HOST, mPolicy.decide("https", "ads.example.net", true, 0));
+    }
+
+    @Test
+    public void rateLimitsNavigationsWithoutAGesture() {
+        assertEquals(Decision.ALLOW, mPolicy.decide("https", "vidlink.pro", false, 0));
+        assertEquals(Decision.ALLOW, mPolicy.decide("https", "vidlink.pro", false, 100));
+        assertEquals(Decision.RATE_LIMITED, mPolicy.decide("https", "vidlink.pro", false, 200));
+        // User gestures are never limited and do not count
+        assertEquals(Decision.ALLOW, mPolicy.decide("https", "vidlink.pro", true, 300));
+        // The first navigation leaves the window after 1000 ms
+        assertEquals(Decision.ALLOW, mPolicy.decide("https", "vidlink.pro", false, 1000));
+        assertEquals(Decision.RATE_LIMITED, mPolicy.decide("https", "vidlink.pro", false, 1050));
+    }
+
+    @Test
+    public void replacingTheHostsClearsCachedDecisions() {
+        assertTrue(mPolicy.isAllowedHost("vidlink.pro"));
+        mPolicy.setHosts(Collections.singletonList("vidsrc.to"));
+        assertFalse(mPolicy.isAllowedHost("vidlink.pro"));
+        assertTrue(mPolicy.isAllowedHost("vidsrc.to"));
+    }
+
+    @Test
+    public void defaultPolicyAddsExtraHostsToTheDefaults() {
+        NavigationPolicy policy = NavigationPolicy.createDefault(Collections.singletonList("my.server.example"));
+        assertTrue(policy.isAllowedHost("github.com"));
+        assertTrue(policy.isAllowedHost("objects.githubusercontent.com"));
+        assertTrue(policy.isAllowedHost("my.server.example"));
+    }
+
+    @Test
+    public void matchesHostsWithoutTheDefaultLocale() {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            NavigationPolicy policy = new NavigationPolicy(Collections.singletonList("LINK.example"), 2, 1000);
+            assertTrue(policy.isAllowedHost("link.example"));
+            assertTrue(policy.isAllowedHost("INTRO.LINK.EXAMPLE"));
+            assertEquals(Decision.ALLOW, policy.decide("HTTPS", "link.example", true, 0));
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+}
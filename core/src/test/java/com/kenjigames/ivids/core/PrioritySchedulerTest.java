@@ -0,0 +1,238 @@
+package com.kenjigames.ivids.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.kenjigames.ivids.core.PriorityScheduler.Priority;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Checks the ordering, concurrency limits, cancellation and pause/resume behaviour of {@link PriorityScheduler}.
+ * Every wait has a timeout, so a scheduling bug fails the test instead of hanging the build.
+ */
+public class PrioritySchedulerTest {
+
+    private static final long TIMEOUT_S = 5;
+
+    private PriorityScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mScheduler = new PriorityScheduler(1, 1, 1);
+    }
+
+    @After
+    public void tearDown() {
+        mScheduler.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) throws InterruptedException {
+        assertTrue("timed out", latch.await(TIMEOUT_S, TimeUnit.SECONDS));
+    }
+
+    /** Polls until the scheduler reaches a state set by a worker thread. */
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_S);
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void runsQueuedJobsOfAClassInSubmissionOrder() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        mScheduler.submit("blocker", Priority.USER_VISIBLE, task -> await(release));
+        for (String name : new String[]{"a", "b", "c"}) {
+            mScheduler.submit(name, Priority.USER_VISIBLE, task -> {
+                order.add(name);
+                done.countDown();
+            });
+        }
+        assertEquals(3, mScheduler.getQueued(Priority.USER_VISIBLE));
+        release.countDown();
+        await(done);
+        assertEquals(List.of("a", "b", "c"), order);
+    }
+
+    @Test
+    public void userVisibleWorkDoesNotWaitBehindMaintenance() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch userVisibleRan = new CountDownLatch(1);
+        mScheduler.submit("download", Priority.MAINTENANCE, task -> await(release));
+        mScheduler.submit("queued", Priority.MAINTENANCE, task -> { });
+        mScheduler.submit("check", Priority.USER_VISIBLE, task -> userVisibleRan.countDown());
+        await(userVisibleRan);
+        assertEquals(1, mScheduler.getRunning(Priority.MAINTENANCE));
+        assertEquals(1, mScheduler.getQueued(Priority.MAINTENANCE));
+        release.countDown();
+    }
+
+    @Test
+    public void respectsTheConcurrencyLimitOfAClass() throws InterruptedException {
+        PriorityScheduler scheduler = new PriorityScheduler(2, 1, 1);
+        try {
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger peak = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(6);
+            for (int i = 0; i < 6; i++) {
+                scheduler.submit("job" + i, Priority.USER_VISIBLE, task -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(20);
+                    running.decrementAndGet();
+                    done.countDown();
+                });
+            }
+            await(done);
+            assertEquals(2, peak.get());
+            awaitTrue(() -> scheduler.getCompleted(Priority.USER_VISIBLE) == 6);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelledQueuedTaskNeverStarts() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch after = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean();
+        mScheduler.submit("blocker", Priority.PREFETCH, task -> await(release));
+        PriorityScheduler.Task cancelled = mScheduler.submit("cancelled", Priority.PREFETCH, task -> ran.set(true));
+        mScheduler.submit("after", Priority.PREFETCH, task -> after.countDown());
+        cancelled.cancel();
+        assertTrue(cancelled.isCancelled());
+        assertEquals(1, mScheduler.getQueued(Priority.PREFETCH));
+        release.countDown();
+        await(after);
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void cancelledRunningTaskStopsAtItsCheckpoint() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger units = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        mScheduler.setErrorListener((name, error) -> failure.set(error));
+        PriorityScheduler.Task task = mScheduler.submit("long", Priority.MAINTENANCE, t -> {
+            started.countDown();
+            while (true) {
+                t.checkpoint();
+                units.incrementAndGet();
+                Thread.sleep(2);
+            }
+        });
+        await(started);
+        task.cancel();
+        awaitTrue(() -> mScheduler.getCompleted(Priority.MAINTENANCE) == 1);
+        assertEquals(0, mScheduler.getRunning(Priority.MAINTENANCE));
+        int stoppedAt = units.get();
+        Thread.sleep(20);
+        assertEquals(stoppedAt, units.get());
+        assertEquals(null, failure.get());
+    }
+
+    @Test
+    public void pausedClassHoldsBackQueuedJobsUntilResumed() throws InterruptedException {
+        CountDownLatch ran = new CountDownLatch(1);
+        mScheduler.setPaused(Priority.MAINTENANCE, true);
+        mScheduler.submit("held", Priority.MAINTENANCE, task -> ran.countDown());
+        assertFalse(ran.await(50, TimeUnit.MILLISECONDS));
+        assertEquals(1, mScheduler.getQueued(Priority.MAINTENANCE));
+        assertTrue(mScheduler.isPaused(Priority.MAINTENANCE));
+        mScheduler.setPaused(Priority.MAINTENANCE, false);
+        await(ran);
+    }
+
+    @Test
+    public void pausedClassParksRunningJobsAtTheirNextCheckpoint() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        CountDownLatch passedCheckpoint = new CountDownLatch(1);
+        mScheduler.submit("download", Priority.MAINTENANCE, task -> {
+            started.countDown();
+            await(proceed);
+            task.checkpoint();
+            passedCheckpoint.countDown();
+        });
+        await(started);
+        mScheduler.setPaused(Priority.MAINTENANCE, true);
+        proceed.countDown();
+        assertFalse(passedCheckpoint.await(50, TimeUnit.MILLISECONDS));
+        assertEquals(1, mScheduler.getRunning(Priority.MAINTENANCE));
+        mScheduler.setPaused(Priority.MAINTENANCE, false);
+        await(passedCheckpoint);
+    }
+
+    @Test
+    public void pausingOneClassLeavesTheOthersRunning() throws InterruptedException {
+        CountDownLatch ran = new CountDownLatch(2);
+        mScheduler.setPaused(Priority.MAINTENANCE, true);
+        mScheduler.submit("check", Priority.USER_VISIBLE, task -> ran.countDown());
+        mScheduler.submit("prefetch", Priority.PREFETCH, task -> ran.countDown());
+        await(ran);
+    }
+
+    @Test
+    public void cancelWakesATaskParkedByPause() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        PriorityScheduler.Task task = mScheduler.submit("parked", Priority.MAINTENANCE, t -> {
+            started.countDown();
+            mScheduler.setPaused(Priority.MAINTENANCE, true);
+            t.checkpoint();
+        });
+        await(started);
+        awaitTrue(() -> mScheduler.isPaused(Priority.MAINTENANCE));
+        task.cancel();
+        awaitTrue(() -> mScheduler.getCompleted(Priority.MAINTENANCE) == 1);
+    }
+
+    @Test
+    public void reportsJobFailuresToTheErrorListener() throws InterruptedException {
+        CountDownLatch reported = new CountDownLatch(1);
+        AtomicReference<String> failedName = new AtomicReference<>();
+        mScheduler.setErrorListener((name, error) -> {
+            failedName.set(name + ": " + error.getMessage());
+            reported.countDown();
+        });
+        mScheduler.submit("broken", Priority.PREFETCH, task -> {
+            throw new IllegalStateException("boom");
+        });
+        await(reported);
+        assertEquals("broken: boom", failedName.get());
+    }
+
+    @Test
+    public void shutdownCancelsQueuedWorkAndRejectsNewWork() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        mScheduler.submit("running", Priority.PREFETCH, task -> {
+            started.countDown();
+            while (true) {
+                task.checkpoint();
+                Thread.sleep(2);
+            }
+        });
+        PriorityScheduler.Task queued = mScheduler.submit("queued", Priority.PREFETCH, task -> { });
+        await(started);
+        mScheduler.shutdown();
+        assertTrue(queued.isCancelled());
+        assertEquals(0, mScheduler.getQueued(Priority.PREFETCH));
+        assertTrue(mScheduler.submit("late", Priority.USER_VISIBLE, task -> { }).isCancelled());
+        awaitTrue(() -> mScheduler.getRunning(Priority.PREFETCH) == 0);
+    }
+}
@@ -0,0 +1,68 @@
+package com.kenjigames.ivids.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Checks the size parsing, the per-level rewrites and the bytes saved estimate of {@link TmdbImageSizes}.
+ */
+public class TmdbImageSizesTest {
+
+    @Test
+    public void readsTheSizeSegment() {
+        assertEquals("w500", TmdbImageSizes.sizeOf("/t/p/w500/abc.jpg"));
+        assertEquals("original", TmdbImageSizes.sizeOf("/t/p/original/abc.jpg"));
+        assertNull(TmdbImageSizes.sizeOf("/t/p/w500"));
+        assertNull(TmdbImageSizes.sizeOf("/3/movie/550"));
+        assertNull(TmdbImageSizes.sizeOf(null));
+    }
+
+    @Test
+    public void noneLeavesEveryImageUnchanged() {
+        assertNull(TmdbImageSizes.rewritePath("/t/p/original/abc.jpg", TmdbImageSizes.Level.NONE));
+        assertNull(TmdbImageSizes.rewritePath("/t/p/w500/abc.jpg", TmdbImageSizes.Level.NONE));
+    }
+
+    @Test
+    public void reducedStepsDownOnlyLargeVariants() {
+        assertEquals("/t/p/w342/abc.jpg", TmdbImageSizes.rewritePath("/t/p/w500/abc.jpg", TmdbImageSizes.Level.REDUCED));
+        assertEquals("/t/p/w780/abc.jpg", TmdbImageSizes.rewritePath("/t/p/w1280/abc.jpg", TmdbImageSizes.Level.REDUCED));
+        assertEquals("/t/p/w780/abc.jpg", TmdbImageSizes.rewritePath("/t/p/original/abc.jpg", TmdbImageSizes.Level.REDUCED));
+        assertEquals("/t/p/w185/face.jpg", TmdbImageSizes.rewritePath("/t/p/h632/face.jpg", TmdbImageSizes.Level.REDUCED));
+        assertNull(TmdbImageSizes.rewritePath("/t/p/w342/abc.jpg", TmdbImageSizes.Level.REDUCED));
+        assertNull(TmdbImageSizes.rewritePath("/t/p/w185/abc.jpg", TmdbImageSizes.Level.REDUCED));
+    }
+
+    @Test
+    public void minimalUsesTheSmallestPosterAndBackdropSizes() {
+        assertEquals("/t/p/w92/abc.jpg", TmdbImageSizes.rewritePath("/t/p/w500/abc.jpg", TmdbImageSizes.Level.MINIMAL));
+        assertEquals("/t/p/w92/abc.jpg", TmdbImageSizes.rewritePath("/t/p/w154/abc.jpg", TmdbImageSizes.Level.MINIMAL));
+        assertEquals("/t/p/w300/abc.jpg", TmdbImageSizes.rewritePath("/t/p/w1280/abc.jpg", TmdbImageSizes.Level.MINIMAL));
+        assertEquals("/t/p/w300/abc.jpg", TmdbImageSizes.rewritePath("/t/p/original/abc.jpg", TmdbImageSizes.Level.MINIMAL));
+        assertNull(TmdbImageSizes.rewritePath("/t/p/w92/abc.jpg", TmdbImageSizes.Level.MINIMAL));
+        assertNull(TmdbImageSizes.rewritePath("/t/p/w45/abc.jpg", TmdbImageSizes.Level.MINIMAL));
+    }
+
+    @Test
+    public void keepsTheRestOfThePath() {
+        assertEquals("/t/p/w92/dir/abc.png", TmdbImageSizes.rewritePath("/t/p/w500/dir/abc.png", TmdbImageSizes.Level.MINIMAL));
+        assertNull(TmdbImageSizes.rewritePath("/t/p/w5000/abc.jpg", TmdbImageSizes.Level.MINIMAL));
+        assertNull(TmdbImageSizes.rewritePath("/images/w500/abc.jpg", TmdbImageSizes.Level.MINIMAL));
+        assertNull(TmdbImageSizes.rewritePath(null, TmdbImageSizes.Level.MINIMAL));
+    }
+
+    @Test
+    public void estimatesSavingsFromThePixelArea() {
+        // w500 is 5.43x the width of w92, so the original costs about 29.5x the served bytes
+        assertEquals(Math.round(10_000 * ((500.0 / 92) * (500.0 / 92) - 1)),
+                TmdbImageSizes.estimateBytesSaved("w500", "w92", 10_000));
+        assertEquals(Math.round(30_000 * ((1280.0 / 780) * (1280.0 / 780) - 1)),
+                TmdbImageSizes.estimateBytesSaved("w1280", "w780", 30_000));
+        assertEquals(0, TmdbImageSizes.estimateBytesSaved("w92", "w92", 10_000));
+        assertEquals(0, TmdbImageSizes.estimateBytesSaved("w92", "w500", 10_000));
+        assertEquals(0, TmdbImageSizes.estimateBytesSaved("w9999", "w92", 10_000));
+        assertEquals(0, TmdbImageSizes.estimateBytesSaved(null, "w92", 10_000));
+    }
+}
@@ -0,0 +1,85 @@
+package com.kenjigames.ivids.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Checks {@link XmltvParser} against the programmes EpgManager.parsePrograms reads, including documents that are
+ * larger than one read chunk.
+ */
+public class XmltvParserTest {
+
+    private static List<String> parse(String xml) throws IOException {
+        List<String> programmes = new ArrayList<>();
+        XmltvParser.parse(new StringReader(xml),
+                (channelId, startMs, stopMs, title) -> programmes.add(channelId + "|" + startMs + "|" + stopMs + "|" + title));
+        return programmes;
+    }
+
+    @Test
+    public void parsesChannelTimesAndTitle() throws IOException {
+        List<String> programmes = parse("<?xml version=\"1.0\"?>\n<tv>\n"
+                + "<channel id=\"Een.be\"><display-name>Eén</display-name></channel>\n"
+                + "<programme start=\"20260521193000 +0200\" stop=\"20260521230000 +0200\" channel=\" Een.be \">"
+                + "<title lang=\"nl\">Journaal &amp; Weer</title><desc>Skipped</desc></programme>\n</tv>\n");
+        assertEquals(List.of("een.be|1779384600000|1779397200000|Journaal & Weer"), programmes);
+    }
+
+    @Test
+    public void skipsProgrammesWithoutTitleOrValidTimes() throws IOException {
+        List<String> programmes = parse("<tv>"
+                + "<programme start=\"20260521193000\" stop=\"20260521200000\" channel=\"a\"><desc>No title</desc></programme>"
+                + "<programme start=\"2026052119\" stop=\"20260521200000\" channel=\"a\"><title>Short date</title></programme>"
+                + "<programme start=\"20261321193000\" stop=\"20260521200000\" channel=\"a\"><title>Bad month</title></programme>"
+                + "<programme start=\"20260521193000\" stop=\"20260521200000\"><title>No channel</title></programme>"
+                + "<programme start=\"20260521193000\" stop=\"20260521200000\" channel='a'><title>Kept</title></programme>"
+                + "</tv>");
+        assertEquals(1, programmes.size());
+        assertEquals("a|1779391800000|1779393600000|Kept", programmes.get(0));
+    }
+
+    @Test
+    public void parsesProgrammesSplitAcrossReadChunks() throws IOException {
+        StringBuilder xml = new StringBuilder("<tv>\n");
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            xml.append("<programme start=\"20260521193000 +0000\" stop=\"20260521200000 +0000\" channel=\"Ch").append(i)
+                    .append("\"><title>Programme ").append(i).append("</title><desc>")
+                    .append("x".repeat(i % 50)).append("</desc></programme>\n");
+        }
+        List<String> programmes = parse(xml.append("</tv>").toString());
+        assertEquals(count, programmes.size());
+        assertEquals("ch0|1779391800000|1779393600000|Programme 0", programmes.get(0));
+        assertEquals("ch1999|1779391800000|1779393600000|Programme 1999", programmes.get(count - 1));
+    }
+
+    @Test
+    public void parsesDatesWithOptionalSecondsAndZone() {
+        assertEquals(1779384600000L, XmltvParser.parseDate("20260521193000 +0200"));
+        assertEquals(1779391815000L, XmltvParser.parseDate("20260521193015"));
+        assertEquals(1779391800000L, XmltvParser.parseDate("202605211930"));
+        assertEquals(1779391800000L + 90 * 60_000L, XmltvParser.parseDate("20260521193000 -0130"));
+        assertEquals(Long.MIN_VALUE, XmltvParser.parseDate(null));
+        assertEquals(Long.MIN_VALUE, XmltvParser.parseDate("2026-05-21 19:30"));
+        assertEquals(Long.MIN_VALUE, XmltvParser.parseDate("20260230193000"));
+    }
+
+    @Test
+    public void normalizesChannelIdsWithoutTheDefaultLocale() {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertEquals("ntv.tr", XmltvParser.normalizeChannelId(" NTV.TR "));
+        } finally {
+            Locale.setDefault(previous);
+        }
+        assertEquals("", XmltvParser.normalizeChannelId(null));
+    }
+}
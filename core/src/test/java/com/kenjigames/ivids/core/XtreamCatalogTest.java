@@ -0,0 +1,213 @@
+package com.kenjigames.ivids.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks the paging, category index and generation handling of {@link XtreamCatalog}.
+ */
+public class XtreamCatalogTest {
+
+    private static final String CATEGORIES = "[{\"category_id\":\"1\",\"category_name\":\"News\",\"parent_id\":0},"
+            + "{\"category_id\":2,\"category_name\":\"Sports\"},{\"category_id\":\"3\",\"category_name\":null}]";
+
+    private File mDir;
+
+    @Before
+    public void createDir() throws IOException {
+        mDir = Files.createTempDirectory("xtream-catalog").toFile();
+    }
+
+    @After
+    public void deleteDir() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void indexesStreamsByCategoryInServerOrder() throws IOException {
+        XtreamCatalog catalog = build("streams-1.ndjson", 1L, streams(
+                stream(10, "News One", "1"), stream(20, "Match Day", "2"), stream(11, "News Two", "1"),
+                stream(30, "Orphan", "9"), stream(40, "No Category", null)));
+
+        Map<String, XtreamCatalog.Category> categories = catalog.getCategories();
+        assertEquals(Arrays.asList("1", "2", "3", "9", ""), Arrays.asList(categories.keySet().toArray()));
+        assertEquals("News", categories.get("1").name);
+        assertEquals("3", categories.get("3").name);
+        assertEquals("9", categories.get("9").name);
+        assertEquals("Xtream IPTV", categories.get("").name);
+        assertEquals(2, categories.get("1").size());
+        assertEquals(1, categories.get("2").size());
+        assertEquals(0, categories.get("3").size());
+        assertEquals(5, catalog.getStreamCount());
+    }
+
+    @Test
+    public void keepsOnlyTheFieldsTheUiUses() throws IOException {
+        XtreamCatalog catalog = build("streams-1.ndjson", 1L, "[{\"num\":1,\"name\":\"A \\\"quoted\\\" name\",\"stream_id\":7,"
+                + "\"stream_icon\":\"http://x.invalid/a.png\",\"epg_channel_id\":null,\"added\":\"1700000000\","
+                + "\"category_id\":\"1\",\"tv_archive\":0,\"direct_source\":\"\",\"custom_sid\":{\"a\":[1,2]}}]");
+
+        assertEquals("[{\"name\":\"A \\\"quoted\\\" name\",\"stream_id\":\"7\",\"stream_icon\":\"http://x.invalid/a.png\","
+                + "\"category_id\":\"1\",\"category_name\":\"News\"}]", catalog.readPage("1", 0, 10));
+    }
+
+    @Test
+    public void readsCategoryPages() throws IOException {
+        XtreamCatalog catalog = build("streams-1.ndjson", 1L, streams(
+                stream(1, "a", "1"), stream(2, "b", "1"), stream(3, "c", "1"), stream(4, "d", "2"), stream(5, "e", "1")));
+
+        assertEquals(Arrays.asList("1", "2"), ids(catalog.readPage("1", 0, 2)));
+        assertEquals(Arrays.asList("3", "5"), ids(catalog.readPage("1", 2, 2)));
+        assertEquals(Collections.singletonList("5"), ids(catalog.readPage("1", 3, 10)));
+        assertEquals("[]", catalog.readPage("1", 4, 10));
+        assertEquals("[]", catalog.readPage("1", 0, 0));
+        assertEquals("[]", catalog.readPage("1", -1, 10));
+        assertEquals("[]", catalog.readPage("unknown", 0, 10));
+    }
+
+    @Test
+    public void pagesAllStreamsInCategoryOrder() throws IOException {
+        XtreamCatalog catalog = build("streams-1.ndjson", 1L, streams(
+                stream(1, "a", "2"), stream(2, "b", "1"), stream(3, "c", "2"), stream(4, "d", "1"), stream(5, "e", "3")));
+
+        assertEquals(Arrays.asList("2", "4", "1"), ids(catalog.readPage("", 0, 3)));
+        assertEquals(Arrays.asList("3", "5"), ids(catalog.readPage("", 3, 3)));
+        assertEquals(Arrays.asList("4", "1", "3"), ids(catalog.readPage(null, 1, 3)));
+        assertEquals("[]", catalog.readPage("", 5, 3));
+    }
+
+    @Test
+    public void searchesNamesIgnoringCase() throws IOException {
+        XtreamCatalog catalog = build("streams-1.ndjson", 1L, streams(
+                stream(1, "BBC One", "1"), stream(2, "Sky Sports", "2"), stream(3, "bbc two", "1"), stream(4, "News 1", "1")));
+
+        assertEquals(Arrays.asList("1", "3"), ids(catalog.search("bbc", 10)));
+        assertEquals(Collections.singletonList("1"), ids(catalog.search("BBC", 1)));
+        assertEquals(Collections.singletonList("4"), ids(catalog.search("news 1", 10)));
+        assertEquals("[]", catalog.search("sports 2", 10));
+        assertEquals("[]", catalog.search("", 10));
+    }
+
+    @Test
+    public void persistedIndexServesTheSamePages() throws IOException {
+        XtreamCatalog built = build("streams-5.ndjson", 5L, streams(stream(1, "a", "1"), stream(2, "b", "2"), stream(3, "c", "1")));
+        XtreamCatalog read = roundTrip(built);
+
+        assertEquals(5L, read.getBuiltAt());
+        assertEquals(built.getDataFile(), read.getDataFile());
+        assertEquals(built.getStreamCount(), read.getStreamCount());
+        assertEquals(built.getCategories().keySet(), read.getCategories().keySet());
+        assertEquals(built.readPage("", 0, 10), read.readPage("", 0, 10));
+        assertEquals(built.readPage("1", 1, 1), read.readPage("1", 1, 1));
+        assertTrue(read.changedSince(built).isEmpty());
+    }
+
+    @Test
+    public void newGenerationReportsChangedCategoriesAndLeavesTheOldFileIntact() throws IOException {
+        XtreamCatalog first = build("streams-1.ndjson", 1L, streams(stream(1, "a", "1"), stream(2, "b", "2"), stream(3, "c", "3")));
+        String firstPage = first.readPage("", 0, 10);
+        XtreamCatalog second = build("streams-2.ndjson", 2L, streams(stream(1, "a", "1"), stream(2, "b renamed", "2"), stream(4, "d", "4")));
+
+        List<String> changed = second.changedSince(first);
+        Collections.sort(changed);
+        assertEquals(Arrays.asList("2", "3", "4"), changed);
+        assertFalse(first.getDataFile().equals(second.getDataFile()));
+        assertEquals(firstPage, first.readPage("", 0, 10));
+
+        first.getDataFile().delete();
+        try {
+            first.readPage("1", 0, 1);
+            fail("Reading a deleted generation must fail so the caller retries with the current catalog");
+        } catch (IOException expected) {
+            // expected
+        }
+        assertEquals(Collections.singletonList("1"), ids(second.readPage("1", 0, 1)));
+    }
+
+    @Test(expected = IOException.class)
+    public void indexOfAMissingGenerationIsRejected() throws IOException {
+        XtreamCatalog built = build("streams-1.ndjson", 1L, streams(stream(1, "a", "1")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        built.writeIndex(out);
+        built.getDataFile().delete();
+        XtreamCatalog.readIndex(new ByteArrayInputStream(out.toByteArray()), mDir);
+    }
+
+    @Test(expected = IOException.class)
+    public void indexOfAnotherFormatVersionIsRejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DataOutputStream(out).writeInt(1);
+        XtreamCatalog.readIndex(new ByteArrayInputStream(out.toByteArray()), mDir);
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedStreamsAreRejected() throws IOException {
+        build("streams-1.ndjson", 1L, "{\"user_info\":{\"auth\":0}}");
+    }
+
+    private XtreamCatalog build(String fileName, long builtAt, String streamsJson) throws IOException {
+        return XtreamCatalog.build(XtreamCatalog.parseCategories(new StringReader(CATEGORIES)),
+                new StringReader(streamsJson), new File(mDir, fileName), builtAt);
+    }
+
+    private XtreamCatalog roundTrip(XtreamCatalog catalog) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        catalog.writeIndex(out);
+        return XtreamCatalog.readIndex(new ByteArrayInputStream(out.toByteArray()), mDir);
+    }
+
+    private static String stream(int id, String name, String categoryId) {
+        return "{\"num\":" + id + ",\"name\":\"" + name + "\",\"stream_id\":" + id + ",\"stream_icon\":\"\""
+                + (categoryId == null ? "" : ",\"category_id\":\"" + categoryId + "\"") + "}";
+    }
+
+    private static String streams(String... streams) {
+        return "[" + String.join(",", streams) + "]";
+    }
+
+    /**
+     * @return The stream ids of a page, in page order.
+     */
+    private static List<String> ids(String page) throws IOException {
+        JsonPullParser parser = new JsonPullParser(new StringReader(page));
+        List<String> ids = new ArrayList<>();
+        parser.next();
+        while (parser.peek() != JsonPullParser.Token.END_ARRAY) {
+            parser.next();
+            while (parser.next() == JsonPullParser.Token.NAME) {
+                if (parser.decodedText().equals("stream_id")) {
+                    parser.next();
+                    ids.add(parser.decodedText());
+                } else {
+                    parser.skipValue();
+                }
+            }
+        }
+        return ids;
+    }
+}
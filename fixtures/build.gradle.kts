@@ -0,0 +1,27 @@
+plugins {
+    `java-library`
+    application
+}
+
+/**
+ * Record/replay stand-in server for the app's network services (GitHub releases, TMDB, IPTV playlists, XMLTV
+ * guides), so network paths can be benchmarked offline and reproducibly. JVM only: uses the JDK HTTP server.
+ * Record with `./gradlew :fixtures:run --args="--record"`; see docs/architecture/core-module.md.
+ */
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
+
+application {
+    mainClass.set("com.kenjigames.ivids.fixtures.FixtureServer")
+}
+
+tasks.named<JavaExec>("run") {
+    // Fixture paths on the command line are relative to the repository root
+    workingDir = rootProject.projectDir
+}
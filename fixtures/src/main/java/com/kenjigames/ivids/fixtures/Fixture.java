@@ -0,0 +1,35 @@
+package com.kenjigames.ivids.fixtures;
+
+/**
+ * A recorded response: status, the headers the app's clients look at, and the body as received (decoded from
+ * any transfer or content encoding).
+ */
+public final class Fixture {
+    /** The normalized request URL, see {@link FixtureStore#keyFor(String)}. */
+    public final String key;
+    public final int status;
+    public final String contentType;
+    /** Validators for conditional requests; null when the origin sent none. */
+    public final String etag;
+    public final String lastModified;
+    /** Wall clock time of the recording, in milliseconds. */
+    public final long recordedAt;
+    public final byte[] body;
+
+    public Fixture(String key, int status, String contentType, String etag, String lastModified, long recordedAt, byte[] body) {
+        this.key = key;
+        this.status = status;
+        this.contentType = contentType;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.recordedAt = recordedAt;
+        this.body = body;
+    }
+
+    /**
+     * @return A 200 fixture recorded now, for fixtures built in code (e.g. synthetic benchmark documents).
+     */
+    public static Fixture of(String url, String contentType, byte[] body) {
+        return new Fixture(FixtureStore.keyFor(url), 200, contentType, null, null, System.currentTimeMillis(), body);
+    }
+}
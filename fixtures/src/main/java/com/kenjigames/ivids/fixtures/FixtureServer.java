@@ -0,0 +1,476 @@
+package com.kenjigames.ivids.fixtures;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * FixtureServer is a local stand-in for the services the app talks to. An upstream URL is served under its
+ * scheme and authority on the loopback interface:
+ * <pre>
+ * https://api.github.com/repos/kenjikellens/IVIDS/releases
+ *   -> http://127.0.0.1:8787/https/api.github.com/repos/kenjikellens/IVIDS/releases
+ * </pre>
+ * In {@link Mode#RECORD} every request is forwarded to the real service and the response is stored in the
+ * {@link FixtureStore}; in {@link Mode#REPLAY} responses come only from the store, shaped by the configured
+ * {@link NetworkConditions}, and unknown requests get a 404. Every response carries an {@code X-Fixture} header
+ * ({@code hit}, {@code miss}, {@code recorded}, {@code error}, {@code truncated}) so a client can tell replayed,
+ * missing and injected responses apart.
+ * <p>
+ * Run from the command line to record or serve fixtures (see {@link #main(String[])}), or embed it in a benchmark
+ * or test: {@code new FixtureServer(store, Mode.REPLAY, conditions).start(0)}.
+ */
+public final class FixtureServer {
+    private static final Logger LOG = Logger.getLogger("FixtureServer");
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 60_000;
+    /** Request headers passed on to the real service while recording; credentials are never forwarded. */
+    private static final String[] FORWARDED_HEADERS = {"Accept", "Accept-Language", "User-Agent"};
+
+    /** Where responses come from. */
+    public enum Mode {
+        /** Serve recorded fixtures only. */
+        REPLAY,
+        /** Serve recorded fixtures and record the requests that have none. */
+        RECORD_MISSING,
+        /** Forward every request and record the response, replacing earlier recordings. */
+        RECORD
+    }
+
+    private final FixtureStore mStore;
+    private final Mode mMode;
+    private final NetworkConditions mConditions;
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mRecorded = new AtomicLong();
+    private final AtomicLong mInjectedErrors = new AtomicLong();
+    private final AtomicLong mTruncated = new AtomicLong();
+    private final AtomicLong mBytesServed = new AtomicLong();
+    private HttpServer mServer;
+    private ExecutorService mExecutor;
+
+    /**
+     * @param store The fixtures to serve and record into.
+     * @param mode Where responses come from.
+     * @param conditions Applied to responses served from the store; recorded responses pass through unshaped.
+     */
+    public FixtureServer(FixtureStore store, Mode mode, NetworkConditions conditions) {
+        this.mStore = store;
+        this.mMode = mode;
+        this.mConditions = conditions;
+    }
+
+    /**
+     * Starts listening on the loopback interface.
+     *
+     * @param port The port, or 0 for any free port.
+     * @return This server.
+     * @throws IOException If the port cannot be bound.
+     */
+    public FixtureServer start(int port) throws IOException {
+        AtomicInteger threadCount = new AtomicInteger();
+        mExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "FixtureServer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        mServer.createContext("/", this::handle);
+        // Throttled and delayed responses must not hold up each other
+        mServer.setExecutor(mExecutor);
+        mServer.start();
+        return this;
+    }
+
+    /**
+     * Stops the server, closing open exchanges.
+     */
+    public void stop() {
+        if (mServer != null) {
+            mServer.stop(0);
+            mExecutor.shutdownNow();
+            mServer = null;
+        }
+    }
+
+    /**
+     * @return The server root, e.g. {@code http://127.0.0.1:8787}.
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort();
+    }
+
+    /**
+     * Maps an upstream URL onto this server.
+     *
+     * @param upstreamUrl An absolute http(s) URL, e.g. {@code https://iptv-org.github.io/api/guides.json}.
+     * @return The URL to request instead.
+     * @throws IllegalArgumentException If the URL is not absolute.
+     */
+    public String urlFor(String upstreamUrl) {
+        int separator = upstreamUrl.indexOf("://");
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Not an absolute URL: " + upstreamUrl);
+        }
+        return getBaseUrl() + "/" + upstreamUrl.substring(0, separator) + "/" + upstreamUrl.substring(separator + 3);
+    }
+
+    /**
+     * @return A one-line summary of the requests served so far.
+     */
+    public String getStats() {
+        return "hits=" + mHits.get() + " misses=" + mMisses.get() + " recorded=" + mRecorded.get()
+                + " injectedErrors=" + mInjectedErrors.get() + " truncated=" + mTruncated.get()
+                + " bytesServed=" + mBytesServed.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            boolean head = method.equals("HEAD");
+            if (!head && !method.equals("GET")) {
+                sendEmpty(exchange, 405, "miss");
+                return;
+            }
+            String upstream = upstreamUrl(exchange);
+            if (upstream == null) {
+                sendEmpty(exchange, 400, "miss");
+                return;
+            }
+            String key = FixtureStore.keyFor(upstream);
+            Fixture fixture = mMode == Mode.RECORD ? null : mStore.get(key);
+            if (fixture != null) {
+                mHits.incrementAndGet();
+                replay(exchange, fixture, head);
+            } else if (mMode == Mode.REPLAY) {
+                mMisses.incrementAndGet();
+                LOG.warning("No fixture for " + key);
+                sendEmpty(exchange, 404, "miss");
+            } else {
+                record(exchange, upstream, key, head);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Error serving " + exchange.getRequestURI(), e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return The upstream URL of a request path {@code /<scheme>/<authority>/<path>}, or null if malformed.
+     */
+    private static String upstreamUrl(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getRawPath();
+        int schemeEnd = path.indexOf('/', 1);
+        if (schemeEnd < 0 || schemeEnd == path.length() - 1) {
+            return null;
+        }
+        String scheme = path.substring(1, schemeEnd);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            return null;
+        }
+        String query = exchange.getRequestURI().getRawQuery();
+        return scheme + "://" + path.substring(schemeEnd + 1) + (query != null ? "?" + query : "");
+    }
+
+    private void replay(HttpExchange exchange, Fixture fixture, boolean head) throws IOException {
+        sleep(mConditions.nextDelayMs());
+        NetworkConditions.Outcome outcome = mConditions.nextOutcome();
+        if (outcome == NetworkConditions.Outcome.ERROR) {
+            mInjectedErrors.incrementAndGet();
+            sendEmpty(exchange, mConditions.errorStatus, "error");
+            return;
+        }
+
+        Headers headers = exchange.getResponseHeaders();
+        if (fixture.etag != null) {
+            headers.set("ETag", fixture.etag);
+        }
+        if (fixture.lastModified != null) {
+            headers.set("Last-Modified", fixture.lastModified);
+        }
+        if (fixture.status == 200 && isNotModified(exchange.getRequestHeaders(), fixture)) {
+            sendEmpty(exchange, 304, "hit");
+            return;
+        }
+        if (fixture.contentType != null) {
+            headers.set("Content-Type", fixture.contentType);
+        }
+        boolean truncate = outcome == NetworkConditions.Outcome.TRUNCATE && !head && fixture.body.length > 1;
+        headers.set("X-Fixture", truncate ? "truncated" : "hit");
+        headers.set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(fixture.status, head || fixture.body.length == 0 ? -1 : fixture.body.length);
+        if (head) {
+            return;
+        }
+        if (truncate) {
+            mTruncated.incrementAndGet();
+            // Closing short of the announced length drops the connection; the client sees an early end of stream
+            writeThrottled(exchange.getResponseBody(), fixture.body, fixture.body.length / 2);
+            return;
+        }
+        OutputStream out = exchange.getResponseBody();
+        writeThrottled(out, fixture.body, fixture.body.length);
+        out.close();
+    }
+
+    private static boolean isNotModified(Headers request, Fixture fixture) {
+        String ifNoneMatch = request.getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            return fixture.etag != null && ifNoneMatch.contains(fixture.etag);
+        }
+        String ifModifiedSince = request.getFirst("If-Modified-Since");
+        return ifModifiedSince != null && ifModifiedSince.equals(fixture.lastModified);
+    }
+
+    private void record(HttpExchange exchange, String upstream, String key, boolean head) throws IOException {
+        Fixture fixture;
+        try {
+            fixture = fetch(upstream, key, exchange.getRequestHeaders());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Upstream request failed: " + key, e);
+            sendEmpty(exchange, 502, "miss");
+            return;
+        }
+        Headers headers = exchange.getResponseHeaders();
+        if (fixture.contentType != null) {
+            headers.set("Content-Type", fixture.contentType);
+        }
+        headers.set("X-Fixture", "recorded");
+        headers.set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(fixture.status, head || fixture.body.length == 0 ? -1 : fixture.body.length);
+        if (!head) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(fixture.body);
+            }
+            mBytesServed.addAndGet(fixture.body.length);
+        }
+    }
+
+    /**
+     * Records a list of URLs without a client, e.g. the fixed endpoints the app requests at startup.
+     *
+     * @param urls Absolute http(s) URLs.
+     * @return The number of URLs recorded; failed and server error responses are logged and skipped.
+     */
+    public int recordAll(List<String> urls) {
+        int recorded = 0;
+        for (String url : urls) {
+            String key = FixtureStore.keyFor(url);
+            try {
+                if (fetch(url, key, new Headers()).status < 500) {
+                    recorded++;
+                }
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Upstream request failed: " + key, e);
+            }
+        }
+        return recorded;
+    }
+
+    /**
+     * Requests the real service and stores the response with its account redacted, unless it is a server error:
+     * those are transient and are passed on without being replayed later.
+     */
+    private Fixture fetch(String upstream, String key, Headers requestHeaders) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(upstream).openConnection();
+        Fixture fixture;
+        try {
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setInstanceFollowRedirects(true);
+            for (String name : FORWARDED_HEADERS) {
+                String value = requestHeaders.getFirst(name);
+                if (value != null) {
+                    conn.setRequestProperty(name, value);
+                }
+            }
+            int status = conn.getResponseCode();
+            InputStream in = status >= 400 ? conn.getErrorStream() : conn.getInputStream();
+            fixture = new Fixture(key, status, conn.getContentType(), conn.getHeaderField("ETag"),
+                    conn.getHeaderField("Last-Modified"), System.currentTimeMillis(), readAll(in));
+        } finally {
+            conn.disconnect();
+        }
+        if (fixture.status < 500) {
+            // The client still gets the account it asked with; only the stored copy is redacted
+            mStore.put(new Fixture(key, fixture.status, fixture.contentType, fixture.etag, fixture.lastModified,
+                    fixture.recordedAt, FixtureStore.redactAccount(upstream, fixture.body)));
+            mRecorded.incrementAndGet();
+            LOG.info("Recorded " + fixture.status + " " + key + " (" + fixture.body.length + " bytes)");
+        }
+        return fixture;
+    }
+
+    private void sendEmpty(HttpExchange exchange, int status, String fixtureHeader) throws IOException {
+        exchange.getResponseHeaders().set("X-Fixture", fixtureHeader);
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    /**
+     * Writes the first {@code length} bytes of the body, pacing the writes to the bandwidth cap.
+     */
+    private void writeThrottled(OutputStream out, byte[] body, int length) throws IOException {
+        long bytesPerSecond = mConditions.bytesPerSecond;
+        if (bytesPerSecond == 0) {
+            out.write(body, 0, length);
+            out.flush();
+            mBytesServed.addAndGet(length);
+            return;
+        }
+        // Slices of about 20 ms keep the pacing smooth without a sleep per packet
+        int slice = (int) Math.max(1024, bytesPerSecond / 50);
+        long start = System.nanoTime();
+        int sent = 0;
+        while (sent < length) {
+            int count = Math.min(slice, length - sent);
+            // Each slice leaves when the link would have delivered it, so the last byte arrives on time
+            long dueNanos = (long) (sent + count) * 1_000_000_000L / bytesPerSecond;
+            sleep(TimeUnit.NANOSECONDS.toMillis(dueNanos - (System.nanoTime() - start)));
+            out.write(body, sent, count);
+            out.flush();
+            sent += count;
+            mBytesServed.addAndGet(count);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (in == null) {
+            return out.toByteArray();
+        }
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void sleep(long ms) throws IOException {
+        if (ms <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    /**
+     * Serves a fixture directory until interrupted.
+     * <pre>
+     * --dir &lt;path&gt;          Fixture directory (default: fixtures/recorded)
+     * --port &lt;port&gt;         Port on 127.0.0.1 (default: 8787)
+     * --record              Forward and record every request
+     * --record-missing      Replay fixtures, record requests without one
+     * --record-urls &lt;file&gt; Record the URLs listed in the file (one per line, # comments) and exit
+     * --latency &lt;ms&gt;        Delay before each replayed response
+     * --jitter &lt;ms&gt;         Maximum extra random delay
+     * --bandwidth &lt;bytes/s&gt; Body throughput cap (default: unlimited)
+     * --error-rate &lt;0..1&gt;   Fraction of responses replaced by an error
+     * --error-status &lt;code&gt; Status of injected errors (default: 503)
+     * --truncate-rate &lt;0..1&gt; Fraction of responses cut off halfway
+     * --seed &lt;n&gt;            Seed of the jitter and failure sequence (default: 1)
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String dir = "fixtures/recorded";
+        int port = 8787;
+        Mode mode = Mode.REPLAY;
+        long latency = 0, jitter = 0, bandwidth = 0, seed = 1;
+        double errorRate = 0, truncateRate = 0;
+        int errorStatus = 503;
+        String urlFile = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--record": mode = Mode.RECORD; continue;
+                case "--record-missing": mode = Mode.RECORD_MISSING; continue;
+                default: break;
+            }
+            if (i + 1 >= args.length) {
+                usage("Missing value for " + arg);
+            }
+            String value = args[++i];
+            try {
+                switch (arg) {
+                    case "--dir": dir = value; break;
+                    case "--record-urls": urlFile = value; break;
+                    case "--port": port = Integer.parseInt(value); break;
+                    case "--latency": latency = Long.parseLong(value); break;
+                    case "--jitter": jitter = Long.parseLong(value); break;
+                    case "--bandwidth": bandwidth = Long.parseLong(value); break;
+                    case "--error-rate": errorRate = Double.parseDouble(value); break;
+                    case "--error-status": errorStatus = Integer.parseInt(value); break;
+                    case "--truncate-rate": truncateRate = Double.parseDouble(value); break;
+                    case "--seed": seed = Long.parseLong(value); break;
+                    default: usage("Unknown option " + arg);
+                }
+            } catch (NumberFormatException e) {
+                usage("Invalid value for " + arg + ": " + value);
+            }
+        }
+
+        if (urlFile != null) {
+            List<String> urls = new ArrayList<>();
+            for (String line : Files.readAllLines(Paths.get(urlFile), StandardCharsets.UTF_8)) {
+                String url = line.trim();
+                if (!url.isEmpty() && !url.startsWith("#")) {
+                    urls.add(url);
+                }
+            }
+            FixtureServer recorder = new FixtureServer(new FixtureStore(Paths.get(dir)), Mode.RECORD, NetworkConditions.NONE);
+            System.out.println("Recorded " + recorder.recordAll(urls) + " of " + urls.size() + " URLs into "
+                    + Paths.get(dir).toAbsolutePath());
+            return;
+        }
+
+        NetworkConditions conditions = new NetworkConditions(latency, jitter, bandwidth, errorRate, truncateRate, errorStatus, seed);
+        FixtureServer server = new FixtureServer(new FixtureStore(Paths.get(dir)), mode, conditions).start(port);
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println(server.getStats());
+            server.stop();
+            stopped.countDown();
+        }));
+        System.out.println("Serving " + Paths.get(dir).toAbsolutePath() + " (" + mode + ", " + conditions + ")");
+        System.out.println("Example: " + server.urlFor("https://api.github.com/repos/kenjikellens/IVIDS/releases"));
+        stopped.await();
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: FixtureServer [--dir <path>] [--port <port>] [--record | --record-missing | --record-urls <file>]"
+                + " [--latency <ms>]"
+                + " [--jitter <ms>] [--bandwidth <bytes/s>] [--error-rate <0..1>] [--error-status <code>]"
+                + " [--truncate-rate <0..1>] [--seed <n>]");
+        System.exit(2);
+    }
+}
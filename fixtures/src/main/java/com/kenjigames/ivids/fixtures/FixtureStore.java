@@ -0,0 +1,294 @@
+package com.kenjigames.ivids.fixtures;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * FixtureStore keeps recorded responses in a directory, one {@code .properties} file (key, status, headers) and
+ * one {@code .body} file per request, grouped by host:
+ * <pre>
+ * fixtures/api.themoviedb.org/3f2a9c01d4e5b6a7.properties
+ * fixtures/api.themoviedb.org/3f2a9c01d4e5b6a7.body
+ * </pre>
+ * Requests are keyed by their normalized URL: lower-case scheme and host, sorted query parameters, and without
+ * credentials, so the TMDB API key or Xtream password never ends up in a fixture and the same request always finds
+ * the same fixture. Service keys ({@link #REDACTED_PARAMS}) are dropped. Account parameters ({@link #ACCOUNT_PARAMS})
+ * are replaced by one {@code account} parameter holding a hash of them, because an Xtream server answers each
+ * account differently. The properties file is written last and marks a complete fixture.
+ * <p>
+ * Limits: the account hash is unsalted, so a weak password can be guessed from it; record with a test account.
+ * {@link #redactAccount(String, byte[])} removes the account from the bodies of the request that carried it, but
+ * credentials in URL paths (Xtream stream URLs such as {@code /live/<user>/<pass>/1.ts}) are keyed as they are.
+ */
+public final class FixtureStore {
+
+    /** Query parameters that carry service keys; they are dropped from keys and never stored. */
+    public static final Set<String> REDACTED_PARAMS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "api_key", "access_token", "token"
+    )));
+    /** Query parameters that identify an account; keys carry a hash of their values instead. */
+    public static final Set<String> ACCOUNT_PARAMS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "username", "password"
+    )));
+    /** Replaces account values in recorded bodies. */
+    static final String REDACTED = "redacted";
+
+    private final Path mDir;
+    /** Key to fixture; absent keys are looked up on disk on first use. */
+    private final Map<String, Fixture> mCache = new ConcurrentHashMap<>();
+
+    /**
+     * @param dir The fixture directory; created on the first recording.
+     */
+    public FixtureStore(Path dir) {
+        this.mDir = dir;
+    }
+
+    public Path getDir() {
+        return mDir;
+    }
+
+    /**
+     * Normalizes a request URL into a fixture key.
+     *
+     * @param url An absolute http(s) URL.
+     * @return The key, e.g. {@code https://api.themoviedb.org/3/movie/550?language=nl-NL} or
+     *         {@code http://iptv.example:8080/player_api.php?account=5d41402abc4b2a76&action=get_live_streams}.
+     * @throws IllegalArgumentException If the URL is not absolute.
+     */
+    public static String keyFor(String url) {
+        URI uri = URI.create(url);
+        if (uri.getScheme() == null || uri.getRawAuthority() == null) {
+            throw new IllegalArgumentException("Not an absolute URL: " + url);
+        }
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder key = new StringBuilder(scheme).append("://").append(uri.getHost().toLowerCase(Locale.ROOT));
+        int port = uri.getPort();
+        if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            key.append(':').append(port);
+        }
+        String path = uri.getRawPath();
+        key.append(path == null || path.isEmpty() ? "/" : path);
+
+        String query = uri.getRawQuery();
+        if (query != null && !query.isEmpty()) {
+            List<String> params = new ArrayList<>();
+            List<String> account = new ArrayList<>();
+            for (String param : query.split("&")) {
+                int eq = param.indexOf('=');
+                String name = (eq >= 0 ? param.substring(0, eq) : param).toLowerCase(Locale.ROOT);
+                if (ACCOUNT_PARAMS.contains(name)) {
+                    account.add(name + param.substring(name.length()));
+                } else if (!param.isEmpty() && !REDACTED_PARAMS.contains(name)) {
+                    params.add(param);
+                }
+            }
+            if (!account.isEmpty()) {
+                Collections.sort(account);
+                params.add("account=" + hash(String.join("&", account)));
+            }
+            Collections.sort(params);
+            for (int i = 0; i < params.size(); i++) {
+                key.append(i == 0 ? '?' : '&').append(params.get(i));
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Replaces the account of a request in its response body before it is stored: the Xtream {@code user_info}
+     * fields of {@code player_api.php}, and the {@code /<user>/<pass>/} stream paths and {@code username=}/
+     * {@code password=} parameters of {@code get.php} playlists.
+     *
+     * @param url The request URL, with its {@link #ACCOUNT_PARAMS}.
+     * @param body The response body.
+     * @return The redacted body; the same array if the request carries no account or the body does not mention it.
+     */
+    public static byte[] redactAccount(String url, byte[] body) {
+        String username = null;
+        String password = null;
+        String query = URI.create(url).getRawQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int eq = param.indexOf('=');
+                if (eq < 0 || eq == param.length() - 1) {
+                    continue;
+                }
+                String name = param.substring(0, eq).toLowerCase(Locale.ROOT);
+                if (name.equals("username")) {
+                    username = param.substring(eq + 1);
+                } else if (name.equals("password")) {
+                    password = param.substring(eq + 1);
+                }
+            }
+        }
+        if (username == null && password == null) {
+            return body;
+        }
+        // Latin-1 maps every byte to one char, so binary bodies come back unchanged
+        String text = new String(body, StandardCharsets.ISO_8859_1);
+        String redacted = text;
+        if (username != null && password != null) {
+            redacted = redacted.replace("/" + latin1(decode(username)) + "/" + latin1(decode(password)) + "/",
+                    "/" + REDACTED + "/" + REDACTED + "/");
+        }
+        redacted = redactValue(redacted, "username", username);
+        redacted = redactValue(redacted, "password", password);
+        return redacted.equals(text) ? body : redacted.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static String redactValue(String text, String name, String rawValue) {
+        if (rawValue == null) {
+            return text;
+        }
+        String value = latin1(decode(rawValue));
+        String quoted = "(?:" + Pattern.quote(value) + "|" + Pattern.quote(value.replace("/", "\\/")) + ")";
+        text = text.replaceAll("(\"" + name + "\"\\s*:\\s*\")" + quoted + "\"", "$1" + REDACTED + "\"");
+        String inQuery = "(?:" + Pattern.quote(latin1(rawValue)) + "|" + Pattern.quote(value) + ")";
+        return text.replaceAll("(?i)(" + name + "=)" + inQuery + "(?=[&\"'\\s<]|$)", "$1" + REDACTED);
+    }
+
+    private static String decode(String rawValue) {
+        try {
+            return URLDecoder.decode(rawValue, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return rawValue;
+        }
+    }
+
+    /**
+     * @return The UTF-8 bytes of the value as Latin-1 chars, to match it in a body decoded as Latin-1.
+     */
+    private static String latin1(String value) {
+        return new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @param key A key from {@link #keyFor(String)}.
+     * @return The fixture, or null if none was recorded for the key.
+     * @throws IOException If the fixture files cannot be read.
+     */
+    public Fixture get(String key) throws IOException {
+        Fixture fixture = mCache.get(key);
+        if (fixture == null) {
+            fixture = read(key);
+            if (fixture != null) {
+                mCache.put(key, fixture);
+            }
+        }
+        return fixture;
+    }
+
+    /**
+     * Stores a fixture, replacing an earlier recording of the same key.
+     *
+     * @param fixture The fixture.
+     * @throws IOException If the fixture cannot be written.
+     */
+    public void put(Fixture fixture) throws IOException {
+        Path base = basePath(fixture.key);
+        Files.createDirectories(base.getParent());
+        writeAtomically(sibling(base, ".body"), fixture.body);
+
+        Properties meta = new Properties();
+        meta.setProperty("key", fixture.key);
+        meta.setProperty("status", Integer.toString(fixture.status));
+        meta.setProperty("recordedAt", Long.toString(fixture.recordedAt));
+        meta.setProperty("bytes", Integer.toString(fixture.body.length));
+        if (fixture.contentType != null) {
+            meta.setProperty("contentType", fixture.contentType);
+        }
+        if (fixture.etag != null) {
+            meta.setProperty("etag", fixture.etag);
+        }
+        if (fixture.lastModified != null) {
+            meta.setProperty("lastModified", fixture.lastModified);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        meta.store(out, null);
+        writeAtomically(sibling(base, ".properties"), out.toByteArray());
+        mCache.put(fixture.key, fixture);
+    }
+
+    private Fixture read(String key) throws IOException {
+        Path base = basePath(key);
+        Path metaFile = sibling(base, ".properties");
+        if (!Files.isRegularFile(metaFile)) {
+            return null;
+        }
+        Properties meta = new Properties();
+        try (InputStream in = Files.newInputStream(metaFile)) {
+            meta.load(in);
+        }
+        if (!key.equals(meta.getProperty("key"))) {
+            // Hash prefix collision with another request
+            return null;
+        }
+        try {
+            return new Fixture(key,
+                    Integer.parseInt(meta.getProperty("status", "200")),
+                    meta.getProperty("contentType"),
+                    meta.getProperty("etag"),
+                    meta.getProperty("lastModified"),
+                    Long.parseLong(meta.getProperty("recordedAt", "0")),
+                    Files.readAllBytes(sibling(base, ".body")));
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed fixture " + metaFile, e);
+        }
+    }
+
+    /**
+     * @return The fixture path without extension: the host directory and a hash of the key.
+     */
+    private Path basePath(String key) {
+        String host = URI.create(key).getHost();
+        return mDir.resolve(host).resolve(hash(key));
+    }
+
+    private static Path sibling(Path base, String extension) {
+        return base.resolveSibling(base.getFileName() + extension);
+    }
+
+    private static void writeAtomically(Path file, byte[] data) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            out.write(data);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
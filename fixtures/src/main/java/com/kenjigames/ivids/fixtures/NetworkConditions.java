@@ -0,0 +1,96 @@
+package com.kenjigames.ivids.fixtures;
+
+import java.util.Random;
+
+/**
+ * NetworkConditions shapes replayed responses: a delay before the response headers (latency plus jitter), a
+ * bandwidth cap on the body, and injected failures (error responses and bodies cut off mid-transfer).
+ * Jitter and failures come from a seeded random sequence, so a run with the same seed and the same requests in
+ * the same order sees the same conditions.
+ */
+public final class NetworkConditions {
+
+    /** What happens to a single response. */
+    public enum Outcome {
+        DELIVER,
+        /** Respond with the configured error status and an empty body. */
+        ERROR,
+        /** Announce the full length, send half of the body and close the connection. */
+        TRUNCATE
+    }
+
+    /** Responses delivered as fast as the loopback interface allows. */
+    public static final NetworkConditions NONE = new NetworkConditions(0, 0, 0, 0, 0, 503, 0);
+
+    public final long latencyMs;
+    public final long jitterMs;
+    /** Body throughput cap in bytes per second; 0 for unlimited. */
+    public final long bytesPerSecond;
+    public final double errorRate;
+    public final double truncateRate;
+    public final int errorStatus;
+    public final long seed;
+    private final Random mRandom;
+
+    /**
+     * @param latencyMs Delay before the response headers, in milliseconds.
+     * @param jitterMs Maximum extra delay, drawn uniformly per response.
+     * @param bytesPerSecond Body throughput cap; 0 for unlimited.
+     * @param errorRate Fraction of responses replaced by {@code errorStatus}.
+     * @param truncateRate Fraction of responses cut off halfway.
+     * @param errorStatus The status of injected errors, e.g. 503.
+     * @param seed Seed of the jitter and failure sequence.
+     */
+    public NetworkConditions(long latencyMs, long jitterMs, long bytesPerSecond, double errorRate, double truncateRate,
+                             int errorStatus, long seed) {
+        if (latencyMs < 0 || jitterMs < 0 || bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Latency, jitter and bandwidth must not be negative");
+        }
+        if (errorRate < 0 || truncateRate < 0 || errorRate + truncateRate > 1) {
+            throw new IllegalArgumentException("Failure rates must be between 0 and 1 together");
+        }
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.bytesPerSecond = bytesPerSecond;
+        this.errorRate = errorRate;
+        this.truncateRate = truncateRate;
+        this.errorStatus = errorStatus;
+        this.seed = seed;
+        this.mRandom = new Random(seed);
+    }
+
+    /**
+     * @return The delay before the next response, in milliseconds.
+     */
+    public long nextDelayMs() {
+        if (jitterMs == 0) {
+            return latencyMs;
+        }
+        synchronized (mRandom) {
+            return latencyMs + (long) (mRandom.nextDouble() * jitterMs);
+        }
+    }
+
+    /**
+     * @return What to do with the next response.
+     */
+    public Outcome nextOutcome() {
+        if (errorRate == 0 && truncateRate == 0) {
+            return Outcome.DELIVER;
+        }
+        double draw;
+        synchronized (mRandom) {
+            draw = mRandom.nextDouble();
+        }
+        if (draw < errorRate) {
+            return Outcome.ERROR;
+        }
+        return draw < errorRate + truncateRate ? Outcome.TRUNCATE : Outcome.DELIVER;
+    }
+
+    @Override
+    public String toString() {
+        return "latency=" + latencyMs + "ms+" + jitterMs + "ms, bandwidth=" + (bytesPerSecond == 0 ? "unlimited" : bytesPerSecond + "B/s")
+                + ", errors=" + errorRate + " (" + errorStatus + "), truncated=" + truncateRate + ", seed=" + seed;
+    }
+}
@@ -0,0 +1,213 @@
+package com.kenjigames.ivids.fixtures;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Drives a replaying {@link FixtureServer} over loopback HTTP: hits, misses, conditional requests, the seeded
+ * failure sequence of {@link NetworkConditions} and bandwidth pacing.
+ */
+public class FixtureServerTest {
+
+    private static final String GUIDE_URL = "https://iptv-org.github.io/api/guides.json";
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Tue, 01 Oct 2024 10:00:00 GMT";
+
+    private Path mDir;
+    private FixtureStore mStore;
+    private byte[] mBody;
+    private FixtureServer mServer;
+
+    @Before
+    public void recordFixture() throws IOException {
+        mDir = Files.createTempDirectory("fixture-server");
+        mStore = new FixtureStore(mDir);
+        mBody = new byte[20_000];
+        for (int i = 0; i < mBody.length; i++) {
+            mBody[i] = (byte) ('a' + i % 26);
+        }
+        mStore.put(new Fixture(FixtureStore.keyFor(GUIDE_URL), 200, "application/json", ETAG, LAST_MODIFIED, 0L, mBody));
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        if (mServer != null) {
+            mServer.stop();
+        }
+        try (Stream<Path> files = Files.walk(mDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void replaysRecordedResponses() throws IOException {
+        start(NetworkConditions.NONE);
+        HttpURLConnection conn = open(GUIDE_URL);
+
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("hit", conn.getHeaderField("X-Fixture"));
+        assertEquals("application/json", conn.getContentType());
+        assertEquals(ETAG, conn.getHeaderField("ETag"));
+        assertArrayEquals(mBody, readAll(conn.getInputStream()));
+        assertTrue(mServer.getStats(), mServer.getStats().startsWith("hits=1 misses=0"));
+    }
+
+    @Test
+    public void unknownRequestsAreMissesInReplay() throws IOException {
+        start(NetworkConditions.NONE);
+        HttpURLConnection conn = open("https://iptv-org.github.io/api/channels.json");
+
+        assertEquals(404, conn.getResponseCode());
+        assertEquals("miss", conn.getHeaderField("X-Fixture"));
+        assertTrue(mServer.getStats(), mServer.getStats().startsWith("hits=0 misses=1 recorded=0"));
+    }
+
+    @Test
+    public void malformedPathsAreRejected() throws IOException {
+        start(NetworkConditions.NONE);
+        HttpURLConnection conn = (HttpURLConnection) new URL(mServer.getBaseUrl() + "/ftp/example.com/a").openConnection();
+
+        assertEquals(400, conn.getResponseCode());
+    }
+
+    @Test
+    public void answersConditionalRequestsWithNotModified() throws IOException {
+        start(NetworkConditions.NONE);
+
+        HttpURLConnection etag = open(GUIDE_URL);
+        etag.setRequestProperty("If-None-Match", ETAG);
+        assertEquals(304, etag.getResponseCode());
+        assertEquals(ETAG, etag.getHeaderField("ETag"));
+
+        HttpURLConnection date = open(GUIDE_URL);
+        date.setRequestProperty("If-Modified-Since", LAST_MODIFIED);
+        assertEquals(304, date.getResponseCode());
+
+        HttpURLConnection stale = open(GUIDE_URL);
+        stale.setRequestProperty("If-None-Match", "\"v0\"");
+        assertEquals(200, stale.getResponseCode());
+        assertArrayEquals(mBody, readAll(stale.getInputStream()));
+    }
+
+    @Test
+    public void injectsTheSeededFailureSequence() throws IOException {
+        NetworkConditions expected = new NetworkConditions(0, 0, 0, 0.3, 0.3, 503, 42);
+        start(new NetworkConditions(0, 0, 0, 0.3, 0.3, 503, 42));
+
+        List<NetworkConditions.Outcome> outcomes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            NetworkConditions.Outcome outcome = expected.nextOutcome();
+            outcomes.add(outcome);
+            HttpURLConnection conn = open(GUIDE_URL);
+            switch (outcome) {
+                case ERROR:
+                    assertEquals(503, conn.getResponseCode());
+                    assertEquals("error", conn.getHeaderField("X-Fixture"));
+                    break;
+                case TRUNCATE:
+                    assertEquals(200, conn.getResponseCode());
+                    assertEquals("truncated", conn.getHeaderField("X-Fixture"));
+                    assertTruncated(conn);
+                    break;
+                default:
+                    assertEquals(200, conn.getResponseCode());
+                    assertEquals("hit", conn.getHeaderField("X-Fixture"));
+                    assertArrayEquals(mBody, readAll(conn.getInputStream()));
+            }
+        }
+        // The seed must produce every outcome, or the test proves nothing
+        assertTrue(outcomes.toString(), outcomes.contains(NetworkConditions.Outcome.ERROR));
+        assertTrue(outcomes.toString(), outcomes.contains(NetworkConditions.Outcome.TRUNCATE));
+        assertTrue(outcomes.toString(), outcomes.contains(NetworkConditions.Outcome.DELIVER));
+    }
+
+    @Test
+    public void sameSeedGivesTheSameConditions() {
+        NetworkConditions first = new NetworkConditions(10, 50, 0, 0.2, 0.2, 503, 7);
+        NetworkConditions second = new NetworkConditions(10, 50, 0, 0.2, 0.2, 503, 7);
+        for (int i = 0; i < 100; i++) {
+            long delay = first.nextDelayMs();
+            assertEquals(delay, second.nextDelayMs());
+            assertTrue(delay >= 10 && delay < 60);
+            assertEquals(first.nextOutcome(), second.nextOutcome());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failureRatesAboveOneAreRejected() {
+        new NetworkConditions(0, 0, 0, 0.6, 0.5, 503, 1);
+    }
+
+    @Test
+    public void pacesBodiesToTheBandwidthCap() throws IOException {
+        // 20 kB at 100 kB/s takes 200 ms
+        start(new NetworkConditions(0, 0, 100_000, 0, 0, 503, 1));
+        long started = System.nanoTime();
+        HttpURLConnection conn = open(GUIDE_URL);
+        byte[] body = readAll(conn.getInputStream());
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertArrayEquals(mBody, body);
+        assertTrue("elapsed " + elapsedMs + " ms", elapsedMs >= 190);
+    }
+
+    @Test
+    public void delaysResponsesByTheLatency() throws IOException {
+        start(new NetworkConditions(150, 0, 0, 0, 0, 503, 1));
+        long started = System.nanoTime();
+        assertEquals(200, open(GUIDE_URL).getResponseCode());
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertTrue("elapsed " + elapsedMs + " ms", elapsedMs >= 140);
+    }
+
+    private void start(NetworkConditions conditions) throws IOException {
+        mServer = new FixtureServer(mStore, FixtureServer.Mode.REPLAY, conditions).start(0);
+    }
+
+    private HttpURLConnection open(String upstreamUrl) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(mServer.urlFor(upstreamUrl)).openConnection();
+        conn.setConnectTimeout(5000);
+        conn.setReadTimeout(5000);
+        return conn;
+    }
+
+    private void assertTruncated(HttpURLConnection conn) {
+        try {
+            byte[] body = readAll(conn.getInputStream());
+            assertTrue("received " + body.length + " bytes", body.length < mBody.length);
+        } catch (IOException expected) {
+            // The announced length was not delivered
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,166 @@
+package com.kenjigames.ivids.fixtures;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Checks the key normalization, the persisted layout and the account redaction of {@link FixtureStore}.
+ */
+public class FixtureStoreTest {
+
+    private Path mDir;
+
+    @Before
+    public void createDir() throws IOException {
+        mDir = Files.createTempDirectory("fixture-store");
+    }
+
+    @After
+    public void deleteDir() throws IOException {
+        try (Stream<Path> files = Files.walk(mDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void normalizesSchemeHostPortAndQueryOrder() {
+        assertEquals("https://api.themoviedb.org/3/movie/550?append_to_response=videos&language=nl-NL",
+                FixtureStore.keyFor("HTTPS://API.TheMovieDB.org:443/3/movie/550?language=nl-NL&append_to_response=videos"));
+        assertEquals("http://example.com/", FixtureStore.keyFor("http://example.com:80"));
+        assertEquals("http://example.com:8080/a?b", FixtureStore.keyFor("http://example.com:8080/a?b&"));
+        // The path keeps its case and encoding
+        assertEquals("https://example.com/A%20b", FixtureStore.keyFor("https://example.com/A%20b"));
+    }
+
+    @Test
+    public void dropsServiceKeys() {
+        assertEquals("https://api.themoviedb.org/3/movie/550?language=en-US",
+                FixtureStore.keyFor("https://api.themoviedb.org/3/movie/550?API_KEY=secret&language=en-US&token=t"));
+    }
+
+    @Test
+    public void keysAccountsByAHashOfTheirCredentials() {
+        String alice = FixtureStore.keyFor("http://iptv.example:8080/player_api.php?username=alice&password=pw1&action=get_live_streams");
+        String aliceReordered = FixtureStore.keyFor("http://iptv.example:8080/player_api.php?action=get_live_streams&password=pw1&Username=alice");
+        String bob = FixtureStore.keyFor("http://iptv.example:8080/player_api.php?username=bob&password=pw1&action=get_live_streams");
+        String alicePasswordChanged = FixtureStore.keyFor("http://iptv.example:8080/player_api.php?username=alice&password=pw2&action=get_live_streams");
+
+        assertEquals(alice, aliceReordered);
+        assertNotEquals(alice, bob);
+        assertNotEquals(alice, alicePasswordChanged);
+        assertTrue(alice, alice.matches("http://iptv\\.example:8080/player_api\\.php\\?account=[0-9a-f]{16}&action=get_live_streams"));
+        assertFalse(alice.contains("alice"));
+        assertFalse(alice.contains("pw1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void relativeUrlsAreRejected() {
+        FixtureStore.keyFor("/3/movie/550");
+    }
+
+    @Test
+    public void storedFixturesSurviveANewStore() throws IOException {
+        String key = FixtureStore.keyFor("https://api.github.com/repos/kenjikellens/IVIDS/releases");
+        byte[] body = "[{\"tag_name\":\"v1\"}]".getBytes(StandardCharsets.UTF_8);
+        new FixtureStore(mDir).put(new Fixture(key, 200, "application/json", "\"abc\"", "Tue, 01 Oct 2024 10:00:00 GMT", 1234L, body));
+
+        Fixture read = new FixtureStore(mDir).get(key);
+
+        assertEquals(key, read.key);
+        assertEquals(200, read.status);
+        assertEquals("application/json", read.contentType);
+        assertEquals("\"abc\"", read.etag);
+        assertEquals("Tue, 01 Oct 2024 10:00:00 GMT", read.lastModified);
+        assertEquals(1234L, read.recordedAt);
+        assertArrayEquals(body, read.body);
+        assertTrue(Files.isDirectory(mDir.resolve("api.github.com")));
+    }
+
+    @Test
+    public void storesMissingHeadersAndEmptyBodies() throws IOException {
+        String key = FixtureStore.keyFor("https://example.com/missing");
+        new FixtureStore(mDir).put(new Fixture(key, 404, null, null, null, 0L, new byte[0]));
+
+        Fixture read = new FixtureStore(mDir).get(key);
+
+        assertEquals(404, read.status);
+        assertNull(read.contentType);
+        assertNull(read.etag);
+        assertNull(read.lastModified);
+        assertEquals(0, read.body.length);
+    }
+
+    @Test
+    public void newRecordingReplacesTheOldOne() throws IOException {
+        FixtureStore store = new FixtureStore(mDir);
+        store.put(Fixture.of("https://example.com/a", "text/plain", new byte[] {1}));
+        store.put(Fixture.of("https://example.com/a", "text/plain", new byte[] {2}));
+
+        assertArrayEquals(new byte[] {2}, new FixtureStore(mDir).get(FixtureStore.keyFor("https://example.com/a")).body);
+    }
+
+    @Test
+    public void unknownKeysAreMisses() throws IOException {
+        FixtureStore store = new FixtureStore(mDir);
+        store.put(Fixture.of("https://example.com/a", "text/plain", new byte[] {1}));
+
+        assertNull(store.get(FixtureStore.keyFor("https://example.com/b")));
+        assertNull(store.get(FixtureStore.keyFor("https://other.example/a")));
+    }
+
+    @Test
+    public void redactsTheXtreamUserInfo() {
+        String url = "http://iptv.example:8080/player_api.php?username=alice%40mail&password=s3cr%2Ft";
+        String body = "{\"user_info\":{\"username\":\"alice@mail\",\"password\":\"s3cr\\/t\",\"status\":\"Active\"},"
+                + "\"server_info\":{\"url\":\"iptv.example\"}}";
+
+        String redacted = redact(url, body);
+
+        assertEquals("{\"user_info\":{\"username\":\"redacted\",\"password\":\"redacted\",\"status\":\"Active\"},"
+                + "\"server_info\":{\"url\":\"iptv.example\"}}", redacted);
+    }
+
+    @Test
+    public void redactsPlaylistStreamUrls() {
+        String url = "http://iptv.example:8080/get.php?username=alice&password=pw1&type=m3u_plus";
+        String body = "#EXTM3U url-tvg=\"http://iptv.example:8080/xmltv.php?username=alice&password=pw1\"\n"
+                + "#EXTINF:-1,News\nhttp://iptv.example:8080/alice/pw1/101\n"
+                + "#EXTINF:-1,Sports\nhttp://iptv.example:8080/live/alice/pw1/102.ts\n";
+
+        String redacted = redact(url, body);
+
+        assertEquals("#EXTM3U url-tvg=\"http://iptv.example:8080/xmltv.php?username=redacted&password=redacted\"\n"
+                + "#EXTINF:-1,News\nhttp://iptv.example:8080/redacted/redacted/101\n"
+                + "#EXTINF:-1,Sports\nhttp://iptv.example:8080/live/redacted/redacted/102.ts\n", redacted);
+    }
+
+    @Test
+    public void leavesOtherBodiesUntouched() {
+        byte[] binary = {(byte) 0xff, 0x00, 'p', 'w', '1', (byte) 0x80};
+        byte[] text = "{\"username_hint\":\"alice2\",\"note\":\"alicepw1\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertSame(binary, FixtureStore.redactAccount("http://iptv.example/get.php?username=alice&password=pw1", binary));
+        assertSame(text, FixtureStore.redactAccount("http://iptv.example/get.php?username=alice&password=pw1", text));
+        assertSame(text, FixtureStore.redactAccount("https://api.themoviedb.org/3/movie/550", text));
+    }
+
+    private static String redact(String url, String body) {
+        return new String(FixtureStore.redactAccount(url, body.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    }
+}
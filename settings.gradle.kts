@@ -24,4 +24,7 @@ dependencyResolutionManagement {
 
 rootProject.name = "IVIDS"
 include(":app")
+include(":core")
+include(":benchmarks")
+include(":fixtures")
  
\ No newline at end of file